@@ -104,6 +104,7 @@ class HdfsResourceJar:
     kinit_path = main_resource.resource.kinit_path_local
     logoutput = main_resource.resource.logoutput
     principal_name = main_resource.resource.principal_name
+    threads = main_resource.resource.threads
     jar_path=JAR_PATH
     timestamp = time.time()
     json_path=format(JSON_PATH)
@@ -118,7 +119,10 @@ class HdfsResourceJar:
     )
 
     # Execute jar to create/delete resources in hadoop
-    Execute(format("hadoop --config {hadoop_conf_dir} jar {jar_path} {json_path}"),
+    command = format("hadoop --config {hadoop_conf_dir} jar {jar_path} {json_path}")
+    if threads:
+      command = format("{command} {threads}")
+    Execute(command,
             user=user,
             path=[hadoop_bin_dir],
             logoutput=logoutput,
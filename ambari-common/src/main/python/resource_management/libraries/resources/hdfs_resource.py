@@ -102,6 +102,13 @@ class HdfsResource(Resource):
   # To support HCFS
   dfs_type = ResourceArgument(default="")
 
+  """
+  Number of resources fast-hdfs-resource.jar creates or deletes concurrently on execute.
+  Resources on the same path or on a parent and child path are still handled in the order given.
+  If not set the jar's default of 10 is used. Not used with WebHDFS.
+  """
+  threads = ResourceArgument()
+
   #action 'execute' immediately creates all pending files/directories in efficient manner
   #action 'create_delayed/delete_delayed' adds file/directory to list of pending directories
   actions = Resource.actions + ["create_on_execute", "delete_on_execute", "execute"]
@@ -0,0 +1,115 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline.cache;
+
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the ring buffer TimelineMetricsCache with the TreeMap based
+ * implementation it replaced, replaying what a sink does every sampling
+ * period: put one value per metric, then try to evict each metric.
+ *
+ * Run with the benchmark profile, e.g.
+ * mvn -Pbenchmark test-compile exec:java -Dexec.classpathScope=test
+ *   -Dexec.mainClass=org.apache.hadoop.metrics2.sink.timeline.cache.TimelineMetricsCacheBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class TimelineMetricsCacheBenchmark {
+
+  // Sink sampling period
+  private static final long PERIOD_MILLIS = 10000;
+
+  @Param({"100", "1000"})
+  public int metricCount;
+
+  private String[] metricNames;
+  private TimelineMetricsCache cache;
+  private LegacyTimelineMetricsCache legacyCache;
+  private long timestamp;
+
+  @Setup
+  public void setup() {
+    metricNames = new String[metricCount];
+    for (int i = 0; i < metricCount; i++) {
+      metricNames[i] = "dfs.namenode.metric" + i;
+    }
+    cache = new TimelineMetricsCache(TimelineMetricsCache.MAX_RECS_PER_NAME_DEFAULT,
+      TimelineMetricsCache.MAX_EVICTION_TIME_MILLIS);
+    legacyCache = new LegacyTimelineMetricsCache(LegacyTimelineMetricsCache.MAX_RECS_PER_NAME_DEFAULT,
+      LegacyTimelineMetricsCache.MAX_EVICTION_TIME_MILLIS);
+    timestamp = 1431500000000L;
+  }
+
+  @Benchmark
+  public void ringBuffer(Blackhole blackhole) {
+    timestamp += PERIOD_MILLIS;
+    for (String metricName : metricNames) {
+      cache.putTimelineMetric(createMetric(metricName, timestamp));
+      blackhole.consume(cache.getTimelineMetric(metricName));
+    }
+  }
+
+  @Benchmark
+  public void treeMap(Blackhole blackhole) {
+    timestamp += PERIOD_MILLIS;
+    for (String metricName : metricNames) {
+      legacyCache.putTimelineMetric(createMetric(metricName, timestamp));
+      blackhole.consume(legacyCache.getTimelineMetric(metricName));
+    }
+  }
+
+  private static TimelineMetric createMetric(String metricName, long timestamp) {
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName(metricName);
+    metric.setAppId("namenode");
+    metric.setHostName("h1");
+    metric.setStartTime(timestamp);
+    metric.getMetricValues().put(timestamp, 42.0);
+    return metric;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options options = new OptionsBuilder()
+      .include(TimelineMetricsCacheBenchmark.class.getSimpleName())
+      .build();
+    new Runner(options).run();
+  }
+}
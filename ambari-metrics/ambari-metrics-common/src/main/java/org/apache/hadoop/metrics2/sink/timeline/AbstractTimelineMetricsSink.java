@@ -29,6 +29,7 @@ import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManagerFactory;
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -38,6 +39,7 @@ import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.security.KeyStore;
+import java.util.zip.GZIPOutputStream;
 
 public abstract class AbstractTimelineMetricsSink {
   public static final String TAGS_FOR_PREFIX_PROPERTY_PREFIX = "tagsForPrefix.";
@@ -57,8 +59,19 @@ public abstract class AbstractTimelineMetricsSink {
   public static final String SSL_KEYSTORE_TYPE_PROPERTY = "truststore.type";
   public static final String SSL_KEYSTORE_PASSWORD_PROPERTY = "truststore.password";
 
+  public static final String GZIP_ENABLED_PROPERTY = "gzip.enabled";
+  public static final String SPOOL_DIR_PROPERTY = "spool.dir";
+  public static final String SPOOL_MAX_SIZE_MB_PROPERTY = "spool.maxSizeMB";
+  public static final int DEFAULT_SPOOL_MAX_SIZE_MB = 64;
+  public static final String SPOOL_REPLAY_PER_EMIT_PROPERTY = "spool.replayPerEmit";
+  public static final int DEFAULT_SPOOL_REPLAY_PER_EMIT = 5;
+
   private SSLSocketFactory sslSocketFactory;
 
+  private boolean gzipEnabled = false;
+  private TimelineMetricsSpool spool;
+  private int spoolReplayPerEmit = DEFAULT_SPOOL_REPLAY_PER_EMIT;
+
   protected final Log LOG;
 
   protected static ObjectMapper mapper;
@@ -77,27 +90,77 @@ public abstract class AbstractTimelineMetricsSink {
 
   protected void emitMetrics(TimelineMetrics metrics) {
     String connectUrl = getCollectorUri();
-    int timeout = getTimeoutSeconds() * 1000;
-    HttpURLConnection connection = null;
+    byte[] payload = null;
+    boolean gzip = gzipEnabled;
     try {
       if (connectUrl == null) {
         throw new IOException("Unknown URL. Unable to connect to metrics collector.");
       }
-      String jsonData = mapper.writeValueAsString(metrics);
+      payload = serialize(metrics, gzip);
+      int statusCode = postPayload(connectUrl, payload, gzip);
+      if (statusCode >= 400) {
+        // Payloads rejected by the collector are not worth retrying
+        if (statusCode >= 500) {
+          spoolPayload(payload, gzip);
+        }
+        throw new UnableToConnectException(new IOException("Server returned " +
+          "HTTP response code: " + statusCode)).setConnectUrl(connectUrl);
+      }
+    } catch (IOException ioe) {
+      spoolPayload(payload, gzip);
+      throw new UnableToConnectException(ioe).setConnectUrl(connectUrl);
+    }
+    replaySpool(connectUrl);
+  }
+
+  private void spoolPayload(byte[] payload, boolean gzip) {
+    if (spool != null && payload != null) {
+      try {
+        spool.add(payload, gzip);
+      } catch (IOException e) {
+        LOG.info("Unable to spool metrics", e);
+      }
+    }
+  }
+
+  /**
+   * Write metrics as JSON straight into a byte buffer, optionally through
+   * gzip, without building the intermediate String.
+   */
+  private byte[] serialize(TimelineMetrics metrics, boolean gzip) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+    try (OutputStream os = gzip ? new GZIPOutputStream(bytes) : bytes) {
+      mapper.writeValue(os, metrics);
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Post a serialized payload, fully consuming the response so that the
+   * underlying connection can be reused.
+   * @return HTTP status code of the response
+   * @throws IOException if no response was received from the collector
+   */
+  private int postPayload(String connectUrl, byte[] payload, boolean gzip) throws IOException {
+    int timeout = getTimeoutSeconds() * 1000;
+    HttpURLConnection connection = null;
+    try {
       connection = connectUrl.startsWith("https") ?
         getSSLConnection(connectUrl) : getConnection(connectUrl);
 
       connection.setRequestMethod("POST");
       connection.setRequestProperty("Content-Type", "application/json");
+      if (gzip) {
+        connection.setRequestProperty("Content-Encoding", "gzip");
+      }
       connection.setRequestProperty("Connection", "Keep-Alive");
       connection.setConnectTimeout(timeout);
       connection.setReadTimeout(timeout);
       connection.setDoOutput(true);
+      connection.setFixedLengthStreamingMode(payload.length);
 
-      if (jsonData != null) {
-        try (OutputStream os = connection.getOutputStream()) {
-          os.write(jsonData.getBytes("UTF-8"));
-        }
+      try (OutputStream os = connection.getOutputStream()) {
+        os.write(payload);
       }
 
       int statusCode = connection.getResponseCode();
@@ -110,7 +173,9 @@ public abstract class AbstractTimelineMetricsSink {
           LOG.debug("Metrics posted to Collector " + connectUrl);
         }
       }
-      cleanupInputStream(connection.getInputStream());
+      cleanupInputStream(statusCode >= 400 ?
+        connection.getErrorStream() : connection.getInputStream());
+      return statusCode;
     } catch (IOException ioe) {
       StringBuilder errorMessage =
         new StringBuilder("Unable to connect to collector, " + connectUrl + "\n");
@@ -126,7 +191,63 @@ public abstract class AbstractTimelineMetricsSink {
       } else {
         LOG.info(errorMessage);
       }
-      throw new UnableToConnectException(ioe).setConnectUrl(connectUrl);
+      throw ioe;
+    }
+  }
+
+  /**
+   * Replay a limited number of spooled payloads after a successful post, so
+   * that a recovering collector is not flooded by every sink at once.
+   * Payloads rejected by the collector are discarded, server errors leave
+   * them in the spool for the next attempt.
+   */
+  private void replaySpool(String connectUrl) {
+    if (spool == null) {
+      return;
+    }
+    for (int i = 0; i < spoolReplayPerEmit; i++) {
+      File file = spool.peek();
+      if (file == null) {
+        return;
+      }
+      try {
+        int statusCode = postPayload(connectUrl,
+          TimelineMetricsSpool.read(file), TimelineMetricsSpool.isGzip(file));
+        if (statusCode >= 500) {
+          return;
+        }
+        spool.remove(file);
+      } catch (IOException e) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Configure the collector transport.
+   * @param gzipEnabled compress request bodies, requires a collector that
+   *                    accepts gzip Content-Encoding
+   * @param spoolDir directory to keep payloads that could not be posted in,
+   *                 or null to drop them
+   * @param spoolName name of the sub directory of spoolDir used by this
+   *                  sink, so that sinks can share spoolDir
+   * @param spoolMaxSizeMB maximum size of the spool
+   * @param spoolReplayPerEmit spooled payloads to replay after each
+   *                           successful post
+   */
+  protected void configureTransport(boolean gzipEnabled, String spoolDir, String spoolName,
+                                    int spoolMaxSizeMB, int spoolReplayPerEmit) {
+    this.gzipEnabled = gzipEnabled;
+    this.spoolReplayPerEmit = spoolReplayPerEmit;
+    if (spoolDir != null && !spoolDir.trim().isEmpty() && spoolMaxSizeMB > 0) {
+      try {
+        spool = TimelineMetricsSpool.open(new File(spoolDir.trim()), spoolName,
+          spoolMaxSizeMB * 1024L * 1024L);
+        LOG.info("Spooling undelivered metrics to " + spool.getSpoolDir() + ", max size = " +
+          spoolMaxSizeMB + " MB");
+      } catch (IOException e) {
+        LOG.error("Unable to initialize metrics spool, undelivered metrics will be dropped.", e);
+      }
     }
   }
 
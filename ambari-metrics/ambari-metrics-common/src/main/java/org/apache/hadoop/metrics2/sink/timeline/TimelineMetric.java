@@ -43,7 +43,11 @@ public class TimelineMetric implements Comparable<TimelineMetric> {
   private long startTime;
   private String type;
   private String units;
+  // Values are held either as a TreeMap or, once compacted through
+  // getMetricSeries(), as a primitive series. Exactly one of them is set,
+  // guarded by the monitor of this metric. A series is never converted back.
   private TreeMap<Long, Double> metricValues = new TreeMap<Long, Double>();
+  private TimelineMetricSeries metricSeries;
 
   // default
   public TimelineMetric() {
@@ -60,7 +64,13 @@ public class TimelineMetric implements Comparable<TimelineMetric> {
     setInstanceId(metric.getInstanceId());
     setHostName(metric.getHostName());
     setStartTime(metric.getStartTime());
-    setMetricValues(new TreeMap<Long, Double>(metric.getMetricValues()));
+    synchronized (metric) {
+      if (metric.metricSeries != null) {
+        setMetricSeries(new TimelineMetricSeries(metric.metricSeries));
+      } else {
+        setMetricValues(new TreeMap<Long, Double>(metric.metricValues));
+      }
+    }
   }
 
   @XmlElement(name = "metricname")
@@ -135,17 +145,78 @@ public class TimelineMetric implements Comparable<TimelineMetric> {
     this.units = units;
   }
 
+  /**
+   * Values as a sorted map. While the values are held as a map the map itself
+   * is returned and may be modified. Once they are held as a compact series a
+   * new map is built from the series on each call, leaving the series in
+   * place, so changes to the returned map are not reflected in the metric.
+   */
   @XmlElement(name = "metrics")
-  public TreeMap<Long, Double> getMetricValues() {
+  public synchronized TreeMap<Long, Double> getMetricValues() {
+    if (metricSeries != null) {
+      return metricSeries.toTreeMap();
+    }
     return metricValues;
   }
 
-  public void setMetricValues(TreeMap<Long, Double> metricValues) {
+  public synchronized void setMetricValues(TreeMap<Long, Double> metricValues) {
     this.metricValues = metricValues;
+    this.metricSeries = null;
+  }
+
+  public synchronized void addMetricValues(Map<Long, Double> metricValues) {
+    if (metricSeries != null) {
+      metricSeries.putAll(metricValues);
+    } else {
+      this.metricValues.putAll(metricValues);
+    }
+  }
+
+  public synchronized void addMetricValue(long timestamp, Double value) {
+    if (metricSeries != null) {
+      if (value != null) {
+        metricSeries.put(timestamp, value);
+      }
+    } else {
+      metricValues.put(timestamp, value);
+    }
   }
 
-  public void addMetricValues(Map<Long, Double> metricValues) {
-    this.metricValues.putAll(metricValues);
+  /**
+   * Values as a compact primitive series. If the values are held as a map
+   * they are converted to a series once, which is retained from then on, so
+   * that long lived metrics (caches, aggregation) do not pay for boxed
+   * entries. The map is not modified by the conversion. Null values are
+   * dropped in the conversion.
+   */
+  public synchronized TimelineMetricSeries getMetricSeries() {
+    if (metricSeries == null) {
+      metricSeries = new TimelineMetricSeries(metricValues);
+      metricValues = null;
+    }
+    return metricSeries;
+  }
+
+  public synchronized void setMetricSeries(TimelineMetricSeries metricSeries) {
+    this.metricSeries = metricSeries;
+    this.metricValues = null;
+  }
+
+  /**
+   * @return true if the values are currently held as a compact series
+   */
+  public synchronized boolean hasMetricSeries() {
+    return metricSeries != null;
+  }
+
+  /**
+   * @return number of data points without changing the representation
+   */
+  public synchronized int getMetricValuesCount() {
+    if (metricSeries != null) {
+      return metricSeries.size();
+    }
+    return metricValues != null ? metricValues.size() : 0;
   }
 
   @Override
@@ -0,0 +1,360 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+
+/**
+ * Time series of metric values kept sorted by timestamp in parallel
+ * primitive arrays. Compared to a TreeMap<Long, Double> this avoids an entry
+ * object and two boxed values per data point, which makes it suitable for
+ * holding large numbers of series in memory.
+ *
+ * Null values cannot be represented and are skipped when copying from a map.
+ * Not thread safe.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Unstable
+public class TimelineMetricSeries implements Iterable<Map.Entry<Long, Double>> {
+
+  private static final int DEFAULT_CAPACITY = 8;
+
+  private long[] timestamps;
+  private double[] values;
+  private int size;
+
+  public TimelineMetricSeries() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public TimelineMetricSeries(int initialCapacity) {
+    timestamps = new long[initialCapacity];
+    values = new double[initialCapacity];
+  }
+
+  public TimelineMetricSeries(Map<Long, Double> metricValues) {
+    this(metricValues == null ? 0 : metricValues.size());
+    putAll(metricValues);
+  }
+
+  public TimelineMetricSeries(TimelineMetricSeries other) {
+    timestamps = Arrays.copyOf(other.timestamps, other.size);
+    values = Arrays.copyOf(other.values, other.size);
+    size = other.size;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public long getTimestamp(int index) {
+    checkIndex(index);
+    return timestamps[index];
+  }
+
+  public double getValue(int index) {
+    checkIndex(index);
+    return values[index];
+  }
+
+  public long firstTimestamp() {
+    if (size == 0) {
+      throw new NoSuchElementException();
+    }
+    return timestamps[0];
+  }
+
+  public long lastTimestamp() {
+    if (size == 0) {
+      throw new NoSuchElementException();
+    }
+    return timestamps[size - 1];
+  }
+
+  /**
+   * @return value at the timestamp or null if there is none
+   */
+  public Double get(long timestamp) {
+    int index = Arrays.binarySearch(timestamps, 0, size, timestamp);
+    return index >= 0 ? values[index] : null;
+  }
+
+  /**
+   * Add a data point, replacing the value of an existing timestamp.
+   * Appending in timestamp order is O(1), inserting out of order is O(n).
+   */
+  public void put(long timestamp, double value) {
+    if (size == 0 || timestamp > timestamps[size - 1]) {
+      ensureCapacity(size + 1);
+      timestamps[size] = timestamp;
+      values[size] = value;
+      size++;
+      return;
+    }
+    int index = Arrays.binarySearch(timestamps, 0, size, timestamp);
+    if (index >= 0) {
+      values[index] = value;
+      return;
+    }
+    int insertAt = -(index + 1);
+    ensureCapacity(size + 1);
+    System.arraycopy(timestamps, insertAt, timestamps, insertAt + 1, size - insertAt);
+    System.arraycopy(values, insertAt, values, insertAt + 1, size - insertAt);
+    timestamps[insertAt] = timestamp;
+    values[insertAt] = value;
+    size++;
+  }
+
+  public void putAll(Map<Long, Double> metricValues) {
+    if (metricValues == null || metricValues.isEmpty()) {
+      return;
+    }
+    if (!(metricValues instanceof TreeMap)) {
+      metricValues = new TreeMap<Long, Double>(metricValues);
+    }
+    TimelineMetricSeries other = new TimelineMetricSeries(metricValues.size());
+    for (Map.Entry<Long, Double> entry : metricValues.entrySet()) {
+      if (entry.getKey() != null && entry.getValue() != null) {
+        other.put(entry.getKey(), entry.getValue());
+      }
+    }
+    merge(other);
+  }
+
+  /**
+   * Merge another series into this one in a single linear pass. Values of
+   * the other series win for timestamps present in both.
+   */
+  public void merge(TimelineMetricSeries other) {
+    if (other == null || other.size == 0) {
+      return;
+    }
+    if (size == 0 || other.timestamps[0] > timestamps[size - 1]) {
+      ensureCapacity(size + other.size);
+      System.arraycopy(other.timestamps, 0, timestamps, size, other.size);
+      System.arraycopy(other.values, 0, values, size, other.size);
+      size += other.size;
+      return;
+    }
+
+    long[] mergedTimestamps = new long[size + other.size];
+    double[] mergedValues = new double[size + other.size];
+    int i = 0, j = 0, k = 0;
+    while (i < size && j < other.size) {
+      long ts = timestamps[i];
+      long otherTs = other.timestamps[j];
+      if (ts < otherTs) {
+        mergedTimestamps[k] = ts;
+        mergedValues[k++] = values[i++];
+      } else {
+        if (ts == otherTs) {
+          i++;
+        }
+        mergedTimestamps[k] = otherTs;
+        mergedValues[k++] = other.values[j++];
+      }
+    }
+    int remaining = size - i;
+    System.arraycopy(timestamps, i, mergedTimestamps, k, remaining);
+    System.arraycopy(values, i, mergedValues, k, remaining);
+    k += remaining;
+    remaining = other.size - j;
+    System.arraycopy(other.timestamps, j, mergedTimestamps, k, remaining);
+    System.arraycopy(other.values, j, mergedValues, k, remaining);
+    k += remaining;
+
+    timestamps = mergedTimestamps;
+    values = mergedValues;
+    size = k;
+  }
+
+  /**
+   * @return copy of the points with timestamp greater than (or equal to, if
+   * inclusive) fromTimestamp, like {@link TreeMap#tailMap(Object, boolean)}
+   */
+  public TimelineMetricSeries tailSeries(long fromTimestamp, boolean inclusive) {
+    return copyOfRange(lowerBound(fromTimestamp, inclusive), size);
+  }
+
+  /**
+   * @return copy of the points with timestamp less than (or equal to, if
+   * inclusive) toTimestamp, like {@link TreeMap#headMap(Object, boolean)}
+   */
+  public TimelineMetricSeries headSeries(long toTimestamp, boolean inclusive) {
+    return copyOfRange(0, upperBound(toTimestamp, inclusive));
+  }
+
+  /**
+   * Remove all points outside of [startTime, endTime] in place.
+   */
+  public void retainRange(long startTime, long endTime) {
+    int from = lowerBound(startTime, true);
+    int to = Math.max(from, upperBound(endTime, true));
+    if (from > 0) {
+      System.arraycopy(timestamps, from, timestamps, 0, to - from);
+      System.arraycopy(values, from, values, 0, to - from);
+    }
+    size = to - from;
+  }
+
+  public void clear() {
+    size = 0;
+  }
+
+  /**
+   * Release unused capacity, e.g. before keeping the series in a cache.
+   */
+  public void trimToSize() {
+    if (timestamps.length != size) {
+      timestamps = Arrays.copyOf(timestamps, size);
+      values = Arrays.copyOf(values, size);
+    }
+  }
+
+  public TreeMap<Long, Double> toTreeMap() {
+    TreeMap<Long, Double> metricValues = new TreeMap<Long, Double>();
+    for (int i = 0; i < size; i++) {
+      metricValues.put(timestamps[i], values[i]);
+    }
+    return metricValues;
+  }
+
+  /**
+   * Iterate over the points as boxed entries. Prefer indexed access through
+   * {@link #getTimestamp(int)} and {@link #getValue(int)} on hot paths.
+   */
+  @Override
+  public Iterator<Map.Entry<Long, Double>> iterator() {
+    return new Iterator<Map.Entry<Long, Double>>() {
+      private int index = 0;
+
+      @Override
+      public boolean hasNext() {
+        return index < size;
+      }
+
+      @Override
+      public Map.Entry<Long, Double> next() {
+        if (index >= size) {
+          throw new NoSuchElementException();
+        }
+        Map.Entry<Long, Double> entry = new AbstractMap.SimpleImmutableEntry<Long, Double>(
+          timestamps[index], values[index]);
+        index++;
+        return entry;
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  private int lowerBound(long timestamp, boolean inclusive) {
+    int index = Arrays.binarySearch(timestamps, 0, size, timestamp);
+    if (index < 0) {
+      return -(index + 1);
+    }
+    return inclusive ? index : index + 1;
+  }
+
+  private int upperBound(long timestamp, boolean inclusive) {
+    int index = Arrays.binarySearch(timestamps, 0, size, timestamp);
+    if (index < 0) {
+      return -(index + 1);
+    }
+    return inclusive ? index + 1 : index;
+  }
+
+  private TimelineMetricSeries copyOfRange(int from, int to) {
+    TimelineMetricSeries series = new TimelineMetricSeries(0);
+    if (to > from) {
+      series.timestamps = Arrays.copyOfRange(timestamps, from, to);
+      series.values = Arrays.copyOfRange(values, from, to);
+      series.size = to - from;
+    }
+    return series;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > timestamps.length) {
+      int newCapacity = Math.max(capacity, Math.max(DEFAULT_CAPACITY,
+        timestamps.length + (timestamps.length >> 1)));
+      timestamps = Arrays.copyOf(timestamps, newCapacity);
+      values = Arrays.copyOf(values, newCapacity);
+    }
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+
+    TimelineMetricSeries that = (TimelineMetricSeries) o;
+    if (size != that.size) return false;
+    for (int i = 0; i < size; i++) {
+      if (timestamps[i] != that.timestamps[i]) return false;
+      if (Double.doubleToLongBits(values[i]) != Double.doubleToLongBits(that.values[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = size;
+    for (int i = 0; i < size; i++) {
+      long bits = Double.doubleToLongBits(values[i]);
+      result = 31 * result + (int) (timestamps[i] ^ (timestamps[i] >>> 32));
+      result = 31 * result + (int) (bits ^ (bits >>> 32));
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("{");
+    for (int i = 0; i < size; i++) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      sb.append(timestamps[i]).append('=').append(values[i]);
+    }
+    return sb.append('}').toString();
+  }
+}
@@ -0,0 +1,217 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * Bounded on-disk spool of serialized metric payloads that could not be
+ * posted to the collector. Each payload is kept in its own file, named so
+ * that lexical order is arrival order, which lets the spool survive sink
+ * restarts. When the spool grows beyond its size limit the oldest payloads
+ * are discarded.
+ *
+ * A spool directory is used by a single sink instance at a time, which holds
+ * a lock on it for as long as it runs. Sinks sharing a base directory get a
+ * sub directory per sink name, and further instances of the same sink on the
+ * host use numbered siblings of it.
+ */
+class TimelineMetricsSpool {
+  private static final Log LOG = LogFactory.getLog(TimelineMetricsSpool.class);
+
+  static final String JSON_SUFFIX = ".json";
+  static final String GZIP_SUFFIX = ".json.gz";
+  private static final String TMP_SUFFIX = ".tmp";
+  private static final String LOCK_FILE = ".lock";
+  static final int MAX_INSTANCES = 16;
+
+  private final File spoolDir;
+  private final long maxSizeBytes;
+  private final Deque<File> files = new ArrayDeque<File>();
+  private final RandomAccessFile lockFile;
+  private final FileLock lock;
+  private long sizeBytes = 0;
+  private int sequence = 0;
+
+  /**
+   * Open the spool of a sink in a sub directory of the base directory,
+   * skipping directories locked by other instances of the same sink.
+   */
+  static TimelineMetricsSpool open(File baseDir, String sinkName, long maxSizeBytes)
+      throws IOException {
+    String name = sinkName == null || sinkName.trim().isEmpty() ?
+      "default" : sinkName.trim().replaceAll("[^A-Za-z0-9._-]", "_");
+    for (int i = 0; i < MAX_INSTANCES; i++) {
+      File spoolDir = new File(baseDir, i == 0 ? name : name + "-" + i);
+      try {
+        return new TimelineMetricsSpool(spoolDir, maxSizeBytes);
+      } catch (SpoolLockedException e) {
+        LOG.debug(e.getMessage());
+      }
+    }
+    throw new IOException("All " + MAX_INSTANCES + " spool directories for " +
+      name + " in " + baseDir + " are in use.");
+  }
+
+  TimelineMetricsSpool(File spoolDir, long maxSizeBytes) throws IOException {
+    this.spoolDir = spoolDir;
+    this.maxSizeBytes = maxSizeBytes;
+    if (!spoolDir.isDirectory() && !spoolDir.mkdirs()) {
+      throw new IOException("Unable to create spool directory " + spoolDir);
+    }
+    lockFile = new RandomAccessFile(new File(spoolDir, LOCK_FILE), "rw");
+    FileLock acquired = null;
+    try {
+      acquired = lockFile.getChannel().tryLock();
+    } catch (OverlappingFileLockException e) {
+      // Held by another spool of this process
+    } finally {
+      if (acquired == null) {
+        lockFile.close();
+      }
+    }
+    if (acquired == null) {
+      throw new SpoolLockedException("Spool directory " + spoolDir + " is in use.");
+    }
+    lock = acquired;
+    File[] existing = spoolDir.listFiles();
+    if (existing != null) {
+      Arrays.sort(existing);
+      for (File file : existing) {
+        if (file.getName().endsWith(TMP_SUFFIX)) {
+          // Incomplete write from a previous run
+          file.delete();
+        } else if (file.getName().endsWith(JSON_SUFFIX) || file.getName().endsWith(GZIP_SUFFIX)) {
+          files.addLast(file);
+          sizeBytes += file.length();
+        }
+      }
+    }
+    evict();
+    if (!files.isEmpty()) {
+      LOG.info("Found " + files.size() + " spooled metric payloads in " + spoolDir);
+    }
+  }
+
+  /**
+   * Spool a payload, discarding the oldest payloads if the spool is full.
+   */
+  synchronized void add(byte[] payload, boolean gzip) throws IOException {
+    if (payload.length > maxSizeBytes) {
+      LOG.warn("Metrics payload of " + payload.length + " bytes exceeds spool size, discarding.");
+      return;
+    }
+    String name = String.format("%013d-%06d", System.currentTimeMillis(), sequence++ % 1000000) +
+      (gzip ? GZIP_SUFFIX : JSON_SUFFIX);
+    File tmpFile = new File(spoolDir, name + TMP_SUFFIX);
+    try (OutputStream os = new FileOutputStream(tmpFile)) {
+      os.write(payload);
+    }
+    File file = new File(spoolDir, name);
+    if (!tmpFile.renameTo(file)) {
+      tmpFile.delete();
+      throw new IOException("Unable to spool metrics to " + file);
+    }
+    files.addLast(file);
+    sizeBytes += payload.length;
+    evict();
+  }
+
+  /**
+   * @return oldest spooled payload or null if the spool is empty
+   */
+  synchronized File peek() {
+    return files.peekFirst();
+  }
+
+  synchronized void remove(File file) {
+    if (files.remove(file)) {
+      sizeBytes -= file.length();
+      file.delete();
+    }
+  }
+
+  static boolean isGzip(File file) {
+    return file.getName().endsWith(GZIP_SUFFIX);
+  }
+
+  static byte[] read(File file) throws IOException {
+    byte[] payload = new byte[(int) file.length()];
+    try (DataInputStream is = new DataInputStream(new FileInputStream(file))) {
+      is.readFully(payload);
+    }
+    return payload;
+  }
+
+  synchronized int size() {
+    return files.size();
+  }
+
+  synchronized long getSizeBytes() {
+    return sizeBytes;
+  }
+
+  File getSpoolDir() {
+    return spoolDir;
+  }
+
+  /**
+   * Release the spool directory, keeping the spooled payloads for the next
+   * instance.
+   */
+  synchronized void close() throws IOException {
+    try {
+      lock.release();
+    } finally {
+      lockFile.close();
+    }
+  }
+
+  private void evict() {
+    int evicted = 0;
+    while (sizeBytes > maxSizeBytes && !files.isEmpty()) {
+      File oldest = files.pollFirst();
+      sizeBytes -= oldest.length();
+      oldest.delete();
+      evicted++;
+    }
+    if (evicted > 0) {
+      LOG.warn("Metrics spool is full, discarded " + evicted + " oldest payloads.");
+    }
+  }
+
+  static class SpoolLockedException extends IOException {
+    SpoolLockedException(String message) {
+      super(message);
+    }
+  }
+}
@@ -22,12 +22,20 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricSeries;
 
 import java.util.HashMap;
 import java.util.Map;
 import java.util.TreeMap;
-import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Sink side buffer of metric values, evicted per metric name once values
+ * spanning maxEvictionTimeInMillis have been collected.
+ *
+ * Values are kept per metric in primitive ring buffers. There is a single
+ * writer: puts and evictions are expected from the sink's metrics thread.
+ */
 @InterfaceAudience.Public
 @InterfaceStability.Evolving
 public class TimelineMetricsCache {
@@ -52,14 +60,49 @@ public class TimelineMetricsCache {
     this.skipCounterTransform = skipCounterTransform;
   }
 
+  /**
+   * Values of one metric between evictions, kept in a ring of primitive
+   * arrays. The arrays grow up to maxRecsPerName + 1 entries and are reused
+   * after each eviction, so steady state puts do not allocate. Dropping old
+   * values only advances the head of the ring.
+   */
   class TimelineMetricWrapper {
+    private static final int INITIAL_CAPACITY = 8;
+
     private long timeDiff = -1;
     private long oldestTimestamp = -1;
+    // Metadata of the metric, handed out on eviction
     private TimelineMetric timelineMetric;
+    private long startTime;
+
+    private long[] timestamps;
+    private double[] values;
+    private int head = 0;
+    private int size = 0;
 
     TimelineMetricWrapper(TimelineMetric timelineMetric) {
+      int capacity = Math.min(INITIAL_CAPACITY, maxCapacity());
+      timestamps = new long[capacity];
+      values = new double[capacity];
+      reset(timelineMetric);
+    }
+
+    private int maxCapacity() {
+      return maxRecsPerName + 1;
+    }
+
+    private void reset(TimelineMetric timelineMetric) {
       this.timelineMetric = timelineMetric;
+      this.startTime = timelineMetric.getStartTime();
       this.oldestTimestamp = timelineMetric.getStartTime();
+      this.timeDiff = -1;
+      this.head = 0;
+      this.size = 0;
+      addValues(timelineMetric);
+    }
+
+    boolean isEmpty() {
+      return timelineMetric == null;
     }
 
     private void updateTimeDiff(long timestamp) {
@@ -70,42 +113,147 @@ public class TimelineMetricsCache {
       }
     }
 
-    public synchronized void putMetric(TimelineMetric metric) {
-      TreeMap<Long, Double> metricValues = this.timelineMetric.getMetricValues();
-      if (metricValues.size() > maxRecsPerName) {
+    public void putMetric(TimelineMetric metric) {
+      if (isEmpty()) {
+        reset(metric);
+        return;
+      }
+      if (size > maxRecsPerName) {
         // remove values for eldest maxEvictionTimeInMillis
         long newEldestTimestamp = oldestTimestamp + maxEvictionTimeInMillis;
-        TreeMap<Long, Double> metricsSubSet =
-          new TreeMap<>(metricValues.tailMap(newEldestTimestamp));
-        if (metricsSubSet.isEmpty()) {
+        while (size > 0 && timestamps[head] < newEldestTimestamp) {
+          head = (head + 1) % timestamps.length;
+          size--;
+        }
+        if (size == 0) {
           oldestTimestamp = metric.getStartTime();
-          this.timelineMetric.setStartTime(metric.getStartTime());
+          startTime = metric.getStartTime();
         } else {
-          Long newStartTime = metricsSubSet.firstKey();
-          oldestTimestamp = newStartTime;
-          this.timelineMetric.setStartTime(newStartTime);
+          oldestTimestamp = timestamps[head];
+          startTime = timestamps[head];
         }
-        this.timelineMetric.setMetricValues(metricsSubSet);
         LOG.warn("Metrics cache overflow. Values for metric " +
           metric.getMetricName() + " older than " + newEldestTimestamp +
           " were removed to clean up the cache.");
       }
-      this.timelineMetric.addMetricValues(metric.getMetricValues());
+      addValues(metric);
       updateTimeDiff(metric.getStartTime());
     }
 
-    public synchronized long getTimeDiff() {
+    private void addValues(TimelineMetric metric) {
+      if (metric.hasMetricSeries()) {
+        TimelineMetricSeries series = metric.getMetricSeries();
+        for (int i = 0; i < series.size(); i++) {
+          addValue(series.getTimestamp(i), series.getValue(i));
+        }
+      } else if (metric.getMetricValues() != null) {
+        for (Map.Entry<Long, Double> entry : metric.getMetricValues().entrySet()) {
+          if (entry.getValue() != null) {
+            addValue(entry.getKey(), entry.getValue());
+          }
+        }
+      }
+    }
+
+    private void addValue(long timestamp, double value) {
+      if (size > 0) {
+        int last = index(size - 1);
+        if (timestamp == timestamps[last]) {
+          values[last] = value;
+          return;
+        }
+        if (timestamp < timestamps[last]) {
+          insertOutOfOrder(timestamp, value);
+          return;
+        }
+      }
+      if (size == timestamps.length) {
+        if (!grow()) {
+          // Full, drop the eldest value
+          head = (head + 1) % timestamps.length;
+          size--;
+        }
+      }
+      int tail = index(size);
+      timestamps[tail] = timestamp;
+      values[tail] = value;
+      size++;
+    }
+
+    /**
+     * Slow path for values older than the newest cached one, rebuilds the
+     * ring in timestamp order.
+     */
+    private void insertOutOfOrder(long timestamp, double value) {
+      TimelineMetricSeries series = toSeries();
+      series.put(timestamp, value);
+      int from = Math.max(0, series.size() - maxCapacity());
+      if (series.size() - from > timestamps.length) {
+        int capacity = Math.min(maxCapacity(), Math.max(series.size(), timestamps.length * 2));
+        timestamps = new long[capacity];
+        values = new double[capacity];
+      }
+      head = 0;
+      size = 0;
+      for (int i = from; i < series.size(); i++) {
+        timestamps[size] = series.getTimestamp(i);
+        values[size] = series.getValue(i);
+        size++;
+      }
+    }
+
+    private boolean grow() {
+      if (timestamps.length >= maxCapacity()) {
+        return false;
+      }
+      int capacity = Math.min(maxCapacity(), timestamps.length * 2);
+      long[] newTimestamps = new long[capacity];
+      double[] newValues = new double[capacity];
+      for (int i = 0; i < size; i++) {
+        newTimestamps[i] = timestamps[index(i)];
+        newValues[i] = values[index(i)];
+      }
+      timestamps = newTimestamps;
+      values = newValues;
+      head = 0;
+      return true;
+    }
+
+    private int index(int offset) {
+      return (head + offset) % timestamps.length;
+    }
+
+    private TimelineMetricSeries toSeries() {
+      TimelineMetricSeries series = new TimelineMetricSeries(size + 1);
+      for (int i = 0; i < size; i++) {
+        series.put(timestamps[index(i)], values[index(i)]);
+      }
+      return series;
+    }
+
+    public long getTimeDiff() {
       return timeDiff;
     }
 
-    public synchronized TimelineMetric getTimelineMetric() {
-      return timelineMetric;
+    /**
+     * Hand out the cached values and empty the ring for reuse.
+     */
+    TimelineMetric evictTimelineMetric() {
+      TimelineMetric metric = timelineMetric;
+      metric.setStartTime(startTime);
+      metric.setMetricSeries(toSeries());
+      timelineMetric = null;
+      timeDiff = -1;
+      oldestTimestamp = -1;
+      head = 0;
+      size = 0;
+      return metric;
     }
   }
 
   // TODO: Add weighted eviction
-  class TimelineMetricHolder extends ConcurrentSkipListMap<String, TimelineMetricWrapper> {
-    private static final long serialVersionUID = 2L;
+  class TimelineMetricHolder extends ConcurrentHashMap<String, TimelineMetricWrapper> {
+    private static final long serialVersionUID = 3L;
     // To avoid duplication at the end of the buffer and beginning of the next
     // segment of values
     private Map<String, Long> endOfBufferTimestamps = new HashMap<String, Long>();
@@ -113,15 +261,12 @@ public class TimelineMetricsCache {
     public TimelineMetric evict(String metricName) {
       TimelineMetricWrapper metricWrapper = this.get(metricName);
 
-      if (metricWrapper == null
+      if (metricWrapper == null || metricWrapper.isEmpty()
         || metricWrapper.getTimeDiff() < getMaxEvictionTimeInMillis()) {
         return null;
       }
 
-      TimelineMetric timelineMetric = metricWrapper.getTimelineMetric();
-      this.remove(metricName);
-
-      return timelineMetric;
+      return metricWrapper.evictTimelineMetric();
     }
 
     public void put(String metricName, TimelineMetric timelineMetric) {
@@ -0,0 +1,207 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline;
+
+import junit.framework.Assert;
+import org.codehaus.jackson.map.AnnotationIntrospector;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.xc.JaxbAnnotationIntrospector;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class TimelineMetricSeriesTest {
+
+  @Test
+  public void testPutKeepsSeriesSorted() throws Exception {
+    TimelineMetricSeries series = new TimelineMetricSeries(2);
+    series.put(30L, 3.0);
+    series.put(10L, 1.0);
+    series.put(40L, 4.0);
+    series.put(20L, 2.0);
+    series.put(20L, 2.5);
+
+    Assert.assertEquals(4, series.size());
+    Assert.assertEquals(10L, series.firstTimestamp());
+    Assert.assertEquals(40L, series.lastTimestamp());
+    Assert.assertEquals(2.5, series.get(20L));
+    Assert.assertNull(series.get(25L));
+
+    TreeMap<Long, Double> expected = new TreeMap<Long, Double>();
+    expected.put(10L, 1.0);
+    expected.put(20L, 2.5);
+    expected.put(30L, 3.0);
+    expected.put(40L, 4.0);
+    Assert.assertEquals(expected, series.toTreeMap());
+
+    int i = 0;
+    for (Map.Entry<Long, Double> entry : series) {
+      Assert.assertEquals(series.getTimestamp(i), entry.getKey().longValue());
+      Assert.assertEquals(series.getValue(i), entry.getValue());
+      i++;
+    }
+    Assert.assertEquals(4, i);
+  }
+
+  @Test
+  public void testMerge() throws Exception {
+    TimelineMetricSeries series = new TimelineMetricSeries();
+    series.put(10L, 1.0);
+    series.put(30L, 3.0);
+    TimelineMetricSeries other = new TimelineMetricSeries();
+    other.put(20L, 2.0);
+    other.put(30L, 33.0);
+    other.put(50L, 5.0);
+
+    series.merge(other);
+
+    TreeMap<Long, Double> expected = new TreeMap<Long, Double>();
+    expected.put(10L, 1.0);
+    expected.put(20L, 2.0);
+    expected.put(30L, 33.0);
+    expected.put(50L, 5.0);
+    Assert.assertEquals(expected, series.toTreeMap());
+
+    // Appending a later series takes the fast path
+    TimelineMetricSeries later = new TimelineMetricSeries();
+    later.put(60L, 6.0);
+    series.merge(later);
+    Assert.assertEquals(60L, series.lastTimestamp());
+    Assert.assertEquals(5, series.size());
+  }
+
+  @Test
+  public void testSlicing() throws Exception {
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+    for (long ts = 10; ts <= 50; ts += 10) {
+      values.put(ts, (double) ts);
+    }
+    TimelineMetricSeries series = new TimelineMetricSeries(values);
+
+    Assert.assertEquals(values.tailMap(30L, true), series.tailSeries(30L, true).toTreeMap());
+    Assert.assertEquals(values.tailMap(30L, false), series.tailSeries(30L, false).toTreeMap());
+    Assert.assertEquals(values.tailMap(35L, true), series.tailSeries(35L, true).toTreeMap());
+    Assert.assertEquals(values.headMap(30L, true), series.headSeries(30L, true).toTreeMap());
+    Assert.assertEquals(values.headMap(30L, false), series.headSeries(30L, false).toTreeMap());
+    Assert.assertTrue(series.tailSeries(60L, true).isEmpty());
+
+    series.retainRange(20L, 40L);
+    Assert.assertEquals(values.subMap(20L, true, 40L, true), series.toTreeMap());
+    series.retainRange(45L, 60L);
+    Assert.assertTrue(series.isEmpty());
+  }
+
+  @Test
+  public void testTimelineMetricRepresentations() throws Exception {
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName("cpu_user");
+    metric.setHostName("h1");
+    metric.setAppId("HOST");
+    metric.setStartTime(1000L);
+    metric.getMetricValues().put(1000L, 1.0);
+    metric.getMetricValues().put(2000L, 2.0);
+
+    ObjectMapper mapper = new ObjectMapper();
+    AnnotationIntrospector introspector = new JaxbAnnotationIntrospector();
+    mapper.setAnnotationIntrospector(introspector);
+    String json = mapper.writeValueAsString(metric);
+
+    // Compact, copy and add values without going back to a map
+    TimelineMetricSeries series = metric.getMetricSeries();
+    Assert.assertEquals(2, metric.getMetricValuesCount());
+    TimelineMetric copy = new TimelineMetric(metric);
+    TreeMap<Long, Double> moreValues = new TreeMap<Long, Double>();
+    moreValues.put(3000L, 3.0);
+    copy.addMetricValues(moreValues);
+    Assert.assertEquals(2, series.size());
+    Assert.assertEquals(3, copy.getMetricValuesCount());
+
+    // Wire format is the same for either representation
+    Assert.assertEquals(json, mapper.writeValueAsString(metric));
+    TimelineMetric parsed = mapper.readValue(json, TimelineMetric.class);
+    Assert.assertEquals(metric.getMetricValues(), parsed.getMetricValues());
+  }
+
+  @Test
+  public void testConversionIsNonDestructive() throws Exception {
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName("cpu_user");
+    TreeMap<Long, Double> values = metric.getMetricValues();
+    values.put(1000L, 1.0);
+    values.put(2000L, 2.0);
+
+    TimelineMetricSeries series = metric.getMetricSeries();
+    Assert.assertSame(series, metric.getMetricSeries());
+    Assert.assertEquals(2, values.size());
+
+    // Reading the series as a map does not convert it back
+    TreeMap<Long, Double> view = metric.getMetricValues();
+    Assert.assertEquals(values, view);
+    Assert.assertTrue(metric.hasMetricSeries());
+    Assert.assertSame(series, metric.getMetricSeries());
+    view.put(3000L, 3.0);
+    Assert.assertEquals(values, metric.getMetricValues());
+
+    metric.addMetricValue(3000L, 3.0);
+    metric.addMetricValue(4000L, null);
+    Assert.assertEquals(3, series.size());
+  }
+
+  @Test
+  public void testConcurrentReaders() throws Exception {
+    final TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName("cpu_user");
+    final int count = 100;
+    for (long i = 0; i < count; i++) {
+      metric.getMetricValues().put(i, (double) i);
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+      for (int t = 0; t < 4; t++) {
+        final boolean series = t % 2 == 0;
+        results.add(executor.submit(new Callable<Integer>() {
+          @Override
+          public Integer call() throws Exception {
+            int mismatches = 0;
+            for (int i = 0; i < 1000; i++) {
+              int size = series ? metric.getMetricSeries().size() : metric.getMetricValues().size();
+              if (size != count) {
+                mismatches++;
+              }
+            }
+            return mismatches;
+          }
+        }));
+      }
+      for (Future<Integer> result : results) {
+        Assert.assertEquals(0, result.get().intValue());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
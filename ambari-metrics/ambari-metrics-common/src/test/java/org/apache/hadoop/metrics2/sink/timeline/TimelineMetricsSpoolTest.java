@@ -0,0 +1,199 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline;
+
+import junit.framework.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+public class TimelineMetricsSpoolTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testSpoolIsBoundedAndSurvivesRestart() throws Exception {
+    File dir = folder.newFolder("spool");
+    TimelineMetricsSpool spool = new TimelineMetricsSpool(dir, 250);
+    spool.add(new byte[100], false);
+    spool.add(new byte[100], true);
+    File oldest = spool.peek();
+    Assert.assertEquals(2, spool.size());
+
+    // Oldest payload is discarded to make room
+    spool.add(new byte[100], false);
+    Assert.assertEquals(2, spool.size());
+    Assert.assertEquals(200, spool.getSizeBytes());
+    Assert.assertFalse(oldest.exists());
+    Assert.assertTrue(TimelineMetricsSpool.isGzip(spool.peek()));
+
+    // Too large to ever fit
+    spool.add(new byte[300], false);
+    Assert.assertEquals(2, spool.size());
+
+    spool.close();
+    TimelineMetricsSpool reopened = new TimelineMetricsSpool(dir, 250);
+    Assert.assertEquals(2, reopened.size());
+    Assert.assertEquals(spool.peek(), reopened.peek());
+    reopened.remove(reopened.peek());
+    Assert.assertEquals(1, reopened.size());
+    Assert.assertEquals(100, TimelineMetricsSpool.read(reopened.peek()).length);
+  }
+
+  @Test
+  public void testSinksSharingSpoolDirectory() throws Exception {
+    File baseDir = folder.newFolder("shared-spool");
+    TimelineMetricsSpool datanode = TimelineMetricsSpool.open(baseDir, "datanode", 1000);
+    TimelineMetricsSpool nodemanager = TimelineMetricsSpool.open(baseDir, "nodemanager", 1000);
+    // Second instance of the same sink does not reuse a locked directory
+    TimelineMetricsSpool datanode2 = TimelineMetricsSpool.open(baseDir, "datanode", 1000);
+    Assert.assertEquals(new File(baseDir, "datanode"), datanode.getSpoolDir());
+    Assert.assertEquals(new File(baseDir, "nodemanager"), nodemanager.getSpoolDir());
+    Assert.assertEquals(new File(baseDir, "datanode-1"), datanode2.getSpoolDir());
+
+    datanode.add(new byte[100], false);
+    datanode2.add(new byte[200], false);
+    nodemanager.add(new byte[300], false);
+    Assert.assertEquals(100, datanode.getSizeBytes());
+    Assert.assertEquals(200, datanode2.getSizeBytes());
+    Assert.assertEquals(300, nodemanager.getSizeBytes());
+
+    // Spooled payloads are picked up by the next instance
+    datanode.close();
+    TimelineMetricsSpool restarted = TimelineMetricsSpool.open(baseDir, "datanode", 1000);
+    Assert.assertEquals(new File(baseDir, "datanode"), restarted.getSpoolDir());
+    Assert.assertEquals(1, restarted.size());
+    Assert.assertEquals(100, restarted.getSizeBytes());
+  }
+
+  @Test
+  public void testUndeliveredMetricsAreSpooledAndReplayed() throws Exception {
+    TestTimelineMetricsSink sink = new TestTimelineMetricsSink();
+    sink.configureTransport(true, folder.newFolder("sink-spool").getPath(), "datanode", 1, 5);
+
+    sink.collectorDown = true;
+    try {
+      sink.emitMetrics(createMetrics("m1"));
+      Assert.fail();
+    } catch (UnableToConnectException e) {
+      Assert.assertEquals(TestTimelineMetricsSink.COLLECTOR_URL, e.getConnectUrl());
+    }
+
+    sink.collectorDown = false;
+    sink.emitMetrics(createMetrics("m2"));
+
+    // Current metrics first, then the spooled ones
+    Assert.assertEquals(2, sink.requests.size());
+    Assert.assertTrue(sink.requests.get(0).contains("\"m2\""));
+    Assert.assertTrue(sink.requests.get(1).contains("\"m1\""));
+
+    sink.emitMetrics(createMetrics("m3"));
+    Assert.assertEquals(3, sink.requests.size());
+  }
+
+  private static TimelineMetrics createMetrics(String metricName) {
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName(metricName);
+    metric.setHostName("h1");
+    metric.setAppId("datanode");
+    metric.setStartTime(1000L);
+    metric.getMetricValues().put(1000L, 1.0);
+    TimelineMetrics metrics = new TimelineMetrics();
+    metrics.setMetrics(Collections.singletonList(metric));
+    return metrics;
+  }
+
+  static class TestTimelineMetricsSink extends AbstractTimelineMetricsSink {
+    static final String COLLECTOR_URL = "http://localhost:6188/ws/v1/timeline/metrics";
+
+    boolean collectorDown = false;
+    final List<String> requests = new ArrayList<String>();
+
+    @Override
+    protected String getCollectorUri() {
+      return COLLECTOR_URL;
+    }
+
+    @Override
+    protected int getTimeoutSeconds() {
+      return 10;
+    }
+
+    @Override
+    protected HttpURLConnection getConnection(String spec) throws IOException {
+      return new HttpURLConnection(new URL(spec)) {
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+          if (collectorDown) {
+            throw new ConnectException("Connection refused");
+          }
+          return body;
+        }
+
+        @Override
+        public int getResponseCode() throws IOException {
+          Assert.assertEquals("gzip", getRequestProperty("Content-Encoding"));
+          InputStream is = new GZIPInputStream(new ByteArrayInputStream(body.toByteArray()));
+          ByteArrayOutputStream json = new ByteArrayOutputStream();
+          byte[] buffer = new byte[1024];
+          int read;
+          while ((read = is.read(buffer)) != -1) {
+            json.write(buffer, 0, read);
+          }
+          requests.add(json.toString("UTF-8"));
+          return 200;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+          return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public void connect() throws IOException {
+        }
+
+        @Override
+        public void disconnect() {
+        }
+
+        @Override
+        public boolean usingProxy() {
+          return false;
+        }
+      };
+    }
+  }
+}
@@ -20,12 +20,14 @@ package org.apache.hadoop.metrics2.sink.timeline.cache;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
 import org.junit.Test;
 
+import java.util.Collections;
 import java.util.Map;
 import java.util.TreeMap;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 public class TimelineMetricsCacheTest {
 
@@ -124,6 +126,36 @@ public class TimelineMetricsCacheTest {
     assertEquals(DEFAULT_START_TIME + maxEvictionTime * 2, cachedMetric.getStartTime());
   }
 
+  @Test
+  public void testOutOfOrderValuesAndReuseAfterEviction() throws Exception {
+    int maxEvictionTime = TimelineMetricsCache.MAX_EVICTION_TIME_MILLIS;
+    TimelineMetricsCache timelineMetricsCache =
+      new TimelineMetricsCache(TimelineMetricsCache.MAX_RECS_PER_NAME_DEFAULT, maxEvictionTime);
+
+    for (int round = 0; round < 3; round++) {
+      long startTime = DEFAULT_START_TIME + round * 10L * maxEvictionTime;
+      TreeMap<Long, Double> expected = new TreeMap<Long, Double>();
+      for (int i = 20; i >= 0; i--) {
+        long timestamp = startTime + i * (maxEvictionTime / 10);
+        expected.put(timestamp, (double) i);
+        timelineMetricsCache.putTimelineMetric(createTimelineMetric(
+          new TreeMap<Long, Double>(Collections.singletonMap(timestamp, (double) i)),
+          timestamp));
+      }
+      // Newest value first, evict after one more value
+      long lastTimestamp = startTime + 21 * (maxEvictionTime / 10);
+      expected.put(lastTimestamp, 21.0);
+      timelineMetricsCache.putTimelineMetric(createTimelineMetric(
+        new TreeMap<Long, Double>(Collections.singletonMap(lastTimestamp, 21.0)),
+        lastTimestamp));
+
+      TimelineMetric cachedMetric = timelineMetricsCache.getTimelineMetric(METRIC_NAME);
+      assertNotNull(cachedMetric);
+      assertEquals(expected, cachedMetric.getMetricValues());
+      assertNull(timelineMetricsCache.getTimelineMetric(METRIC_NAME));
+    }
+  }
+
   private TimelineMetric createTimelineMetricSingleValue(final long startTime) {
     TreeMap<Long, Double> values = new TreeMap<Long, Double>();
     values.put(startTime, 0.0);
@@ -90,6 +90,12 @@ public class FlumeTimelineMetricsSink extends AbstractTimelineMetricsSink implem
     Configuration configuration = new Configuration("/flume-metrics2.properties");
     timeoutSeconds = Integer.parseInt(configuration.getProperty(METRICS_POST_TIMEOUT_SECONDS,
         String.valueOf(DEFAULT_POST_TIMEOUT_SECONDS)));
+    configureTransport(Boolean.parseBoolean(configuration.getProperty(GZIP_ENABLED_PROPERTY, "false")),
+        configuration.getProperty(SPOOL_DIR_PROPERTY), "flume",
+        Integer.parseInt(configuration.getProperty(SPOOL_MAX_SIZE_MB_PROPERTY,
+            String.valueOf(DEFAULT_SPOOL_MAX_SIZE_MB))),
+        Integer.parseInt(configuration.getProperty(SPOOL_REPLAY_PER_EMIT_PROPERTY,
+            String.valueOf(DEFAULT_SPOOL_REPLAY_PER_EMIT))));
     maxRowCacheSize = Integer.parseInt(configuration.getProperty(MAX_METRIC_ROW_CACHE_SIZE,
         String.valueOf(TimelineMetricsCache.MAX_RECS_PER_NAME_DEFAULT)));
     metricsSendInterval = Integer.parseInt(configuration.getProperty(METRICS_SEND_INTERVAL,
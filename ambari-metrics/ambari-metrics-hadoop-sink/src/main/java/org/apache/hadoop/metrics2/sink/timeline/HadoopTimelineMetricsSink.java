@@ -99,6 +99,10 @@ public class HadoopTimelineMetricsSink extends AbstractTimelineMetricsSink imple
     LOG.info("Collector Uri: " + collectorUri);
 
     timeoutSeconds = conf.getInt(METRICS_POST_TIMEOUT_SECONDS, DEFAULT_POST_TIMEOUT_SECONDS);
+    configureTransport(conf.getBoolean(GZIP_ENABLED_PROPERTY, false),
+      conf.getString(SPOOL_DIR_PROPERTY), serviceName,
+      conf.getInt(SPOOL_MAX_SIZE_MB_PROPERTY, DEFAULT_SPOOL_MAX_SIZE_MB),
+      conf.getInt(SPOOL_REPLAY_PER_EMIT_PROPERTY, DEFAULT_SPOOL_REPLAY_PER_EMIT));
 
     int maxRowCacheSize = conf.getInt(MAX_METRIC_ROW_CACHE_SIZE,
       TimelineMetricsCache.MAX_RECS_PER_NAME_DEFAULT);
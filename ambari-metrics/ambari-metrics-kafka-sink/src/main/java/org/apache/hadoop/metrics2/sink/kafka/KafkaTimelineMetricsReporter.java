@@ -65,6 +65,7 @@ public class KafkaTimelineMetricsReporter extends AbstractTimelineMetricsSink
   private static final String TIMELINE_PORT_PROPERTY = "kafka.timeline.metrics.port";
   private static final String TIMELINE_PROTOCOL_PROPERTY = "kafka.timeline.metrics.protocol";
   private static final String TIMELINE_REPORTER_ENABLED_PROPERTY = "kafka.timeline.metrics.reporter.enabled";
+  private static final String TIMELINE_METRICS_PROPERTY_PREFIX = "kafka.timeline.metrics.";
   private static final String EXCLUDED_METRICS_PROPERTY = "external.kafka.metrics.exclude.prefix";
   private static final String INCLUDED_METRICS_PROPERTY = "external.kafka.metrics.include.prefix";
   private static final String TIMELINE_DEFAULT_HOST = "localhost";
@@ -115,6 +116,11 @@ public class KafkaTimelineMetricsReporter extends AbstractTimelineMetricsSink
         }
         KafkaMetricsConfig metricsConfig = new KafkaMetricsConfig(props);
         timeoutSeconds = props.getInt(METRICS_POST_TIMEOUT_SECONDS, DEFAULT_POST_TIMEOUT_SECONDS);
+        configureTransport(props.getBoolean(TIMELINE_METRICS_PROPERTY_PREFIX + GZIP_ENABLED_PROPERTY, false),
+          props.getString(TIMELINE_METRICS_PROPERTY_PREFIX + SPOOL_DIR_PROPERTY, null), TimelineScheduledReporter.APP_ID,
+          props.getInt(TIMELINE_METRICS_PROPERTY_PREFIX + SPOOL_MAX_SIZE_MB_PROPERTY, DEFAULT_SPOOL_MAX_SIZE_MB),
+          props.getInt(TIMELINE_METRICS_PROPERTY_PREFIX + SPOOL_REPLAY_PER_EMIT_PROPERTY,
+            DEFAULT_SPOOL_REPLAY_PER_EMIT));
         int metricsSendInterval = props.getInt(TIMELINE_METRICS_SEND_INTERVAL_PROPERTY, MAX_EVICTION_TIME_MILLIS);
         int maxRowCacheSize = props.getInt(TIMELINE_METRICS_MAX_ROW_CACHE_SIZE_PROPERTY, MAX_RECS_PER_NAME_DEFAULT);
         String metricCollectorHost = props.getString(TIMELINE_HOST_PROPERTY, TIMELINE_DEFAULT_HOST);
@@ -72,6 +72,12 @@ public class StormTimelineMetricsSink extends AbstractTimelineMetricsSink implem
     Configuration configuration = new Configuration("/storm-metrics2.properties");
     timeoutSeconds = Integer.parseInt(configuration.getProperty(METRICS_POST_TIMEOUT_SECONDS,
         String.valueOf(DEFAULT_POST_TIMEOUT_SECONDS)));
+    configureTransport(Boolean.parseBoolean(configuration.getProperty(GZIP_ENABLED_PROPERTY, "false")),
+        configuration.getProperty(SPOOL_DIR_PROPERTY), "storm",
+        Integer.parseInt(configuration.getProperty(SPOOL_MAX_SIZE_MB_PROPERTY,
+            String.valueOf(DEFAULT_SPOOL_MAX_SIZE_MB))),
+        Integer.parseInt(configuration.getProperty(SPOOL_REPLAY_PER_EMIT_PROPERTY,
+            String.valueOf(DEFAULT_SPOOL_REPLAY_PER_EMIT))));
     int maxRowCacheSize = Integer.parseInt(configuration.getProperty(MAX_METRIC_ROW_CACHE_SIZE,
         String.valueOf(MAX_RECS_PER_NAME_DEFAULT)));
     int metricsSendInterval = Integer.parseInt(configuration.getProperty(METRICS_SEND_INTERVAL,
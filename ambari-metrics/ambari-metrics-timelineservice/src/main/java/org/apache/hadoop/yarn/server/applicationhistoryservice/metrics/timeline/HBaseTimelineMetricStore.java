@@ -27,6 +27,7 @@ import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricMetadata;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
 import org.apache.hadoop.service.AbstractService;
 import org.apache.hadoop.yarn.api.records.timeline.TimelinePutResponse;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.AbstractPartitionedTimelineAggregator;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.Function;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.TimelineMetricAggregator;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.TimelineMetricAggregatorFactory;
@@ -36,6 +37,7 @@ import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.discovery.TimelineMetricMetadataManager;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.Condition;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.DefaultCondition;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL;
 
 import java.io.IOException;
 import java.sql.SQLException;
@@ -64,6 +66,8 @@ public class HBaseTimelineMetricStore extends AbstractService implements Timelin
   private final Map<AGGREGATOR_NAME, ScheduledExecutorService> scheduledExecutors = new HashMap<>();
   private TimelineMetricMetadataManager metricMetadataManager;
   private TimelineMetricHAController haController;
+  private TimelineMetricWriteBehindBuffer writeBehindBuffer;
+  private TimelineMetricHotTier hotTier;
 
   /**
    * Construct the service.
@@ -150,6 +154,23 @@ public class HBaseTimelineMetricStore extends AbstractService implements Timelin
           hBaseAccessor, metricsConf, haController);
       scheduleAggregatorThread(dailyHostAggregator);
 
+      if (configuration.isTimelineMetricsServiceWriteBehindEnabled()) {
+        writeBehindBuffer = new TimelineMetricWriteBehindBuffer(hBaseAccessor,
+          metricMetadataManager, metricsConf,
+          configuration.getTimelineMetricsServiceWriteBehindBatchInterval());
+        writeBehindBuffer.start();
+      }
+
+      if (configuration.isTimelineMetricsServiceHotTierEnabled()) {
+        if (configuration.isDistributedOperationModeEnabled()) {
+          // Each collector only receives the metrics of some of the hosts
+          LOG.info("Hot tier is not supported in distributed mode.");
+        } else {
+          hotTier = new TimelineMetricHotTier(metricsConf);
+          hotTier.start();
+        }
+      }
+
       if (!configuration.isTimelineMetricsServiceWatcherDisabled()) {
         int initDelay = configuration.getTimelineMetricsServiceWatcherInitDelay();
         int delay = configuration.getTimelineMetricsServiceWatcherDelay();
@@ -168,6 +189,17 @@ public class HBaseTimelineMetricStore extends AbstractService implements Timelin
 
   @Override
   protected void serviceStop() throws Exception {
+    for (ScheduledExecutorService executorService : scheduledExecutors.values()) {
+      executorService.shutdown();
+    }
+    AbstractPartitionedTimelineAggregator.shutdownPool(30, TimeUnit.SECONDS);
+    if (writeBehindBuffer != null) {
+      // Flush pending writes before shutting down
+      writeBehindBuffer.stop(30, TimeUnit.SECONDS);
+    }
+    if (hotTier != null) {
+      hotTier.stop();
+    }
     super.serviceStop();
   }
 
@@ -177,6 +209,33 @@ public class HBaseTimelineMetricStore extends AbstractService implements Timelin
       Long startTime, Long endTime, Precision precision, Integer limit,
       boolean groupedByHosts) throws SQLException, IOException {
 
+    final TimelineMetrics metrics = new TimelineMetrics();
+    prepareTimelineMetrics(metricNames, hostnames, applicationId, instanceId,
+      startTime, endTime, precision, limit, groupedByHosts, false)
+      .getMetrics(new TimelineMetricConsumer() {
+        @Override
+        public void accept(TimelineMetric metric) {
+          metrics.getMetrics().add(metric);
+        }
+      });
+    return metrics;
+  }
+
+  @Override
+  public TimelineMetricQuery prepareTimelineMetrics(List<String> metricNames,
+      List<String> hostnames, String applicationId, String instanceId,
+      Long startTime, Long endTime, Precision precision, Integer limit,
+      boolean groupedByHosts) throws SQLException, IOException {
+
+    return prepareTimelineMetrics(metricNames, hostnames, applicationId,
+      instanceId, startTime, endTime, precision, limit, groupedByHosts, true);
+  }
+
+  private TimelineMetricQuery prepareTimelineMetrics(List<String> metricNames,
+      final List<String> hostnames, String applicationId, String instanceId,
+      Long startTime, Long endTime, Precision precision, Integer limit,
+      boolean groupedByHosts, boolean streaming) {
+
     if (metricNames == null || metricNames.isEmpty()) {
       throw new IllegalArgumentException("No metric name filter specified.");
     }
@@ -187,37 +246,62 @@ public class HBaseTimelineMetricStore extends AbstractService implements Timelin
     if (limit != null && limit > PhoenixHBaseAccessor.RESULTSET_LIMIT){
       throw new IllegalArgumentException("Limit too big");
     }
-    Map<String, List<Function>> metricFunctions =
+    final Map<String, List<Function>> metricFunctions =
       parseMetricNamesToAggregationFunctions(metricNames);
 
-    Condition condition = new DefaultCondition(
+    final Condition condition = new DefaultCondition(
       new ArrayList<String>(metricFunctions.keySet()),
       hostnames, applicationId, instanceId, startTime, endTime,
       precision, limit, groupedByHosts);
-
-    TimelineMetrics metrics;
-
-    if (hostnames == null || hostnames.isEmpty()) {
-      metrics = hBaseAccessor.getAggregateMetricRecords(condition, metricFunctions);
-    } else {
-      metrics = hBaseAccessor.getMetricRecords(condition, metricFunctions);
+    if (streaming && limit == null) {
+      // Streamed metrics are not held in memory, no need to cap them
+      condition.setNoLimit();
     }
-    return postProcessMetrics(metrics);
+    PhoenixTransactSQL.validateRowCountLimit(condition);
+
+    return new TimelineMetricQuery() {
+      @Override
+      public void getMetrics(final TimelineMetricConsumer consumer)
+          throws SQLException, IOException {
+        TimelineMetricConsumer postProcessor = new TimelineMetricConsumer() {
+          @Override
+          public void accept(TimelineMetric metric) throws IOException {
+            consumer.accept(postProcessMetric(metric));
+          }
+        };
+
+        if (hostnames == null || hostnames.isEmpty()) {
+          hBaseAccessor.getAggregateMetricRecords(condition, metricFunctions, postProcessor);
+        } else if (hotTier != null && hotTier.covers(condition, metricFunctions)) {
+          hotTier.getMetricRecords(condition, postProcessor);
+        } else {
+          hBaseAccessor.getMetricRecords(condition, metricFunctions, postProcessor);
+        }
+      }
+    };
   }
 
   private TimelineMetrics postProcessMetrics(TimelineMetrics metrics) {
     List<TimelineMetric> metricsList = metrics.getMetrics();
 
     for (TimelineMetric metric : metricsList){
-      String name = metric.getMetricName();
-      if (name.contains("._rate")){
-        updateValuesAsRate(metric.getMetricValues());
-      }
+      postProcessMetric(metric);
     }
 
     return metrics;
   }
 
+  static TimelineMetric postProcessMetric(TimelineMetric metric) {
+    String name = metric.getMetricName();
+    if (name.contains("._rate")){
+      // values held as a series are returned as a copy, so set them back
+      TreeMap<Long, Double> metricValues = metric.getMetricValues();
+      updateValuesAsRate(metricValues);
+      metric.setMetricValues(metricValues);
+    }
+    return metric;
+  }
+
   static Map<Long, Double> updateValuesAsRate(Map<Long, Double> metricValues) {
     Long prevTime = null;
     Double prevVal = null;
@@ -326,7 +410,14 @@ public class HBaseTimelineMetricStore extends AbstractService implements Timelin
     // Error indicated by the Sql exception
     TimelinePutResponse response = new TimelinePutResponse();
 
-    hBaseAccessor.insertMetricRecordsWithMetadata(metricMetadataManager, metrics);
+    if (hotTier != null) {
+      hotTier.put(metrics);
+    }
+    if (writeBehindBuffer != null) {
+      writeBehindBuffer.put(metrics);
+    } else {
+      hBaseAccessor.insertMetricRecordsWithMetadata(metricMetadataManager, metrics);
+    }
 
     return response;
   }
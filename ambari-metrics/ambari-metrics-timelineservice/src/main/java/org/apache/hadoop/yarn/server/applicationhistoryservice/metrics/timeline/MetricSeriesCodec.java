@@ -0,0 +1,295 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics
+  .timeline;
+
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricSeries;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Binary encoding of a precision metric series stored in the METRICS_BINARY
+ * column of METRIC_RECORD.
+ *
+ * Layout: a version byte, the number of points as a var int, the first
+ * timestamp and value as raw 8 byte words, followed by a bit stream of
+ * delta-of-delta encoded timestamps and XOR encoded double values.
+ * Regularly sampled series (constant interval, slowly changing values)
+ * encode to a couple of bits per point instead of ~25 bytes of JSON.
+ */
+public class MetricSeriesCodec {
+
+  static final byte VERSION = 1;
+
+  private MetricSeriesCodec() {}
+
+  /**
+   * Encode metric values sorted by timestamp.
+   *
+   * @throws IllegalArgumentException if the series holds null values, which
+   * cannot be represented in the binary format
+   */
+  public static byte[] encode(Map<Long, Double> metricValues) {
+    return metricValues == null ? encode(null, 0) :
+      encode(metricValues.entrySet(), metricValues.size());
+  }
+
+  /**
+   * Encode a primitive series, which is sorted by timestamp already.
+   */
+  public static byte[] encodeSeries(TimelineMetricSeries metricValues) {
+    return metricValues == null ? encode(null, 0) :
+      encode(metricValues, metricValues.size());
+  }
+
+  private static byte[] encode(Iterable<Map.Entry<Long, Double>> metricValues,
+                               int count) {
+    BitWriter out = new BitWriter(16 + count * 2);
+    out.writeByte(VERSION);
+    out.writeVarInt(count);
+    if (count == 0) {
+      return out.toByteArray();
+    }
+
+    long prevTimestamp = 0;
+    long prevDelta = 0;
+    long prevBits = 0;
+    int prevLeading = -1;
+    int prevTrailing = 0;
+    boolean first = true;
+
+    for (Map.Entry<Long, Double> entry : metricValues) {
+      if (entry.getKey() == null || entry.getValue() == null) {
+        throw new IllegalArgumentException("Null timestamp or value in " +
+          "metric series");
+      }
+      long timestamp = entry.getKey();
+      long bits = Double.doubleToRawLongBits(entry.getValue());
+
+      if (first) {
+        out.writeBits(timestamp, 64);
+        out.writeBits(bits, 64);
+        first = false;
+      } else {
+        long delta = timestamp - prevTimestamp;
+        writeDeltaOfDelta(out, delta - prevDelta);
+        prevDelta = delta;
+
+        long xor = bits ^ prevBits;
+        if (xor == 0) {
+          out.writeBit(false);
+        } else {
+          out.writeBit(true);
+          int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+          int trailing = Long.numberOfTrailingZeros(xor);
+          if (prevLeading != -1 && leading >= prevLeading && trailing >= prevTrailing) {
+            // Meaningful bits fit in the previous window
+            out.writeBit(false);
+            out.writeBits(xor >>> prevTrailing, 64 - prevLeading - prevTrailing);
+          } else {
+            int significant = 64 - leading - trailing;
+            out.writeBit(true);
+            out.writeBits(leading, 5);
+            out.writeBits(significant - 1, 6);
+            out.writeBits(xor >>> trailing, significant);
+            prevLeading = leading;
+            prevTrailing = trailing;
+          }
+        }
+      }
+      prevTimestamp = timestamp;
+      prevBits = bits;
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Decode a series written by {@link #encode(Map)}.
+   */
+  public static TimelineMetricSeries decode(byte[] bytes) throws IOException {
+    if (bytes == null) {
+      return new TimelineMetricSeries(0);
+    }
+    TimelineMetricSeries metricValues;
+    BitReader in = new BitReader(bytes);
+    try {
+      byte version = (byte) in.readBits(8);
+      if (version != VERSION) {
+        throw new IOException("Unsupported metric series encoding version: "
+          + version);
+      }
+      int count = in.readVarInt();
+      if (count < 0) {
+        throw new IOException("Invalid metric series length: " + count);
+      }
+      // Every point after the first takes at least two bits
+      metricValues = new TimelineMetricSeries(Math.min(count, bytes.length * 4));
+      if (count == 0) {
+        return metricValues;
+      }
+
+      long timestamp = in.readBits(64);
+      long bits = in.readBits(64);
+      metricValues.put(timestamp, Double.longBitsToDouble(bits));
+
+      long delta = 0;
+      int leading = 0;
+      int trailing = 0;
+      for (int i = 1; i < count; i++) {
+        delta += readDeltaOfDelta(in);
+        timestamp += delta;
+
+        if (in.readBit()) {
+          if (in.readBit()) {
+            leading = (int) in.readBits(5);
+            int significant = (int) in.readBits(6) + 1;
+            trailing = 64 - leading - significant;
+          }
+          bits ^= in.readBits(64 - leading - trailing) << trailing;
+        }
+        metricValues.put(timestamp, Double.longBitsToDouble(bits));
+      }
+    } catch (ArrayIndexOutOfBoundsException e) {
+      throw new IOException("Truncated metric series of " + bytes.length
+        + " bytes", e);
+    }
+    return metricValues;
+  }
+
+  private static void writeDeltaOfDelta(BitWriter out, long deltaOfDelta) {
+    long zigzag = (deltaOfDelta << 1) ^ (deltaOfDelta >> 63);
+    if (zigzag == 0) {
+      out.writeBit(false);
+    } else if ((zigzag >>> 7) == 0) {
+      out.writeBits(0x2, 2);
+      out.writeBits(zigzag, 7);
+    } else if ((zigzag >>> 9) == 0) {
+      out.writeBits(0x6, 3);
+      out.writeBits(zigzag, 9);
+    } else if ((zigzag >>> 12) == 0) {
+      out.writeBits(0xE, 4);
+      out.writeBits(zigzag, 12);
+    } else {
+      out.writeBits(0xF, 4);
+      out.writeBits(zigzag, 64);
+    }
+  }
+
+  private static long readDeltaOfDelta(BitReader in) {
+    long zigzag;
+    if (!in.readBit()) {
+      return 0;
+    } else if (!in.readBit()) {
+      zigzag = in.readBits(7);
+    } else if (!in.readBit()) {
+      zigzag = in.readBits(9);
+    } else if (!in.readBit()) {
+      zigzag = in.readBits(12);
+    } else {
+      zigzag = in.readBits(64);
+    }
+    return (zigzag >>> 1) ^ -(zigzag & 1);
+  }
+
+  private static class BitWriter {
+    private byte[] buffer;
+    private int bitPosition = 0;
+
+    BitWriter(int initialCapacity) {
+      buffer = new byte[Math.max(initialCapacity, 16)];
+    }
+
+    void writeBit(boolean bit) {
+      ensureCapacity(1);
+      if (bit) {
+        buffer[bitPosition >>> 3] |= (byte) (0x80 >>> (bitPosition & 7));
+      }
+      bitPosition++;
+    }
+
+    void writeBits(long value, int numBits) {
+      ensureCapacity(numBits);
+      for (int i = numBits - 1; i >= 0; i--) {
+        if (((value >>> i) & 1) != 0) {
+          buffer[bitPosition >>> 3] |= (byte) (0x80 >>> (bitPosition & 7));
+        }
+        bitPosition++;
+      }
+    }
+
+    void writeByte(byte value) {
+      writeBits(value & 0xFF, 8);
+    }
+
+    void writeVarInt(int value) {
+      while ((value & ~0x7F) != 0) {
+        writeBits((value & 0x7F) | 0x80, 8);
+        value >>>= 7;
+      }
+      writeBits(value, 8);
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(buffer, (bitPosition + 7) >>> 3);
+    }
+
+    private void ensureCapacity(int numBits) {
+      int required = (bitPosition + numBits + 7) >>> 3;
+      if (required > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(required, buffer.length * 2));
+      }
+    }
+  }
+
+  private static class BitReader {
+    private final byte[] buffer;
+    private int bitPosition = 0;
+
+    BitReader(byte[] buffer) {
+      this.buffer = buffer;
+    }
+
+    boolean readBit() {
+      boolean bit = (buffer[bitPosition >>> 3] & (0x80 >>> (bitPosition & 7))) != 0;
+      bitPosition++;
+      return bit;
+    }
+
+    long readBits(int numBits) {
+      long value = 0;
+      for (int i = 0; i < numBits; i++) {
+        value = (value << 1) | (readBit() ? 1 : 0);
+      }
+      return value;
+    }
+
+    int readVarInt() {
+      int value = 0;
+      int shift = 0;
+      long b;
+      do {
+        b = readBits(8);
+        value |= (b & 0x7F) << shift;
+        shift += 7;
+      } while ((b & 0x80) != 0);
+      return value;
+    }
+  }
+}
@@ -31,6 +31,7 @@ import org.apache.hadoop.metrics2.sink.timeline.Precision;
 import org.apache.hadoop.metrics2.sink.timeline.SingleValuedTimelineMetric;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricMetadata;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricSeries;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.AggregatorUtils;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.Function;
@@ -56,6 +57,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
@@ -82,8 +84,10 @@ import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.ti
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.HOST_HOUR_TABLE_TTL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.HOST_MINUTE_TABLE_TTL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.OUT_OFF_BAND_DATA_TIME_ALLOWANCE;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.PRECISION_BINARY_ENCODING_ENABLED;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.PRECISION_TABLE_SPLIT_POINTS;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.PRECISION_TABLE_TTL;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.ALTER_METRICS_TABLE_ADD_BINARY_COLUMN_SQL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.CREATE_HOSTED_APPS_METADATA_TABLE_SQL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.CREATE_METRICS_AGGREGATE_TABLE_SQL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.CREATE_METRICS_CLUSTER_AGGREGATE_GROUPED_TABLE_SQL;
@@ -138,6 +142,7 @@ public class PhoenixHBaseAccessor {
   private final RetryCounterFactory retryCounterFactory;
   private final PhoenixConnectionProvider dataSource;
   private final long outOfBandTimeAllowance;
+  private final boolean binaryEncodingEnabled;
   private final boolean skipBlockCacheForAggregatorsEnabled;
 
   static final String HSTORE_COMPACTION_CLASS_KEY =
@@ -174,6 +179,7 @@ public class PhoenixHBaseAccessor {
     this.outOfBandTimeAllowance = metricsConf.getLong(OUT_OFF_BAND_DATA_TIME_ALLOWANCE,
       DEFAULT_OUT_OF_BAND_TIME_ALLOWANCE);
     this.skipBlockCacheForAggregatorsEnabled = metricsConf.getBoolean(AGGREGATORS_SKIP_BLOCK_CACHE, false);
+    this.binaryEncodingEnabled = metricsConf.getBoolean(PRECISION_BINARY_ENCODING_ENABLED, true);
 
     tableTTL.put(METRICS_RECORD_TABLE_NAME, metricsConf.get(PRECISION_TABLE_TTL, String.valueOf(1 * 86400)));  // 1 day
     tableTTL.put(METRICS_AGGREGATE_MINUTE_TABLE_NAME, metricsConf.get(HOST_MINUTE_TABLE_TTL, String.valueOf(7 * 86400))); //7 days
@@ -188,17 +194,17 @@ public class PhoenixHBaseAccessor {
   private static TimelineMetric getLastTimelineMetricFromResultSet(ResultSet rs)
       throws SQLException, IOException {
     TimelineMetric metric = TIMELINE_METRIC_READ_HELPER.getTimelineMetricCommonsFromResultSet(rs);
-    metric.setMetricValues(readLastMetricValueFromJSON(rs.getString("METRICS")));
+    metric.setMetricValues(readLastMetricValue(rs));
     return metric;
   }
 
-  private static TreeMap<Long, Double> readLastMetricValueFromJSON(String json)
-      throws IOException {
-    TreeMap<Long, Double> values = readMetricFromJSON(json);
-    Long lastTimeStamp = values.lastKey();
+  private static TreeMap<Long, Double> readLastMetricValue(ResultSet rs)
+      throws SQLException, IOException {
+    TimelineMetricSeries values = readMetricSeries(rs);
+    int last = values.size() - 1;
 
     TreeMap<Long, Double> valueMap = new TreeMap<Long, Double>();
-    valueMap.put(lastTimeStamp, values.get(lastTimeStamp));
+    valueMap.put(values.getTimestamp(last), values.getValue(last));
     return valueMap;
   }
 
@@ -207,6 +213,20 @@ public class PhoenixHBaseAccessor {
     return mapper.readValue(json, metricValuesTypeRef);
   }
 
+  /**
+   * Read the values of a precision record, which are stored either in the
+   * binary METRICS_BINARY column or, for rows written before binary encoding
+   * was enabled, as JSON in the METRICS column.
+   */
+  public static TimelineMetricSeries readMetricSeries(ResultSet rs)
+      throws SQLException, IOException {
+    byte[] encoded = rs.getBytes("METRICS_BINARY");
+    if (encoded != null) {
+      return MetricSeriesCodec.decode(encoded);
+    }
+    return new TimelineMetricSeries(readMetricFromJSON(rs.getString("METRICS")));
+  }
+
   private Connection getConnectionRetryingOnException()
     throws SQLException, InterruptedException {
     RetryCounter retryCounter = retryCounterFactory.create();
@@ -275,6 +295,7 @@ public class PhoenixHBaseAccessor {
         precisionSql += getSplitPointsStr(splitPoints);
       }
       stmt.executeUpdate(precisionSql);
+      stmt.executeUpdate(ALTER_METRICS_TABLE_ADD_BINARY_COLUMN_SQL);
       stmt.executeUpdate(String.format(CREATE_METRICS_AGGREGATE_TABLE_SQL,
         METRICS_AGGREGATE_MINUTE_TABLE_NAME, encoding,
         tableTTL.get(METRICS_AGGREGATE_MINUTE_TABLE_NAME),
@@ -449,6 +470,7 @@ public class PhoenixHBaseAccessor {
     Connection conn = getConnection();
     PreparedStatement metricRecordStmt = null;
     long currentTime = System.currentTimeMillis();
+    int rowCount = 0;
 
     try {
       metricRecordStmt = conn.prepareStatement(String.format(
@@ -484,8 +506,23 @@ public class PhoenixHBaseAccessor {
         metricRecordStmt.setDouble(9, aggregates[1]);
         metricRecordStmt.setDouble(10, aggregates[2]);
         metricRecordStmt.setLong(11, (long) aggregates[3]);
-        String json = TimelineUtils.dumpTimelineRecordtoJSON(metric.getMetricValues());
-        metricRecordStmt.setString(12, json);
+        byte[] encoded = null;
+        if (binaryEncodingEnabled) {
+          try {
+            encoded = MetricSeriesCodec.encode(metric.getMetricValues());
+          } catch (IllegalArgumentException e) {
+            LOG.debug("Falling back to JSON for metric " + metric.getMetricName()
+              + ": " + e.getMessage());
+          }
+        }
+        if (encoded != null) {
+          metricRecordStmt.setNull(12, Types.VARCHAR);
+          metricRecordStmt.setBytes(13, encoded);
+        } else {
+          String json = TimelineUtils.dumpTimelineRecordtoJSON(metric.getMetricValues());
+          metricRecordStmt.setString(12, json);
+          metricRecordStmt.setNull(13, Types.VARBINARY);
+        }
 
         try {
           metricRecordStmt.executeUpdate();
@@ -500,6 +537,11 @@ public class PhoenixHBaseAccessor {
         } catch (SQLException sql) {
           LOG.error("Failed on insert records to store.", sql);
         }
+
+        if (++rowCount >= PHOENIX_MAX_MUTATION_STATE_SIZE - 1) {
+          conn.commit();
+          rowCount = 0;
+        }
       }
 
       // commit() blocked if HBase unavailable
@@ -527,29 +569,52 @@ public class PhoenixHBaseAccessor {
     insertMetricRecordsWithMetadata(null, metrics);
   }
 
-  @SuppressWarnings("unchecked")
   public TimelineMetrics getMetricRecords(
     final Condition condition, Map<String, List<Function>> metricFunctions)
     throws SQLException, IOException {
 
+    final TimelineMetrics metrics = new TimelineMetrics();
+    getMetricRecords(condition, metricFunctions, new TimelineMetricConsumer() {
+      @Override
+      public void accept(TimelineMetric metric) {
+        metrics.getMetrics().add(metric);
+      }
+    });
+
+    LOG.debug("Metrics records size: " + metrics.getMetrics().size());
+    return metrics;
+  }
+
+  /**
+   * Hand the metric records satisfying the condition to the consumer as they
+   * are read. Grouped records are read in row key order and merged on the
+   * fly, so only the metrics of one host are held in memory at a time.
+   */
+  public void getMetricRecords(final Condition condition,
+      Map<String, List<Function>> metricFunctions,
+      TimelineMetricConsumer consumer) throws SQLException, IOException {
+
     validateConditionIsNotEmpty(condition);
 
     Connection conn = getConnection();
     PreparedStatement stmt = null;
     ResultSet rs = null;
-    TimelineMetrics metrics = new TimelineMetrics();
+    TimelineMetricGrouper grouper =
+      new TimelineMetricGrouper(consumer, condition.isGrouped());
 
     try {
       //get latest
       if (condition.isPointInTime()){
-        getLatestMetricRecords(condition, conn, metrics);
+        getLatestMetricRecords(condition, conn, consumer);
       } else {
         if (condition.getEndTime() >= condition.getStartTime()) {
           stmt = PhoenixTransactSQL.prepareGetMetricsSqlStmt(conn, condition);
           rs = stmt.executeQuery();
           while (rs.next()) {
-            appendMetricFromResultSet(metrics, condition, metricFunctions, rs);
+            grouper.startRow(rs.getString("METRIC_NAME") + ":" + rs.getString("HOSTNAME"));
+            appendMetricFromResultSet(grouper, condition, metricFunctions, rs);
           }
+          grouper.flush();
         } else {
           LOG.warn("Skipping metrics query because endTime < startTime");
         }
@@ -590,7 +655,6 @@ public class PhoenixHBaseAccessor {
         // This is "maxStamp is smaller than minStamp" exception
         // Log error and return empty metrics
         LOG.debug(io);
-        return new TimelineMetrics();
       } else {
         throw ex;
       }
@@ -618,16 +682,13 @@ public class PhoenixHBaseAccessor {
         }
       }
     }
-
-    LOG.debug("Metrics records size: " + metrics.getMetrics().size());
-    return metrics;
   }
 
   /**
    * Apply aggregate function to the result if supplied else get precision
    * or aggregate data with default function applied.
    */
-  private void appendMetricFromResultSet(TimelineMetrics metrics, Condition condition,
+  private void appendMetricFromResultSet(TimelineMetricGrouper metrics, Condition condition,
                                          Map<String, List<Function>> metricFunctions,
                                          ResultSet rs) throws SQLException, IOException {
     String metricName = rs.getString("METRIC_NAME");
@@ -644,12 +705,7 @@ public class PhoenixHBaseAccessor {
         } else {
           SingleValuedTimelineMetric metric =
             TIMELINE_METRIC_READ_HELPER.getAggregatedTimelineMetricFromResultSet(rs, f);
-
-          if (condition.isGrouped()) {
-            metrics.addOrMergeTimelineMetric(metric);
-          } else {
-            metrics.getMetrics().add(metric.getTimelineMetric());
-          }
+          metrics.add(metric);
         }
       }
     } else {
@@ -659,29 +715,17 @@ public class PhoenixHBaseAccessor {
     }
   }
 
-  private void getTimelineMetricsFromResultSet(TimelineMetrics metrics, Condition condition, ResultSet rs) throws SQLException, IOException {
+  private void getTimelineMetricsFromResultSet(TimelineMetricGrouper metrics, Condition condition, ResultSet rs) throws SQLException, IOException {
     if (condition.getPrecision().equals(Precision.SECONDS)) {
-      TimelineMetric metric = TIMELINE_METRIC_READ_HELPER.getTimelineMetricFromResultSet(rs);
-      if (condition.isGrouped()) {
-        metrics.addOrMergeTimelineMetric(metric);
-      } else {
-        metrics.getMetrics().add(metric);
-      }
-
+      metrics.add(TIMELINE_METRIC_READ_HELPER.getTimelineMetricFromResultSet(rs));
     } else {
-      SingleValuedTimelineMetric metric =
-        TIMELINE_METRIC_READ_HELPER.getAggregatedTimelineMetricFromResultSet(rs,
-          Function.DEFAULT_VALUE_FUNCTION);
-      if (condition.isGrouped()) {
-        metrics.addOrMergeTimelineMetric(metric);
-      } else {
-        metrics.getMetrics().add(metric.getTimelineMetric());
-      }
+      metrics.add(TIMELINE_METRIC_READ_HELPER.getAggregatedTimelineMetricFromResultSet(rs,
+        Function.DEFAULT_VALUE_FUNCTION));
     }
   }
 
   private void getLatestMetricRecords(Condition condition, Connection conn,
-                                      TimelineMetrics metrics) throws SQLException, IOException {
+                                      TimelineMetricConsumer consumer) throws SQLException, IOException {
 
     validateConditionIsNotEmpty(condition);
 
@@ -691,7 +735,7 @@ public class PhoenixHBaseAccessor {
       rs = stmt.executeQuery();
       while (rs.next()) {
         TimelineMetric metric = getLastTimelineMetricFromResultSet(rs);
-        metrics.getMetrics().add(metric);
+        consumer.accept(metric);
       }
     } finally {
       if (rs != null) {
@@ -715,27 +759,51 @@ public class PhoenixHBaseAccessor {
    * @throws SQLException
    */
   public TimelineMetrics getAggregateMetricRecords(final Condition condition,
-      Map<String, List<Function>> metricFunctions) throws SQLException {
+      Map<String, List<Function>> metricFunctions) throws SQLException, IOException {
+
+    final TimelineMetrics metrics = new TimelineMetrics();
+    getAggregateMetricRecords(condition, metricFunctions, new TimelineMetricConsumer() {
+      @Override
+      public void accept(TimelineMetric metric) {
+        metrics.getMetrics().add(metric);
+      }
+    });
+
+    LOG.debug("Aggregate records size: " + metrics.getMetrics().size());
+    return metrics;
+  }
+
+  /**
+   * Hand the metrics aggregated across hosts to the consumer as they are
+   * read, see {@link #getMetricRecords(Condition, Map, TimelineMetricConsumer)}.
+   */
+  public void getAggregateMetricRecords(final Condition condition,
+      Map<String, List<Function>> metricFunctions,
+      TimelineMetricConsumer consumer) throws SQLException, IOException {
 
     validateConditionIsNotEmpty(condition);
 
     Connection conn = getConnection();
     PreparedStatement stmt = null;
     ResultSet rs = null;
-    TimelineMetrics metrics = new TimelineMetrics();
+    TimelineMetricGrouper grouper =
+      new TimelineMetricGrouper(consumer, condition.isGrouped());
 
     try {
       //get latest
       if(condition.isPointInTime()) {
-        getLatestAggregateMetricRecords(condition, conn, metrics, metricFunctions);
+        getLatestAggregateMetricRecords(condition, conn, grouper, metricFunctions);
       } else {
         stmt = PhoenixTransactSQL.prepareGetAggregateSqlStmt(conn, condition);
 
         rs = stmt.executeQuery();
         while (rs.next()) {
-          appendAggregateMetricFromResultSet(metrics, condition, metricFunctions, rs);
+          grouper.startRow(rs.getString("METRIC_NAME") + ":" +
+            rs.getString("APP_ID") + ":" + rs.getString("INSTANCE_ID"));
+          appendAggregateMetricFromResultSet(grouper, condition, metricFunctions, rs);
         }
       }
+      grouper.flush();
     } finally {
       if (rs != null) {
         try {
@@ -759,14 +827,11 @@ public class PhoenixHBaseAccessor {
         }
       }
     }
-
-    LOG.debug("Aggregate records size: " + metrics.getMetrics().size());
-    return metrics;
   }
 
-  private void appendAggregateMetricFromResultSet(TimelineMetrics metrics,
+  private void appendAggregateMetricFromResultSet(TimelineMetricGrouper metrics,
       Condition condition, Map<String, List<Function>> metricFunctions,
-      ResultSet rs) throws SQLException {
+      ResultSet rs) throws SQLException, IOException {
 
     String metricName = rs.getString("METRIC_NAME");
     List<Function> functions = metricFunctions.get(metricName);
@@ -782,17 +847,13 @@ public class PhoenixHBaseAccessor {
         metric = getAggregateTimelineMetricFromResultSet(rs, aggregateFunction, true);
       }
 
-      if (condition.isGrouped()) {
-        metrics.addOrMergeTimelineMetric(metric);
-      } else {
-        metrics.getMetrics().add(metric.getTimelineMetric());
-      }
+      metrics.add(metric);
     }
   }
 
   private void getLatestAggregateMetricRecords(Condition condition,
-      Connection conn, TimelineMetrics metrics,
-      Map<String, List<Function>> metricFunctions) throws SQLException {
+      Connection conn, TimelineMetricGrouper metrics,
+      Map<String, List<Function>> metricFunctions) throws SQLException, IOException {
 
     PreparedStatement stmt = null;
     SplitByMetricNamesCondition splitCondition =
@@ -811,17 +872,12 @@ public class PhoenixHBaseAccessor {
             for (Function f : functions) {
               SingleValuedTimelineMetric metric =
                 getAggregateTimelineMetricFromResultSet(rs, f, true);
-
-              if (condition.isGrouped()) {
-                metrics.addOrMergeTimelineMetric(metric);
-              } else {
-                metrics.getMetrics().add(metric.getTimelineMetric());
-              }
+              metrics.add(metric);
             }
           } else {
             SingleValuedTimelineMetric metric =
               getAggregateTimelineMetricFromResultSet(rs, new Function(), true);
-            metrics.getMetrics().add(metric.getTimelineMetric());
+            metrics.add(metric);
           }
         }
       } finally {
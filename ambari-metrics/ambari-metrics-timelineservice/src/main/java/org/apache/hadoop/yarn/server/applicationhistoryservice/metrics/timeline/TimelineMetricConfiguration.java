@@ -207,6 +207,9 @@ public class TimelineMetricConfiguration {
   public static final String AGGREGATORS_SKIP_BLOCK_CACHE =
     "timeline.metrics.aggregators.skip.blockcache.enabled";
 
+  public static final String AGGREGATORS_PARALLELISM =
+    "timeline.metrics.aggregators.parallelism";
+
   public static final String TIMELINE_SERVICE_HTTP_POLICY =
     "timeline.metrics.service.http.policy";
 
@@ -222,6 +225,39 @@ public class TimelineMetricConfiguration {
   public static final String TIMELINE_METRICS_CLUSTER_AGGREGATOR_INTERPOLATION_ENABLED =
     "timeline.metrics.cluster.aggregator.interpolation.enabled";
 
+  public static final String PRECISION_BINARY_ENCODING_ENABLED =
+    "timeline.metrics.precision.binary.encoding.enabled";
+
+  public static final String WRITE_BEHIND_ENABLED =
+    "timeline.metrics.service.write.behind.enabled";
+
+  public static final String WRITE_BEHIND_QUEUE_SIZE =
+    "timeline.metrics.service.write.behind.queue.size";
+
+  public static final String WRITE_BEHIND_QUEUE_FULL_POLICY =
+    "timeline.metrics.service.write.behind.queue.full.policy";
+
+  public static final String WRITE_BEHIND_WRITER_THREADS =
+    "timeline.metrics.service.write.behind.writer.threads";
+
+  public static final String WRITE_BEHIND_BATCH_SIZE =
+    "timeline.metrics.service.write.behind.batch.size";
+
+  public static final String WRITE_BEHIND_BATCH_INTERVAL =
+    "timeline.metrics.service.write.behind.batch.interval";
+
+  public static final String HOT_TIER_ENABLED =
+    "timeline.metrics.service.hot.tier.enabled";
+
+  public static final String HOT_TIER_WINDOW =
+    "timeline.metrics.service.hot.tier.window";
+
+  public static final String HOT_TIER_MAX_SERIES =
+    "timeline.metrics.service.hot.tier.max.series";
+
+  public static final String HOT_TIER_EVICTION_INTERVAL =
+    "timeline.metrics.service.hot.tier.eviction.interval";
+
   public static final String HOST_APP_ID = "HOST";
 
   public static final String DEFAULT_INSTANCE_PORT = "12001";
@@ -354,6 +390,27 @@ public class TimelineMetricConfiguration {
     return 3;
   }
 
+  public boolean isTimelineMetricsServiceWriteBehindEnabled() {
+    if (metricsConf != null) {
+      return Boolean.parseBoolean(metricsConf.get(WRITE_BEHIND_ENABLED, "true"));
+    }
+    return true;
+  }
+
+  public long getTimelineMetricsServiceWriteBehindBatchInterval() {
+    if (metricsConf != null) {
+      return Long.parseLong(metricsConf.get(WRITE_BEHIND_BATCH_INTERVAL, "1000"));
+    }
+    return 1000;
+  }
+
+  public boolean isTimelineMetricsServiceHotTierEnabled() {
+    if (metricsConf != null) {
+      return Boolean.parseBoolean(metricsConf.get(HOT_TIER_ENABLED, "false"));
+    }
+    return false;
+  }
+
   public String getTimelineServiceRpcAddress() {
     String defaultRpcAddress = "0.0.0.0:60200";
     if (metricsConf != null) {
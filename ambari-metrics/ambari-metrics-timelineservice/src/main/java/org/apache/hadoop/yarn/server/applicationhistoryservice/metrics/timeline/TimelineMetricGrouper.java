@@ -0,0 +1,124 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.hadoop.metrics2.sink.timeline.SingleValuedTimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Passes metrics read from a result set on to a {@link TimelineMetricConsumer}.
+ * Ungrouped metrics are passed on as they come. Grouped metrics are merged
+ * with the other rows of the same metric name, host, app and instance, which
+ * requires rows to be ordered so that these are adjacent: every row is
+ * announced with its group key and the metrics of the previous group are
+ * passed on once the key changes. Only the metrics of the current group are
+ * held in memory.
+ */
+class TimelineMetricGrouper {
+  private final TimelineMetricConsumer consumer;
+  private final boolean grouped;
+  // Metrics of the current group, one per host, app, instance and function
+  private final List<TimelineMetric> openMetrics = new ArrayList<TimelineMetric>();
+  private String groupKey;
+
+  TimelineMetricGrouper(TimelineMetricConsumer consumer, boolean grouped) {
+    this.consumer = consumer;
+    this.grouped = grouped;
+  }
+
+  /**
+   * Start a row, passing on the metrics of the previous group if the row
+   * belongs to another one.
+   */
+  void startRow(String groupKey) throws IOException {
+    if (grouped && !groupKey.equals(this.groupKey)) {
+      flush();
+      this.groupKey = groupKey;
+    }
+  }
+
+  void add(TimelineMetric metric) throws IOException {
+    if (!grouped) {
+      consumer.accept(metric);
+      return;
+    }
+    TimelineMetric openMetric = findOpenMetric(metric);
+    if (openMetric == null) {
+      openMetrics.add(metric);
+    } else {
+      openMetric.getMetricSeries().merge(metric.getMetricSeries());
+      updateTimes(openMetric, metric.getTimestamp(), metric.getStartTime());
+    }
+  }
+
+  void add(SingleValuedTimelineMetric metric) throws IOException {
+    if (!grouped) {
+      consumer.accept(metric.getTimelineMetric());
+      return;
+    }
+    TimelineMetric openMetric = null;
+    for (TimelineMetric candidate : openMetrics) {
+      if (metric.equalsExceptTime(candidate)) {
+        openMetric = candidate;
+        break;
+      }
+    }
+    if (openMetric == null) {
+      openMetric = metric.getTimelineMetric();
+      // Rows arrive in time order, keep appending to a compact series
+      openMetric.getMetricSeries();
+      openMetrics.add(openMetric);
+    } else {
+      openMetric.getMetricSeries().put(metric.getTimestamp(), metric.getValue());
+      updateTimes(openMetric, metric.getTimestamp(), metric.getStartTime());
+    }
+  }
+
+  /**
+   * Pass on the metrics of the current group.
+   */
+  void flush() throws IOException {
+    for (TimelineMetric metric : openMetrics) {
+      consumer.accept(metric);
+    }
+    openMetrics.clear();
+    groupKey = null;
+  }
+
+  private TimelineMetric findOpenMetric(TimelineMetric metric) {
+    for (TimelineMetric candidate : openMetrics) {
+      if (candidate.equalsExceptTime(metric)) {
+        return candidate;
+      }
+    }
+    return null;
+  }
+
+  private static void updateTimes(TimelineMetric metric, long timestamp, long startTime) {
+    if (metric.getTimestamp() > timestamp) {
+      metric.setTimestamp(timestamp);
+    }
+    if (metric.getStartTime() > startTime) {
+      metric.setStartTime(startTime);
+    }
+  }
+}
@@ -0,0 +1,488 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.metrics2.MetricsCollector;
+import org.apache.hadoop.metrics2.MetricsException;
+import org.apache.hadoop.metrics2.MetricsSource;
+import org.apache.hadoop.metrics2.lib.DefaultMetricsSystem;
+import org.apache.hadoop.metrics2.lib.MetricsRegistry;
+import org.apache.hadoop.metrics2.lib.MutableCounterLong;
+import org.apache.hadoop.metrics2.lib.MutableGaugeInt;
+import org.apache.hadoop.metrics2.lib.MutableGaugeLong;
+import org.apache.hadoop.metrics2.sink.timeline.Precision;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricSeries;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.Function;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.Condition;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.HOT_TIER_EVICTION_INTERVAL;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.HOT_TIER_MAX_SERIES;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.HOT_TIER_WINDOW;
+
+/**
+ * In-memory copy of the most recent precision data, so that dashboards
+ * asking for the last hour do not have to go to Phoenix. Every metric put to
+ * the store is also added here, indexed by metric name and then by host, app
+ * and instance. Points are appended to a small buffer per series, which is
+ * compressed with {@link MetricSeriesCodec} once full.
+ *
+ * The tier only answers grouped, precision queries on hosts whose window
+ * lies entirely within the data it holds: the configured window back from
+ * now, and not before the tier started or last had to evict a series to
+ * stay within the configured number of series. Points and series older than
+ * the window are evicted periodically.
+ *
+ * Hits, misses and size are published through the Hadoop metrics system.
+ */
+public class TimelineMetricHotTier implements MetricsSource {
+
+  private static final Log LOG = LogFactory.getLog(TimelineMetricHotTier.class);
+  private static final String SOURCE_NAME = "TimelineMetricHotTier";
+  // Points per series buffered uncompressed
+  static final int CHUNK_SIZE = 120;
+
+  private final long windowMillis;
+  private final int maxSeries;
+  private final long evictionIntervalMillis;
+  // metric name -> series of that metric by host, app and instance
+  private final ConcurrentMap<String, ConcurrentMap<SeriesKey, Series>> metrics =
+    new ConcurrentHashMap<String, ConcurrentMap<SeriesKey, Series>>();
+  private final ScheduledExecutorService evictionExecutor;
+  // Data is complete from this point in time on
+  private volatile long completeSince;
+
+  private final MetricsRegistry registry = new MetricsRegistry(SOURCE_NAME);
+  private final MutableCounterLong hits = registry.newCounter(
+    "Hits", "Queries answered from the hot tier", 0L);
+  private final MutableCounterLong misses = registry.newCounter(
+    "Misses", "Eligible queries not covered by the hot tier", 0L);
+  private final MutableCounterLong evictedSeries = registry.newCounter(
+    "EvictedSeries", "Series evicted to stay within the series limit", 0L);
+  private final MutableGaugeInt seriesCount = registry.newGauge(
+    "Series", "Series held in the hot tier", 0);
+  private final MutableGaugeLong pointCount = registry.newGauge(
+    "Points", "Points held in the hot tier", 0L);
+  private final MutableGaugeLong compressedBytes = registry.newGauge(
+    "CompressedBytes", "Size of the compressed points", 0L);
+
+  public TimelineMetricHotTier(Configuration metricsConf) {
+    this.windowMillis = TimeUnit.SECONDS.toMillis(
+      metricsConf.getLong(HOT_TIER_WINDOW, 4200));
+    this.maxSeries = metricsConf.getInt(HOT_TIER_MAX_SERIES, 100000);
+    this.evictionIntervalMillis = TimeUnit.SECONDS.toMillis(
+      metricsConf.getLong(HOT_TIER_EVICTION_INTERVAL, 60));
+    this.completeSince = System.currentTimeMillis();
+    this.evictionExecutor = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "timeline-metrics-hot-tier-eviction");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+  }
+
+  public void start() {
+    try {
+      DefaultMetricsSystem.instance().register(SOURCE_NAME,
+        "Timeline metrics hot tier", this);
+    } catch (MetricsException e) {
+      LOG.warn("Unable to register hot tier metrics source", e);
+    }
+    evictionExecutor.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          evict(System.currentTimeMillis());
+        } catch (RuntimeException e) {
+          LOG.error("Hot tier eviction failed.", e);
+        }
+      }
+    }, evictionIntervalMillis, evictionIntervalMillis, TimeUnit.MILLISECONDS);
+    LOG.info("Started timeline metrics hot tier with window = " + windowMillis +
+      " ms, max series = " + maxSeries);
+  }
+
+  public void stop() {
+    evictionExecutor.shutdownNow();
+    try {
+      DefaultMetricsSystem.instance().unregisterSource(SOURCE_NAME);
+    } catch (MetricsException e) {
+      LOG.debug("Unable to unregister hot tier metrics source", e);
+    }
+  }
+
+  /**
+   * Add metrics put to the store. Points older than the window are ignored.
+   */
+  public void put(TimelineMetrics timelineMetrics) {
+    if (timelineMetrics == null || timelineMetrics.getMetrics() == null) {
+      return;
+    }
+    long cutoff = System.currentTimeMillis() - windowMillis;
+    for (TimelineMetric metric : timelineMetrics.getMetrics()) {
+      if (metric.getMetricName() == null || metric.getMetricValuesCount() == 0) {
+        continue;
+      }
+      TimelineMetricSeries values = metric.hasMetricSeries() ?
+        new TimelineMetricSeries(metric.getMetricSeries()) :
+        new TimelineMetricSeries(metric.getMetricValues());
+      values.retainRange(cutoff, Long.MAX_VALUE);
+      if (values.isEmpty()) {
+        continue;
+      }
+
+      ConcurrentMap<SeriesKey, Series> metricSeries = metrics.get(metric.getMetricName());
+      if (metricSeries == null) {
+        metricSeries = new ConcurrentHashMap<SeriesKey, Series>();
+        ConcurrentMap<SeriesKey, Series> existing =
+          metrics.putIfAbsent(metric.getMetricName(), metricSeries);
+        if (existing != null) {
+          metricSeries = existing;
+        }
+      }
+      SeriesKey key = new SeriesKey(metric.getHostName(), metric.getAppId(),
+        metric.getInstanceId());
+      while (true) {
+        Series series = metricSeries.get(key);
+        if (series == null) {
+          series = new Series(metric.getUnits());
+          Series existing = metricSeries.putIfAbsent(key, series);
+          if (existing != null) {
+            series = existing;
+          }
+        }
+        if (series.add(values)) {
+          break;
+        }
+        // Evicted concurrently, start a new series
+        metricSeries.remove(key, series);
+      }
+    }
+  }
+
+  /**
+   * Whether the query can be answered from the hot tier, counting a miss if
+   * it is of a kind the tier answers but its window is not covered.
+   */
+  public boolean covers(Condition condition, Map<String, List<Function>> metricFunctions) {
+    if (!condition.isGrouped() || condition.isPointInTime()
+        || condition.getStartTime() == null || condition.getEndTime() == null
+        || condition.getHostnames() == null || condition.getHostnames().isEmpty()) {
+      return false;
+    }
+    Precision precision = condition.getPrecision() != null ? condition.getPrecision() :
+      Precision.getPrecision(condition.getStartTime(), condition.getEndTime());
+    if (precision != Precision.SECONDS) {
+      return false;
+    }
+    for (Map.Entry<String, List<Function>> entry : metricFunctions.entrySet()) {
+      if (entry.getKey().contains("%")) {
+        return false;
+      }
+      for (Function function : entry.getValue()) {
+        if (function.getReadFunction() != Function.ReadFunction.VALUE) {
+          return false;
+        }
+      }
+    }
+    for (String hostname : condition.getHostnames()) {
+      if (hostname.contains("%")) {
+        return false;
+      }
+    }
+
+    long coveredFrom = Math.max(completeSince, System.currentTimeMillis() - windowMillis);
+    if (condition.getStartTime() < coveredFrom) {
+      misses.incr();
+      return false;
+    }
+    hits.incr();
+    return true;
+  }
+
+  /**
+   * Hand the metrics satisfying a condition accepted by
+   * {@link #covers(Condition, Map)} to the consumer, one per metric name,
+   * host, app and instance.
+   */
+  public void getMetricRecords(Condition condition, TimelineMetricConsumer consumer)
+      throws IOException {
+    long startTime = condition.getStartTime();
+    long endTime = condition.getEndTime();
+    Set<String> hostnames = new HashSet<String>(condition.getHostnames());
+    String appId = condition.getAppId();
+    String instanceId = condition.getInstanceId();
+
+    for (String metricName : condition.getMetricNames()) {
+      ConcurrentMap<SeriesKey, Series> metricSeries = metrics.get(metricName);
+      if (metricSeries == null) {
+        continue;
+      }
+      for (Map.Entry<SeriesKey, Series> entry : metricSeries.entrySet()) {
+        SeriesKey key = entry.getKey();
+        if (!hostnames.contains(key.hostName)
+            || (appId != null && !appId.equals(key.appId))
+            || (instanceId != null && !instanceId.equals(key.instanceId))) {
+          continue;
+        }
+        TimelineMetricSeries values = entry.getValue().read(startTime, endTime);
+        if (values.isEmpty()) {
+          continue;
+        }
+        TimelineMetric metric = new TimelineMetric();
+        metric.setMetricName(metricName);
+        metric.setHostName(key.hostName);
+        metric.setAppId(key.appId);
+        metric.setInstanceId(key.instanceId);
+        metric.setType(entry.getValue().units);
+        metric.setStartTime(values.firstTimestamp());
+        metric.setTimestamp(values.firstTimestamp());
+        metric.setMetricSeries(values);
+        consumer.accept(metric);
+      }
+    }
+  }
+
+  /**
+   * Drop points older than the window, series left without points and, if
+   * there are too many series, those written to least recently.
+   */
+  void evict(long now) {
+    long cutoff = now - windowMillis;
+    List<Map.Entry<SeriesKey, Series>> remaining = new ArrayList<Map.Entry<SeriesKey, Series>>();
+    List<ConcurrentMap<SeriesKey, Series>> owners = new ArrayList<ConcurrentMap<SeriesKey, Series>>();
+    long points = 0;
+    long bytes = 0;
+
+    for (ConcurrentMap<SeriesKey, Series> metricSeries : metrics.values()) {
+      for (Map.Entry<SeriesKey, Series> entry : metricSeries.entrySet()) {
+        Series series = entry.getValue();
+        if (series.trim(cutoff)) {
+          metricSeries.remove(entry.getKey(), series);
+        } else {
+          remaining.add(entry);
+          owners.add(metricSeries);
+          points += series.pointCount();
+          bytes += series.compressedBytes();
+        }
+      }
+    }
+
+    int excess = remaining.size() - maxSeries;
+    if (excess > 0) {
+      List<Integer> order = new ArrayList<Integer>(remaining.size());
+      final long[] lastWrites = new long[remaining.size()];
+      for (int i = 0; i < remaining.size(); i++) {
+        order.add(i);
+        lastWrites[i] = remaining.get(i).getValue().lastWrite;
+      }
+      Collections.sort(order, new Comparator<Integer>() {
+        @Override
+        public int compare(Integer o1, Integer o2) {
+          return Long.compare(lastWrites[o1], lastWrites[o2]);
+        }
+      });
+      for (int i = 0; i < excess; i++) {
+        Map.Entry<SeriesKey, Series> entry = remaining.get(order.get(i));
+        entry.getValue().retire();
+        owners.get(order.get(i)).remove(entry.getKey(), entry.getValue());
+        points -= entry.getValue().pointCount();
+        bytes -= entry.getValue().compressedBytes();
+      }
+      // Queries from before now could miss points of the evicted series
+      completeSince = now;
+      evictedSeries.incr(excess);
+      LOG.warn("Evicted " + excess + " series from the hot tier, consider " +
+        "raising " + HOT_TIER_MAX_SERIES);
+    }
+
+    // Metric names are kept, there are few of them compared to series
+    seriesCount.set(Math.min(remaining.size(), maxSeries));
+    pointCount.set(points);
+    compressedBytes.set(bytes);
+  }
+
+  long getCompleteSince() {
+    return completeSince;
+  }
+
+  long getHits() {
+    return hits.value();
+  }
+
+  long getMisses() {
+    return misses.value();
+  }
+
+  @Override
+  public void getMetrics(MetricsCollector collector, boolean all) {
+    registry.snapshot(collector.addRecord(registry.info()), all);
+  }
+
+  private static final class SeriesKey {
+    final String hostName;
+    final String appId;
+    final String instanceId;
+
+    SeriesKey(String hostName, String appId, String instanceId) {
+      this.hostName = hostName;
+      this.appId = appId;
+      this.instanceId = instanceId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+
+      SeriesKey that = (SeriesKey) o;
+
+      if (hostName != null ? !hostName.equals(that.hostName) : that.hostName != null) return false;
+      if (appId != null ? !appId.equals(that.appId) : that.appId != null) return false;
+      return instanceId != null ? instanceId.equals(that.instanceId) : that.instanceId == null;
+    }
+
+    @Override
+    public int hashCode() {
+      int result = hostName != null ? hostName.hashCode() : 0;
+      result = 31 * result + (appId != null ? appId.hashCode() : 0);
+      result = 31 * result + (instanceId != null ? instanceId.hashCode() : 0);
+      return result;
+    }
+  }
+
+  /**
+   * Points of one series: compressed chunks plus an uncompressed buffer for
+   * the most recent points. A series is retired when it is evicted, after
+   * which points have to go to a new one.
+   */
+  private static final class Series {
+    final String units;
+    private final List<Chunk> chunks = new ArrayList<Chunk>();
+    private TimelineMetricSeries buffer = new TimelineMetricSeries();
+    private boolean retired = false;
+    volatile long lastWrite;
+
+    Series(String units) {
+      this.units = units;
+    }
+
+    /**
+     * @return false if the series has been retired
+     */
+    synchronized boolean add(TimelineMetricSeries values) {
+      if (retired) {
+        return false;
+      }
+      buffer.merge(values);
+      if (buffer.size() >= CHUNK_SIZE) {
+        chunks.add(new Chunk(buffer));
+        buffer = new TimelineMetricSeries();
+      }
+      lastWrite = System.currentTimeMillis();
+      return true;
+    }
+
+    synchronized void retire() {
+      retired = true;
+    }
+
+    synchronized TimelineMetricSeries read(long startTime, long endTime) throws IOException {
+      TimelineMetricSeries values = new TimelineMetricSeries();
+      for (Chunk chunk : chunks) {
+        if (chunk.lastTimestamp >= startTime && chunk.firstTimestamp <= endTime) {
+          TimelineMetricSeries chunkValues = MetricSeriesCodec.decode(chunk.data);
+          chunkValues.retainRange(startTime, endTime);
+          values.merge(chunkValues);
+        }
+      }
+      TimelineMetricSeries recent = new TimelineMetricSeries(buffer);
+      recent.retainRange(startTime, endTime);
+      values.merge(recent);
+      return values;
+    }
+
+    /**
+     * Drop points older than the cutoff, retiring the series if none remain.
+     * @return true if the series has been retired
+     */
+    synchronized boolean trim(long cutoff) {
+      for (Iterator<Chunk> it = chunks.iterator(); it.hasNext(); ) {
+        if (it.next().lastTimestamp < cutoff) {
+          it.remove();
+        }
+      }
+      buffer.retainRange(cutoff, Long.MAX_VALUE);
+      retired = chunks.isEmpty() && buffer.isEmpty();
+      return retired;
+    }
+
+    synchronized long pointCount() {
+      long count = buffer.size();
+      for (Chunk chunk : chunks) {
+        count += chunk.count;
+      }
+      return count;
+    }
+
+    synchronized long compressedBytes() {
+      long bytes = 0;
+      for (Chunk chunk : chunks) {
+        bytes += chunk.data.length;
+      }
+      return bytes;
+    }
+  }
+
+  private static final class Chunk {
+    final long firstTimestamp;
+    final long lastTimestamp;
+    final int count;
+    final byte[] data;
+
+    Chunk(TimelineMetricSeries values) {
+      this.firstTimestamp = values.firstTimestamp();
+      this.lastTimestamp = values.lastTimestamp();
+      this.count = values.size();
+      this.data = MetricSeriesCodec.encodeSeries(values);
+    }
+  }
+}
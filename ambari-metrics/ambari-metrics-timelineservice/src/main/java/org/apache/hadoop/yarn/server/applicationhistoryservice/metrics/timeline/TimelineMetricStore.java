@@ -51,6 +51,19 @@ public interface TimelineMetricStore {
       Long endTime, Precision precision, Integer limit, boolean groupedByHosts)
     throws SQLException, IOException;
 
+  /**
+   * Same as {@link #getTimelineMetrics(List, List, String, String, Long, Long,
+   * Precision, Integer, boolean)}, but the returned query hands the metrics
+   * to a consumer as they are read instead of collecting them, and does not
+   * cap the result unless a limit is given. Invalid filter criteria, including
+   * a precision that would return too many rows, are reported by this call,
+   * before the query is run.
+   */
+  TimelineMetricQuery prepareTimelineMetrics(List<String> metricNames,
+      List<String> hostnames, String applicationId, String instanceId,
+      Long startTime, Long endTime, Precision precision, Integer limit,
+      boolean groupedByHosts) throws SQLException, IOException;
+
 
   /**
    * Return all records for a single metric satisfying the filter criteria.
@@ -99,9 +99,24 @@ public class TimelineMetricStoreWatcher implements Runnable {
     final TimelineMetrics metrics = new TimelineMetrics();
     metrics.setMetrics(Collections.singletonList(fakeMetric));
 
+    // Writes may be buffered, allow them a couple of flush intervals to land
+    final long writeBehindInterval =
+      configuration.isTimelineMetricsServiceWriteBehindEnabled() ?
+        configuration.getTimelineMetricsServiceWriteBehindBatchInterval() : 0;
+
     Callable<TimelineMetric> task = new Callable<TimelineMetric>() {
       public TimelineMetric call() throws Exception {
         timelineMetricStore.putMetrics(metrics);
+        long readDeadline = System.currentTimeMillis() + 2 * writeBehindInterval;
+        TimelineMetric timelineMetric = getFakeMetric();
+        while (timelineMetric == null && System.currentTimeMillis() < readDeadline) {
+          Thread.sleep(Math.max(writeBehindInterval / 4, 1));
+          timelineMetric = getFakeMetric();
+        }
+        return timelineMetric;
+      }
+
+      private TimelineMetric getFakeMetric() throws Exception {
         return timelineMetricStore.getTimelineMetric(
           FAKE_METRIC_NAME, Collections.singletonList(FAKE_HOSTNAME),
           FAKE_APP_ID, null, startTime - delay * 2 * 1000,
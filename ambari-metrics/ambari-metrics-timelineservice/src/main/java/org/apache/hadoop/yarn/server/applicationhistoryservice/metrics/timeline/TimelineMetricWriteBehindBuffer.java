@@ -0,0 +1,292 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.metrics2.MetricsCollector;
+import org.apache.hadoop.metrics2.MetricsException;
+import org.apache.hadoop.metrics2.MetricsSource;
+import org.apache.hadoop.metrics2.lib.DefaultMetricsSystem;
+import org.apache.hadoop.metrics2.lib.MetricsRegistry;
+import org.apache.hadoop.metrics2.lib.MutableCounterLong;
+import org.apache.hadoop.metrics2.lib.MutableGaugeInt;
+import org.apache.hadoop.metrics2.lib.MutableRate;
+import org.apache.hadoop.metrics2.lib.MutableStat;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.discovery.TimelineMetricMetadataManager;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.PhoenixHBaseAccessor.PHOENIX_MAX_MUTATION_STATE_SIZE;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.WRITE_BEHIND_BATCH_SIZE;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.WRITE_BEHIND_QUEUE_FULL_POLICY;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.WRITE_BEHIND_QUEUE_SIZE;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.WRITE_BEHIND_WRITER_THREADS;
+
+/**
+ * Decouples accepting metrics from committing them to the store. Incoming
+ * {@link TimelineMetrics} are queued and coalesced by writer threads into
+ * batches bounded by row count and linger time, so that each batch is
+ * written with a single connection and commit instead of one per request.
+ * Requests larger than the batch size are split over several batches, so a
+ * single commit never exceeds the Phoenix mutation state limit.
+ *
+ * Metrics are acknowledged to the client once queued: a batch that fails to
+ * commit is logged and counted in the FailedMetrics counter, but the client
+ * has already received a success response and will not resend it. With the
+ * BLOCK queue full policy (the default) a slow or unavailable store applies
+ * back pressure to the clients once the queue is full.
+ *
+ * Queue depth, batch size, commit latency, dropped and failed metrics are
+ * published through the Hadoop metrics system.
+ */
+public class TimelineMetricWriteBehindBuffer implements MetricsSource {
+
+  private static final Log LOG = LogFactory.getLog(TimelineMetricWriteBehindBuffer.class);
+  private static final String SOURCE_NAME = "TimelineMetricWriteBehindBuffer";
+
+  /**
+   * What to do with incoming metrics when the queue is full.
+   */
+  public enum QueueFullPolicy {
+    // Apply back pressure to the caller
+    BLOCK,
+    // Discard the incoming metrics
+    DROP
+  }
+
+  private final PhoenixHBaseAccessor hBaseAccessor;
+  private final TimelineMetricMetadataManager metadataManager;
+  private final BlockingQueue<TimelineMetrics> queue;
+  private final QueueFullPolicy queueFullPolicy;
+  private final int batchSize;
+  private final long batchIntervalMillis;
+  private final int writerThreads;
+  private final ExecutorService writerExecutor;
+  private volatile boolean stopped = false;
+
+  private final MetricsRegistry registry = new MetricsRegistry(SOURCE_NAME);
+  private final MutableGaugeInt queueDepth = registry.newGauge(
+    "QueueDepth", "Pending requests in the write-behind queue", 0);
+  private final MutableCounterLong droppedMetrics = registry.newCounter(
+    "DroppedMetrics", "Metrics dropped because the queue was full", 0L);
+  private final MutableCounterLong failedMetrics = registry.newCounter(
+    "FailedMetrics", "Metrics lost because the batch commit failed", 0L);
+  private final MutableStat batchRows = registry.newStat(
+    "BatchSize", "Metrics written per batch", "Batches", "Metrics");
+  private final MutableRate commitLatency = registry.newRate(
+    "BatchCommit", "Time to write and commit a batch", false);
+
+  public TimelineMetricWriteBehindBuffer(PhoenixHBaseAccessor hBaseAccessor,
+                                         TimelineMetricMetadataManager metadataManager,
+                                         Configuration metricsConf,
+                                         long batchIntervalMillis) {
+    this.hBaseAccessor = hBaseAccessor;
+    this.metadataManager = metadataManager;
+    this.queue = new ArrayBlockingQueue<TimelineMetrics>(
+      metricsConf.getInt(WRITE_BEHIND_QUEUE_SIZE, 1000));
+    this.queueFullPolicy = QueueFullPolicy.valueOf(
+      metricsConf.get(WRITE_BEHIND_QUEUE_FULL_POLICY, "block").trim().toUpperCase());
+    // Stay below the Phoenix mutation state limit for a single commit
+    this.batchSize = Math.min(metricsConf.getInt(WRITE_BEHIND_BATCH_SIZE, 10000),
+      PHOENIX_MAX_MUTATION_STATE_SIZE - 1);
+    this.batchIntervalMillis = batchIntervalMillis;
+    this.writerThreads = metricsConf.getInt(WRITE_BEHIND_WRITER_THREADS, 2);
+    this.writerExecutor = Executors.newFixedThreadPool(writerThreads,
+      new ThreadFactory() {
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable r) {
+          return new Thread(r, "timeline-metrics-writer-" + threadNumber.getAndIncrement());
+        }
+      });
+  }
+
+  public void start() {
+    try {
+      DefaultMetricsSystem.instance().register(SOURCE_NAME,
+        "Timeline metrics write-behind buffer", this);
+    } catch (MetricsException e) {
+      LOG.warn("Unable to register write-behind buffer metrics source", e);
+    }
+    for (int i = 0; i < writerThreads; i++) {
+      writerExecutor.submit(new BatchWriter());
+    }
+    LOG.info("Started " + writerThreads + " timeline metrics writer threads " +
+      "with batch size = " + batchSize + ", interval = " + batchIntervalMillis +
+      " ms, queue full policy = " + queueFullPolicy);
+  }
+
+  /**
+   * Queue metrics for writing. Blocks while the queue is full with the BLOCK
+   * policy. Returning does not mean the metrics were stored, write failures
+   * are only reported through the FailedMetrics counter.
+   * @return false if the metrics were dropped because the queue is full
+   */
+  public boolean put(TimelineMetrics metrics) throws IOException {
+    if (metrics == null || metrics.getMetrics() == null || metrics.getMetrics().isEmpty()) {
+      return true;
+    }
+    if (stopped) {
+      throw new IOException("Timeline metrics writer has been stopped.");
+    }
+
+    boolean queued = true;
+    if (queueFullPolicy == QueueFullPolicy.BLOCK) {
+      try {
+        queue.put(metrics);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while waiting to queue metrics.", e);
+      }
+    } else {
+      queued = queue.offer(metrics);
+      if (!queued) {
+        droppedMetrics.incr(metrics.getMetrics().size());
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Write-behind queue is full, dropped " +
+            metrics.getMetrics().size() + " metrics.");
+        }
+      }
+    }
+    queueDepth.set(queue.size());
+    return queued;
+  }
+
+  /**
+   * Stop accepting metrics and wait for the writers to drain the queue.
+   */
+  public void stop(long timeout, TimeUnit unit) throws InterruptedException {
+    stopped = true;
+    writerExecutor.shutdown();
+    if (!writerExecutor.awaitTermination(timeout, unit)) {
+      LOG.warn("Timeline metrics writers did not finish in time, " +
+        queue.size() + " requests were not written.");
+      writerExecutor.shutdownNow();
+    }
+    try {
+      DefaultMetricsSystem.instance().unregisterSource(SOURCE_NAME);
+    } catch (MetricsException e) {
+      LOG.debug("Unable to unregister write-behind buffer metrics source", e);
+    }
+  }
+
+  public int getQueueDepth() {
+    return queue.size();
+  }
+
+  long getDroppedMetrics() {
+    return droppedMetrics.value();
+  }
+
+  long getFailedMetrics() {
+    return failedMetrics.value();
+  }
+
+  @Override
+  public void getMetrics(MetricsCollector collector, boolean all) {
+    queueDepth.set(queue.size());
+    registry.snapshot(collector.addRecord(registry.info()), all);
+  }
+
+  private class BatchWriter implements Runnable {
+
+    // Metrics of a dequeued request that did not fit in the previous batch
+    private final LinkedList<TimelineMetric> carried = new LinkedList<TimelineMetric>();
+
+    @Override
+    public void run() {
+      while (!stopped || !queue.isEmpty() || !carried.isEmpty()) {
+        List<TimelineMetric> batch;
+        try {
+          batch = nextBatch();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+        if (!batch.isEmpty()) {
+          write(batch);
+        }
+      }
+    }
+
+    /**
+     * Wait for the first request, then keep adding requests until the batch
+     * is full or it has lingered for the batch interval. Metrics that do not
+     * fit are carried over to the next batch.
+     */
+    private List<TimelineMetric> nextBatch() throws InterruptedException {
+      List<TimelineMetric> batch = new ArrayList<TimelineMetric>();
+      if (carried.isEmpty()) {
+        TimelineMetrics next = queue.poll(batchIntervalMillis, TimeUnit.MILLISECONDS);
+        if (next == null) {
+          return batch;
+        }
+        carried.addAll(next.getMetrics());
+      }
+      long deadline = System.currentTimeMillis() + batchIntervalMillis;
+      while (true) {
+        while (!carried.isEmpty() && batch.size() < batchSize) {
+          batch.add(carried.poll());
+        }
+        if (batch.size() >= batchSize) {
+          break;
+        }
+        long remaining = stopped ? 0 : deadline - System.currentTimeMillis();
+        TimelineMetrics next = remaining > 0 ?
+          queue.poll(remaining, TimeUnit.MILLISECONDS) : queue.poll();
+        if (next == null) {
+          break;
+        }
+        carried.addAll(next.getMetrics());
+      }
+      queueDepth.set(queue.size());
+      return batch;
+    }
+
+    private void write(List<TimelineMetric> batch) {
+      TimelineMetrics metrics = new TimelineMetrics();
+      metrics.setMetrics(batch);
+      long startTime = System.currentTimeMillis();
+      try {
+        hBaseAccessor.insertMetricRecordsWithMetadata(metadataManager, metrics);
+        commitLatency.add(System.currentTimeMillis() - startTime);
+        batchRows.add(batch.size());
+      } catch (SQLException | IOException | RuntimeException e) {
+        // Phoenix might throw RuntimeException's
+        failedMetrics.incr(batch.size());
+        LOG.error("Failed to write a batch of " + batch.size() + " metrics.", e);
+      }
+    }
+  }
+}
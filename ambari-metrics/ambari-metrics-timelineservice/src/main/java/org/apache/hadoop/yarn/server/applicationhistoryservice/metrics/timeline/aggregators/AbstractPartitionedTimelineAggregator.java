@@ -0,0 +1,253 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.PhoenixHBaseAccessor;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.availability.AggregationTaskRunner.AGGREGATOR_NAME;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.availability.TimelineMetricHAController;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.Condition;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.MetricNameRangeCondition;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.AGGREGATE_TABLE_SPLIT_POINTS;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.AGGREGATORS_PARALLELISM;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.PRECISION_TABLE_SPLIT_POINTS;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.METRICS_CLUSTER_AGGREGATE_TABLE_NAME;
+
+/**
+ * Aggregator whose input can be split along the metric name part of the row
+ * key. When timeline.metrics.aggregators.parallelism is above 1, the key
+ * space is cut at the region split points configured for the input table,
+ * every range is scanned and aggregated on a fork-join pool, and the partial
+ * aggregates, which have disjoint keys, are merged and saved in one go. The
+ * cycle fails, and the checkpoint stays put, if any range fails. All
+ * aggregators share one pool of that many threads, see {@link #shutdownPool}.
+ *
+ * @param <K> aggregate key
+ * @param <V> aggregate value
+ */
+public abstract class AbstractPartitionedTimelineAggregator<K, V> extends AbstractTimelineAggregator {
+  // Shared by all partitioned aggregators, created on first use
+  private static ForkJoinPool sharedPool;
+
+  private final List<String> splitPoints;
+  private final int parallelism;
+
+  public AbstractPartitionedTimelineAggregator(AGGREGATOR_NAME aggregatorName,
+                                               PhoenixHBaseAccessor hBaseAccessor,
+                                               Configuration metricsConf,
+                                               String checkpointLocation,
+                                               Long sleepIntervalMillis,
+                                               Integer checkpointCutOffMultiplier,
+                                               String aggregatorDisableParam,
+                                               String tableName,
+                                               String outputTableName,
+                                               Long nativeTimeRangeDelay,
+                                               TimelineMetricHAController haController) {
+    super(aggregatorName, hBaseAccessor, metricsConf, checkpointLocation,
+      sleepIntervalMillis, checkpointCutOffMultiplier, aggregatorDisableParam,
+      tableName, outputTableName, nativeTimeRangeDelay, haController);
+
+    // Cluster tables share the split points of the seconds cluster table,
+    // host tables those of the precision table.
+    String splitPointsParam = tableName != null &&
+      tableName.startsWith(METRICS_CLUSTER_AGGREGATE_TABLE_NAME) ?
+      AGGREGATE_TABLE_SPLIT_POINTS : PRECISION_TABLE_SPLIT_POINTS;
+    this.splitPoints = getSplitPoints(metricsConf.get(splitPointsParam));
+
+    this.parallelism = splitPoints.isEmpty() ? 1 :
+      metricsConf.getInt(AGGREGATORS_PARALLELISM, 1);
+  }
+
+  private static synchronized ForkJoinPool getPool(int parallelism) {
+    if (sharedPool == null) {
+      sharedPool = new ForkJoinPool(parallelism);
+    }
+    return sharedPool;
+  }
+
+  /**
+   * Shut down the pool shared by the partitioned aggregators, waiting for
+   * running range aggregations. To be called once the aggregator threads are
+   * stopped, a later cycle would start a new pool.
+   */
+  public static void shutdownPool(long timeout, TimeUnit unit) throws InterruptedException {
+    ForkJoinPool pool;
+    synchronized (AbstractPartitionedTimelineAggregator.class) {
+      pool = sharedPool;
+      sharedPool = null;
+    }
+    if (pool != null) {
+      pool.shutdown();
+      if (!pool.awaitTermination(timeout, unit)) {
+        pool.shutdownNow();
+      }
+    }
+  }
+
+  /**
+   * Aggregate rows of a single metric name range without saving them.
+   */
+  protected abstract Map<K, V> aggregatePartition(ResultSet rs, long startTime,
+                                                  long endTime) throws SQLException, IOException;
+
+  protected abstract void saveAggregates(Map<K, V> aggregates) throws SQLException, IOException;
+
+  @Override
+  protected void aggregate(ResultSet rs, long startTime, long endTime) throws SQLException, IOException {
+    saveAggregates(aggregatePartition(rs, startTime, endTime));
+  }
+
+  @Override
+  public boolean doWork(final long startTime, final long endTime) {
+    // Updates run server side in a single statement
+    if (parallelism <= 1 || prepareMetricQueryCondition(startTime, endTime).doUpdate()) {
+      return super.doWork(startTime, endTime);
+    }
+
+    LOG.info("Start aggregation cycle @ " + new Date() + ", " +
+      "startTime = " + new Date(startTime) + ", endTime = " + new Date(endTime) +
+      ", metric name ranges = " + (splitPoints.size() + 1));
+
+    List<Callable<Map<K, V>>> tasks = new ArrayList<Callable<Map<K, V>>>();
+    String lowerBound = null;
+    for (String splitPoint : splitPoints) {
+      tasks.add(new RangeAggregation(startTime, endTime, lowerBound, splitPoint));
+      lowerBound = splitPoint;
+    }
+    tasks.add(new RangeAggregation(startTime, endTime, lowerBound, null));
+
+    boolean success = true;
+    try {
+      Map<K, V> aggregates = new HashMap<K, V>();
+      for (Future<Map<K, V>> partial : getPool(parallelism).invokeAll(tasks)) {
+        aggregates.putAll(partial.get());
+      }
+      LOG.debug("Ranges aggregated @: " + new Date());
+      saveAggregates(aggregates);
+
+    } catch (ExecutionException e) {
+      LOG.error("Exception during aggregating metrics.", e.getCause());
+      success = false;
+    } catch (SQLException | IOException e) {
+      LOG.error("Exception during aggregating metrics.", e);
+      success = false;
+    } catch (RejectedExecutionException e) {
+      LOG.warn("Aggregation pool is shut down, skipping aggregation cycle.");
+      success = false;
+    } catch (InterruptedException e) {
+      LOG.warn("Interrupted during aggregating metrics.");
+      Thread.currentThread().interrupt();
+      success = false;
+    }
+
+    LOG.info("End aggregation cycle @ " + new Date());
+    return success;
+  }
+
+  /**
+   * Split points sorted the way HBase orders row keys, blanks removed.
+   */
+  static List<String> getSplitPoints(String splitPoints) {
+    TreeSet<String> points = new TreeSet<String>();
+    if (!StringUtils.isBlank(splitPoints)) {
+      for (String point : splitPoints.split(",")) {
+        if (!point.trim().isEmpty()) {
+          points.add(point.trim());
+        }
+      }
+    }
+    return new ArrayList<String>(points);
+  }
+
+  List<String> getSplitPoints() {
+    return splitPoints;
+  }
+
+  private class RangeAggregation implements Callable<Map<K, V>> {
+    private final long startTime;
+    private final long endTime;
+    private final String lowerBound;
+    private final String upperBound;
+
+    RangeAggregation(long startTime, long endTime, String lowerBound, String upperBound) {
+      this.startTime = startTime;
+      this.endTime = endTime;
+      this.lowerBound = lowerBound;
+      this.upperBound = upperBound;
+    }
+
+    @Override
+    public Map<K, V> call() throws SQLException, IOException {
+      Condition condition = new MetricNameRangeCondition(
+        prepareMetricQueryCondition(startTime, endTime), lowerBound, upperBound);
+
+      Connection conn = null;
+      PreparedStatement stmt = null;
+      ResultSet rs = null;
+      try {
+        conn = hBaseAccessor.getConnection();
+        stmt = PhoenixTransactSQL.prepareGetMetricsSqlStmt(conn, condition);
+        rs = stmt.executeQuery();
+        return aggregatePartition(rs, startTime, endTime);
+      } finally {
+        if (rs != null) {
+          try {
+            rs.close();
+          } catch (SQLException e) {
+            // Ignore
+          }
+        }
+        if (stmt != null) {
+          try {
+            stmt.close();
+          } catch (SQLException e) {
+            // Ignore
+          }
+        }
+        if (conn != null) {
+          try {
+            conn.close();
+          } catch (SQLException sql) {
+            // Ignore
+          }
+        }
+      }
+    }
+  }
+}
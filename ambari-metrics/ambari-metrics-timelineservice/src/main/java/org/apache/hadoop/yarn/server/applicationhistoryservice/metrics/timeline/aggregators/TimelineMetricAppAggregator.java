@@ -27,7 +27,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -45,14 +44,16 @@ public class TimelineMetricAppAggregator {
   private static final Log LOG = LogFactory.getLog(TimelineMetricAppAggregator.class);
   // Lookup to check candidacy of an app
   private final List<String> appIdsToAggregate;
+  private final TimelineMetricMetadataManager metadataManager;
   private final Map<String, Set<String>> hostedAppsMap;
   Map<TimelineClusterMetric, MetricClusterAggregate> aggregateClusterMetrics;
 
   public TimelineMetricAppAggregator(TimelineMetricMetadataManager metadataManager,
                                      Configuration metricsConf) {
     appIdsToAggregate = getAppIdsForHostAggregation(metricsConf);
+    this.metadataManager = metadataManager;
     hostedAppsMap = metadataManager.getHostedAppsCache();
-    LOG.info("AppIds configured for aggregation: " + appIdsToAggregate);
+    LOG.debug("AppIds configured for aggregation: " + appIdsToAggregate);
   }
 
   /**
@@ -97,13 +98,9 @@ public class TimelineMetricAppAggregator {
       // Build the hostedapps map if not a host metric
       // Check app candidacy for host aggregation
       if (appIdsToAggregate.contains(appId)) {
-        Set<String> appIds = hostedAppsMap.get(hostname);
-        if (appIds == null) {
-          appIds = new HashSet<>();
-          hostedAppsMap.put(hostname, appIds);
-        }
-        if (!appIds.contains(appId)) {
-          appIds.add(appId);
+        // Aggregators of other metric name ranges may be adding apps of the
+        // same host concurrently
+        if (metadataManager.addHostedApp(hostname, appId)) {
           LOG.info("Adding appId to hosted apps: appId = " +
             clusterMetric.getAppId() + ", hostname = " + hostname);
         }
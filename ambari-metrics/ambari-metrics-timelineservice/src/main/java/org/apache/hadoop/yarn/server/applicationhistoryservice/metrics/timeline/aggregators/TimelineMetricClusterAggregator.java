@@ -34,7 +34,8 @@ import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.ti
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.GET_CLUSTER_AGGREGATE_TIME_SQL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.METRICS_CLUSTER_AGGREGATE_TABLE_NAME;
 
-public class TimelineMetricClusterAggregator extends AbstractTimelineAggregator {
+public class TimelineMetricClusterAggregator
+  extends AbstractPartitionedTimelineAggregator<TimelineClusterMetric, MetricHostAggregate> {
   private final TimelineMetricReadHelper readHelper = new TimelineMetricReadHelper(true);
   private final boolean isClusterPrecisionInputTable;
 
@@ -77,9 +78,13 @@ public class TimelineMetricClusterAggregator extends AbstractTimelineAggregator
   }
 
   @Override
-  protected void aggregate(ResultSet rs, long startTime, long endTime) throws IOException, SQLException {
-    Map<TimelineClusterMetric, MetricHostAggregate> hostAggregateMap = aggregateMetricsFromResultSet(rs, endTime);
+  protected Map<TimelineClusterMetric, MetricHostAggregate> aggregatePartition(ResultSet rs, long startTime, long endTime)
+      throws IOException, SQLException {
+    return aggregateMetricsFromResultSet(rs, endTime);
+  }
 
+  @Override
+  protected void saveAggregates(Map<TimelineClusterMetric, MetricHostAggregate> hostAggregateMap) throws SQLException {
     LOG.info("Saving " + hostAggregateMap.size() + " metric aggregates.");
     hBaseAccessor.saveClusterTimeAggregateRecords(hostAggregateMap, outputTableName);
   }
@@ -21,6 +21,7 @@ package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.metrics2.sink.timeline.PostProcessingUtil;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricSeries;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.PhoenixHBaseAccessor;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.availability.AggregationTaskRunner.AGGREGATOR_NAME;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.availability.TimelineMetricHAController;
@@ -37,6 +38,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.CLUSTER_AGGREGATOR_APP_IDS;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.SERVER_SIDE_TIMESIFT_ADJUSTMENT;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_CLUSTER_AGGREGATOR_INTERPOLATION_ENABLED;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.GET_METRIC_SQL;
@@ -46,11 +48,12 @@ import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.ti
  * Aggregates a metric across all hosts in the cluster. Reads metrics from
  * the precision table and saves into the aggregate.
  */
-public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggregator {
+public class TimelineMetricClusterAggregatorSecond
+  extends AbstractPartitionedTimelineAggregator<TimelineClusterMetric, MetricClusterAggregate> {
   public Long timeSliceIntervalMillis;
   private TimelineMetricReadHelper timelineMetricReadHelper = new TimelineMetricReadHelper(true);
-  // Aggregator to perform app-level aggregates for host metrics
-  private final TimelineMetricAppAggregator appAggregator;
+  // Source of hosted apps for the app-level aggregates of host metrics
+  private final TimelineMetricMetadataManager metadataManager;
   // 1 minute client side buffering adjustment
   private final Long serverTimeShiftAdjustment;
   private final boolean interpolationEnabled;
@@ -72,27 +75,36 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
       sleepIntervalMillis, checkpointCutOffMultiplier, aggregatorDisabledParam,
       tableName, outputTableName, nativeTimeRangeDelay, haController);
 
-    appAggregator = new TimelineMetricAppAggregator(metadataManager, metricsConf);
+    this.metadataManager = metadataManager;
+    LOG.info("AppIds configured for aggregation: " + metricsConf.get(CLUSTER_AGGREGATOR_APP_IDS));
     this.timeSliceIntervalMillis = timeSliceInterval;
     this.serverTimeShiftAdjustment = Long.parseLong(metricsConf.get(SERVER_SIDE_TIMESIFT_ADJUSTMENT, "90000"));
     this.interpolationEnabled = Boolean.parseBoolean(metricsConf.get(TIMELINE_METRICS_CLUSTER_AGGREGATOR_INTERPOLATION_ENABLED, "true"));
   }
 
   @Override
-  protected void aggregate(ResultSet rs, long startTime, long endTime) throws SQLException, IOException {
+  protected Map<TimelineClusterMetric, MetricClusterAggregate> aggregatePartition(ResultSet rs, long startTime, long endTime)
+      throws SQLException, IOException {
     // Account for time shift due to client side buffering by shifting the
     // timestamps with the difference between server time and series start time
     // Also, we do not want to look at the shift time period from the end as well since we can interpolate those points
     // that come earlier than the expected, during the next run.
     List<Long[]> timeSlices = getTimeSlices(startTime - serverTimeShiftAdjustment, endTime - serverTimeShiftAdjustment);
-    // Initialize app aggregates for host metrics
+    // App aggregates are keyed by metric name as well, so every metric name
+    // range gets its own app aggregator
+    TimelineMetricAppAggregator appAggregator = new TimelineMetricAppAggregator(metadataManager, metricsConf);
     appAggregator.init();
     Map<TimelineClusterMetric, MetricClusterAggregate> aggregateClusterMetrics =
-      aggregateMetricsFromResultSet(rs, timeSlices);
+      aggregateMetricsFromResultSet(rs, timeSlices, appAggregator);
+    appAggregator.cleanup();
+    return aggregateClusterMetrics;
+  }
 
+  @Override
+  protected void saveAggregates(Map<TimelineClusterMetric, MetricClusterAggregate> aggregateClusterMetrics)
+      throws SQLException {
     LOG.info("Saving " + aggregateClusterMetrics.size() + " metric aggregates.");
     hBaseAccessor.saveClusterAggregateRecords(aggregateClusterMetrics);
-    appAggregator.cleanup();
   }
 
   @Override
@@ -124,7 +136,8 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
     return timeSlices;
   }
 
-  private Map<TimelineClusterMetric, MetricClusterAggregate> aggregateMetricsFromResultSet(ResultSet rs, List<Long[]> timeSlices)
+  private Map<TimelineClusterMetric, MetricClusterAggregate> aggregateMetricsFromResultSet(ResultSet rs, List<Long[]> timeSlices,
+                                                                                         TimelineMetricAppAggregator appAggregator)
     throws SQLException, IOException {
     Map<TimelineClusterMetric, MetricClusterAggregate> aggregateClusterMetrics =
       new HashMap<TimelineClusterMetric, MetricClusterAggregate>();
@@ -140,17 +153,17 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
         // avoids issues across rows that belong to same hosts but get
         // counted as coming from different ones.
         if (metric.equalsExceptTime(nextMetric)) {
-          metric.addMetricValues(nextMetric.getMetricValues());
+          metric.getMetricSeries().merge(nextMetric.getMetricSeries());
         } else {
           // Process the current metric
-          processAggregateClusterMetrics(aggregateClusterMetrics, metric, timeSlices);
+          processAggregateClusterMetrics(aggregateClusterMetrics, metric, timeSlices, appAggregator);
           metric = nextMetric;
         }
       }
     }
     // Process last metric
     if (metric != null) {
-      processAggregateClusterMetrics(aggregateClusterMetrics, metric, timeSlices);
+      processAggregateClusterMetrics(aggregateClusterMetrics, metric, timeSlices, appAggregator);
     }
 
     // Add app level aggregates to save
@@ -164,7 +177,8 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
    * Normalize value by averaging them within the interval
    */
   private void processAggregateClusterMetrics(Map<TimelineClusterMetric, MetricClusterAggregate> aggregateClusterMetrics,
-                                              TimelineMetric metric, List<Long[]> timeSlices) {
+                                              TimelineMetric metric, List<Long[]> timeSlices,
+                                              TimelineMetricAppAggregator appAggregator) {
     // Create time slices
     Map<TimelineClusterMetric, Double> clusterMetrics = sliceFromTimelineMetric(metric, timeSlices);
 
@@ -195,7 +209,8 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
   protected Map<TimelineClusterMetric, Double> sliceFromTimelineMetric(
     TimelineMetric timelineMetric, List<Long[]> timeSlices) {
 
-    if (timelineMetric.getMetricValues().isEmpty()) {
+    TimelineMetricSeries metricSeries = timelineMetric.getMetricSeries();
+    if (metricSeries.isEmpty()) {
       return null;
     }
 
@@ -215,13 +230,9 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
     double sum = 0.0;
 
     Map<Long,Double> timeSliceValueMap = new HashMap<>();
-    for (Map.Entry<Long, Double> metric : timelineMetric.getMetricValues().entrySet()) {
-      // TODO: investigate null values - pre filter
-      if (metric.getValue() == null) {
-        continue;
-      }
-
-      Long timestamp = getSliceTimeForMetric(timeSlices, Long.parseLong(metric.getKey().toString()));
+    // Null values are not part of the series
+    for (int i = 0; i < metricSeries.size(); i++) {
+      Long timestamp = getSliceTimeForMetric(timeSlices, metricSeries.getTimestamp(i));
       if (timestamp != -1) {
         // Metric is within desired time range
         TimelineClusterMetric clusterMetric = new TimelineClusterMetric(
@@ -232,7 +243,7 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
           timelineMetric.getType());
 
         if (prevTimestamp < 0 || timestamp.equals(prevTimestamp)) {
-          Double newValue = metric.getValue();
+          double newValue = metricSeries.getValue(i);
           if (newValue > 0.0) {
             sum += newValue;
             count++;
@@ -241,7 +252,7 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
           double metricValue = (count > 0) ? (sum / count) : 0.0;
             timelineClusterMetricMap.put(prevMetric, metricValue);
           timeSliceValueMap.put(prevMetric.getTimestamp(), metricValue);
-          sum = metric.getValue();
+          sum = metricSeries.getValue(i);
           count = sum > 0.0 ? 1 : 0;
         }
 
@@ -35,7 +35,8 @@ import java.util.Map;
 
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.GET_METRIC_AGGREGATE_ONLY_SQL;
 
-public class TimelineMetricHostAggregator extends AbstractTimelineAggregator {
+public class TimelineMetricHostAggregator
+  extends AbstractPartitionedTimelineAggregator<TimelineMetric, MetricHostAggregate> {
   private static final Log LOG = LogFactory.getLog(TimelineMetricHostAggregator.class);
   TimelineMetricReadHelper readHelper = new TimelineMetricReadHelper(false);
 
@@ -56,10 +57,13 @@ public class TimelineMetricHostAggregator extends AbstractTimelineAggregator {
   }
 
   @Override
-  protected void aggregate(ResultSet rs, long startTime, long endTime) throws IOException, SQLException {
-
-    Map<TimelineMetric, MetricHostAggregate> hostAggregateMap = aggregateMetricsFromResultSet(rs, endTime);
+  protected Map<TimelineMetric, MetricHostAggregate> aggregatePartition(ResultSet rs, long startTime, long endTime)
+      throws IOException, SQLException {
+    return aggregateMetricsFromResultSet(rs, endTime);
+  }
 
+  @Override
+  protected void saveAggregates(Map<TimelineMetric, MetricHostAggregate> hostAggregateMap) throws SQLException {
     LOG.info("Saving " + hostAggregateMap.size() + " metric aggregates.");
     hBaseAccessor.saveHostAggregateRecords(hostAggregateMap, outputTableName);
   }
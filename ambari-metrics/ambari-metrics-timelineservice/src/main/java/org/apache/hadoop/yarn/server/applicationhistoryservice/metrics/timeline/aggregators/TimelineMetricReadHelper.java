@@ -26,7 +26,6 @@ import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Map;
-import java.util.TreeMap;
 
 public class TimelineMetricReadHelper {
 
@@ -41,9 +40,7 @@ public class TimelineMetricReadHelper {
   public TimelineMetric getTimelineMetricFromResultSet(ResultSet rs)
       throws SQLException, IOException {
     TimelineMetric metric = getTimelineMetricCommonsFromResultSet(rs);
-    TreeMap<Long, Double> sortedByTimeMetrics =
-      PhoenixHBaseAccessor.readMetricFromJSON(rs.getString("METRICS"));
-    metric.setMetricValues(sortedByTimeMetrics);
+    metric.setMetricSeries(PhoenixHBaseAccessor.readMetricSeries(rs));
     return metric;
   }
 
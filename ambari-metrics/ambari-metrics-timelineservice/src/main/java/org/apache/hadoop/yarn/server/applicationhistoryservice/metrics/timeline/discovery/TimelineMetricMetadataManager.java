@@ -31,6 +31,7 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -46,7 +47,7 @@ public class TimelineMetricMetadataManager {
   // Cache all metadata on retrieval
   private final Map<TimelineMetricMetadataKey, TimelineMetricMetadata> METADATA_CACHE = new ConcurrentHashMap<>();
   // Map to lookup apps on a host
-  private final Map<String, Set<String>> HOSTED_APPS_MAP = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Set<String>> HOSTED_APPS_MAP = new ConcurrentHashMap<>();
   // Sync only when needed
   AtomicBoolean SYNC_HOSTED_APPS_METADATA = new AtomicBoolean(false);
 
@@ -141,15 +142,30 @@ public class TimelineMetricMetadataManager {
    * @param appId Application Id
    */
   public void putIfModifiedHostedAppsMetadata(String hostname, String appId) {
-    Set<String> apps = HOSTED_APPS_MAP.get(hostname);
-    if (apps == null) {
-      apps = new HashSet<>();
-      HOSTED_APPS_MAP.put(hostname, apps);
+    if (addHostedApp(hostname, appId)) {
+      SYNC_HOSTED_APPS_METADATA.set(true);
     }
+  }
 
-    if (!apps.contains(appId)) {
-      apps.add(appId);
-      SYNC_HOSTED_APPS_METADATA.set(true);
+  /**
+   * Add an app to the hosted apps cache. The set of a host is replaced
+   * rather than modified, since cluster aggregators iterate over the current
+   * set, and the replacement only succeeds if no other writer replaced it
+   * in between.
+   * @return true if the app was not known to be hosted on the host yet
+   */
+  public boolean addHostedApp(String hostname, String appId) {
+    while (true) {
+      Set<String> apps = HOSTED_APPS_MAP.get(hostname);
+      if (apps != null && apps.contains(appId)) {
+        return false;
+      }
+      Set<String> newApps = apps == null ? new HashSet<String>() : new HashSet<>(apps);
+      newApps.add(appId);
+      if (apps == null ? HOSTED_APPS_MAP.putIfAbsent(hostname, newApps) == null :
+          HOSTED_APPS_MAP.replace(hostname, apps, newApps)) {
+        return true;
+      }
     }
   }
 
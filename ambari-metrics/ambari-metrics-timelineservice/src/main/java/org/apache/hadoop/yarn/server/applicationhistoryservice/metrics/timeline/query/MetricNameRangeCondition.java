@@ -0,0 +1,167 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query;
+
+import org.apache.hadoop.metrics2.sink.timeline.Precision;
+
+import java.util.List;
+
+/**
+ * Restricts a condition to the metric names in [lowerBound, upperBound).
+ * A null bound leaves that side of the range open. Used to split an
+ * aggregation scan along the row key.
+ */
+public class MetricNameRangeCondition implements Condition {
+  private final Condition adaptee;
+  private final String lowerBound;
+  private final String upperBound;
+
+  public MetricNameRangeCondition(Condition condition, String lowerBound, String upperBound) {
+    this.adaptee = condition;
+    this.lowerBound = lowerBound;
+    this.upperBound = upperBound;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return adaptee.isEmpty() && lowerBound == null && upperBound == null;
+  }
+
+  @Override
+  public List<String> getMetricNames() {
+    return adaptee.getMetricNames();
+  }
+
+  @Override
+  public boolean isPointInTime() {
+    return adaptee.isPointInTime();
+  }
+
+  @Override
+  public boolean isGrouped() {
+    return adaptee.isGrouped();
+  }
+
+  @Override
+  public void setStatement(String statement) {
+    adaptee.setStatement(statement);
+  }
+
+  @Override
+  public List<String> getHostnames() {
+    return adaptee.getHostnames();
+  }
+
+  @Override
+  public Precision getPrecision() {
+    return adaptee.getPrecision();
+  }
+
+  @Override
+  public void setPrecision(Precision precision) {
+    adaptee.setPrecision(precision);
+  }
+
+  @Override
+  public String getAppId() {
+    return adaptee.getAppId();
+  }
+
+  @Override
+  public String getInstanceId() {
+    return adaptee.getInstanceId();
+  }
+
+  /**
+   * Range predicates are appended last, so their parameters are bound after
+   * those of the wrapped condition.
+   */
+  @Override
+  public StringBuilder getConditionClause() {
+    StringBuilder sb = adaptee.getConditionClause();
+    boolean appendConjunction = sb.length() > 0;
+    appendConjunction = DefaultCondition.append(sb, appendConjunction,
+      lowerBound, " METRIC_NAME >= ?");
+    DefaultCondition.append(sb, appendConjunction, upperBound,
+      " METRIC_NAME < ?");
+    return sb;
+  }
+
+  @Override
+  public String getOrderByClause(boolean asc) {
+    return adaptee.getOrderByClause(asc);
+  }
+
+  @Override
+  public String getStatement() {
+    return adaptee.getStatement();
+  }
+
+  @Override
+  public Long getStartTime() {
+    return adaptee.getStartTime();
+  }
+
+  @Override
+  public Long getEndTime() {
+    return adaptee.getEndTime();
+  }
+
+  @Override
+  public Integer getLimit() {
+    return adaptee.getLimit();
+  }
+
+  @Override
+  public Integer getFetchSize() {
+    return adaptee.getFetchSize();
+  }
+
+  @Override
+  public void setFetchSize(Integer fetchSize) {
+    adaptee.setFetchSize(fetchSize);
+  }
+
+  @Override
+  public void addOrderByColumn(String column) {
+    adaptee.addOrderByColumn(column);
+  }
+
+  @Override
+  public void setNoLimit() {
+    adaptee.setNoLimit();
+  }
+
+  @Override
+  public boolean doUpdate() {
+    return adaptee.doUpdate();
+  }
+
+  public String getLowerBound() {
+    return lowerBound;
+  }
+
+  public String getUpperBound() {
+    return upperBound;
+  }
+
+  @Override
+  public String toString() {
+    return adaptee + ", metricNameRange=[" + lowerBound + ", " + upperBound + ")";
+  }
+}
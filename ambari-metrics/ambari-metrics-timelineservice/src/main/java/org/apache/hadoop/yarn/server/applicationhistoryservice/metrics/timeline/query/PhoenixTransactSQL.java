@@ -53,11 +53,19 @@ public class PhoenixTransactSQL {
     "METRIC_COUNT UNSIGNED_INT, " +
     "METRIC_MAX DOUBLE, " +
     "METRIC_MIN DOUBLE, " +
-    "METRICS VARCHAR CONSTRAINT pk " +
+    "METRICS VARCHAR, " +
+    "METRICS_BINARY VARBINARY CONSTRAINT pk " +
     "PRIMARY KEY (METRIC_NAME, HOSTNAME, SERVER_TIME, APP_ID, " +
     "INSTANCE_ID)) DATA_BLOCK_ENCODING='%s', IMMUTABLE_ROWS=true, " +
     "TTL=%s, COMPRESSION='%s'";
 
+  /**
+   * Precision tables created before binary encoding was introduced only
+   * have the JSON METRICS column.
+   */
+  public static final String ALTER_METRICS_TABLE_ADD_BINARY_COLUMN_SQL =
+    "ALTER TABLE METRIC_RECORD ADD IF NOT EXISTS METRICS_BINARY VARBINARY";
+
   public static final String CREATE_METRICS_AGGREGATE_TABLE_SQL =
     "CREATE TABLE IF NOT EXISTS %s " +
       "(METRIC_NAME VARCHAR, " +
@@ -137,8 +145,9 @@ public class PhoenixTransactSQL {
     "METRIC_MAX, " +
     "METRIC_MIN, " +
     "METRIC_COUNT, " +
-    "METRICS) VALUES " +
-    "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    "METRICS, " +
+    "METRICS_BINARY) VALUES " +
+    "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
   public static final String UPSERT_CLUSTER_AGGREGATE_SQL = "UPSERT INTO " +
     "%s (METRIC_NAME, APP_ID, INSTANCE_ID, SERVER_TIME, " +
@@ -185,7 +194,8 @@ public class PhoenixTransactSQL {
     "METRIC_MAX, " +
     "METRIC_MIN, " +
     "METRIC_COUNT, " +
-    "METRICS " +
+    "METRICS, " +
+    "METRICS_BINARY " +
     "FROM %s";
 
   /**
@@ -200,7 +210,8 @@ public class PhoenixTransactSQL {
     "E.SERVER_TIME AS SERVER_TIME, E.START_TIME AS START_TIME, " +
     "E.UNITS AS UNITS, E.METRIC_SUM AS METRIC_SUM, " +
     "E.METRIC_MAX AS METRIC_MAX, E.METRIC_MIN AS METRIC_MIN, " +
-    "E.METRIC_COUNT AS METRIC_COUNT, E.METRICS AS METRICS " +
+    "E.METRIC_COUNT AS METRIC_COUNT, E.METRICS AS METRICS, " +
+    "E.METRICS_BINARY AS METRICS_BINARY " +
     "FROM %s AS E " +
     "INNER JOIN " +
     "(SELECT METRIC_NAME, HOSTNAME, MAX(SERVER_TIME) AS MAX_SERVER_TIME, " +
@@ -342,6 +353,9 @@ public class PhoenixTransactSQL {
     validateRowCountLimit(condition);
 
     String stmtStr;
+    // Row key order of the queried table, which keeps the rows of a metric
+    // on a host adjacent, as needed for merging grouped metrics on the fly
+    String groupedOrderBy = null;
     if (condition.getStatement() != null) {
       stmtStr = condition.getStatement();
     } else {
@@ -370,6 +384,9 @@ public class PhoenixTransactSQL {
           metricsTable = METRICS_RECORD_TABLE_NAME;
           query = GET_METRIC_SQL;
       }
+      groupedOrderBy = METRICS_RECORD_TABLE_NAME.equals(metricsTable) ?
+        " ORDER BY METRIC_NAME, HOSTNAME, SERVER_TIME, APP_ID, INSTANCE_ID " :
+        " ORDER BY METRIC_NAME, HOSTNAME, APP_ID, INSTANCE_ID, SERVER_TIME ";
 
       stmtStr = String.format(query,
         getNaiveTimeRangeHint(condition.getStartTime(), NATIVE_TIME_RANGE_DELTA),
@@ -384,6 +401,8 @@ public class PhoenixTransactSQL {
       String orderByClause = condition.getOrderByClause(true);
       if (orderByClause != null) {
         sb.append(orderByClause);
+      } else if (condition.isGrouped() && groupedOrderBy != null) {
+        sb.append(groupedOrderBy);
       } else {
         sb.append(" ORDER BY METRIC_NAME, SERVER_TIME ");
       }
@@ -439,7 +458,16 @@ public class PhoenixTransactSQL {
         if (LOG.isDebugEnabled()) {
           LOG.debug("Setting pos: " + pos + ", value: " + condition.getEndTime());
         }
-        stmt.setLong(pos, condition.getEndTime());
+        stmt.setLong(pos++, condition.getEndTime());
+      }
+      if (condition instanceof MetricNameRangeCondition) {
+        MetricNameRangeCondition rangeCondition = (MetricNameRangeCondition) condition;
+        if (rangeCondition.getLowerBound() != null) {
+          stmt.setString(pos++, rangeCondition.getLowerBound());
+        }
+        if (rangeCondition.getUpperBound() != null) {
+          stmt.setString(pos, rangeCondition.getUpperBound());
+        }
       }
       if (condition.getFetchSize() != null) {
         stmt.setFetchSize(condition.getFetchSize());
@@ -460,12 +488,21 @@ public class PhoenixTransactSQL {
     }
   }
 
-  private static void validateRowCountLimit(Condition condition) {
+  /**
+   * Reject queries whose estimated number of rows exceeds the result set
+   * limit. Unlimited queries are streamed, not held in memory, so they are
+   * only checked if the precision was asked for explicitly, a computed
+   * precision being coarse enough for the time range.
+   */
+  public static void validateRowCountLimit(Condition condition) {
     if (condition.getMetricNames() == null
       || condition.getMetricNames().isEmpty()) {
       //aggregator can use empty metrics query
       return;
     }
+    if (condition.getLimit() == null && condition.getPrecision() == null) {
+      return;
+    }
 
     long range = condition.getEndTime() - condition.getStartTime();
     long rowsPerMetric;
@@ -619,7 +656,12 @@ public class PhoenixTransactSQL {
     StringBuilder sb = new StringBuilder(queryStmt);
     sb.append(" WHERE ");
     sb.append(condition.getConditionClause());
-    sb.append(" ORDER BY METRIC_NAME, SERVER_TIME");
+    if (condition.isGrouped()) {
+      // Row key order, keeps the rows of a metric adjacent
+      sb.append(" ORDER BY METRIC_NAME, APP_ID, INSTANCE_ID, SERVER_TIME");
+    } else {
+      sb.append(" ORDER BY METRIC_NAME, SERVER_TIME");
+    }
     if (condition.getLimit() != null) {
       sb.append(" LIMIT ").append(condition.getLimit());
     }
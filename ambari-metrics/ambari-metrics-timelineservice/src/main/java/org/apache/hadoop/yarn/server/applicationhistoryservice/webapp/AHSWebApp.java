@@ -53,6 +53,7 @@ public class AHSWebApp extends WebApp implements YarnWebParams {
     bind(ApplicationBaseProtocol.class).toInstance(historyClientService);
     bind(TimelineStore.class).toInstance(timelineStore);
     bind(TimelineMetricStore.class).toInstance(timelineMetricStore);
+    filter("/ws/*").through(GzipRequestFilter.class);
     route("/", AHSController.class);
     route(pajoin("/apps", APP_STATE), AHSController.class);
     route(pajoin("/app", APPLICATION_ID), AHSController.class, "app");
@@ -0,0 +1,160 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.yarn.server.applicationhistoryservice.webapp;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+
+import com.google.inject.Singleton;
+
+/**
+ * Decodes request bodies sent with gzip Content-Encoding, such as the
+ * metrics posted by sinks with gzip.enabled set. The web services then read
+ * the plain JSON body, without a Content-Encoding header.
+ */
+@Singleton
+public class GzipRequestFilter implements Filter {
+
+  static final String CONTENT_ENCODING = "Content-Encoding";
+  static final String GZIP = "gzip";
+
+  @Override
+  public void init(FilterConfig filterConfig) throws ServletException {
+  }
+
+  @Override
+  public void doFilter(ServletRequest request, ServletResponse response,
+                       FilterChain chain) throws IOException, ServletException {
+    if (request instanceof HttpServletRequest &&
+        GZIP.equalsIgnoreCase(trim(((HttpServletRequest) request).getHeader(CONTENT_ENCODING)))) {
+      chain.doFilter(new GzipRequestWrapper((HttpServletRequest) request), response);
+    } else {
+      chain.doFilter(request, response);
+    }
+  }
+
+  @Override
+  public void destroy() {
+  }
+
+  private static String trim(String value) {
+    return value == null ? null : value.trim();
+  }
+
+  /**
+   * Request whose body is read through gzip and which no longer reports the
+   * Content-Encoding header or the length of the compressed body.
+   */
+  private static class GzipRequestWrapper extends HttpServletRequestWrapper {
+
+    private ServletInputStream inputStream;
+    private BufferedReader reader;
+
+    GzipRequestWrapper(HttpServletRequest request) {
+      super(request);
+    }
+
+    @Override
+    public ServletInputStream getInputStream() throws IOException {
+      if (inputStream == null) {
+        final GZIPInputStream in = new GZIPInputStream(super.getInputStream());
+        inputStream = new ServletInputStream() {
+          @Override
+          public int read() throws IOException {
+            return in.read();
+          }
+
+          @Override
+          public int read(byte[] b, int off, int len) throws IOException {
+            return in.read(b, off, len);
+          }
+
+          @Override
+          public void close() throws IOException {
+            in.close();
+          }
+        };
+      }
+      return inputStream;
+    }
+
+    @Override
+    public BufferedReader getReader() throws IOException {
+      if (reader == null) {
+        String encoding = getCharacterEncoding();
+        reader = new BufferedReader(new InputStreamReader(getInputStream(),
+          encoding == null ? "UTF-8" : encoding));
+      }
+      return reader;
+    }
+
+    @Override
+    public int getContentLength() {
+      return -1;
+    }
+
+    @Override
+    public String getHeader(String name) {
+      return isHidden(name) ? null : super.getHeader(name);
+    }
+
+    @Override
+    public Enumeration getHeaders(String name) {
+      return isHidden(name) ? Collections.enumeration(Collections.emptyList()) :
+        super.getHeaders(name);
+    }
+
+    @Override
+    public Enumeration getHeaderNames() {
+      List<Object> names = new ArrayList<Object>();
+      for (Enumeration e = super.getHeaderNames(); e.hasMoreElements(); ) {
+        Object name = e.nextElement();
+        if (!isHidden((String) name)) {
+          names.add(name);
+        }
+      }
+      return Collections.enumeration(names);
+    }
+
+    @Override
+    public int getIntHeader(String name) {
+      return isHidden(name) ? -1 : super.getIntHeader(name);
+    }
+
+    private static boolean isHidden(String name) {
+      return CONTENT_ENCODING.equalsIgnoreCase(name) || "Content-Length".equalsIgnoreCase(name);
+    }
+  }
+}
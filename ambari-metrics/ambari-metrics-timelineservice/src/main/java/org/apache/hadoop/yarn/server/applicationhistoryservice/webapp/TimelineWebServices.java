@@ -33,6 +33,8 @@ import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
 import org.apache.hadoop.yarn.api.records.timeline.TimelinePutResponse;
 import org.apache.hadoop.metrics2.sink.timeline.Precision;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConsumer;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricQuery;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricStore;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.timeline.EntityIdentifier;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.timeline.GenericObjectMapper;
@@ -41,6 +43,11 @@ import org.apache.hadoop.yarn.server.applicationhistoryservice.timeline.Timeline
 import org.apache.hadoop.yarn.server.applicationhistoryservice.timeline.TimelineStore;
 import org.apache.hadoop.yarn.util.timeline.TimelineUtils;
 import org.apache.hadoop.yarn.webapp.BadRequestException;
+import org.apache.hadoop.yarn.webapp.YarnJacksonJaxbJsonProvider;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.SerializationConfig;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -55,11 +62,13 @@ import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -80,6 +89,14 @@ public class TimelineWebServices {
 
   private static final Log LOG = LogFactory.getLog(TimelineWebServices.class);
 
+  // Writes metrics the way the JSON provider does, for streamed responses
+  private static final ObjectMapper METRICS_MAPPER = new ObjectMapper();
+
+  static {
+    YarnJacksonJaxbJsonProvider.configObjectMapper(METRICS_MAPPER);
+    METRICS_MAPPER.configure(SerializationConfig.Feature.FLUSH_AFTER_WRITE_VALUE, false);
+  }
+
   private TimelineStore store;
   private TimelineMetricStore timelineMetricStore;
 
@@ -330,8 +347,8 @@ public class TimelineWebServices {
 
   /**
    * Query for a set of different metrics satisfying the filter criteria.
-   * All query params are optional. The default limit will apply if none
-   * specified.
+   * All query params are optional. No limit applies if none specified: the
+   * metrics are streamed to the client as they are read from the store.
    *
    * @param metricNames Comma separated list of metrics to retrieve.
    * @param appId Application Id for the requested metrics.
@@ -346,7 +363,7 @@ public class TimelineWebServices {
   @GET
   @Path("/metrics")
   @Produces({ MediaType.APPLICATION_JSON })
-  public TimelineMetrics getTimelineMetrics(
+  public StreamingOutput getTimelineMetrics(
     @Context HttpServletRequest req,
     @Context HttpServletResponse res,
     @QueryParam("metricNames") String metricNames,
@@ -369,11 +386,11 @@ public class TimelineWebServices {
           "precision: " + precision);
       }
 
-      return timelineMetricStore.getTimelineMetrics(
+      return new MetricsStreamingOutput(timelineMetricStore.prepareTimelineMetrics(
         parseListStr(metricNames, ","), parseListStr(hostname, ","), appId, instanceId,
         parseLongStr(startTime), parseLongStr(endTime),
         Precision.getPrecision(precision), parseIntStr(limit),
-        parseBoolean(grouped));
+        parseBoolean(grouped)));
 
     } catch (NumberFormatException ne) {
       throw new BadRequestException("startTime and limit should be numeric " +
@@ -391,6 +408,42 @@ public class TimelineWebServices {
     }
   }
 
+  /**
+   * Writes {@link TimelineMetrics} JSON one metric at a time, while the
+   * metrics are read from the store. The query is validated before it is
+   * handed over, so that invalid requests map to a status code; a failure
+   * while streaming aborts the response.
+   */
+  private static class MetricsStreamingOutput implements StreamingOutput {
+    private final TimelineMetricQuery query;
+
+    MetricsStreamingOutput(TimelineMetricQuery query) {
+      this.query = query;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+      final JsonGenerator generator = METRICS_MAPPER.getJsonFactory()
+        .createJsonGenerator(output, JsonEncoding.UTF8);
+      try {
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("metrics");
+        query.getMetrics(new TimelineMetricConsumer() {
+          @Override
+          public void accept(TimelineMetric metric) throws IOException {
+            METRICS_MAPPER.writeValue(generator, metric);
+          }
+        });
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.flush();
+
+      } catch (SQLException e) {
+        throw new IOException("Unable to read metrics", e);
+      }
+    }
+  }
+
   @GET
   @Path("/metrics/metadata")
   @Produces({ MediaType.APPLICATION_JSON })
@@ -18,6 +18,7 @@
 package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
 
 import junit.framework.Assert;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.Function;
 import org.junit.Test;
 
@@ -86,4 +87,21 @@ public class HBaseTimelineMetricStoreTest {
           + ", value = " + rateEntry.getValue(), 0.0, rateEntry.getValue());
     }
   }
+
+  @Test
+  public void testRateCalculationOnMetricHeldAsSeries() throws Exception {
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName(BYTES_IN_METRIC + "._rate");
+    metric.addMetricValue(1454016368000L, 100.0);
+    metric.addMetricValue(1454016428000L, 160.0);
+    metric.addMetricValue(1454016488000L, 280.0);
+    metric.getMetricSeries();
+
+    HBaseTimelineMetricStore.postProcessMetric(metric);
+
+    TreeMap<Long, Double> rates = metric.getMetricValues();
+    Assert.assertEquals(0.0, rates.get(1454016368000L));
+    Assert.assertEquals(1.0, rates.get(1454016428000L));
+    Assert.assertEquals(2.0, rates.get(1454016488000L));
+  }
 }
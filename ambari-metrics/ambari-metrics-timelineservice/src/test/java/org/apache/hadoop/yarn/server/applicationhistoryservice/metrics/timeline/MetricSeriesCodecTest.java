@@ -0,0 +1,89 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics
+  .timeline;
+
+import org.apache.hadoop.yarn.util.timeline.TimelineUtils;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MetricSeriesCodecTest {
+
+  @Test
+  public void testRegularSeriesRoundTrip() throws Exception {
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+    long startTime = 1431500000000L;
+    for (int i = 0; i < 60; i++) {
+      values.put(startTime + i * 10000L, 42.0 + (i % 3));
+    }
+
+    byte[] encoded = MetricSeriesCodec.encode(values);
+
+    assertEquals(values, MetricSeriesCodec.decode(encoded).toTreeMap());
+    String json = TimelineUtils.dumpTimelineRecordtoJSON(values);
+    assertTrue("Binary encoding should be smaller than JSON",
+      encoded.length * 10 < json.length());
+  }
+
+  @Test
+  public void testIrregularSeriesRoundTrip() throws Exception {
+    Random random = new Random(1);
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+    long timestamp = 1431500000000L;
+    for (int i = 0; i < 500; i++) {
+      timestamp += 1 + random.nextInt(1000000);
+      values.put(timestamp, random.nextGaussian() * 1e6);
+    }
+    values.put(Long.MAX_VALUE, Double.NaN);
+    values.put(-1L, Double.NEGATIVE_INFINITY);
+
+    assertEquals(values, MetricSeriesCodec.decode(
+      MetricSeriesCodec.encode(values)).toTreeMap());
+  }
+
+  @Test
+  public void testEmptySeries() throws Exception {
+    assertTrue(MetricSeriesCodec.decode(
+      MetricSeriesCodec.encode(new TreeMap<Long, Double>())).isEmpty());
+    assertTrue(MetricSeriesCodec.decode(MetricSeriesCodec.encode(null)).isEmpty());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullValueNotEncoded() {
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+    values.put(1L, null);
+    MetricSeriesCodec.encode(values);
+  }
+
+  @Test(expected = IOException.class)
+  public void testTruncatedSeries() throws Exception {
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+    values.put(1L, 1.0);
+    values.put(2L, 2.0);
+    byte[] encoded = MetricSeriesCodec.encode(values);
+    byte[] truncated = new byte[encoded.length - 10];
+    System.arraycopy(encoded, 0, truncated, 0, truncated.length);
+    MetricSeriesCodec.decode(truncated);
+  }
+}
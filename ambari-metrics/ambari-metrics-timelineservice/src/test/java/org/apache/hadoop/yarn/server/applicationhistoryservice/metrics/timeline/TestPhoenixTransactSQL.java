@@ -18,8 +18,10 @@
 package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
 
 import org.apache.hadoop.metrics2.sink.timeline.Precision;
+import org.apache.hadoop.metrics2.sink.timeline.PrecisionLimitExceededException;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.Condition;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.DefaultCondition;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.MetricNameRangeCondition;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.SplitByMetricNamesCondition;
 import org.easymock.Capture;
@@ -70,6 +72,32 @@ public class TestPhoenixTransactSQL {
     Assert.assertEquals(expectedClause, preparedClause);
   }
 
+  @Test
+  public void testMetricNameRangeCondition() throws Exception {
+    Condition c = new DefaultCondition(null, null, null, null,
+      1407959718L, 1407959918L, null, null, true);
+    c.setStatement("SELECT METRIC_NAME FROM METRIC_RECORD");
+    MetricNameRangeCondition condition = new MetricNameRangeCondition(c, "cpu", "mem");
+
+    String preparedClause = condition.getConditionClause().toString();
+    String expectedClause = " SERVER_TIME >= ? AND SERVER_TIME < ? AND " +
+      "METRIC_NAME >= ? AND METRIC_NAME < ?";
+    Assert.assertEquals(expectedClause, preparedClause);
+
+    // Open ended range
+    condition = new MetricNameRangeCondition(c, "mem", null);
+    Connection connection = createNiceMock(Connection.class);
+    PreparedStatement preparedStatement = createNiceMock(PreparedStatement.class);
+    expect(connection.prepareStatement(EasyMock.anyString())).andReturn(preparedStatement);
+    preparedStatement.setLong(1, 1407959718000L);
+    preparedStatement.setLong(2, 1407959918000L);
+    preparedStatement.setString(3, "mem");
+    replay(connection, preparedStatement);
+
+    PhoenixTransactSQL.prepareGetMetricsSqlStmt(connection, condition);
+    verify(connection, preparedStatement);
+  }
+
   @Test
   public void testLikeConditionClause() throws Exception {
     Condition condition = new DefaultCondition(
@@ -264,6 +292,45 @@ public class TestPhoenixTransactSQL {
     verify(connection, preparedStatement);
   }
 
+  @Test
+  public void testPrepareGetMetricsGroupedInRowKeyOrder() throws SQLException {
+    Condition condition = new DefaultCondition(
+      Arrays.asList("cpu_user", "mem_free"), Collections.singletonList("h1"),
+      "a1", "i1", 1407959718L, 1407959918L, Precision.SECONDS, null, true);
+    condition.setNoLimit();
+    Connection connection = createNiceMock(Connection.class);
+    PreparedStatement preparedStatement = createNiceMock(PreparedStatement.class);
+    Capture<String> stmtCapture = new Capture<String>();
+    expect(connection.prepareStatement(EasyMock.and(EasyMock.anyString(), EasyMock.capture(stmtCapture))))
+        .andReturn(preparedStatement);
+
+    replay(connection, preparedStatement);
+    PhoenixTransactSQL.prepareGetMetricsSqlStmt(connection, condition);
+    String stmt = stmtCapture.getValue();
+    Assert.assertTrue(stmt.contains("FROM METRIC_RECORD "));
+    Assert.assertTrue(stmt.contains("ORDER BY METRIC_NAME, HOSTNAME, SERVER_TIME, APP_ID, INSTANCE_ID"));
+    Assert.assertFalse(stmt.contains("LIMIT"));
+    verify(connection, preparedStatement);
+  }
+
+  @Test(expected = PrecisionLimitExceededException.class)
+  public void testUnlimitedQueryWithExplicitPrecisionIsValidated() {
+    Condition condition = new DefaultCondition(
+      Arrays.asList("cpu_user", "mem_free"), Collections.singletonList("h1"),
+      "a1", "i1", 0L, 365 * 86400000L, Precision.SECONDS, null, false);
+    condition.setNoLimit();
+    PhoenixTransactSQL.validateRowCountLimit(condition);
+  }
+
+  @Test
+  public void testUnlimitedQueryWithComputedPrecisionIsNotCapped() {
+    Condition condition = new DefaultCondition(
+      Arrays.asList("cpu_user", "mem_free"), Collections.singletonList("h1"),
+      "a1", "i1", 0L, 365 * 86400000L, null, null, false);
+    condition.setNoLimit();
+    PhoenixTransactSQL.validateRowCountLimit(condition);
+  }
+
   @Test
   public void testPrepareGetMetricsNoPrecision() throws SQLException {
     Long endTime = 1407959918L;
@@ -70,6 +70,24 @@ public class TestTimelineMetricStore implements TimelineMetricStore {
     return timelineMetrics;
   }
 
+  @Override
+  public TimelineMetricQuery prepareTimelineMetrics(final List<String> metricNames,
+      final List<String> hostnames, final String applicationId,
+      final String instanceId, final Long startTime, final Long endTime,
+      final Precision precision, final Integer limit,
+      final boolean groupedByHost) throws SQLException, IOException {
+    return new TimelineMetricQuery() {
+      @Override
+      public void getMetrics(TimelineMetricConsumer consumer) throws SQLException, IOException {
+        for (TimelineMetric metric : getTimelineMetrics(metricNames, hostnames,
+            applicationId, instanceId, startTime, endTime, precision, limit,
+            groupedByHost).getMetrics()) {
+          consumer.accept(metric);
+        }
+      }
+    };
+  }
+
   @Override
   public TimelineMetric getTimelineMetric(String metricName, List<String> hostname,
       String applicationId, String instanceId, Long startTime, Long endTime,
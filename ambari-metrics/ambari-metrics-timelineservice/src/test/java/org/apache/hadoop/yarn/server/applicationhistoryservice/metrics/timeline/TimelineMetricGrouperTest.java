@@ -0,0 +1,119 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.hadoop.metrics2.sink.timeline.SingleValuedTimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+
+public class TimelineMetricGrouperTest {
+
+  @Test
+  public void testGroupedRowsAreMergedPerGroup() throws Exception {
+    CollectingConsumer consumer = new CollectingConsumer();
+    TimelineMetricGrouper grouper = new TimelineMetricGrouper(consumer, true);
+
+    grouper.startRow("cpu_user:h1");
+    grouper.add(singleValued("cpu_user._avg", "h1", 100L, 1.0));
+    grouper.add(singleValued("cpu_user._max", "h1", 100L, 2.0));
+    grouper.startRow("cpu_user:h1");
+    grouper.add(singleValued("cpu_user._avg", "h1", 200L, 3.0));
+    grouper.add(singleValued("cpu_user._max", "h1", 200L, 4.0));
+    assertEquals(0, consumer.metrics.size());
+
+    grouper.startRow("cpu_user:h2");
+    assertEquals(2, consumer.metrics.size());
+    grouper.add(singleValued("cpu_user._avg", "h2", 100L, 5.0));
+    grouper.flush();
+
+    assertEquals(3, consumer.metrics.size());
+    TimelineMetric avg = consumer.metrics.get(0);
+    assertEquals("cpu_user._avg", avg.getMetricName());
+    assertEquals(100L, avg.getStartTime());
+    assertEquals(2, avg.getMetricValues().size());
+    assertEquals(3.0, avg.getMetricValues().get(200L), 0.0);
+    assertEquals(4.0, consumer.metrics.get(1).getMetricValues().get(200L), 0.0);
+    assertEquals("h2", consumer.metrics.get(2).getHostName());
+  }
+
+  @Test
+  public void testGroupedSeriesAreMerged() throws Exception {
+    CollectingConsumer consumer = new CollectingConsumer();
+    TimelineMetricGrouper grouper = new TimelineMetricGrouper(consumer, true);
+
+    grouper.startRow("mem_free:h1");
+    grouper.add(metric("mem_free", 100L, 1.0, 110L, 2.0));
+    grouper.add(metric("mem_free", 200L, 3.0, 210L, 4.0));
+    grouper.flush();
+
+    assertEquals(1, consumer.metrics.size());
+    assertEquals(4, consumer.metrics.get(0).getMetricValues().size());
+    assertEquals(100L, consumer.metrics.get(0).getStartTime());
+  }
+
+  @Test
+  public void testUngroupedRowsArePassedOnRightAway() throws Exception {
+    CollectingConsumer consumer = new CollectingConsumer();
+    TimelineMetricGrouper grouper = new TimelineMetricGrouper(consumer, false);
+
+    grouper.startRow("cpu_user:h1");
+    grouper.add(singleValued("cpu_user", "h1", 100L, 1.0));
+    grouper.add(singleValued("cpu_user", "h1", 200L, 2.0));
+    assertEquals(2, consumer.metrics.size());
+    grouper.flush();
+    assertEquals(2, consumer.metrics.size());
+  }
+
+  private static SingleValuedTimelineMetric singleValued(String name, String host,
+                                                         long time, double value) {
+    SingleValuedTimelineMetric metric = new SingleValuedTimelineMetric(name,
+      "app", null, host, time, time, null);
+    metric.setSingleTimeseriesValue(time, value);
+    return metric;
+  }
+
+  private static TimelineMetric metric(String name, long time1, double value1,
+                                       long time2, double value2) {
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName(name);
+    metric.setAppId("app");
+    metric.setHostName("h1");
+    metric.setStartTime(time1);
+    metric.setTimestamp(time1);
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+    values.put(time1, value1);
+    values.put(time2, value2);
+    metric.setMetricValues(values);
+    return metric;
+  }
+
+  private static class CollectingConsumer implements TimelineMetricConsumer {
+    final List<TimelineMetric> metrics = new ArrayList<TimelineMetric>();
+
+    @Override
+    public void accept(TimelineMetric metric) {
+      metrics.add(metric);
+    }
+  }
+}
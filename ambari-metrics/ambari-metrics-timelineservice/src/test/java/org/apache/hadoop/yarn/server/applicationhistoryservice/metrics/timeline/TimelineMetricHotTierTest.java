@@ -0,0 +1,164 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.metrics2.sink.timeline.Precision;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators.Function;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.Condition;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.DefaultCondition;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.HOT_TIER_MAX_SERIES;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.HOT_TIER_WINDOW;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TimelineMetricHotTierTest {
+
+  @Test
+  public void testRecentPointsAreServed() throws Exception {
+    TimelineMetricHotTier hotTier = new TimelineMetricHotTier(createConf(100));
+    long now = System.currentTimeMillis();
+    // Enough points to compress some of them
+    int points = TimelineMetricHotTier.CHUNK_SIZE * 2 + 10;
+    for (int i = 0; i < points; i++) {
+      hotTier.put(metrics(metric("cpu_user", "h1", now + i * 10, i)));
+    }
+    hotTier.put(metrics(metric("cpu_user", "h2", now, 1.0)));
+    hotTier.put(metrics(metric("mem_free", "h1", now, 1.0)));
+
+    Condition condition = condition(Collections.singletonList("h1"), now, now + points * 10);
+    assertTrue(hotTier.covers(condition, functions(Function.DEFAULT_VALUE_FUNCTION)));
+    List<TimelineMetric> result = read(hotTier, condition);
+
+    assertEquals(1, result.size());
+    TimelineMetric metric = result.get(0);
+    assertEquals("h1", metric.getHostName());
+    assertEquals(now, metric.getStartTime());
+    assertEquals(points, metric.getMetricValuesCount());
+    assertEquals(points - 1, metric.getMetricValues().get(now + (points - 1) * 10), 0.0);
+
+    condition = condition(Arrays.asList("h1", "h2"), now + 10, now + 20);
+    result = read(hotTier, condition);
+    assertEquals(1, result.size());
+    assertEquals(2, result.get(0).getMetricValuesCount());
+    assertEquals(1, hotTier.getHits());
+  }
+
+  @Test
+  public void testOnlyCoveredQueriesAreServed() throws Exception {
+    TimelineMetricHotTier hotTier = new TimelineMetricHotTier(createConf(100));
+    long now = System.currentTimeMillis();
+
+    // Before the tier started
+    assertFalse(hotTier.covers(condition(Collections.singletonList("h1"),
+      now - 60000, now), functions(Function.DEFAULT_VALUE_FUNCTION)));
+    assertEquals(1, hotTier.getMisses());
+
+    // Not a host query, not precision data, or an aggregate function
+    assertFalse(hotTier.covers(condition(null, now, now + 1000), functions(Function.DEFAULT_VALUE_FUNCTION)));
+    assertFalse(hotTier.covers(new DefaultCondition(Collections.singletonList("cpu_user"),
+      Collections.singletonList("h1"), null, null, now, now + 1000,
+      Precision.MINUTES, null, true), functions(Function.DEFAULT_VALUE_FUNCTION)));
+    assertFalse(hotTier.covers(condition(Collections.singletonList("h1"), now, now + 1000),
+      functions(new Function(Function.ReadFunction.MAX, null))));
+    assertEquals(1, hotTier.getMisses());
+    assertEquals(0, hotTier.getHits());
+  }
+
+  @Test
+  public void testEviction() throws Exception {
+    TimelineMetricHotTier hotTier = new TimelineMetricHotTier(createConf(2));
+    long now = System.currentTimeMillis();
+    hotTier.put(metrics(metric("cpu_user", "h1", now, 1.0)));
+    hotTier.put(metrics(metric("cpu_user", "h2", now, 1.0)));
+    hotTier.put(metrics(metric("cpu_user", "h3", now + 1000, 1.0)));
+
+    // Over the series limit, data is incomplete until now
+    hotTier.evict(now + 2000);
+    assertEquals(now + 2000, hotTier.getCompleteSince());
+    Condition condition = condition(Arrays.asList("h1", "h2", "h3"), now, now + 2000);
+    assertFalse(hotTier.covers(condition, functions(Function.DEFAULT_VALUE_FUNCTION)));
+
+    // Past the window everything goes
+    hotTier.evict(now + 3700000);
+    assertTrue(read(hotTier, condition).isEmpty());
+
+    // New points start a new series
+    hotTier.put(metrics(metric("cpu_user", "h1", System.currentTimeMillis(), 2.0)));
+    assertEquals(1, read(hotTier, condition(Collections.singletonList("h1"),
+      now, System.currentTimeMillis())).size());
+  }
+
+  private static Configuration createConf(int maxSeries) {
+    Configuration metricsConf = new Configuration(false);
+    metricsConf.setLong(HOT_TIER_WINDOW, 3600);
+    metricsConf.setInt(HOT_TIER_MAX_SERIES, maxSeries);
+    return metricsConf;
+  }
+
+  private static Condition condition(List<String> hostnames, long startTime, long endTime) {
+    return new DefaultCondition(Collections.singletonList("cpu_user"), hostnames,
+      null, null, startTime, endTime, null, null, true);
+  }
+
+  private static Map<String, List<Function>> functions(Function function) {
+    return Collections.singletonMap("cpu_user", Collections.singletonList(function));
+  }
+
+  private static List<TimelineMetric> read(TimelineMetricHotTier hotTier, Condition condition)
+      throws Exception {
+    final List<TimelineMetric> result = new ArrayList<TimelineMetric>();
+    hotTier.getMetricRecords(condition, new TimelineMetricConsumer() {
+      @Override
+      public void accept(TimelineMetric metric) {
+        result.add(metric);
+      }
+    });
+    return result;
+  }
+
+  private static TimelineMetrics metrics(TimelineMetric metric) {
+    TimelineMetrics metrics = new TimelineMetrics();
+    metrics.getMetrics().add(metric);
+    return metrics;
+  }
+
+  private static TimelineMetric metric(String name, String host, long time, double value) {
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName(name);
+    metric.setHostName(host);
+    metric.setAppId("HOST");
+    metric.setStartTime(time);
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+    values.put(time, value);
+    metric.setMetricValues(values);
+    return metric;
+  }
+}
@@ -0,0 +1,185 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.discovery.TimelineMetricMetadataManager;
+import org.easymock.IAnswer;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.getCurrentArguments;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TimelineMetricWriteBehindBufferTest {
+
+  @Test
+  public void testRequestsAreCoalescedIntoBatches() throws Exception {
+    final List<Integer> batchSizes = new CopyOnWriteArrayList<Integer>();
+    PhoenixHBaseAccessor hBaseAccessor = createNiceMock(PhoenixHBaseAccessor.class);
+    hBaseAccessor.insertMetricRecordsWithMetadata(
+      anyObject(TimelineMetricMetadataManager.class), anyObject(TimelineMetrics.class));
+    expectLastCall().andAnswer(new IAnswer<Object>() {
+      @Override
+      public Object answer() throws Throwable {
+        batchSizes.add(((TimelineMetrics) getCurrentArguments()[1]).getMetrics().size());
+        return null;
+      }
+    }).anyTimes();
+    replay(hBaseAccessor);
+
+    Configuration metricsConf = new Configuration(false);
+    metricsConf.setInt(TimelineMetricConfiguration.WRITE_BEHIND_WRITER_THREADS, 1);
+    TimelineMetricWriteBehindBuffer buffer =
+      new TimelineMetricWriteBehindBuffer(hBaseAccessor, null, metricsConf, 500);
+    buffer.start();
+
+    assertTrue(buffer.put(createMetrics("m1")));
+    assertTrue(buffer.put(createMetrics("m2")));
+    assertTrue(buffer.put(createMetrics("m3")));
+    buffer.stop(10, TimeUnit.SECONDS);
+
+    assertEquals(Collections.singletonList(3), batchSizes);
+    assertEquals(0, buffer.getQueueDepth());
+  }
+
+  @Test
+  public void testDropWhenQueueIsFull() throws Exception {
+    final CountDownLatch writing = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    PhoenixHBaseAccessor hBaseAccessor = createNiceMock(PhoenixHBaseAccessor.class);
+    hBaseAccessor.insertMetricRecordsWithMetadata(
+      anyObject(TimelineMetricMetadataManager.class), anyObject(TimelineMetrics.class));
+    expectLastCall().andAnswer(new IAnswer<Object>() {
+      @Override
+      public Object answer() throws Throwable {
+        writing.countDown();
+        release.await();
+        return null;
+      }
+    }).anyTimes();
+    replay(hBaseAccessor);
+
+    Configuration metricsConf = new Configuration(false);
+    metricsConf.setInt(TimelineMetricConfiguration.WRITE_BEHIND_WRITER_THREADS, 1);
+    metricsConf.setInt(TimelineMetricConfiguration.WRITE_BEHIND_QUEUE_SIZE, 1);
+    metricsConf.setInt(TimelineMetricConfiguration.WRITE_BEHIND_BATCH_SIZE, 1);
+    metricsConf.set(TimelineMetricConfiguration.WRITE_BEHIND_QUEUE_FULL_POLICY, "drop");
+    TimelineMetricWriteBehindBuffer buffer =
+      new TimelineMetricWriteBehindBuffer(hBaseAccessor, null, metricsConf, 500);
+    buffer.start();
+
+    // First request is taken by the writer, which then blocks
+    assertTrue(buffer.put(createMetrics("m1")));
+    assertTrue(writing.await(10, TimeUnit.SECONDS));
+    // Second one fills the queue, third one is dropped
+    assertTrue(buffer.put(createMetrics("m2")));
+    assertFalse(buffer.put(createMetrics("m3")));
+    assertEquals(1, buffer.getDroppedMetrics());
+
+    release.countDown();
+    buffer.stop(10, TimeUnit.SECONDS);
+    assertEquals(0, buffer.getQueueDepth());
+  }
+
+  @Test
+  public void testLargeRequestsAreSplitIntoBatches() throws Exception {
+    final List<Integer> batchSizes = new CopyOnWriteArrayList<Integer>();
+    PhoenixHBaseAccessor hBaseAccessor = createNiceMock(PhoenixHBaseAccessor.class);
+    hBaseAccessor.insertMetricRecordsWithMetadata(
+      anyObject(TimelineMetricMetadataManager.class), anyObject(TimelineMetrics.class));
+    expectLastCall().andAnswer(new IAnswer<Object>() {
+      @Override
+      public Object answer() throws Throwable {
+        batchSizes.add(((TimelineMetrics) getCurrentArguments()[1]).getMetrics().size());
+        return null;
+      }
+    }).anyTimes();
+    replay(hBaseAccessor);
+
+    Configuration metricsConf = new Configuration(false);
+    metricsConf.setInt(TimelineMetricConfiguration.WRITE_BEHIND_WRITER_THREADS, 1);
+    metricsConf.setInt(TimelineMetricConfiguration.WRITE_BEHIND_BATCH_SIZE, 2);
+    TimelineMetricWriteBehindBuffer buffer =
+      new TimelineMetricWriteBehindBuffer(hBaseAccessor, null, metricsConf, 500);
+    buffer.start();
+
+    assertTrue(buffer.put(createMetrics("m1", "m2", "m3", "m4", "m5")));
+    assertTrue(buffer.put(createMetrics("m6")));
+    buffer.stop(10, TimeUnit.SECONDS);
+
+    assertEquals(Arrays.asList(2, 2, 2), batchSizes);
+  }
+
+  @Test
+  public void testFailedBatchesAreCounted() throws Exception {
+    PhoenixHBaseAccessor hBaseAccessor = createNiceMock(PhoenixHBaseAccessor.class);
+    hBaseAccessor.insertMetricRecordsWithMetadata(
+      anyObject(TimelineMetricMetadataManager.class), anyObject(TimelineMetrics.class));
+    expectLastCall().andThrow(new IOException("store unavailable")).anyTimes();
+    replay(hBaseAccessor);
+
+    Configuration metricsConf = new Configuration(false);
+    metricsConf.setInt(TimelineMetricConfiguration.WRITE_BEHIND_WRITER_THREADS, 1);
+    TimelineMetricWriteBehindBuffer buffer =
+      new TimelineMetricWriteBehindBuffer(hBaseAccessor, null, metricsConf, 100);
+    buffer.start();
+
+    // Accepted although the write fails later on
+    assertTrue(buffer.put(createMetrics("m1", "m2")));
+    buffer.stop(10, TimeUnit.SECONDS);
+
+    assertEquals(2, buffer.getFailedMetrics());
+  }
+
+  private static TimelineMetrics createMetrics(String... metricNames) {
+    List<TimelineMetric> metricList = new ArrayList<TimelineMetric>();
+    for (String metricName : metricNames) {
+      metricList.add(createMetric(metricName));
+    }
+    TimelineMetrics metrics = new TimelineMetrics();
+    metrics.setMetrics(metricList);
+    return metrics;
+  }
+
+  private static TimelineMetric createMetric(String metricName) {
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName(metricName);
+    metric.setHostName("h1");
+    metric.setAppId("datanode");
+    metric.setStartTime(1000L);
+    metric.getMetricValues().put(1000L, 1.0);
+    return metric;
+  }
+}
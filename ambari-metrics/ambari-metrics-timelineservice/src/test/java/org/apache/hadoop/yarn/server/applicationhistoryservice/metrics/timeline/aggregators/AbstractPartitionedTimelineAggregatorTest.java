@@ -0,0 +1,234 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.aggregators;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.PhoenixHBaseAccessor;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.Condition;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.DefaultCondition;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.EmptyCondition;
+import org.easymock.Capture;
+import org.easymock.CaptureType;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.AGGREGATORS_PARALLELISM;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.PRECISION_TABLE_SPLIT_POINTS;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.availability.AggregationTaskRunner.AGGREGATOR_NAME.METRIC_RECORD_MINUTE;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.query.PhoenixTransactSQL.METRICS_RECORD_TABLE_NAME;
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AbstractPartitionedTimelineAggregatorTest {
+
+  @After
+  public void shutdownPool() throws Exception {
+    AbstractPartitionedTimelineAggregator.shutdownPool(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testSplitPoints() {
+    assertEquals(Collections.emptyList(), AbstractPartitionedTimelineAggregator.getSplitPoints(" "));
+    assertEquals(Arrays.asList("cpu_user", "jvm.gc", "mem_free"),
+      AbstractPartitionedTimelineAggregator.getSplitPoints("mem_free, cpu_user,,jvm.gc,cpu_user"));
+  }
+
+  @Test
+  public void testRangesAreAggregatedInParallelAndSavedOnce() throws Exception {
+    Capture<String> statements = new Capture<String>(CaptureType.ALL);
+    TestAggregator agg = new TestAggregator(mockAccessor(statements), 3, -1);
+
+    assertTrue(agg.doWork(1000L, 2000L));
+
+    // Two split points make three ranges, each scanned separately
+    assertEquals(3, statements.getValues().size());
+    int bounded = 0;
+    for (String statement : statements.getValues()) {
+      assertTrue(statement.contains("SERVER_TIME < ?"));
+      if (statement.contains("METRIC_NAME >= ? AND METRIC_NAME < ?")) {
+        bounded++;
+      }
+    }
+    assertEquals(1, bounded);
+    assertEquals(1, agg.saves.get());
+    assertEquals(3, agg.saved.size());
+  }
+
+  @Test
+  public void testFailedRangeFailsCycle() throws Exception {
+    TestAggregator agg = new TestAggregator(mockAccessor(new Capture<String>(CaptureType.ALL)), 3, 1);
+
+    assertFalse(agg.doWork(1000L, 2000L));
+    assertEquals(0, agg.saves.get());
+    assertNull(agg.saved);
+  }
+
+  @Test
+  public void testSerialWithoutParallelism() throws Exception {
+    Capture<String> statements = new Capture<String>(CaptureType.ALL);
+    TestAggregator agg = new TestAggregator(mockAccessor(statements), 1, -1);
+
+    assertTrue(agg.doWork(1000L, 2000L));
+    assertEquals(1, statements.getValues().size());
+    assertFalse(statements.getValue().contains("METRIC_NAME >="));
+    assertEquals(1, agg.saved.size());
+  }
+
+  @Test
+  public void testAggregatorsSharePool() throws Exception {
+    TestAggregator first = new TestAggregator(mockAccessor(new Capture<String>(CaptureType.ALL)), 3, -1);
+    TestAggregator second = new TestAggregator(mockAccessor(new Capture<String>(CaptureType.ALL)), 3, -1);
+
+    assertTrue(first.doWork(1000L, 2000L));
+    assertTrue(second.doWork(1000L, 2000L));
+    String pool = getPoolName(first.saved.values().iterator().next());
+    for (String thread : first.saved.values()) {
+      assertEquals(pool, getPoolName(thread));
+    }
+    for (String thread : second.saved.values()) {
+      assertEquals(pool, getPoolName(thread));
+    }
+
+    // A new pool is started for cycles after a shutdown
+    AbstractPartitionedTimelineAggregator.shutdownPool(10, TimeUnit.SECONDS);
+    first.saved = null;
+    assertTrue(first.doWork(1000L, 2000L));
+    assertFalse(pool.equals(getPoolName(first.saved.values().iterator().next())));
+  }
+
+  @Test
+  public void testUpdateRunsAsSingleStatement() throws Exception {
+    Capture<String> statements = new Capture<String>(CaptureType.ALL);
+    PhoenixHBaseAccessor hBaseAccessor = createNiceMock(PhoenixHBaseAccessor.class);
+    Connection connection = createNiceMock(Connection.class);
+    PreparedStatement preparedStatement = createNiceMock(PreparedStatement.class);
+    expect(hBaseAccessor.getConnection()).andReturn(connection).anyTimes();
+    expect(connection.prepareStatement(capture(statements))).andReturn(preparedStatement).anyTimes();
+    expect(preparedStatement.executeUpdate()).andReturn(10).once();
+    connection.commit();
+    expectLastCall().once();
+    replay(hBaseAccessor, connection, preparedStatement);
+
+    TestAggregator agg = new TestAggregator(hBaseAccessor, 3, -1);
+    agg.doUpdate = true;
+
+    assertTrue(agg.doWork(1000L, 2000L));
+    assertEquals(1, statements.getValues().size());
+    assertFalse(statements.getValue().contains("METRIC_NAME >="));
+    assertEquals(0, agg.partitions.get());
+  }
+
+  private static String getPoolName(String threadName) {
+    return threadName.substring(0, threadName.indexOf("-worker-"));
+  }
+
+  private static PhoenixHBaseAccessor mockAccessor(Capture<String> statements) throws SQLException {
+    PhoenixHBaseAccessor hBaseAccessor = createNiceMock(PhoenixHBaseAccessor.class);
+    Connection connection = createNiceMock(Connection.class);
+    PreparedStatement preparedStatement = createNiceMock(PreparedStatement.class);
+    ResultSet rs = createNiceMock(ResultSet.class);
+    expect(hBaseAccessor.getConnection()).andReturn(connection).anyTimes();
+    expect(connection.prepareStatement(capture(statements))).andReturn(preparedStatement).anyTimes();
+    expect(preparedStatement.executeQuery()).andReturn(rs).anyTimes();
+    replay(hBaseAccessor, connection, preparedStatement, rs);
+    return hBaseAccessor;
+  }
+
+  private static class TestAggregator extends AbstractPartitionedTimelineAggregator<Integer, String> {
+    private final AtomicInteger partitions = new AtomicInteger();
+    private final int failingPartition;
+    final AtomicInteger saves = new AtomicInteger();
+    Map<Integer, String> saved;
+    boolean doUpdate = false;
+
+    TestAggregator(PhoenixHBaseAccessor hBaseAccessor, int parallelism, int failingPartition) {
+      super(METRIC_RECORD_MINUTE, hBaseAccessor, createConf(parallelism), null, 120000L, 2,
+        "false", METRICS_RECORD_TABLE_NAME, "METRIC_RECORD_MINUTE", 0L, null);
+      this.failingPartition = failingPartition;
+    }
+
+    private static Configuration createConf(int parallelism) {
+      Configuration metricsConf = new Configuration(false);
+      metricsConf.setInt(AGGREGATORS_PARALLELISM, parallelism);
+      metricsConf.set(PRECISION_TABLE_SPLIT_POINTS, "jvm.gc,cpu_user");
+      return metricsConf;
+    }
+
+    @Override
+    protected Condition prepareMetricQueryCondition(long startTime, long endTime) {
+      if (doUpdate) {
+        EmptyCondition condition = new EmptyCondition();
+        condition.setDoUpdate(true);
+        condition.setStatement("UPSERT INTO METRIC_RECORD_MINUTE SELECT METRIC_NAME FROM " + tableName);
+        return condition;
+      }
+      Condition condition = new DefaultCondition(null, null, null, null, startTime,
+        endTime, null, null, true);
+      condition.setNoLimit();
+      condition.setStatement("SELECT METRIC_NAME FROM " + tableName);
+      return condition;
+    }
+
+    @Override
+    protected void aggregate(ResultSet rs, long startTime, long endTime) throws SQLException, IOException {
+      if (rs == null) {
+        // Aggregated by an update
+        saves.incrementAndGet();
+      } else {
+        super.aggregate(rs, startTime, endTime);
+      }
+    }
+
+    @Override
+    protected Map<Integer, String> aggregatePartition(ResultSet rs, long startTime, long endTime)
+        throws SQLException {
+      int partition = partitions.getAndIncrement();
+      if (partition == failingPartition) {
+        throw new SQLException("Scan failed");
+      }
+      Map<Integer, String> aggregates = new ConcurrentHashMap<Integer, String>();
+      aggregates.put(partition, Thread.currentThread().getName());
+      return aggregates;
+    }
+
+    @Override
+    protected void saveAggregates(Map<Integer, String> aggregates) throws SQLException, IOException {
+      saves.incrementAndGet();
+      saved = aggregates;
+    }
+  }
+}
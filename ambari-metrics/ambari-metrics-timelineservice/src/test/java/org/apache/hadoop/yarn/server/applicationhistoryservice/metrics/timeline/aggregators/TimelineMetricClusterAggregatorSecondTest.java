@@ -24,10 +24,17 @@ import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.
 import org.easymock.EasyMock;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.CLUSTER_AGGREGATOR_APP_IDS;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.availability.AggregationTaskRunner.AGGREGATOR_NAME.METRIC_AGGREGATE_SECOND;
 
 public class TimelineMetricClusterAggregatorSecondTest {
@@ -85,4 +92,47 @@ public class TimelineMetricClusterAggregatorSecondTest {
 
   }
 
+  @Test
+  public void testConcurrentHostedAppsUpdates() throws Exception {
+    final int apps = 8;
+    StringBuilder appIds = new StringBuilder();
+    for (int i = 0; i < apps; i++) {
+      appIds.append(i == 0 ? "" : ",").append("app").append(i);
+    }
+    final Configuration configuration = new Configuration();
+    configuration.set(CLUSTER_AGGREGATOR_APP_IDS, appIds.toString());
+    final TimelineMetricMetadataManager metadataManager =
+      new TimelineMetricMetadataManager(null, configuration);
+
+    // One app aggregator per metric name range, all seeing the same host
+    ExecutorService executor = Executors.newFixedThreadPool(apps);
+    try {
+      List<Future<Void>> results = new ArrayList<Future<Void>>();
+      for (int i = 0; i < apps; i++) {
+        final String appId = "app" + i;
+        results.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            TimelineMetricAppAggregator appAggregator =
+              new TimelineMetricAppAggregator(metadataManager, configuration);
+            appAggregator.init();
+            for (int j = 0; j < 100; j++) {
+              appAggregator.processTimelineClusterMetric(
+                new TimelineClusterMetric("metric" + j, appId, null, j, null), "h1", 1.0);
+            }
+            appAggregator.cleanup();
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> result : results) {
+        result.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    Set<String> hostedApps = metadataManager.getHostedAppsCache().get("h1");
+    Assert.assertEquals(apps, hostedApps.size());
+  }
 }
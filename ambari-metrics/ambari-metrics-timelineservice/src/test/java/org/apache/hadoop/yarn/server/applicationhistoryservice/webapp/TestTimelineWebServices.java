@@ -20,10 +20,18 @@ package org.apache.hadoop.yarn.server.applicationhistoryservice.webapp;
 
 import static org.junit.Assert.assertEquals;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.zip.GZIPOutputStream;
+
 import javax.ws.rs.core.MediaType;
 
 import junit.framework.Assert;
 
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
 import org.apache.hadoop.yarn.api.records.timeline.TimelineEntities;
 import org.apache.hadoop.yarn.api.records.timeline.TimelineEntity;
@@ -36,6 +44,8 @@ import org.apache.hadoop.yarn.server.applicationhistoryservice.timeline.Timeline
 import org.apache.hadoop.yarn.server.applicationhistoryservice.timeline.TestMemoryTimelineStore;
 import org.apache.hadoop.yarn.webapp.GenericExceptionHandler;
 import org.apache.hadoop.yarn.webapp.YarnJacksonJaxbJsonProvider;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.xc.JaxbAnnotationIntrospector;
 import org.junit.Test;
 
 import com.google.inject.Guice;
@@ -54,6 +64,7 @@ public class TestTimelineWebServices extends JerseyTest {
 
   private static TimelineStore store;
   private static TimelineMetricStore metricStore;
+  private static TimelineMetrics postedMetrics;
   private long beforeTime;
 
   private Injector injector = Guice.createInjector(new ServletModule() {
@@ -65,12 +76,20 @@ public class TestTimelineWebServices extends JerseyTest {
       bind(GenericExceptionHandler.class);
       try{
         store = mockTimelineStore();
-        metricStore = new TestTimelineMetricStore();
+        metricStore = new TestTimelineMetricStore() {
+          @Override
+          public TimelinePutResponse putMetrics(TimelineMetrics metrics)
+              throws SQLException, IOException {
+            postedMetrics = metrics;
+            return super.putMetrics(metrics);
+          }
+        };
       } catch (Exception e) {
         Assert.fail();
       }
       bind(TimelineStore.class).toInstance(store);
       bind(TimelineMetricStore.class).toInstance(metricStore);
+      filter("/*").through(GzipRequestFilter.class);
       serve("/*").with(GuiceContainer.class);
     }
 
@@ -388,4 +407,42 @@ public class TestTimelineWebServices extends JerseyTest {
     assertEquals(MediaType.APPLICATION_JSON_TYPE, response.getType());
     verifyMetrics(response.getEntity(TimelineMetrics.class));
   }
+
+  @Test
+  public void testPostGzipMetrics() throws Exception {
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName("cpu_user");
+    metric.setAppId("test_app");
+    metric.setHostName("test_host");
+    metric.setStartTime(1L);
+    metric.addMetricValue(1L, 1.0);
+    metric.addMetricValue(2L, 2.0);
+    TimelineMetrics metrics = new TimelineMetrics();
+    metrics.setMetrics(Collections.singletonList(metric));
+
+    // Same encoding as the sinks use with gzip.enabled
+    ObjectMapper mapper = new ObjectMapper();
+    mapper.setAnnotationIntrospector(new JaxbAnnotationIntrospector());
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (OutputStream os = new GZIPOutputStream(bytes)) {
+      mapper.writeValue(os, metrics);
+    }
+
+    postedMetrics = null;
+    WebResource r = resource();
+    ClientResponse response = r.path("ws").path("v1").path("timeline")
+      .path("metrics")
+      .header("Content-Encoding", "gzip")
+      .accept(MediaType.APPLICATION_JSON)
+      .type(MediaType.APPLICATION_JSON)
+      .post(ClientResponse.class, bytes.toByteArray());
+    assertEquals(200, response.getStatus());
+
+    Assert.assertNotNull(postedMetrics);
+    Assert.assertEquals(1, postedMetrics.getMetrics().size());
+    TimelineMetric posted = postedMetrics.getMetrics().get(0);
+    Assert.assertEquals("cpu_user", posted.getMetricName());
+    Assert.assertEquals("test_host", posted.getHostName());
+    Assert.assertEquals(metric.getMetricValues(), posted.getMetricValues());
+  }
 }
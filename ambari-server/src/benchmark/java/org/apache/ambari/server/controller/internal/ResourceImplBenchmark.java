@@ -0,0 +1,155 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.controller.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ambari.server.api.services.Result;
+import org.apache.ambari.server.api.services.ResultImpl;
+import org.apache.ambari.server.api.services.ResultStatus;
+import org.apache.ambari.server.api.services.serializers.JsonSerializer;
+import org.apache.ambari.server.api.util.TreeNode;
+import org.apache.ambari.server.controller.spi.Resource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares ResourceImpl with the synchronized map based implementation it
+ * replaced, populating host component resources the way the resource
+ * providers do and rendering them the way the API does.
+ *
+ * Run with the benchmark profile, e.g.
+ * mvn -Pbenchmark test-compile exec:java -Dexec.classpathScope=test
+ *   -Dexec.mainClass=org.apache.ambari.server.controller.internal.ResourceImplBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class ResourceImplBenchmark {
+
+  private static final String[] PROPERTY_IDS = {
+      "HostRoles/cluster_name",
+      "HostRoles/host_name",
+      "HostRoles/component_name",
+      "HostRoles/service_name",
+      "HostRoles/state",
+      "HostRoles/desired_state",
+      "HostRoles/stack_id",
+      "HostRoles/desired_stack_id",
+      "HostRoles/version",
+      "HostRoles/upgrade_state",
+      "HostRoles/maintenance_state",
+      "HostRoles/stale_configs",
+      "HostRoles/reload_configs",
+      "HostRoles/actual_configs",
+      "HostRoles/desired_admin_state",
+      "metrics/jvm/memHeapUsedM",
+      "metrics/jvm/memHeapCommittedM",
+      "metrics/jvm/gcCount",
+      "metrics/rpc/RpcQueueTime_avg_time",
+      "metrics/rpc/RpcProcessingTime_avg_time"
+  };
+
+  @Param({"100", "1000"})
+  public int resourceCount;
+
+  private List<Resource> resources;
+  private List<Resource> legacyResources;
+
+  @Setup
+  public void setup() {
+    resources = new ArrayList<Resource>(resourceCount);
+    legacyResources = new ArrayList<Resource>(resourceCount);
+    for (int i = 0; i < resourceCount; i++) {
+      resources.add(populate(new ResourceImpl(Resource.Type.HostComponent), i));
+      legacyResources.add(populate(new LegacyResourceImpl(Resource.Type.HostComponent), i));
+    }
+  }
+
+  @Benchmark
+  public void populate(Blackhole blackhole) {
+    for (int i = 0; i < resourceCount; i++) {
+      Resource resource = populate(new ResourceImpl(Resource.Type.HostComponent), i);
+      blackhole.consume(resource.getPropertyValue("HostRoles/state"));
+    }
+  }
+
+  @Benchmark
+  public void populateLegacy(Blackhole blackhole) {
+    for (int i = 0; i < resourceCount; i++) {
+      Resource resource = populate(new LegacyResourceImpl(Resource.Type.HostComponent), i);
+      blackhole.consume(resource.getPropertyValue("HostRoles/state"));
+    }
+  }
+
+  @Benchmark
+  public Object render() {
+    return new JsonSerializer().serialize(createResult(resources));
+  }
+
+  @Benchmark
+  public Object renderLegacy() {
+    return new JsonSerializer().serialize(createResult(legacyResources));
+  }
+
+  private static Resource populate(Resource resource, int index) {
+    for (String propertyId : PROPERTY_IDS) {
+      resource.setProperty(propertyId, propertyId.startsWith("metrics") ? (Object) (double) index : "value" + index);
+    }
+    return resource;
+  }
+
+  private static Result createResult(List<Resource> resources) {
+    Result result = new ResultImpl(true);
+    result.setResultStatus(new ResultStatus(ResultStatus.STATUS.OK));
+    TreeNode<Resource> tree = result.getResultTree();
+    tree.setName("items");
+    int i = 0;
+    for (Resource resource : resources) {
+      tree.addChild(resource, "HostComponent:" + i++);
+    }
+    return result;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options options = new OptionsBuilder()
+        .include(ResourceImplBenchmark.class.getSimpleName())
+        .build();
+    new Runner(options).run();
+  }
+}
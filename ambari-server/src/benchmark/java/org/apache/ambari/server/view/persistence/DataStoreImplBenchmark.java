@@ -0,0 +1,205 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.view.persistence;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.orm.PersistenceType;
+import org.apache.ambari.server.orm.entities.ViewEntity;
+import org.apache.ambari.server.orm.entities.ViewEntityEntity;
+import org.apache.ambari.server.orm.entities.ViewInstanceEntity;
+import org.apache.ambari.server.view.configuration.EntityConfig;
+import org.apache.ambari.server.view.configuration.ViewConfig;
+import org.apache.ambari.server.view.configuration.ViewConfigTest;
+import org.apache.ambari.view.PersistenceException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.google.inject.Guice;
+
+/**
+ * Measures the view data store against an in-memory database holding 100k
+ * view entities with an indexed owner property: finding the entities of an
+ * owner, reading a page of them and storing entities one by one or as a batch.
+ *
+ * Run with the benchmark profile, e.g.
+ * mvn -Pbenchmark test-compile exec:java -Dexec.classpathScope=test
+ *   -Dexec.mainClass=org.apache.ambari.server.view.persistence.DataStoreImplBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DataStoreImplBenchmark {
+
+  private static final int ENTITY_COUNT = 100000;
+  private static final int OWNER_COUNT = 100;
+  private static final int STORE_COUNT = 1000;
+
+  private static final String xml = "<view>\n" +
+      "    <name>BENCHMARK_VIEW</name>\n" +
+      "    <label>Benchmark View</label>\n" +
+      "    <version>1.0.0</version>\n" +
+      "    <instance>\n" +
+      "        <name>INSTANCE1</name>\n" +
+      "    </instance>\n" +
+      "    <persistence>\n" +
+      "      <entity>\n" +
+      "        <class>org.apache.ambari.server.view.persistence.DataStoreImplBenchmark$BenchmarkEntity</class>\n" +
+      "        <id-property>id</id-property>\n" +
+      "        <index-property>owner</index-property>\n" +
+      "      </entity>\n" +
+      "    </persistence>" +
+      "</view>";
+
+  private DataStoreImpl dataStore;
+  private int nextId;
+
+  @Setup
+  public void setup() throws Exception {
+    Properties properties = new Properties();
+    properties.put(Configuration.SERVER_PERSISTENCE_TYPE_KEY, PersistenceType.IN_MEMORY.getValue());
+
+    ViewConfig viewConfig = ViewConfigTest.getConfig(xml);
+    ViewEntity viewEntity = new ViewEntity(viewConfig, new Configuration(properties), "view.jar");
+    viewEntity.setClassLoader(DataStoreImplBenchmark.class.getClassLoader());
+
+    ViewInstanceEntity viewInstanceEntity = new ViewInstanceEntity(viewEntity, "INSTANCE1");
+    HashSet<ViewEntityEntity> entities = new HashSet<ViewEntityEntity>();
+    for (EntityConfig entityConfig : viewConfig.getPersistence().getEntities()) {
+      ViewEntityEntity viewEntityEntity = new ViewEntityEntity();
+      viewEntityEntity.setId(1L);
+      viewEntityEntity.setViewName(viewEntity.getName());
+      viewEntityEntity.setViewInstanceName(viewInstanceEntity.getName());
+      viewEntityEntity.setClassName(entityConfig.getClassName());
+      viewEntityEntity.setIdProperty(entityConfig.getIdProperty());
+      viewEntityEntity.setViewInstance(viewInstanceEntity);
+      entities.add(viewEntityEntity);
+    }
+    viewInstanceEntity.setEntities(entities);
+
+    dataStore = Guice.createInjector(new DataStoreModule(viewInstanceEntity)).getInstance(DataStoreImpl.class);
+    dataStore.store(createEntities(ENTITY_COUNT));
+  }
+
+  @Benchmark
+  public Object findAllByOwner() throws PersistenceException {
+    return dataStore.findAll(BenchmarkEntity.class, "owner='owner7'");
+  }
+
+  @Benchmark
+  public Object findPageByOwner() throws PersistenceException {
+    return dataStore.findAll(BenchmarkEntity.class, "owner='owner7'", 500, 100);
+  }
+
+  @Benchmark
+  public void storeEach() throws PersistenceException {
+    for (BenchmarkEntity entity : createEntities(STORE_COUNT)) {
+      dataStore.store(entity);
+    }
+  }
+
+  @Benchmark
+  public void storeBatch() throws PersistenceException {
+    dataStore.store(createEntities(STORE_COUNT));
+  }
+
+  private List<BenchmarkEntity> createEntities(int count) {
+    List<BenchmarkEntity> entities = new ArrayList<BenchmarkEntity>(count);
+    for (int i = 0; i < count; i++, nextId++) {
+      entities.add(new BenchmarkEntity(nextId, "owner" + (nextId % OWNER_COUNT), "title" + nextId, "SUCCEEDED"));
+    }
+    return entities;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options options = new OptionsBuilder()
+        .include(DataStoreImplBenchmark.class.getSimpleName())
+        .build();
+    new Runner(options).run();
+  }
+
+  public static class BenchmarkEntity {
+    private int id;
+    private String owner;
+    private String title;
+    private String status;
+
+    public BenchmarkEntity() {
+    }
+
+    public BenchmarkEntity(int id, String owner, String title, String status) {
+      this.id = id;
+      this.owner = owner;
+      this.title = title;
+      this.status = status;
+    }
+
+    public int getId() {
+      return id;
+    }
+
+    public void setId(int id) {
+      this.id = id;
+    }
+
+    public String getOwner() {
+      return owner;
+    }
+
+    public void setOwner(String owner) {
+      this.owner = owner;
+    }
+
+    public String getTitle() {
+      return title;
+    }
+
+    public void setTitle(String title) {
+      this.title = title;
+    }
+
+    public String getStatus() {
+      return status;
+    }
+
+    public void setStatus(String status) {
+      this.status = status;
+    }
+  }
+}
@@ -72,11 +72,25 @@ public interface ActionDBAccessor {
    * expensive in some scenarios. Use {@link #getCommandsInProgressCount()} in
    * order to determine if there are stages that are in progress before getting
    * the stages from this method.
+   * <p/>
+   * When incremental stage scheduling is enabled, the stages are kept in memory
+   * between invocations and only the stages whose commands have changed since
+   * the prior invocation are reloaded from the database. The returned stages
+   * may therefore be the same instances that were returned previously.
    *
    * @see HostRoleStatus#IN_PROGRESS_STATUSES
+   * @see org.apache.ambari.server.configuration.Configuration#isIncrementalStageSchedulingEnabled()
    */
   public List<Stage> getStagesInProgress();
 
+  /**
+   * Discards any in-progress stages which are being kept in memory so that the
+   * next invocation of {@link #getStagesInProgress()} reloads all of them from
+   * the database. This should be used when the in-memory stages may have been
+   * modified without the changes having been persisted.
+   */
+  public void invalidateStagesInProgress();
+
   /**
    * Gets the number of commands in progress.
    *
@@ -25,12 +25,20 @@ import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.ambari.annotations.Experimental;
 import org.apache.ambari.annotations.ExperimentalFeature;
@@ -56,6 +64,7 @@ import org.apache.ambari.server.orm.dao.HostRoleCommandDAO;
 import org.apache.ambari.server.orm.dao.RequestDAO;
 import org.apache.ambari.server.orm.dao.RequestScheduleDAO;
 import org.apache.ambari.server.orm.dao.RoleSuccessCriteriaDAO;
+import org.apache.ambari.server.orm.TransactionalLocks;
 import org.apache.ambari.server.orm.dao.StageDAO;
 import org.apache.ambari.server.orm.entities.ClusterEntity;
 import org.apache.ambari.server.orm.entities.ExecutionCommandEntity;
@@ -65,6 +74,7 @@ import org.apache.ambari.server.orm.entities.RequestEntity;
 import org.apache.ambari.server.orm.entities.RequestScheduleEntity;
 import org.apache.ambari.server.orm.entities.RoleSuccessCriteriaEntity;
 import org.apache.ambari.server.orm.entities.StageEntity;
+import org.apache.ambari.server.orm.entities.StageEntityPK;
 import org.apache.ambari.server.state.Clusters;
 import org.apache.ambari.server.state.Host;
 import org.apache.ambari.server.utils.LoopBody;
@@ -78,10 +88,12 @@ import org.slf4j.LoggerFactory;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.eventbus.Subscribe;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.google.inject.name.Named;
 import com.google.inject.persist.Transactional;
+import com.google.inject.persist.UnitOfWork;
 
 @Singleton
 public class ActionDBAccessorImpl implements ActionDBAccessor {
@@ -131,22 +143,70 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
   @Inject
   AuditLogger auditLogger;
 
+  @Inject
+  UnitOfWork unitOfWork;
+
   /**
    * Caches to store current request and task statuses.
    * It is used for avoiding audit log entry duplication
+   * Guarded by {@link #auditLock}.
    */
-  private Map<Long, HostRoleStatus> temporaryStatusCache = new HashMap<Long, HostRoleStatus>();
-  private Map<Long, HostRoleStatus> temporaryTaskStatusCache = new HashMap<Long, HostRoleStatus>();
+  private final Map<Long, HostRoleStatus> temporaryStatusCache = new HashMap<Long, HostRoleStatus>();
+  private final Map<Long, HostRoleStatus> temporaryTaskStatusCache = new HashMap<Long, HostRoleStatus>();
 
   /**
    * Stores the host role command entities that are not completed for a request id
    * It is used to calculate the summary state of the request for audit logging
+   * Guarded by {@link #auditLock}.
+   */
+  private final Map<Long, Map<Long, HostRoleStatus>> tasksForRequest = new HashMap<>();
+
+  /**
+   * Serializes audit logging, since task reports are processed by several
+   * heartbeat processor threads and by the batched task report writer at once.
    */
-  private Map<Long, Map<Long, HostRoleStatus>> tasksForRequest = new HashMap<>();
+  private final Object auditLock = new Object();
 
   private Cache<Long, HostRoleCommand> hostRoleCommandCache;
   private long cacheLimit; //may be exceeded to store tasks from one request
 
+  @Inject
+  private TransactionalLocks transactionLocks;
+
+  /**
+   * The stages in progress, keyed by request ID and then stage ID, which are
+   * kept between invocations of {@link #getStagesInProgress()} when
+   * incremental stage scheduling is enabled. Only stages whose commands have
+   * changed are reloaded from the database.
+   */
+  private final NavigableMap<Long, NavigableMap<Long, Stage>> inProgressStages = new TreeMap<>();
+
+  /**
+   * The last time that {@link #inProgressStages} was fully reloaded, or
+   * {@code -1} if it must be reloaded on the next invocation.
+   */
+  private long lastInProgressStagesResync = -1;
+
+  /**
+   * Whether it was logged that incremental stage scheduling is enabled without
+   * the {@link LockArea#HRC_STATUS_CACHE} lock it depends on.
+   */
+  private volatile boolean incrementalSchedulingDisabledLogged = false;
+
+  /**
+   * The latest report of each in progress task which has not been written to
+   * the database yet, keyed by task ID. Only used when task status updates are
+   * batched (see {@link Configuration#getTaskStatusUpdateInterval()}).
+   */
+  private final Map<Long, CommandReport> pendingTaskReports = new LinkedHashMap<>();
+
+  /**
+   * Serializes the writes of batched in progress reports with the writes of
+   * completed reports so that a batched report can never overwrite the final
+   * status of a task.
+   */
+  private final Lock taskReportWriteLock = new ReentrantLock();
+
   @Inject
   public ActionDBAccessorImpl(@Named("executionCommandCacheSize") long cacheLimit,
                               AmbariEventPublisher eventPublisher) {
@@ -162,6 +222,26 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
   @Inject
   void init() {
     requestId = stageDAO.getLastRequestId();
+
+    long taskStatusUpdateInterval = configuration.getTaskStatusUpdateInterval();
+    if (taskStatusUpdateInterval > 0) {
+      ScheduledExecutorService taskReportWriter = Executors.newSingleThreadScheduledExecutor(
+          new ThreadFactoryBuilder().setNameFormat("task-status-writer").setDaemon(true).build());
+
+      taskReportWriter.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          unitOfWork.begin();
+          try {
+            flushTaskReports();
+          } catch (Exception e) {
+            LOG.error("Unable to write the status of in progress tasks", e);
+          } finally {
+            unitOfWork.end();
+          }
+        }
+      }, taskStatusUpdateInterval, taskStatusUpdateInterval, TimeUnit.MILLISECONDS);
+    }
   }
 
   /* (non-Javadoc)
@@ -264,8 +344,131 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
    * {@inheritDoc}
    */
   @Override
-  @Experimental(feature = ExperimentalFeature.PARALLEL_PROCESSING)
   public List<Stage> getStagesInProgress() {
+    if (!configuration.isIncrementalStageSchedulingEnabled()) {
+      return loadStagesInProgress();
+    }
+
+    // without the lock the tracked changes may be drained before they are
+    // committed and the stale stages would be kept until the next resync
+    if (!LockArea.HRC_STATUS_CACHE.isEnabled(configuration)) {
+      if (!incrementalSchedulingDisabledLogged) {
+        LOG.warn("Incremental stage scheduling requires {} to be enabled, reloading all stages in progress instead",
+            Configuration.SERVER_HRC_STATUS_SUMMARY_CACHE_ENABLED);
+        incrementalSchedulingDisabledLogged = true;
+      }
+      return loadStagesInProgress();
+    }
+
+    // wait for any running transactions which are changing commands to
+    // complete so that their changes have been committed and recorded
+    ReadWriteLock lock = transactionLocks.getLock(LockArea.HRC_STATUS_CACHE);
+    lock.readLock().lock();
+
+    try {
+      synchronized (inProgressStages) {
+        Set<StageEntityPK> changedStages = hostRoleCommandDAO.drainChangedStages();
+
+        long now = System.currentTimeMillis();
+        long resyncInterval = TimeUnit.SECONDS.toMillis(
+            configuration.getIncrementalStageSchedulingResyncInterval());
+
+        if (lastInProgressStagesResync < 0 || now - lastInProgressStagesResync >= resyncInterval) {
+          inProgressStages.clear();
+          for (Stage stage : loadStagesInProgress()) {
+            putInProgressStage(stage);
+          }
+
+          lastInProgressStagesResync = now;
+        } else {
+          refreshInProgressStages(changedStages);
+        }
+
+        List<Stage> stages = new ArrayList<>();
+        for (Map<Long, Stage> requestStages : inProgressStages.values()) {
+          stages.addAll(requestStages.values());
+        }
+
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Reloaded {} changed stages out of {} stages in progress", changedStages.size(),
+              stages.size());
+        }
+
+        return stages;
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void invalidateStagesInProgress() {
+    synchronized (inProgressStages) {
+      inProgressStages.clear();
+      lastInProgressStagesResync = -1;
+    }
+  }
+
+  /**
+   * Reloads the specified stages from the database, dropping those which no
+   * longer have any commands in progress.
+   *
+   * @param changedStages
+   *          the stages whose commands have changed since they were last
+   *          loaded.
+   */
+  private void refreshInProgressStages(Set<StageEntityPK> changedStages) {
+    for (StageEntityPK stageEntityPK : changedStages) {
+      Map<Long, Stage> requestStages = inProgressStages.get(stageEntityPK.getRequestId());
+      if (null != requestStages) {
+        requestStages.remove(stageEntityPK.getStageId());
+        if (requestStages.isEmpty()) {
+          inProgressStages.remove(stageEntityPK.getRequestId());
+        }
+      }
+
+      StageEntity stageEntity = stageDAO.findByPK(stageEntityPK);
+      if (null == stageEntity) {
+        continue;
+      }
+
+      Stage stage = stageFactory.createExisting(stageEntity);
+      for (HostRoleCommand command : stage.getOrderedHostRoleCommands()) {
+        if (HostRoleStatus.IN_PROGRESS_STATUSES.contains(command.getStatus())) {
+          putInProgressStage(stage);
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds the stage to the in-memory in progress stages, keeping the stages
+   * ordered by request ID and then stage ID.
+   *
+   * @param stage
+   *          the stage to add.
+   */
+  private void putInProgressStage(Stage stage) {
+    NavigableMap<Long, Stage> requestStages = inProgressStages.get(stage.getRequestId());
+    if (null == requestStages) {
+      requestStages = new TreeMap<>();
+      inProgressStages.put(stage.getRequestId(), requestStages);
+    }
+
+    requestStages.put(stage.getStageId(), stage);
+  }
+
+  /**
+   * Loads all stages which have commands in progress from the database.
+   *
+   * @return the stages in progress, sorted by request ID and then stage ID.
+   */
+  @Experimental(feature = ExperimentalFeature.PARALLEL_PROCESSING)
+  private List<Stage> loadStagesInProgress() {
     List<StageEntity> stageEntities = stageDAO.findByCommandStatuses(
       HostRoleStatus.IN_PROGRESS_STATUSES);
 
@@ -342,6 +545,7 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
       stageDAO.create(stageEntity);
 
       List<HostRoleCommand> orderedHostRoleCommands = stage.getOrderedHostRoleCommands();
+      ExecutionCommandPayloads commandPayloads = new ExecutionCommandPayloads();
 
       for (HostRoleCommand hostRoleCommand : orderedHostRoleCommands) {
         HostRoleCommandEntity hostRoleCommandEntity = hostRoleCommand.constructNewPersistenceEntity();
@@ -387,7 +591,7 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
         hostRoleCommandEntity.setOutputLog(hostRoleCommand.getOutputLog());
         hostRoleCommandEntity.setErrorLog(hostRoleCommand.getErrorLog());
 
-        ExecutionCommandEntity executionCommandEntity = hostRoleCommand.constructExecutionCommandEntity();
+        ExecutionCommandEntity executionCommandEntity = hostRoleCommand.constructExecutionCommandEntity(commandPayloads);
         executionCommandEntity.setHostRoleCommand(hostRoleCommandEntity);
 
         executionCommandEntity.setTaskId(hostRoleCommandEntity.getTaskId());
@@ -400,6 +604,8 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
         }
       }
 
+      stageEntity.setCommandPayloads(commandPayloads.toJson());
+
       for (RoleSuccessCriteriaEntity roleSuccessCriteriaEntity : stageEntity.getRoleSuccessCriterias()) {
         roleSuccessCriteriaDAO.create(roleSuccessCriteriaEntity);
       }
@@ -463,8 +669,112 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
     }
   }
 
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * When task status updates are batched, the reports of in progress tasks are
+   * only kept in memory, replacing any earlier report of the same task, and
+   * are written to the database by {@link #flushTaskReports()} at the
+   * configured interval. Reports of completed tasks discard any pending report
+   * of the task and are written before this method returns, so that the final
+   * status is durable before the action scheduler acts on it.
+   */
   @Override
   public void updateHostRoleStates(Collection<CommandReport> reports) {
+    if (configuration.getTaskStatusUpdateInterval() <= 0) {
+      writeHostRoleStates(reports);
+      return;
+    }
+
+    List<CommandReport> completedReports = new ArrayList<>();
+    synchronized (pendingTaskReports) {
+      for (CommandReport report : reports) {
+        if (HostRoleStatus.valueOf(report.getStatus()).isCompletedState()) {
+          completedReports.add(report);
+        } else {
+          pendingTaskReports.put(report.getTaskId(), report);
+        }
+      }
+    }
+
+    if (!completedReports.isEmpty()) {
+      taskReportWriteLock.lock();
+      try {
+        synchronized (pendingTaskReports) {
+          for (CommandReport report : completedReports) {
+            pendingTaskReports.remove(report.getTaskId());
+          }
+        }
+        writeHostRoleStates(completedReports);
+      } finally {
+        taskReportWriteLock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Writes the pending reports of in progress tasks to the database in a
+   * single JDBC batch (see
+   * {@link HostRoleCommandDAO#updateInProgressStatuses(Collection)}). Reports
+   * of tasks which have completed in the meantime are discarded. If the write
+   * fails, the reports are kept unless they have been replaced by newer ones
+   * and are retried on the next invocation.
+   */
+  void flushTaskReports() {
+    taskReportWriteLock.lock();
+    try {
+      Map<Long, CommandReport> reports;
+      synchronized (pendingTaskReports) {
+        if (pendingTaskReports.isEmpty()) {
+          return;
+        }
+        reports = new LinkedHashMap<>(pendingTaskReports);
+        pendingTaskReports.clear();
+      }
+
+      List<HostRoleCommandEntity> commandEntities = new ArrayList<>(reports.size());
+      for (CommandReport report : reports.values()) {
+        HostRoleCommandEntity commandEntity = new HostRoleCommandEntity();
+        commandEntity.setTaskId(report.getTaskId());
+        commandEntity.setStatus(HostRoleStatus.valueOf(report.getStatus()));
+        commandEntity.setStdOut(report.getStdOut().getBytes());
+        commandEntity.setStdError(report.getStdErr().getBytes());
+        commandEntity.setStructuredOut(report.getStructuredOut() == null ? null :
+          report.getStructuredOut().getBytes());
+        commandEntity.setExitcode(report.getExitCode());
+        commandEntities.add(commandEntity);
+      }
+
+      try {
+        hostRoleCommandDAO.updateInProgressStatuses(commandEntities);
+      } catch (RuntimeException e) {
+        synchronized (pendingTaskReports) {
+          for (Map.Entry<Long, CommandReport> entry : reports.entrySet()) {
+            if (!pendingTaskReports.containsKey(entry.getKey())) {
+              pendingTaskReports.put(entry.getKey(), entry.getValue());
+            }
+          }
+        }
+        throw e;
+      }
+
+      hostRoleCommandCache.invalidateAll(reports.keySet());
+
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Wrote the status of {} in progress tasks", reports.size());
+      }
+    } finally {
+      taskReportWriteLock.unlock();
+    }
+  }
+
+  /**
+   * Writes the given reports to their commands.
+   *
+   * @param reports
+   *          the reports to write
+   */
+  private void writeHostRoleStates(Collection<CommandReport> reports) {
     Map<Long, CommandReport> taskReports = new HashMap<Long, CommandReport>();
     for (CommandReport report : reports) {
       taskReports.put(report.getTaskId(), report);
@@ -476,6 +786,7 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
     List<Long> abortedCommandUpdates = new ArrayList<Long>();
 
     List<HostRoleCommandEntity> commandEntities = hostRoleCommandDAO.findByPKs(taskReports.keySet());
+
     for (HostRoleCommandEntity commandEntity : commandEntities) {
       CommandReport report = taskReports.get(commandEntity.getTaskId());
 
@@ -818,25 +1129,27 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
       return;
     }
 
-    if(requestId != null) {
+    synchronized (auditLock) {
+      if(requestId != null) {
 
-      HostRoleStatus calculatedStatus = calculateStatus(commandEntity, requestId);
+        HostRoleStatus calculatedStatus = calculateStatus(commandEntity, requestId);
 
-      if (!temporaryStatusCache.containsKey(requestId) || temporaryStatusCache.get(requestId) != calculatedStatus) {
-        RequestEntity request = requestDAO.findByPK(requestId);
-        String context = request != null ? request.getRequestContext() : null;
-        AuditEvent auditEvent = OperationStatusAuditEvent.builder()
-          .withRequestId(String.valueOf(requestId))
-          .withStatus(String.valueOf(calculatedStatus))
-          .withRequestContext(context)
-          .withTimestamp(System.currentTimeMillis())
-          .build();
-        auditLogger.log(auditEvent);
+        if (!temporaryStatusCache.containsKey(requestId) || temporaryStatusCache.get(requestId) != calculatedStatus) {
+          RequestEntity request = requestDAO.findByPK(requestId);
+          String context = request != null ? request.getRequestContext() : null;
+          AuditEvent auditEvent = OperationStatusAuditEvent.builder()
+            .withRequestId(String.valueOf(requestId))
+            .withStatus(String.valueOf(calculatedStatus))
+            .withRequestContext(context)
+            .withTimestamp(System.currentTimeMillis())
+            .build();
+          auditLogger.log(auditEvent);
 
-        temporaryStatusCache.put(requestId, calculatedStatus);
+          temporaryStatusCache.put(requestId, calculatedStatus);
+        }
       }
+      logTask(commandEntity, requestId);
     }
-    logTask(commandEntity, requestId);
   }
 
   /**
@@ -201,9 +201,11 @@ class ActionScheduler implements Runnable {
       } catch (Exception ex) {
         LOG.warn("Exception received", ex);
         requestsInProgress.clear();
+        invalidateStagesInProgress();
       } catch (Throwable t) {
         LOG.warn("ERROR", t);
         requestsInProgress.clear();
+        invalidateStagesInProgress();
       }
     }
   }
@@ -217,8 +219,9 @@ class ActionScheduler implements Runnable {
 
       // !!! getting the stages in progress could be a very expensive call due
       // to the join being used; there's no need to make it if there are
-      // no commands in progress
-      if (db.getCommandsInProgressCount() == 0) {
+      // no commands in progress. When stages are maintained incrementally,
+      // only changed stages are loaded so the count isn't needed
+      if (!configuration.isIncrementalStageSchedulingEnabled() && db.getCommandsInProgressCount() == 0) {
         // Nothing to do
         if (LOG.isDebugEnabled()) {
           LOG.debug("There are no stages currently in progress.");
@@ -417,6 +420,17 @@ class ActionScheduler implements Runnable {
     }
   }
 
+  /**
+   * Discards the in-progress stages kept in memory between invocations, if
+   * any, since a failed iteration may have left them with changes which were
+   * never persisted.
+   */
+  private void invalidateStagesInProgress() {
+    if (configuration.isIncrementalStageSchedulingEnabled()) {
+      db.invalidateStagesInProgress();
+    }
+  }
+
   /**
    * Returns the list of hosts that have a task assigned
    *
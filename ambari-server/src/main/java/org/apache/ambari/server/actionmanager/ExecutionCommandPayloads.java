@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.actionmanager;
+
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.ambari.server.utils.StageUtils;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang.StringUtils;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * The blocks that the execution commands of a stage have in common, such as
+ * configurations, command parameters and host level parameters. Each block is
+ * stored once per stage under the SHA-1 of its JSON and the persisted
+ * commands only reference it by that key.
+ * <p/>
+ * Blocks must not be modified while the payloads are being built, since a
+ * block instance that was added before is not serialized again.
+ */
+public class ExecutionCommandPayloads {
+
+  /**
+   * [ key -> block ]
+   */
+  private final Map<String, JsonElement> payloads = new LinkedHashMap<String, JsonElement>();
+
+  /**
+   * [ block instance -> key ], to serialize blocks shared between commands
+   * only once.
+   */
+  private final Map<Object, String> keys = new IdentityHashMap<Object, String>();
+
+  /**
+   * Adds a block, unless a block with the same content was added before.
+   *
+   * @param block  the block
+   * @return the key of the block
+   */
+  public String add(Object block) {
+    String key = keys.get(block);
+    if (key == null) {
+      JsonElement element = StageUtils.getGson().toJsonTree(block);
+      key = DigestUtils.sha1Hex(element.toString());
+      if (!payloads.containsKey(key)) {
+        payloads.put(key, element);
+      }
+      keys.put(block, key);
+    }
+    return key;
+  }
+
+  /**
+   * @param key  the key of the block
+   * @return the block, or {@code null} if there is none with the given key
+   */
+  public JsonElement get(String key) {
+    return payloads.get(key);
+  }
+
+  public boolean isEmpty() {
+    return payloads.isEmpty();
+  }
+
+  /**
+   * @return the blocks as a JSON object of [ key -> block ]
+   */
+  public String toJson() {
+    JsonObject json = new JsonObject();
+    for (Map.Entry<String, JsonElement> entry : payloads.entrySet()) {
+      json.add(entry.getKey(), entry.getValue());
+    }
+    return json.toString();
+  }
+
+  /**
+   * Reads the blocks written by {@link #toJson()}.
+   *
+   * @param json  the blocks, may be empty
+   * @return the payloads
+   */
+  public static ExecutionCommandPayloads fromJson(String json) {
+    ExecutionCommandPayloads commandPayloads = new ExecutionCommandPayloads();
+    if (StringUtils.isNotEmpty(json)) {
+      JsonObject blocks = new JsonParser().parse(json).getAsJsonObject();
+      for (Map.Entry<String, JsonElement> entry : blocks.entrySet()) {
+        commandPayloads.payloads.put(entry.getKey(), entry.getValue());
+      }
+    }
+    return commandPayloads;
+  }
+}
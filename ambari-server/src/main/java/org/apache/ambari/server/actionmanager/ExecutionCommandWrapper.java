@@ -17,21 +17,34 @@
  */
 package org.apache.ambari.server.actionmanager;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.agent.ExecutionCommand;
 import org.apache.ambari.server.controller.AmbariManagementController;
 import org.apache.ambari.server.controller.AmbariServer;
 import org.apache.ambari.server.orm.dao.HostRoleCommandDAO;
+import org.apache.ambari.server.orm.entities.StageEntity;
 import org.apache.ambari.server.state.Cluster;
 import org.apache.ambari.server.state.Clusters;
 import org.apache.ambari.server.state.ConfigHelper;
 import org.apache.ambari.server.utils.StageUtils;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.gson.ExclusionStrategy;
+import com.google.gson.FieldAttributes;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
 import org.slf4j.Logger;
@@ -42,6 +55,44 @@ public class ExecutionCommandWrapper {
   static Injector injector;
   private final static Logger LOG = LoggerFactory.getLogger(ExecutionCommandWrapper.class);
   private static String DELETED = "DELETED_";
+
+  /**
+   * The property of a persisted command that maps the shared blocks left out
+   * of it to their keys in the {@link ExecutionCommandPayloads} of the stage.
+   */
+  static final String PAYLOAD_REFS = "payloadRefs";
+
+  /**
+   * The fields of {@link ExecutionCommand} that are stored as shared blocks.
+   */
+  private static final Set<String> PAYLOAD_FIELDS = new HashSet<String>(Arrays.asList(
+      "configurations", "configurationAttributes", "hostLevelParams", "commandParams",
+      "clusterHostInfo"));
+
+  /**
+   * Serializes a command without the fields that are stored as shared blocks.
+   */
+  private static final Gson PAYLOAD_GSON = new GsonBuilder().setExclusionStrategies(
+      new ExclusionStrategy() {
+        @Override
+        public boolean shouldSkipField(FieldAttributes f) {
+          return f.getDeclaringClass() == ExecutionCommand.class
+              && PAYLOAD_FIELDS.contains(f.getName());
+        }
+
+        @Override
+        public boolean shouldSkipClass(Class<?> clazz) {
+          return false;
+        }
+      }).create();
+
+  /**
+   * Shared blocks of the stages whose commands were read recently, key -
+   * stageId-requestId. The blocks of a stage never change once persisted.
+   */
+  private static final Cache<String, ExecutionCommandPayloads> commandPayloadsCache =
+      CacheBuilder.newBuilder().expireAfterAccess(5, TimeUnit.MINUTES).build();
+
   String jsonExecutionCommand = null;
   ExecutionCommand executionCommand = null;
 
@@ -58,7 +109,17 @@ public class ExecutionCommandWrapper {
     if (executionCommand != null) {
       return executionCommand;
     } else if (jsonExecutionCommand != null) {
-      executionCommand = StageUtils.getGson().fromJson(jsonExecutionCommand, ExecutionCommand.class);
+      if (jsonExecutionCommand.contains("\"" + PAYLOAD_REFS + "\"")) {
+        JsonObject json = new JsonParser().parse(jsonExecutionCommand).getAsJsonObject();
+        if (json.has(PAYLOAD_REFS)) {
+          resolvePayloadRefs(json);
+          // the stored form is incomplete, render the command again if asked
+          jsonExecutionCommand = null;
+        }
+        executionCommand = StageUtils.getGson().fromJson(json, ExecutionCommand.class);
+      } else {
+        executionCommand = StageUtils.getGson().fromJson(jsonExecutionCommand, ExecutionCommand.class);
+      }
 
       if (injector == null) {
         throw new RuntimeException("Injector not found, configuration cannot be restored");
@@ -169,6 +230,82 @@ public class ExecutionCommandWrapper {
     }
   }
 
+  /**
+   * Gets the JSON to persist the command with. The shared blocks are added to
+   * the given payloads and only referenced from the JSON.
+   *
+   * @param commandPayloads  the shared blocks of the stage
+   * @return the JSON of the command
+   */
+  String getJson(ExecutionCommandPayloads commandPayloads) {
+    ExecutionCommand command = getExecutionCommand();
+    JsonObject json = PAYLOAD_GSON.toJsonTree(command).getAsJsonObject();
+
+    JsonObject payloadRefs = new JsonObject();
+    addPayloadRef(payloadRefs, "configurations", command.getConfigurations(), commandPayloads);
+    addPayloadRef(payloadRefs, "configuration_attributes", command.getConfigurationAttributes(), commandPayloads);
+    addPayloadRef(payloadRefs, "hostLevelParams", command.getHostLevelParams(), commandPayloads);
+    addPayloadRef(payloadRefs, "commandParams", command.getCommandParams(), commandPayloads);
+    addPayloadRef(payloadRefs, "clusterHostInfo", command.getClusterHostInfo(), commandPayloads);
+    json.add(PAYLOAD_REFS, payloadRefs);
+
+    return json.toString();
+  }
+
+  private static void addPayloadRef(JsonObject payloadRefs, String property, Object block,
+                                    ExecutionCommandPayloads commandPayloads) {
+    if (block != null) {
+      payloadRefs.addProperty(property, commandPayloads.add(block));
+    }
+  }
+
+  /**
+   * Puts the shared blocks referenced by a persisted command back in place.
+   *
+   * @param json  the command
+   */
+  private void resolvePayloadRefs(JsonObject json) {
+    long requestId = json.get("requestId").getAsLong();
+    long stageId = json.get("stageId").getAsLong();
+    long taskId = json.get("taskId").getAsLong();
+    String stagePk = stageId + "-" + requestId;
+
+    JsonObject payloadRefs = json.remove(PAYLOAD_REFS).getAsJsonObject();
+    ExecutionCommandPayloads commandPayloads = commandPayloadsCache.getIfPresent(stagePk);
+    if (commandPayloads == null || !hasPayloads(commandPayloads, payloadRefs)) {
+      // not read yet, or left over from a stage with the same ids in another database
+      commandPayloads = readCommandPayloads(taskId);
+      commandPayloadsCache.put(stagePk, commandPayloads);
+    }
+
+    for (Map.Entry<String, JsonElement> payloadRef : payloadRefs.entrySet()) {
+      JsonElement block = commandPayloads.get(payloadRef.getValue().getAsString());
+      if (block == null) {
+        throw new RuntimeException("Invalid DB state, missing " + payloadRef.getKey()
+            + " of stage " + stagePk + " for taskId=" + taskId);
+      }
+      json.add(payloadRef.getKey(), block);
+    }
+  }
+
+  private static boolean hasPayloads(ExecutionCommandPayloads commandPayloads, JsonObject payloadRefs) {
+    for (Map.Entry<String, JsonElement> payloadRef : payloadRefs.entrySet()) {
+      if (commandPayloads.get(payloadRef.getValue().getAsString()) == null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static ExecutionCommandPayloads readCommandPayloads(long taskId) {
+    if (injector == null) {
+      throw new RuntimeException("Injector not found, command payloads cannot be restored");
+    }
+    HostRoleCommandDAO hostRoleCommandDAO = injector.getInstance(HostRoleCommandDAO.class);
+    StageEntity stageEntity = hostRoleCommandDAO.findByPK(taskId).getStage();
+    return ExecutionCommandPayloads.fromJson(stageEntity.getCommandPayloads());
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
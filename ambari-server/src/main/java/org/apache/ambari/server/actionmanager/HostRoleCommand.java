@@ -204,9 +204,16 @@ public class HostRoleCommand {
     return hostRoleCommandEntity;
   }
 
-  ExecutionCommandEntity constructExecutionCommandEntity() {
+  /**
+   * Creates the object to persist the command with.
+   *
+   * @param commandPayloads  the shared blocks of the stage, which the blocks
+   *                         of this command are added to
+   * @return the entity
+   */
+  ExecutionCommandEntity constructExecutionCommandEntity(ExecutionCommandPayloads commandPayloads) {
     ExecutionCommandEntity executionCommandEntity = new ExecutionCommandEntity();
-    executionCommandEntity.setCommand(executionCommandWrapper.getJson().getBytes());
+    executionCommandEntity.setCommand(executionCommandWrapper.getJson(commandPayloads).getBytes());
     return executionCommandEntity;
   }
 
@@ -18,17 +18,25 @@
 package org.apache.ambari.server.agent;
 
 
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.Role;
@@ -40,6 +48,7 @@ import org.apache.ambari.server.actionmanager.ActionManager;
 import org.apache.ambari.server.actionmanager.HostRoleCommand;
 import org.apache.ambari.server.actionmanager.HostRoleStatus;
 import org.apache.ambari.server.api.services.AmbariMetaInfo;
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.MaintenanceStateHelper;
 import org.apache.ambari.server.events.ActionFinalReportReceivedEvent;
 import org.apache.ambari.server.events.AlertEvent;
@@ -85,29 +94,63 @@ import com.google.inject.Inject;
 import com.google.inject.Injector;
 
 /**
- * HeartbeatProcessor class is used for bulk processing data retrieved from agents in background
- *
+ * HeartbeatProcessor class is used for bulk processing data retrieved from agents in background.
+ * <p/>
+ * Heartbeats are partitioned by host name across a fixed number of processing
+ * threads. Every heartbeat of a given host is always handled by the same
+ * thread, so reports of a single host are processed in the order they were
+ * received while different hosts are processed in parallel. Each processing
+ * thread owns a bounded queue; once it is full, the agent request which tries
+ * to enqueue a heartbeat blocks until there is room again.
+ * <p/>
+ * While running, the statistics of the processing threads are published as
+ * the {@value #MBEAN_NAME} MXBean and logged every minute.
  */
-public class HeartbeatProcessor extends AbstractService{
+public class HeartbeatProcessor extends AbstractService implements HeartbeatProcessorMXBean {
   private static final Logger LOG = LoggerFactory.getLogger(HeartbeatProcessor.class);
 
-  private ScheduledExecutorService executor;
+  /**
+   * The amount of time a processing thread waits for a new heartbeat before
+   * re-checking whether it should still be running.
+   */
+  private static final long POLL_TIMEOUT_MS = 1000;
 
-  private ConcurrentLinkedQueue<HeartBeat> heartBeatsQueue = new ConcurrentLinkedQueue<>();
+  /**
+   * The amount of time to wait for the processing threads to finish the
+   * heartbeats they are working on when stopping.
+   */
+  private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
 
-  private volatile boolean shouldRun = true;
+  private static final long REPORT_INTERVAL_SECONDS = 60;
 
-  //TODO rewrite to correlate with heartbeat frequency, hardcoded in agent as of now
-  private long delay = 5000;
-  private long period = 1000;
+  /**
+   * The name of the MXBean publishing {@link #getShardStatistics()}.
+   */
+  public static final String MBEAN_NAME = "org.apache.ambari.server:type=HeartbeatProcessor";
+
+  private ExecutorService executor;
+
+  private ScheduledExecutorService reporter;
+
+  /**
+   * The number of blocked heartbeats at the last report.
+   */
+  private long reportedBlockedCount;
 
-  private int poolSize = 1;
+  private final HeartbeatShard[] shards;
+
+  private volatile boolean shouldRun = true;
+
+  private int poolSize;
 
   private Clusters clusterFsm;
   private HeartbeatMonitor heartbeatMonitor;
   private Injector injector;
   private ActionManager actionManager;
 
+  @Inject
+  Configuration config;
+
   /**
    * Publishes {@link AlertEvent} instances.
    */
@@ -144,57 +187,313 @@ public class HeartbeatProcessor extends AbstractService{
     this.heartbeatMonitor = heartbeatMonitor;
     this.clusterFsm = clusterFsm;
     actionManager = am;
+
+    poolSize = Math.max(1, config.getHeartbeatProcessorThreads());
+    int queueSize = Math.max(1, config.getHeartbeatProcessorQueueSize());
+
+    shards = new HeartbeatShard[poolSize];
+    for (int i = 0; i < poolSize; i++) {
+      shards[i] = new HeartbeatShard(i, queueSize);
+    }
+
     ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("ambari-heartbeat-processor-%d").build();
-    executor = Executors.newScheduledThreadPool(poolSize, threadFactory);
+    executor = Executors.newFixedThreadPool(poolSize, threadFactory);
   }
 
   @Override
   protected void doStart() {
-    LOG.info("**** Starting heartbeats processing threads ****");
-    for (int i=0; i< poolSize; i++) {
-      executor.scheduleAtFixedRate(new HeartbeatProcessingTask(), delay, period, TimeUnit.MILLISECONDS);
+    LOG.info("**** Starting {} heartbeats processing threads ****", poolSize);
+    for (HeartbeatShard shard : shards) {
+      executor.execute(new HeartbeatProcessingTask(shard));
     }
+
+    registerMBean();
+    reporter = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("ambari-heartbeat-processor-reporter").setDaemon(true).build());
+    reporter.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        logShardStatistics();
+      }
+    }, REPORT_INTERVAL_SECONDS, REPORT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+
+    notifyStarted();
   }
 
   @Override
   protected void doStop() {
     LOG.info("**** Stopping heartbeats processing threads ****");
     shouldRun = false;
+    if (null != reporter) {
+      reporter.shutdown();
+    }
+    unregisterMBean();
+
+    // let the threads finish the heartbeat in hand instead of interrupting
+    // the database work in progress
     executor.shutdown();
+    try {
+      if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        LOG.warn("Heartbeat processing threads did not stop within {} seconds", SHUTDOWN_TIMEOUT_SECONDS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    notifyStopped();
   }
 
-  public void addHeartbeat(HeartBeat heartBeat) {
-    heartBeatsQueue.add(heartBeat);
+  /**
+   * Queues the heartbeat for processing by the thread which owns the
+   * heartbeat's host. If that thread's queue is full, the caller blocks until
+   * the heartbeat can be queued.
+   *
+   * @param heartBeat
+   *          the heartbeat to queue (not {@code null}).
+   * @throws AmbariException
+   *           if the calling thread was interrupted while waiting for room in
+   *           the queue.
+   */
+  public void addHeartbeat(HeartBeat heartBeat) throws AmbariException {
+    HeartbeatShard shard = getShard(heartBeat.getHostname());
+    if (shard.queue.offer(heartBeat)) {
+      return;
+    }
+
+    shard.blockedCount.incrementAndGet();
+    LOG.warn("Heartbeat processing queue {} is full with {} pending heartbeats, blocking until {} can be queued",
+        shard.id, shard.queue.size(), heartBeat.getHostname());
+
+    try {
+      shard.queue.put(heartBeat);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AmbariException("Interrupted while queueing heartbeat from " + heartBeat.getHostname(), e);
+    }
   }
 
-  private HeartBeat pollHeartbeat() {
-    return heartBeatsQueue.poll();
+  /**
+   * Gets statistics for each of the heartbeat processing threads, such as the
+   * number of pending heartbeats and the time taken to process them.
+   *
+   * @return the statistics of every processing thread, indexed by thread
+   *         number.
+   */
+  @Override
+  public List<HeartbeatShardStatistics> getShardStatistics() {
+    List<HeartbeatShardStatistics> statistics = new ArrayList<>(shards.length);
+    for (HeartbeatShard shard : shards) {
+      statistics.add(new HeartbeatShardStatistics(shard));
+    }
+    return statistics;
   }
 
   /**
-   * Processing task to be scheduled for execution
+   * Logs the statistics of the processing threads. They are logged at INFO
+   * level if heartbeats are pending or agent requests had to wait for room in
+   * a queue since the last report, at DEBUG level otherwise.
+   */
+  void logShardStatistics() {
+    List<HeartbeatShardStatistics> statistics = getShardStatistics();
+    int queueDepth = 0;
+    long blockedCount = 0;
+    for (HeartbeatShardStatistics shardStatistics : statistics) {
+      queueDepth += shardStatistics.getQueueDepth();
+      blockedCount += shardStatistics.getBlockedCount();
+    }
+
+    boolean backlog = queueDepth > 0 || blockedCount > reportedBlockedCount;
+    reportedBlockedCount = blockedCount;
+    if (backlog || LOG.isDebugEnabled()) {
+      for (HeartbeatShardStatistics shardStatistics : statistics) {
+        if (backlog) {
+          LOG.info("Heartbeat processing: {}", shardStatistics);
+        } else {
+          LOG.debug("Heartbeat processing: {}", shardStatistics);
+        }
+      }
+    }
+  }
+
+  private void registerMBean() {
+    try {
+      MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(MBEAN_NAME);
+      if (mBeanServer.isRegistered(name)) {
+        mBeanServer.unregisterMBean(name);
+      }
+      mBeanServer.registerMBean(this, name);
+    } catch (JMException e) {
+      LOG.warn("Unable to register the heartbeat processing statistics MXBean", e);
+    }
+  }
+
+  private void unregisterMBean() {
+    try {
+      MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(MBEAN_NAME);
+      if (mBeanServer.isRegistered(name)) {
+        mBeanServer.unregisterMBean(name);
+      }
+    } catch (JMException e) {
+      LOG.warn("Unable to unregister the heartbeat processing statistics MXBean", e);
+    }
+  }
+
+  /**
+   * Gets the processing thread which owns the specified host.
+   *
+   * @param hostname
+   *          the host name
+   * @return the shard which processes all heartbeats of the host.
+   */
+  HeartbeatShard getShard(String hostname) {
+    int hash = null == hostname ? 0 : hostname.hashCode();
+    return shards[(hash & Integer.MAX_VALUE) % shards.length];
+  }
+
+  /**
+   * Processing task which drains the queue of a single shard.
    */
   private class HeartbeatProcessingTask implements Runnable {
 
+    private final HeartbeatShard shard;
+
+    private HeartbeatProcessingTask(HeartbeatShard shard) {
+      this.shard = shard;
+    }
+
     @Override
     public void run() {
       while (shouldRun) {
+        HeartBeat heartbeat;
+        try {
+          heartbeat = shard.queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+
+        if (heartbeat == null) {
+          continue;
+        }
+
+        long startTime = System.nanoTime();
         try {
-          HeartBeat heartbeat = pollHeartbeat();
-          if (heartbeat == null) {
-            break;
-          }
           processHeartbeat(heartbeat);
         } catch (Exception e) {
           LOG.error("Exception received while processing heartbeat", e);
         } catch (Throwable throwable) {
           //catch everything to prevent task suppression
           LOG.error("ERROR: ", throwable);
+        } finally {
+          shard.recordProcessingTime(System.nanoTime() - startTime);
         }
+      }
+    }
+  }
 
+  /**
+   * The queue of pending heartbeats for a single processing thread along with
+   * the counters describing the work done by that thread.
+   */
+  static final class HeartbeatShard {
+    private final int id;
+    private final BlockingQueue<HeartBeat> queue;
+    private final AtomicLong processedCount = new AtomicLong();
+    private final AtomicLong totalProcessingNanos = new AtomicLong();
+    private final AtomicLong maxProcessingNanos = new AtomicLong();
+    private final AtomicLong blockedCount = new AtomicLong();
+
+    private HeartbeatShard(int id, int capacity) {
+      this.id = id;
+      queue = new LinkedBlockingQueue<>(capacity);
+    }
+
+    private void recordProcessingTime(long nanos) {
+      processedCount.incrementAndGet();
+      totalProcessingNanos.addAndGet(nanos);
 
+      long max = maxProcessingNanos.get();
+      while (nanos > max && !maxProcessingNanos.compareAndSet(max, nanos)) {
+        max = maxProcessingNanos.get();
       }
     }
+
+    int getId() {
+      return id;
+    }
+  }
+
+  /**
+   * A point-in-time view of the state of a heartbeat processing thread.
+   */
+  public static final class HeartbeatShardStatistics {
+    private final int shard;
+    private final int queueDepth;
+    private final long processedCount;
+    private final long blockedCount;
+    private final long averageProcessingTimeMs;
+    private final long maxProcessingTimeMs;
+
+    private HeartbeatShardStatistics(HeartbeatShard heartbeatShard) {
+      shard = heartbeatShard.id;
+      queueDepth = heartbeatShard.queue.size();
+      processedCount = heartbeatShard.processedCount.get();
+      blockedCount = heartbeatShard.blockedCount.get();
+      maxProcessingTimeMs = TimeUnit.NANOSECONDS.toMillis(heartbeatShard.maxProcessingNanos.get());
+      averageProcessingTimeMs = processedCount == 0 ? 0 :
+          TimeUnit.NANOSECONDS.toMillis(heartbeatShard.totalProcessingNanos.get() / processedCount);
+    }
+
+    /**
+     * @return the number of the processing thread
+     */
+    public int getShard() {
+      return shard;
+    }
+
+    /**
+     * @return the number of heartbeats waiting to be processed
+     */
+    public int getQueueDepth() {
+      return queueDepth;
+    }
+
+    /**
+     * @return the number of heartbeats processed so far
+     */
+    public long getProcessedCount() {
+      return processedCount;
+    }
+
+    /**
+     * @return the number of times an agent request had to wait for room in the queue
+     */
+    public long getBlockedCount() {
+      return blockedCount;
+    }
+
+    /**
+     * @return the average time taken to process a heartbeat
+     */
+    public long getAverageProcessingTimeMs() {
+      return averageProcessingTimeMs;
+    }
+
+    /**
+     * @return the longest time taken to process a heartbeat
+     */
+    public long getMaxProcessingTimeMs() {
+      return maxProcessingTimeMs;
+    }
+
+    @Override
+    public String toString() {
+      return "HeartbeatShardStatistics{shard=" + shard + ", queueDepth=" + queueDepth
+          + ", processedCount=" + processedCount + ", blockedCount=" + blockedCount
+          + ", averageProcessingTimeMs=" + averageProcessingTimeMs
+          + ", maxProcessingTimeMs=" + maxProcessingTimeMs + "}";
+    }
   }
 
   /**
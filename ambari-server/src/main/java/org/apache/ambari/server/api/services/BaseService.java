@@ -27,15 +27,22 @@ import org.apache.ambari.server.api.services.parsers.RequestBodyParser;
 import org.apache.ambari.server.api.services.serializers.CsvSerializer;
 import org.apache.ambari.server.api.services.serializers.JsonSerializer;
 import org.apache.ambari.server.api.services.serializers.ResultSerializer;
+import org.apache.ambari.server.api.services.serializers.StreamingResultSerializer;
 import org.apache.ambari.server.audit.request.RequestAuditLogger;
 import org.apache.ambari.server.controller.spi.Resource;
 import org.apache.ambari.server.utils.RetryHelper;
 import org.eclipse.jetty.util.ajax.JSON;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
@@ -48,6 +55,8 @@ import com.google.inject.Inject;
 public abstract class BaseService {
   public final static MediaType MEDIA_TYPE_TEXT_CSV_TYPE = new MediaType("text", "csv");
 
+  private final static Logger LOG = LoggerFactory.getLogger(BaseService.class);
+
   /**
    * Factory for creating resource instances.
    */
@@ -100,6 +109,8 @@ public abstract class BaseService {
                                    UriInfo uriInfo, Request.Type requestType,
                                    MediaType mediaType, ResourceInstance resource) {
 
+    long requestStart = System.nanoTime();
+
     // original request and initial result
     RequestBody rb = new RequestBody();
     rb.setBody(body);
@@ -134,7 +145,7 @@ public abstract class BaseService {
     ResultSerializer serializer = mediaType == null ? getResultSerializer() : getResultSerializer(mediaType);
 
     Response.ResponseBuilder builder = Response.status(result.getStatus().getStatusCode()).entity(
-        serializer.serialize(result));
+        serialize(serializer, result, requestType, uriInfo, requestStart));
 
     if (mediaType != null) {
       builder.type(mediaType);
@@ -144,6 +155,70 @@ public abstract class BaseService {
     return builder.build();
   }
 
+  /**
+   * Serialize the given result into the response entity.  Successful read
+   * results are written to the response stream while they are being serialized
+   * when the serializer supports it and streaming is enabled for this service,
+   * instead of being rendered into a string first, so that large collections
+   * don't need to be held in memory twice.
+   * <p/>
+   * Once the first byte is written the status can no longer be changed, so a
+   * failure to serialize a streamed result is logged and raised from the
+   * stream as an {@link IOException}.  The container then aborts the response
+   * instead of completing it, so the client sees a broken response rather than
+   * truncated JSON which looks complete.
+   *
+   * @param serializer    the result serializer
+   * @param result        the result to serialize
+   * @param requestType   http request type
+   * @param uriInfo       uri information
+   * @param requestStart  time the request handling started at, in nanoseconds
+   *
+   * @return the response entity
+   */
+  private Object serialize(ResultSerializer serializer, final Result result, Request.Type requestType,
+                           final UriInfo uriInfo, final long requestStart) {
+
+    if (!isStreamingEnabled() || !(serializer instanceof StreamingResultSerializer) ||
+        requestType != Request.Type.GET || result.getStatus().isErrorState()) {
+      return serializer.serialize(result);
+    }
+
+    final StreamingResultSerializer streamingSerializer = (StreamingResultSerializer) serializer;
+
+    return new StreamingOutput() {
+      @Override
+      public void write(OutputStream output) throws IOException {
+        MeteredOutputStream out = new MeteredOutputStream(output);
+        try {
+          streamingSerializer.serialize(result, out);
+        } catch (RuntimeException e) {
+          LOG.error("Unable to serialize the result for {} after {} bytes were streamed",
+              uriInfo == null ? null : uriInfo.getRequestUri(), out.getByteCount(), e);
+          throw new IOException("Unable to serialize result: " + e, e);
+        }
+
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Streamed {} bytes for {}, first byte after {} ms, last byte after {} ms",
+              out.getByteCount(), uriInfo == null ? null : uriInfo.getRequestUri(),
+              (out.getFirstByteTime() - requestStart) / 1000000, (System.nanoTime() - requestStart) / 1000000);
+        }
+      }
+    };
+  }
+
+  /**
+   * Determine whether successful read results may be streamed to the client.
+   * Services which invoke {@link #handleRequest} themselves and read the
+   * response entity should return false so that the entity is the serialized
+   * result rather than a {@link StreamingOutput}.
+   *
+   * @return true if read results may be streamed
+   */
+  protected boolean isStreamingEnabled() {
+    return true;
+  }
+
   /**
    * Obtain the factory from which to create Request instances.
    *
@@ -220,4 +295,44 @@ public abstract class BaseService {
   protected RequestBodyParser getBodyParser() {
     return new JsonRequestBodyParser();
   }
+
+  /**
+   * Stream which keeps track of the number of bytes written through it and of
+   * when the first byte was written.
+   */
+  private static class MeteredOutputStream extends FilterOutputStream {
+    private long byteCount;
+    private long firstByteTime;
+
+    private MeteredOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      written(1);
+      out.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      written(len);
+      out.write(b, off, len);
+    }
+
+    private void written(int len) {
+      if (byteCount == 0 && len > 0) {
+        firstByteTime = System.nanoTime();
+      }
+      byteCount += len;
+    }
+
+    public long getByteCount() {
+      return byteCount;
+    }
+
+    public long getFirstByteTime() {
+      return firstByteTime;
+    }
+  }
 }
@@ -26,6 +26,7 @@ import org.apache.ambari.server.api.util.TreeNode;
 import org.codehaus.jackson.JsonFactory;
 import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.SerializationConfig;
 import org.codehaus.jackson.util.DefaultPrettyPrinter;
 
 import java.io.*;
@@ -37,14 +38,15 @@ import java.util.Map;
  * JSON serializer.
  * Responsible for representing a result as JSON.
  */
-public class JsonSerializer implements ResultSerializer {
+public class JsonSerializer implements StreamingResultSerializer {
 
   /**
    * Factory used to create JSON generator.
    */
   JsonFactory m_factory = new JsonFactory();
 
-  ObjectMapper m_mapper = new ObjectMapper(m_factory);
+  ObjectMapper m_mapper = new ObjectMapper(m_factory).configure(
+      SerializationConfig.Feature.FLUSH_AFTER_WRITE_VALUE, false);
 
   /**
    * Generator which writes JSON.
@@ -55,16 +57,12 @@ public class JsonSerializer implements ResultSerializer {
   @Override
   public Object serialize(Result result) {
     try {
-      ByteArrayOutputStream bytesOut = init();
-
       if (result.getStatus().isErrorState()) {
         return serializeError(result.getStatus());
       }
 
-      TreeNode<Resource> treeNode = result.getResultTree();
-      processNode(treeNode);
-
-      m_generator.close();
+      ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+      serialize(result, bytesOut);
       return bytesOut.toString("UTF-8");
     } catch (IOException e) {
       //todo: exception handling.  Create ResultStatus 500 and call serializeError
@@ -72,6 +70,17 @@ public class JsonSerializer implements ResultSerializer {
     }
   }
 
+  @Override
+  public void serialize(Result result, OutputStream out) throws IOException {
+    m_generator = createJsonGenerator(out);
+
+    TreeNode<Resource> treeNode = result.getResultTree();
+    processNode(treeNode);
+
+    // flush rather than close, the stream belongs to the caller
+    m_generator.flush();
+  }
+
   @Override
   public Object serializeError(ResultStatus error) {
     try {
@@ -202,8 +211,8 @@ public class JsonSerializer implements ResultSerializer {
     }
   }
 
-  private JsonGenerator createJsonGenerator(ByteArrayOutputStream baos) throws IOException {
-    JsonGenerator generator = m_factory.createJsonGenerator(new OutputStreamWriter(baos,
+  private JsonGenerator createJsonGenerator(OutputStream out) throws IOException {
+    JsonGenerator generator = m_factory.createJsonGenerator(new OutputStreamWriter(out,
         Charset.forName("UTF-8").newEncoder()));
 
     DefaultPrettyPrinter p = new DefaultPrettyPrinter();
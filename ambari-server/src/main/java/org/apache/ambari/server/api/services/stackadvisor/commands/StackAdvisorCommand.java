@@ -296,6 +296,15 @@ public abstract class StackAdvisorCommand<T extends StackAdvisorResponse> extend
     }
   }
 
+  /**
+   * The hosts and services information is read back from the response entity
+   * as a string, so it must not be streamed.
+   */
+  @Override
+  protected boolean isStreamingEnabled() {
+    return false;
+  }
+
   String getHostsInformation(StackAdvisorRequest request) throws StackAdvisorException {
     String hostsURI = String.format(GET_HOSTS_INFO_URI, request.getHostsCommaSeparated());
 
@@ -410,6 +410,36 @@ public class Configuration {
    * running on not interfering host sets may be executed in parallel.
    */
   public static final String PARALLEL_STAGE_EXECUTION_KEY = "server.stages.parallel";
+
+  /**
+   * This key defines whether the action scheduler keeps the in-progress stages
+   * in memory between invocations and only reloads the stages whose commands
+   * have changed, instead of querying for every in-progress stage on each
+   * wakeup. It only takes effect while {@link #SERVER_HRC_STATUS_SUMMARY_CACHE_ENABLED}
+   * is enabled, since the changes are tracked under the lock of that cache.
+   */
+  public static final String INCREMENTAL_STAGE_SCHEDULING_KEY = "server.stages.incremental";
+
+  /**
+   * The interval, in seconds, after which the incrementally maintained
+   * in-progress stages are discarded and reloaded from the database.
+   */
+  public static final String INCREMENTAL_STAGE_SCHEDULING_RESYNC_INTERVAL_KEY = "server.stages.incremental.resync.interval";
+
+  /**
+   * The interval, in milliseconds, at which in progress task status and
+   * output reported by the agents are written to the database. Reports of
+   * completed tasks are always written immediately. A value of {@code 0}
+   * writes every report immediately.
+   */
+  public static final String TASK_STATUS_UPDATE_INTERVAL_KEY = "server.tasks.status.update.interval";
+
+  /**
+   * This key defines whether the locks of the cluster, its services,
+   * components and host components record how long threads wait for and hold
+   * them. The statistics are logged periodically, per lock.
+   */
+  public static final String SERVER_LOCKS_PROFILING_KEY = "server.locks.profiling";
   public static final String AGENT_TASK_TIMEOUT_KEY = "agent.task.timeout";
   public static final String AGENT_PACKAGE_INSTALL_TASK_TIMEOUT_KEY = "agent.package.install.task.timeout";
 
@@ -523,12 +553,21 @@ public class Configuration {
   private static final String REPO_SUFFIX_UBUNTU = "/dists/%s/Release";
 
   private static final String PARALLEL_STAGE_EXECUTION_DEFAULT = "true";
+  private static final String INCREMENTAL_STAGE_SCHEDULING_DEFAULT = "false";
+  private static final String INCREMENTAL_STAGE_SCHEDULING_RESYNC_INTERVAL_DEFAULT = "300";
+  private static final String TASK_STATUS_UPDATE_INTERVAL_DEFAULT = "0";
+  private static final String SERVER_LOCKS_PROFILING_DEFAULT = "false";
 
   private static final String CLIENT_THREADPOOL_SIZE_KEY = "client.threadpool.size.max";
   private static final int CLIENT_THREADPOOL_SIZE_DEFAULT = 25;
   private static final String AGENT_THREADPOOL_SIZE_KEY = "agent.threadpool.size.max";
   private static final int AGENT_THREADPOOL_SIZE_DEFAULT = 25;
 
+  private static final String AGENT_HEARTBEAT_PROCESSOR_THREADS_KEY = "agent.heartbeat.processor.threads";
+  private static final int AGENT_HEARTBEAT_PROCESSOR_THREADS_DEFAULT = 4;
+  private static final String AGENT_HEARTBEAT_PROCESSOR_QUEUE_SIZE_KEY = "agent.heartbeat.processor.queue.size";
+  private static final int AGENT_HEARTBEAT_PROCESSOR_QUEUE_SIZE_DEFAULT = 1000;
+
   private static final String VIEW_EXTRACTION_THREADPOOL_MAX_SIZE_KEY = "view.extraction.threadpool.size.max";
   private static final int VIEW_EXTRACTION_THREADPOOL_MAX_SIZE_DEFAULT = 20;
   private static final String VIEW_EXTRACTION_THREADPOOL_CORE_SIZE_KEY = "view.extraction.threadpool.size.core";
@@ -2217,6 +2256,44 @@ public class Configuration {
     return "true".equalsIgnoreCase(configsMap.get(PARALLEL_STAGE_EXECUTION_KEY));
   }
 
+  /**
+   * Gets whether the in-progress stages should be maintained incrementally
+   * between action scheduler invocations. The default is {@code false}.
+   *
+   * @return {@code true} if incremental stage scheduling is enabled,
+   *         {@code false} otherwise.
+   */
+  public boolean isIncrementalStageSchedulingEnabled() {
+    return Boolean.parseBoolean(properties.getProperty(
+      INCREMENTAL_STAGE_SCHEDULING_KEY, INCREMENTAL_STAGE_SCHEDULING_DEFAULT));
+  }
+
+  /**
+   * Gets the interval, in seconds, after which incrementally maintained
+   * in-progress stages are fully reloaded from the database. This guards
+   * against changes to commands which were not tracked. The default is 300
+   * seconds.
+   *
+   * @return the resync interval in seconds
+   */
+  public long getIncrementalStageSchedulingResyncInterval() {
+    return Long.parseLong(properties.getProperty(
+      INCREMENTAL_STAGE_SCHEDULING_RESYNC_INTERVAL_KEY, INCREMENTAL_STAGE_SCHEDULING_RESYNC_INTERVAL_DEFAULT));
+  }
+
+  /**
+   * Gets the interval, in milliseconds, at which the in progress task status
+   * and output reported by the agents are coalesced and written to the
+   * database. The default is {@code 0}, which writes every report as it is
+   * received.
+   *
+   * @return the task status update interval in milliseconds
+   */
+  public long getTaskStatusUpdateInterval() {
+    return Long.parseLong(properties.getProperty(
+      TASK_STATUS_UPDATE_INTERVAL_KEY, TASK_STATUS_UPDATE_INTERVAL_DEFAULT));
+  }
+
   public String getCustomActionDefinitionPath() {
     return properties.getProperty(CUSTOM_ACTION_DEFINITION_KEY,
       CUSTOM_ACTION_DEFINITION_DEF_VALUE);
@@ -2293,6 +2370,30 @@ public class Configuration {
       AGENT_THREADPOOL_SIZE_KEY, String.valueOf(AGENT_THREADPOOL_SIZE_DEFAULT)));
   }
 
+  /**
+   * Get the number of threads used to process agent heartbeats. Heartbeats are
+   * partitioned by host name so that each host is always handled by the same
+   * thread.
+   *
+   * @return the number of heartbeat processing threads, default 4
+   */
+  public int getHeartbeatProcessorThreads() {
+    return Integer.parseInt(properties.getProperty(AGENT_HEARTBEAT_PROCESSOR_THREADS_KEY,
+      String.valueOf(AGENT_HEARTBEAT_PROCESSOR_THREADS_DEFAULT)));
+  }
+
+  /**
+   * Get the maximum number of heartbeats which can be pending for a single
+   * heartbeat processing thread. Agent requests block once this limit is
+   * reached.
+   *
+   * @return the heartbeat queue capacity per processing thread, default 1000
+   */
+  public int getHeartbeatProcessorQueueSize() {
+    return Integer.parseInt(properties.getProperty(AGENT_HEARTBEAT_PROCESSOR_QUEUE_SIZE_KEY,
+      String.valueOf(AGENT_HEARTBEAT_PROCESSOR_QUEUE_SIZE_DEFAULT)));
+  }
+
   /**
    * Get the view extraction thread pool max size.
    *
@@ -2850,6 +2951,19 @@ public class Configuration {
       properties.getProperty(VERSION_DEFINITION_CONNECT_TIMEOUT),
       VERSION_DEFINITION_CONNECT_TIMEOUT_DEFAULT);
   }
+
+  /**
+   * Gets whether lock wait and hold times are recorded. The default is
+   * {@code false}.
+   *
+   * @return {@code true} if lock profiling is enabled, {@code false}
+   *         otherwise.
+   */
+  public boolean isServerLocksProfilingEnabled() {
+    return Boolean.parseBoolean(properties.getProperty(
+      SERVER_LOCKS_PROFILING_KEY, SERVER_LOCKS_PROFILING_DEFAULT));
+  }
+
   /**
    * @return the read timeout used when loading a version definition URL
    */
@@ -860,8 +860,7 @@ public class AmbariCustomCommandExecutionHelper {
         clusterName, actionExecutionContext.getActionName(), resourceFilters
       );
 
-      String clusterHostInfoJson = StageUtils.getGson().toJson(
-          StageUtils.getClusterHostInfo(cluster));
+      String clusterHostInfoJson = StageUtils.getClusterHostInfoJson(cluster);
 
       // Reset cluster host info as it has changed
       stage.setClusterHostInfo(clusterHostInfoJson);
@@ -1117,12 +1116,10 @@ public class AmbariCustomCommandExecutionHelper {
 
     Map<String, String> commandParamsStage = StageUtils.getCommandParamsStage(actionExecContext);
     Map<String, String> hostParamsStage = new HashMap<String, String>();
-    Map<String, Set<String>> clusterHostInfo;
     String clusterHostInfoJson = "{}";
 
     if (null != cluster) {
-      clusterHostInfo = StageUtils.getClusterHostInfo(
-          cluster);
+      clusterHostInfoJson = StageUtils.getClusterHostInfoJson(cluster);
       // Important, because this runs during Stack Uprade, it needs to use the effective Stack Id.
       hostParamsStage = createDefaultHostParams(cluster, stackId);
       String componentName = null;
@@ -1143,7 +1140,6 @@ public class AmbariCustomCommandExecutionHelper {
         String clientsToUpdateConfigs = gson.toJson(clientsToUpdateConfigsList);
         hostParamsStage.put(CLIENTS_TO_UPDATE_CONFIGS, clientsToUpdateConfigs);
       }
-      clusterHostInfoJson = StageUtils.getGson().toJson(clusterHostInfo);
 
       //Propogate HCFS service type info to command params
       Iterator<Service> it = cluster.getServices().values().iterator();
@@ -2394,9 +2394,7 @@ public class AmbariManagementControllerImpl implements AmbariManagementControlle
 
       // FIXME cannot work with a single stage
       // multiple stages may be needed for reconfigure
-      Map<String, Set<String>> clusterHostInfo = StageUtils.getClusterHostInfo(cluster);
-
-      String clusterHostInfoJson = StageUtils.getGson().toJson(clusterHostInfo);
+      String clusterHostInfoJson = StageUtils.getClusterHostInfoJson(cluster);
       String hostParamsJson = StageUtils.getGson().toJson(
           customCommandExecutionHelper.createDefaultHostParams(cluster));
 
@@ -2715,8 +2713,7 @@ public class AmbariManagementControllerImpl implements AmbariManagementControlle
   public ExecutionCommand getExecutionCommand(Cluster cluster,
                                               ServiceComponentHost scHost,
                                               RoleCommand roleCommand) throws AmbariException {
-    Map<String, Set<String>> clusterHostInfo = StageUtils.getClusterHostInfo(cluster);
-    String clusterHostInfoJson = StageUtils.getGson().toJson(clusterHostInfo);
+    String clusterHostInfoJson = StageUtils.getClusterHostInfoJson(cluster);
     Map<String, String> hostParamsCmd = customCommandExecutionHelper.createDefaultHostParams(cluster);
     Stage stage = createNewStage(0, cluster,
                                  1, "",
@@ -1623,8 +1623,7 @@ public class KerberosHelperImpl implements KerberosHelper {
     // Always set up the necessary stages to perform the tasks needed to complete the operation.
     // Some stages may be no-ops, this is expected.
     // Gather data needed to create stages and tasks...
-    Map<String, Set<String>> clusterHostInfo = StageUtils.getClusterHostInfo(cluster);
-    String clusterHostInfoJson = StageUtils.getGson().toJson(clusterHostInfo);
+    String clusterHostInfoJson = StageUtils.getClusterHostInfoJson(cluster);
     Map<String, String> hostParams = customCommandExecutionHelper.createDefaultHostParams(cluster);
     String hostParamsJson = StageUtils.getGson().toJson(hostParams);
     String ambariServerHostname = StageUtils.getHostName();
@@ -1868,8 +1867,7 @@ public class KerberosHelperImpl implements KerberosHelper {
           // Always set up the necessary stages to perform the tasks needed to complete the operation.
           // Some stages may be no-ops, this is expected.
           // Gather data needed to create stages and tasks...
-          Map<String, Set<String>> clusterHostInfo = StageUtils.getClusterHostInfo(cluster);
-          String clusterHostInfoJson = StageUtils.getGson().toJson(clusterHostInfo);
+          String clusterHostInfoJson = StageUtils.getClusterHostInfoJson(cluster);
           Map<String, String> hostParams = customCommandExecutionHelper.createDefaultHostParams(cluster);
           String hostParamsJson = StageUtils.getGson().toJson(hostParams);
           String ambariServerHostname = StageUtils.getHostName();
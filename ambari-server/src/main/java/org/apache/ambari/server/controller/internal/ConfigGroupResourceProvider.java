@@ -48,6 +48,7 @@ import org.apache.ambari.server.security.authorization.RoleAuthorization;
 import org.apache.ambari.server.state.Cluster;
 import org.apache.ambari.server.state.Clusters;
 import org.apache.ambari.server.state.Config;
+import org.apache.ambari.server.state.ConfigHelper;
 import org.apache.ambari.server.state.ConfigImpl;
 import org.apache.ambari.server.state.Host;
 import org.apache.ambari.server.state.configgroup.ConfigGroup;
@@ -607,6 +608,9 @@ public class ConfigGroupResourceProvider extends
 
     Clusters clusters = getManagementController().getClusters();
 
+    // [ cluster -> config types of the updated groups, before and after ]
+    Map<Cluster, Set<String>> changedConfigTypes = new HashMap<Cluster, Set<String>>();
+
     for (ConfigGroupRequest request : requests) {
 
       Cluster cluster;
@@ -671,6 +675,15 @@ public class ConfigGroupResourceProvider extends
 
       // Update Configs
       verifyConfigs(request.getConfigs(), request.getClusterName());
+
+      Set<String> configTypes = changedConfigTypes.get(cluster);
+      if (configTypes == null) {
+        configTypes = new HashSet<String>();
+        changedConfigTypes.put(cluster, configTypes);
+      }
+      configTypes.addAll(configGroup.getConfigurations().keySet());
+      configTypes.addAll(request.getConfigs().keySet());
+
       configGroup.setConfigurations(request.getConfigs());
 
       // Save
@@ -694,7 +707,10 @@ public class ConfigGroupResourceProvider extends
       }
     }
 
-    getManagementController().getConfigHelper().invalidateStaleConfigsCache();
+    ConfigHelper configHelper = getManagementController().getConfigHelper();
+    for (Map.Entry<Cluster, Set<String>> entry : changedConfigTypes.entrySet()) {
+      configHelper.invalidateStaleConfigsCache(entry.getKey(), entry.getValue());
+    }
   }
 
   @SuppressWarnings("unchecked")
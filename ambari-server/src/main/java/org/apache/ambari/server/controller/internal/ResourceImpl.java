@@ -23,12 +23,30 @@ import org.apache.ambari.server.controller.utilities.PropertyHelper;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Simple resource implementation.
+ * <p/>
+ * A resource is populated and read by one thread at a time; resources handed
+ * between threads are published through the executor that hands them over, so
+ * the property maps are not synchronized.
  */
 public class ResourceImpl implements Resource {
 
+  /**
+   * The maximum number of property ids kept in {@link #PROPERTY_ID_PARTS}.
+   */
+  private static final int MAX_CACHED_PROPERTY_IDS = 10000;
+
+  /**
+   * The category key and property name of property ids, keyed by property id.
+   * Resources of a type share a small set of property ids, so splitting each
+   * of them once lets all resources share the same key and name strings.
+   */
+  private static final ConcurrentMap<String, String[]> PROPERTY_ID_PARTS =
+      new ConcurrentHashMap<String, String[]>();
+
   /**
    * The resource type.
    */
@@ -37,8 +55,7 @@ public class ResourceImpl implements Resource {
   /**
    * The map of property maps keyed by property category.
    */
-  private final Map<String, Map<String, Object>> propertiesMap =
-      Collections.synchronizedMap(new TreeMap<String, Map<String, Object>>());
+  private final Map<String, Map<String, Object>> propertiesMap = new TreeMap<String, Map<String, Object>>();
 
   // ----- Constructors ------------------------------------------------------
 
@@ -75,11 +92,16 @@ public class ResourceImpl implements Resource {
       String category = categoryEntry.getKey();
       Map<String, Object> propertyMap = categoryEntry.getValue();
       if (propertyMap != null) {
+        boolean allProperties = propertyIds == null || propertyIds.isEmpty();
+        Map<String, Object> properties = null;
         for (Map.Entry<String, Object> propertyEntry : propertyMap.entrySet()) {
-          String propertyId = PropertyHelper.getPropertyId(category, propertyEntry.getKey());
-          if (propertyIds == null || propertyIds.isEmpty() || PropertyHelper.containsProperty(propertyIds, propertyId)) {
-            Object propertyValue = propertyEntry.getValue();
-            setProperty(propertyId, propertyValue);
+          if (allProperties || PropertyHelper.containsProperty(propertyIds,
+              PropertyHelper.getPropertyId(category, propertyEntry.getKey()))) {
+            // the category was already split from the property ids by the copied resource
+            if (properties == null) {
+              properties = getCategoryProperties(getCategoryKey(category));
+            }
+            properties.put(propertyEntry.getKey(), propertyEntry.getValue());
           }
         }
       }
@@ -101,14 +123,9 @@ public class ResourceImpl implements Resource {
 
   @Override
   public void setProperty(String id, Object value) {
-    String categoryKey = getCategoryKey(PropertyHelper.getPropertyCategory(id));
+    String[] parts = getPropertyIdParts(id);
 
-    Map<String, Object> properties = propertiesMap.get(categoryKey);
-    if (properties == null) {
-      properties = Collections.synchronizedMap(new TreeMap<String, Object>());
-      propertiesMap.put(categoryKey, properties);
-    }
-    properties.put(PropertyHelper.getPropertyName(id), value);
+    getCategoryProperties(parts[0]).put(parts[1], value);
   }
 
   @Override
@@ -122,12 +139,12 @@ public class ResourceImpl implements Resource {
 
   @Override
   public Object getPropertyValue(String id) {
-    String categoryKey = getCategoryKey(PropertyHelper.getPropertyCategory(id));
+    String[] parts = getPropertyIdParts(id);
 
-    Map<String, Object> properties = propertiesMap.get(categoryKey);
+    Map<String, Object> properties = propertiesMap.get(parts[0]);
 
     return properties == null ?
-        null : properties.get(PropertyHelper.getPropertyName(id));
+        null : properties.get(parts[1]);
   }
 
 
@@ -165,4 +182,42 @@ public class ResourceImpl implements Resource {
   private String getCategoryKey(String category) {
     return category == null ? "" : category;
   }
+
+  /**
+   * Get the properties of the given category, adding the category if needed.
+   *
+   * @param categoryKey  the category key
+   *
+   * @return the properties of the category
+   */
+  private Map<String, Object> getCategoryProperties(String categoryKey) {
+    Map<String, Object> properties = propertiesMap.get(categoryKey);
+    if (properties == null) {
+      properties = new TreeMap<String, Object>();
+      propertiesMap.put(categoryKey, properties);
+    }
+    return properties;
+  }
+
+  /**
+   * Split the given property id into its category key and property name.
+   *
+   * @param id  the property id
+   *
+   * @return the category key and the property name
+   */
+  private String[] getPropertyIdParts(String id) {
+    String[] parts = PROPERTY_ID_PARTS.get(id);
+    if (parts == null) {
+      parts = new String[] {
+          getCategoryKey(PropertyHelper.getPropertyCategory(id)), PropertyHelper.getPropertyName(id) };
+
+      // ids built from request input are not bounded, stop caching new ones
+      // rather than growing without limit
+      if (PROPERTY_ID_PARTS.size() < MAX_CACHED_PROPERTY_IDS) {
+        PROPERTY_ID_PARTS.putIfAbsent(id, parts);
+      }
+    }
+    return parts;
+  }
 }
@@ -0,0 +1,335 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.controller.jmx;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.ambari.server.controller.utilities.StreamProvider;
+import org.codehaus.jackson.map.ObjectReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Reads the JMX metrics of component endpoints for the JMX property providers.
+ * <p/>
+ * Concurrent reads of the same endpoint through the same stream provider are
+ * coalesced into a single request, and the metrics read are kept for a short
+ * time, so that API requests polling the same daemons share one connection to
+ * each of them instead of parking a thread per request on a slow daemon. Each
+ * response is read to the end before the stream is closed so that the
+ * connection can be kept alive and reused for the next read of the host.
+ * <p/>
+ * The latency, failures and timeouts of the reads are recorded per endpoint
+ * and published through {@link JMXMetricsCollectorMXBean}.
+ */
+public class JMXMetricsCollector implements JMXMetricsCollectorMXBean {
+
+  public static final String MBEAN_NAME = "org.apache.ambari.server:type=JMXMetricsCollector";
+
+  private final static Logger LOG = LoggerFactory.getLogger(JMXMetricsCollector.class);
+
+  /**
+   * The reader used to parse the JMX responses.
+   */
+  private final ObjectReader jmxObjectReader;
+
+  /**
+   * The recently read metrics.
+   */
+  private final Cache<Endpoint, JMXMetricHolder> metrics;
+
+  /**
+   * [ endpoint spec -> statistics ]
+   */
+  private final ConcurrentMap<String, EndpointStatistics> statistics =
+      new ConcurrentHashMap<String, EndpointStatistics>();
+
+  // ----- Constructors ------------------------------------------------------
+
+  /**
+   * Create a collector.
+   *
+   * @param jmxObjectReader  the reader used to parse the JMX responses
+   * @param ttl              how long the metrics read from an endpoint are reused
+   * @param unit             the unit of the ttl
+   * @param maxEndpoints     the maximum number of endpoints to keep metrics of
+   */
+  public JMXMetricsCollector(ObjectReader jmxObjectReader, long ttl, TimeUnit unit, int maxEndpoints) {
+    this.jmxObjectReader = jmxObjectReader;
+    metrics = CacheBuilder.newBuilder().expireAfterWrite(ttl, unit).maximumSize(maxEndpoints).build();
+  }
+
+  // ----- JMXMetricsCollector -----------------------------------------------
+
+  /**
+   * Get the JMX metrics of the given endpoint, reading them unless they were
+   * read recently or are being read by another thread.
+   *
+   * @param streamProvider  the stream provider used to read the endpoint
+   * @param spec            the endpoint spec
+   *
+   * @return the metrics of the endpoint
+   *
+   * @throws IOException if the metrics can not be read
+   */
+  public JMXMetricHolder getMetrics(final StreamProvider streamProvider, final String spec) throws IOException {
+    try {
+      return metrics.get(new Endpoint(streamProvider, spec), new Callable<JMXMetricHolder>() {
+        @Override
+        public JMXMetricHolder call() throws IOException {
+          return readMetrics(streamProvider, spec);
+        }
+      });
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new IOException(cause);
+    } catch (UncheckedExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw e;
+    }
+  }
+
+  @Override
+  public List<EndpointStatistics> getEndpointStatistics() {
+    List<EndpointStatistics> endpointStatistics = new ArrayList<EndpointStatistics>(statistics.values());
+    Collections.sort(endpointStatistics, new Comparator<EndpointStatistics>() {
+      @Override
+      public int compare(EndpointStatistics s1, EndpointStatistics s2) {
+        return s1.getSpec().compareTo(s2.getSpec());
+      }
+    });
+    return endpointStatistics;
+  }
+
+  /**
+   * Register this collector as {@value #MBEAN_NAME}, replacing any collector
+   * registered before.
+   */
+  public void registerMBean() {
+    try {
+      MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(MBEAN_NAME);
+      if (mBeanServer.isRegistered(name)) {
+        mBeanServer.unregisterMBean(name);
+      }
+      mBeanServer.registerMBean(this, name);
+    } catch (JMException e) {
+      LOG.warn("Unable to register the JMX endpoint statistics MXBean", e);
+    }
+  }
+
+  /**
+   * Discard all of the metrics read so far.
+   */
+  public void invalidateAll() {
+    metrics.invalidateAll();
+  }
+
+  // ----- helper methods ----------------------------------------------------
+
+  private JMXMetricHolder readMetrics(StreamProvider streamProvider, String spec) throws IOException {
+    EndpointStatistics endpointStatistics = getEndpointStatistics(spec);
+    long start = System.nanoTime();
+
+    InputStream in = null;
+    try {
+      in = streamProvider.readFrom(spec);
+
+      // the parser closes its source once done, keep the stream open to drain it
+      JMXMetricHolder metricHolder = jmxObjectReader.readValue(new FilterInputStream(in) {
+        @Override
+        public void close() {
+        }
+      });
+      if (metricHolder == null) {
+        throw new IOException("No JMX metrics returned by " + spec);
+      }
+
+      // let the connection be reused
+      byte[] buffer = new byte[1024];
+      while (in.read(buffer) != -1) {
+        // discard anything after the metrics
+      }
+
+      endpointStatistics.succeeded(System.nanoTime() - start);
+      return metricHolder;
+    } catch (IOException e) {
+      boolean timedOut = e instanceof SocketTimeoutException;
+      endpointStatistics.failed(System.nanoTime() - start, timedOut);
+      if (timedOut) {
+        LOG.warn("Timed out reading JMX metrics, {}", endpointStatistics);
+      }
+      throw e;
+    } finally {
+      if (in != null) {
+        try {
+          in.close();
+        } catch (IOException e) {
+          LOG.debug("Unable to close JMX metrics stream of " + spec, e);
+        }
+      }
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Read JMX metrics in {} ms, {}",
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), endpointStatistics);
+      }
+    }
+  }
+
+  private EndpointStatistics getEndpointStatistics(String spec) {
+    EndpointStatistics endpointStatistics = statistics.get(spec);
+    if (endpointStatistics == null) {
+      EndpointStatistics created = new EndpointStatistics(spec);
+      endpointStatistics = statistics.putIfAbsent(spec, created);
+      if (endpointStatistics == null) {
+        endpointStatistics = created;
+      }
+    }
+    return endpointStatistics;
+  }
+
+  // ----- inner classes -----------------------------------------------------
+
+  /**
+   * The statistics of the reads of a JMX endpoint.
+   */
+  public static class EndpointStatistics {
+    private final String spec;
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong totalLatency = new AtomicLong();
+    private final AtomicLong maxLatency = new AtomicLong();
+
+    private EndpointStatistics(String spec) {
+      this.spec = spec;
+    }
+
+    private void succeeded(long latency) {
+      read(latency);
+    }
+
+    private void failed(long latency, boolean timedOut) {
+      read(latency);
+      failures.incrementAndGet();
+      if (timedOut) {
+        timeouts.incrementAndGet();
+      }
+    }
+
+    private void read(long latency) {
+      reads.incrementAndGet();
+      totalLatency.addAndGet(latency);
+      long max = maxLatency.get();
+      while (latency > max && !maxLatency.compareAndSet(max, latency)) {
+        max = maxLatency.get();
+      }
+    }
+
+    public String getSpec() {
+      return spec;
+    }
+
+    public long getReads() {
+      return reads.get();
+    }
+
+    public long getFailures() {
+      return failures.get();
+    }
+
+    public long getTimeouts() {
+      return timeouts.get();
+    }
+
+    public long getAverageLatencyMs() {
+      long count = reads.get();
+      return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalLatency.get() / count);
+    }
+
+    public long getMaxLatencyMs() {
+      return TimeUnit.NANOSECONDS.toMillis(maxLatency.get());
+    }
+
+    @Override
+    public String toString() {
+      return "endpoint=" + spec + ", reads=" + getReads() + ", failures=" + getFailures() +
+          ", timeouts=" + getTimeouts() + ", avgLatencyMs=" + getAverageLatencyMs() +
+          ", maxLatencyMs=" + getMaxLatencyMs();
+    }
+  }
+
+  /**
+   * An endpoint read through a stream provider.  Stream providers are compared
+   * by identity since they may differ in their connection settings.
+   */
+  private static final class Endpoint {
+    private final StreamProvider streamProvider;
+    private final String spec;
+
+    private Endpoint(StreamProvider streamProvider, String spec) {
+      this.streamProvider = streamProvider;
+      this.spec = spec;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Endpoint)) {
+        return false;
+      }
+      Endpoint that = (Endpoint) o;
+      return streamProvider == that.streamProvider && spec.equals(that.spec);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(streamProvider) + spec.hashCode();
+    }
+  }
+}
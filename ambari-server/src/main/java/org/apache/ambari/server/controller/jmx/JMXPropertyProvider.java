@@ -33,7 +33,6 @@ import org.codehaus.jackson.type.TypeReference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -41,6 +40,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -56,6 +56,18 @@ public class JMXPropertyProvider extends ThreadPoolEnabledPropertyProvider {
   private final static ObjectReader jmxObjectReader;
   private final static ObjectReader stormObjectReader;
 
+  /**
+   * How long the metrics read from a JMX endpoint are shared by requests.
+   */
+  private static final long METRICS_TTL_SECONDS = 5;
+
+  /**
+   * The maximum number of JMX endpoints to keep recently read metrics of.
+   */
+  private static final int MAX_METRICS_ENDPOINTS = 10000;
+
+  private final static JMXMetricsCollector metricsCollector;
+
   private static final Map<String, String> DEFAULT_JMX_PORTS = new HashMap<String, String>();
 
   static {
@@ -78,6 +90,10 @@ public class JMXPropertyProvider extends ThreadPoolEnabledPropertyProvider {
             HashMap<String,Object>
             >() {};
     stormObjectReader = jmxObjectMapper.reader(typeRef);
+
+    metricsCollector = new JMXMetricsCollector(jmxObjectReader,
+        METRICS_TTL_SECONDS, TimeUnit.SECONDS, MAX_METRICS_ENDPOINTS);
+    metricsCollector.registerMBean();
   }
 
   protected final static Logger LOG =
@@ -204,39 +220,28 @@ public class JMXPropertyProvider extends ThreadPoolEnabledPropertyProvider {
       return resource;
     }
 
-    InputStream in = null;
-
-    try {
+    for (String hostName : hostNames) {
       try {
-        for (String hostName : hostNames) {
-          try {
-            String port = getPort(clusterName, componentName, hostName, httpsEnabled);
-            if (port == null) {
-              LOG.warn("Unable to get JMX metrics.  No port value for " + componentName);
-              return resource;
-            }
-            if (LOG.isDebugEnabled()) {
-              LOG.debug("Spec: " + getSpec(protocol, hostName, port, "/jmx"));
-            }
-            in = streamProvider.readFrom(getSpec(protocol, hostName, port, "/jmx"));
-            // if the ticket becomes invalid (timeout) then bail out
-            if (!ticket.isValid()) {
-              return resource;
-            }
-
-            getHadoopMetricValue(in, ids, resource, request, ticket);
-
-          } catch (IOException e) {
-            logException(e);
-          }
+        String port = getPort(clusterName, componentName, hostName, httpsEnabled);
+        if (port == null) {
+          LOG.warn("Unable to get JMX metrics.  No port value for " + componentName);
+          return resource;
+        }
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Spec: " + getSpec(protocol, hostName, port, "/jmx"));
         }
-      } finally {
-        if (in != null) {
-          in.close();
+        JMXMetricHolder metricHolder = metricsCollector.getMetrics(streamProvider,
+            getSpec(protocol, hostName, port, "/jmx"));
+        // if the ticket becomes invalid (timeout) then bail out
+        if (!ticket.isValid()) {
+          return resource;
         }
+
+        getHadoopMetricValue(metricHolder, ids, resource, request, ticket);
+
+      } catch (IOException e) {
+        logException(e);
       }
-    } catch (IOException e) {
-      logException(e);
     }
     return resource;
   }
@@ -244,10 +249,8 @@ public class JMXPropertyProvider extends ThreadPoolEnabledPropertyProvider {
   /**
    * Hadoop-specific metrics fetching
    */
-  private void getHadoopMetricValue(InputStream in, Set<String> ids,
-                       Resource resource, Request request, Ticket ticket) throws IOException {
-    JMXMetricHolder metricHolder = jmxObjectReader.readValue(in);
-
+  private void getHadoopMetricValue(JMXMetricHolder metricHolder, Set<String> ids,
+                       Resource resource, Request request, Ticket ticket) {
     Map<String, Map<String, Object>> categories = new HashMap<String, Map<String, Object>>();
     String componentName = (String) resource.getPropertyValue(componentNamePropertyId);
 
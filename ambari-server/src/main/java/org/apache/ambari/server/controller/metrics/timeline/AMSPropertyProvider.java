@@ -264,8 +264,9 @@ public abstract class AMSPropertyProvider extends MetricsPropertyProvider {
 
         if (!timelineMetrics.getMetrics().isEmpty()) {
           for (TimelineMetric metric : timelineMetrics.getMetrics()) {
+            // Check for values without inflating compact cached series
             if (metric.getMetricName() != null
-                && metric.getMetricValues() != null
+                && (metric.hasMetricSeries() || metric.getMetricValues() != null)
                 && checkMetricName(patterns, metric.getMetricName())) {
               String hostname = metric.getHostName();
               if (!metricsMap.containsKey(hostname)) {
@@ -218,7 +218,9 @@ public class AMSReportPropertyProvider extends MetricsReportPropertyProvider {
 
       if (timelineMetrics != null) {
         for (TimelineMetric metric : timelineMetrics.getMetrics()) {
-          if (metric.getMetricName() != null && metric.getMetricValues() != null) {
+          // Check for values without inflating compact cached series
+          if (metric.getMetricName() != null
+              && (metric.hasMetricSeries() || metric.getMetricValues() != null)) {
             // Pad zeros or nulls if needed to a clone so we do not cache
             // padded values
             TimelineMetric timelineMetricClone = new TimelineMetric(metric);
@@ -23,6 +23,7 @@ import net.sf.ehcache.pool.impl.DefaultSizeOfEngine;
 import net.sf.ehcache.pool.sizeof.ReflectionSizeOf;
 import net.sf.ehcache.pool.sizeof.SizeOf;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricSeries;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,6 +39,7 @@ public class TimelineMetricsCacheSizeOfEngine implements SizeOfEngine {
   private final static Logger LOG = LoggerFactory.getLogger(TimelineMetricsCacheSizeOfEngine.class);
   public static int DEFAULT_MAX_DEPTH = 1000;
   public static boolean DEFAULT_ABORT_WHEN_MAX_DEPTH_EXCEEDED = false;
+  private static final long SIZE_OF_SERIES_POINT = 16;
 
   private SizeOfEngine underlying = null;
   SizeOf reflectionSizeOf = new ReflectionSizeOf();
@@ -47,6 +49,7 @@ public class TimelineMetricsCacheSizeOfEngine implements SizeOfEngine {
 
   private long sizeOfMapEntry;
   private long sizeOfMapEntryOverhead;
+  private long sizeOfEmptySeries;
 
   private TimelineMetricsCacheSizeOfEngine(SizeOfEngine underlying) {
     this.underlying = underlying;
@@ -65,6 +68,9 @@ public class TimelineMetricsCacheSizeOfEngine implements SizeOfEngine {
     long sizeOfMapOneEntry = reflectionSizeOf.deepSizeOf(DEFAULT_MAX_DEPTH, DEFAULT_ABORT_WHEN_MAX_DEPTH_EXCEEDED, map).getCalculated();
     this.sizeOfMapEntryOverhead =  sizeOfMapOneEntry - (emptyMapSize + this.sizeOfMapEntry);
 
+    this.sizeOfEmptySeries = reflectionSizeOf.deepSizeOf(DEFAULT_MAX_DEPTH,
+      DEFAULT_ABORT_WHEN_MAX_DEPTH_EXCEEDED, new TimelineMetricSeries(0)).getCalculated();
+
     LOG.info("Creating custom sizeof engine for TimelineMetrics.");
   }
 
@@ -126,6 +132,13 @@ public class TimelineMetricsCacheSizeOfEngine implements SizeOfEngine {
         }
         size += timelineMetricPrimitivesApproximation;
 
+        if (metric.hasMetricSeries()) {
+          // Compact series: one long and one double per data point, arrays
+          // are trimmed to size by the cache
+          size += sizeOfEmptySeries + SIZE_OF_SERIES_POINT * metric.getMetricValuesCount();
+          continue;
+        }
+
         Map<Long, Double> metricValues = metric.getMetricValues();
         if (metricValues != null && !metricValues.isEmpty()) {
           // Numeric wrapper: 12 bytes + 8 bytes Data type + 4 bytes alignment = 48 (Long, Double)
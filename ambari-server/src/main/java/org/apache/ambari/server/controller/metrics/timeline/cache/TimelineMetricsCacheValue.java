@@ -92,7 +92,7 @@ public class TimelineMetricsCacheValue {
       sb.append(", ");
       sb.append(metric.getHostName());
       sb.append(" # ");
-      sb.append(metric.getMetricValues().size());
+      sb.append(metric.getMetricValuesCount());
       sb.append(" }");
     }
 
@@ -0,0 +1,150 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.logging;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.ambari.server.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Creates the locks of the cluster state objects. When
+ * {@link Configuration#SERVER_LOCKS_PROFILING_KEY} is enabled the locks record
+ * how long threads wait for and hold them, grouped by lock name, and the
+ * totals are logged every minute so that contended locks can be found on a
+ * live server. Otherwise plain {@link ReentrantReadWriteLock}s are returned.
+ */
+@Singleton
+public class LockFactory {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LockFactory.class);
+
+  private static final long REPORT_INTERVAL_SECONDS = 60;
+
+  private final boolean profiling;
+
+  /**
+   * [ site -> statistics ]
+   */
+  private final ConcurrentMap<String, LockStatistics> statistics = new ConcurrentHashMap<String, LockStatistics>();
+
+  @Inject
+  public LockFactory(Configuration configuration) {
+    profiling = configuration.isServerLocksProfilingEnabled();
+    if (profiling) {
+      ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(
+          new ThreadFactoryBuilder().setNameFormat("lock-profiling-reporter").setDaemon(true).build());
+      reporter.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          logStatistics();
+        }
+      }, REPORT_INTERVAL_SECONDS, REPORT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+  }
+
+  /**
+   * Creates a read-write lock.
+   *
+   * @param name  the name the statistics of the lock are recorded under, all
+   *              locks of the same kind should share it
+   * @return the lock
+   */
+  public ReadWriteLock newReadWriteLock(String name) {
+    ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    if (!profiling) {
+      return lock;
+    }
+    return new ProfiledReadWriteLock(lock,
+        getStatistics(name + ".read"), getStatistics(name + ".write"));
+  }
+
+  public boolean isProfiling() {
+    return profiling;
+  }
+
+  /**
+   * @return the statistics recorded so far, empty unless profiling
+   */
+  public Collection<LockStatistics> getStatistics() {
+    return new ArrayList<LockStatistics>(statistics.values());
+  }
+
+  /**
+   * Logs the statistics of every lock site that was acquired.
+   */
+  public void logStatistics() {
+    List<LockStatistics> sites = new ArrayList<LockStatistics>(statistics.values());
+    for (LockStatistics site : sites) {
+      if (site.getAcquisitions() > 0) {
+        LOG.info("Lock profile: {}", site);
+      }
+    }
+  }
+
+  private LockStatistics getStatistics(String site) {
+    LockStatistics siteStatistics = statistics.get(site);
+    if (siteStatistics == null) {
+      LockStatistics created = new LockStatistics(site);
+      siteStatistics = statistics.putIfAbsent(site, created);
+      if (siteStatistics == null) {
+        siteStatistics = created;
+      }
+    }
+    return siteStatistics;
+  }
+
+  /**
+   * A read-write lock with profiled read and write locks.
+   */
+  private static final class ProfiledReadWriteLock implements ReadWriteLock {
+    private final Lock readLock;
+    private final Lock writeLock;
+
+    private ProfiledReadWriteLock(ReentrantReadWriteLock lock, LockStatistics readStatistics,
+                                  LockStatistics writeStatistics) {
+      readLock = new ProfiledLock(lock.readLock(), readStatistics);
+      writeLock = new ProfiledLock(lock.writeLock(), writeStatistics);
+    }
+
+    @Override
+    public Lock readLock() {
+      return readLock;
+    }
+
+    @Override
+    public Lock writeLock() {
+      return writeLock;
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.logging;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The wait and hold times recorded for one lock site, which is every lock
+ * created with the same name in the same mode (read or write).
+ */
+public class LockStatistics {
+
+  /**
+   * Acquisitions which take at least this long are counted as contended;
+   * acquiring a free lock takes far less, while a thread which has to wait
+   * for another holder is parked for longer.
+   */
+  static final long CONTENDED_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+
+  private final String site;
+  private final AtomicLong acquisitions = new AtomicLong();
+  private final AtomicLong contendedAcquisitions = new AtomicLong();
+  private final AtomicLong waitNanos = new AtomicLong();
+  private final AtomicLong maxWaitNanos = new AtomicLong();
+  private final AtomicLong holdNanos = new AtomicLong();
+  private final AtomicLong maxHoldNanos = new AtomicLong();
+
+  LockStatistics(String site) {
+    this.site = site;
+  }
+
+  /**
+   * Records an acquisition.
+   *
+   * @param waited  the time spent acquiring the lock
+   */
+  void acquired(long waited) {
+    acquisitions.incrementAndGet();
+    if (waited >= CONTENDED_WAIT_NANOS) {
+      contendedAcquisitions.incrementAndGet();
+    }
+    if (waited > 0) {
+      waitNanos.addAndGet(waited);
+      updateMax(maxWaitNanos, waited);
+    }
+  }
+
+  /**
+   * Records a release of the outermost hold.
+   *
+   * @param held  the time the lock was held
+   */
+  void released(long held) {
+    holdNanos.addAndGet(held);
+    updateMax(maxHoldNanos, held);
+  }
+
+  private static void updateMax(AtomicLong max, long value) {
+    long current = max.get();
+    while (value > current && !max.compareAndSet(current, value)) {
+      current = max.get();
+    }
+  }
+
+  /**
+   * @return the lock name followed by the mode, for example
+   *         {@code clusterGlobalLock.write}
+   */
+  public String getSite() {
+    return site;
+  }
+
+  public long getAcquisitions() {
+    return acquisitions.get();
+  }
+
+  /**
+   * @return the acquisitions that had to wait for another holder
+   */
+  public long getContendedAcquisitions() {
+    return contendedAcquisitions.get();
+  }
+
+  public long getWaitTime(TimeUnit unit) {
+    return unit.convert(waitNanos.get(), TimeUnit.NANOSECONDS);
+  }
+
+  public long getMaxWaitTime(TimeUnit unit) {
+    return unit.convert(maxWaitNanos.get(), TimeUnit.NANOSECONDS);
+  }
+
+  public long getHoldTime(TimeUnit unit) {
+    return unit.convert(holdNanos.get(), TimeUnit.NANOSECONDS);
+  }
+
+  public long getMaxHoldTime(TimeUnit unit) {
+    return unit.convert(maxHoldNanos.get(), TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public String toString() {
+    return site + "{acquisitions=" + getAcquisitions()
+        + ", contended=" + getContendedAcquisitions()
+        + ", waitMs=" + getWaitTime(TimeUnit.MILLISECONDS)
+        + ", maxWaitMs=" + getMaxWaitTime(TimeUnit.MILLISECONDS)
+        + ", holdMs=" + getHoldTime(TimeUnit.MILLISECONDS)
+        + ", maxHoldMs=" + getMaxHoldTime(TimeUnit.MILLISECONDS) + "}";
+  }
+}
@@ -0,0 +1,104 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.logging;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * A {@link Lock} that records into {@link LockStatistics} how long threads
+ * wait for it and how long they hold it. Reentrant acquisitions count towards
+ * the outermost hold only. The wait is measured around the acquisition of the
+ * delegate, so that the lock keeps its ordering of waiting threads.
+ */
+class ProfiledLock implements Lock {
+
+  private final Lock delegate;
+  private final LockStatistics statistics;
+
+  /**
+   * [ hold count, time of the outermost acquisition ] of the current thread
+   */
+  private final ThreadLocal<long[]> holds = new ThreadLocal<long[]>() {
+    @Override
+    protected long[] initialValue() {
+      return new long[2];
+    }
+  };
+
+  ProfiledLock(Lock delegate, LockStatistics statistics) {
+    this.delegate = delegate;
+    this.statistics = statistics;
+  }
+
+  @Override
+  public void lock() {
+    long start = System.nanoTime();
+    delegate.lock();
+    acquired(System.nanoTime() - start);
+  }
+
+  @Override
+  public void lockInterruptibly() throws InterruptedException {
+    long start = System.nanoTime();
+    delegate.lockInterruptibly();
+    acquired(System.nanoTime() - start);
+  }
+
+  @Override
+  public boolean tryLock() {
+    if (delegate.tryLock()) {
+      acquired(0);
+      return true;
+    }
+    return false;
+  }
+
+  @Override
+  public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+    long start = System.nanoTime();
+    if (delegate.tryLock(time, unit)) {
+      acquired(System.nanoTime() - start);
+      return true;
+    }
+    return false;
+  }
+
+  @Override
+  public void unlock() {
+    delegate.unlock();
+    long[] hold = holds.get();
+    if (--hold[0] == 0) {
+      statistics.released(System.nanoTime() - hold[1]);
+    }
+  }
+
+  @Override
+  public Condition newCondition() {
+    return delegate.newCondition();
+  }
+
+  private void acquired(long waited) {
+    long[] hold = holds.get();
+    if (hold[0]++ == 0) {
+      hold[1] = System.nanoTime();
+    }
+    statistics.acquired(waited);
+  }
+}
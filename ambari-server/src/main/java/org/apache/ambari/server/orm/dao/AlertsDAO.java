@@ -22,10 +22,12 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 
@@ -150,6 +152,16 @@ public class AlertsDAO implements Cleanable {
    */
   private LoadingCache<AlertCacheKey, AlertCurrentEntity> m_currentAlertCache = null;
 
+  /**
+   * The cached alerts which have been updated since they were last written to
+   * JPA. Only these are written by {@link #flushCachedEntitiesToJPA()}, and
+   * they are kept here even if they are evicted from
+   * {@link #m_currentAlertCache} so that their updates are not lost. Every
+   * update puts a new {@link DirtyAlert}, which tells a flush whether the
+   * alert was updated again while it was being written.
+   */
+  private final ConcurrentMap<AlertCacheKey, DirtyAlert> m_dirtyAlerts = new ConcurrentHashMap<>();
+
   /**
    * Constructor.
    *
@@ -170,6 +182,12 @@ public class AlertsDAO implements Cleanable {
           maximumSize).build(new CacheLoader<AlertCacheKey, AlertCurrentEntity>() {
             @Override
             public AlertCurrentEntity load(AlertCacheKey key) throws Exception {
+              // an evicted alert which was not written yet is more recent than JPA
+              DirtyAlert dirtyAlert = m_dirtyAlerts.get(key);
+              if (null != dirtyAlert) {
+                return dirtyAlert.getAlert();
+              }
+
               LOG.debug("Cache miss for alert key {}, fetching from JPA", key);
 
               final AlertCurrentEntity alertCurrentEntity;
@@ -754,9 +772,7 @@ public class AlertsDAO implements Cleanable {
 
     // if caching is enabled, invalidate the cache to force the latest values
     // back from the DB
-    if (m_configuration.isAlertCacheEnabled()) {
-      m_currentAlertCache.invalidateAll();
-    }
+    invalidateCachedAlerts();
   }
 
   /**
@@ -775,9 +791,7 @@ public class AlertsDAO implements Cleanable {
 
     // if caching is enabled, invalidate the cache to force the latest values
     // back from the DB
-    if (m_configuration.isAlertCacheEnabled()) {
-      m_currentAlertCache.invalidateAll();
-    }
+    invalidateCachedAlerts();
 
     return rowsRemoved;
   }
@@ -796,9 +810,7 @@ public class AlertsDAO implements Cleanable {
 
     // if caching is enabled, invalidate the cache to force the latest values
     // back from the DB
-    if (m_configuration.isAlertCacheEnabled()) {
-      m_currentAlertCache.invalidateAll();
-    }
+    invalidateCachedAlerts();
 
     return rowsRemoved;
   }
@@ -828,9 +840,7 @@ public class AlertsDAO implements Cleanable {
 
     // if caching is enabled, invalidate the cache to force the latest values
     // back from the DB
-    if (m_configuration.isAlertCacheEnabled()) {
-      m_currentAlertCache.invalidateAll();
-    }
+    invalidateCachedAlerts();
 
     // publish the event to recalculate aggregates
     m_alertEventPublisher.publish(new AggregateAlertRecalculateEvent(clusterId));
@@ -857,11 +867,9 @@ public class AlertsDAO implements Cleanable {
     query.setParameter("hostName", hostName);
     int removedItems = query.executeUpdate();
 
-    // if caching is enabled, invalidate the cache to force the latest values
-    // back from the DB
-    if (m_configuration.isAlertCacheEnabled()) {
-      m_currentAlertCache.invalidateAll();
-    }
+    // if caching is enabled, invalidate the alerts of the host to force the
+    // latest values back from the DB
+    invalidateCachedAlerts(hostName);
 
     // publish the event to recalculate aggregates for every cluster since a host could potentially have several clusters
     try {
@@ -911,11 +919,9 @@ public class AlertsDAO implements Cleanable {
 
     int removedItems = query.executeUpdate();
 
-    // if caching is enabled, invalidate the cache to force the latest values
-    // back from the DB
-    if (m_configuration.isAlertCacheEnabled()) {
-      m_currentAlertCache.invalidateAll();
-    }
+    // if caching is enabled, invalidate the alerts of the host to force the
+    // latest values back from the DB
+    invalidateCachedAlerts(hostName);
 
     // publish the event to recalculate aggregates
     m_alertEventPublisher.publish(new AggregateAlertRecalculateEvent(clusterId));
@@ -1005,10 +1011,11 @@ public class AlertsDAO implements Cleanable {
     // perform the JPA merge
     alert = m_entityManagerProvider.get().merge(alert);
 
-    // if caching is enabled, update the cache
+    // if caching is enabled, update the cache; the alert is now written
     if( m_configuration.isAlertCacheEnabled() ){
       AlertCacheKey key = AlertCacheKey.build(alert);
       m_currentAlertCache.put(key, alert);
+      m_dirtyAlerts.remove(key);
     }
 
     return alert;
@@ -1039,8 +1046,10 @@ public class AlertsDAO implements Cleanable {
             "Unable to update a cached alert instance for {} because cached alerts are not enabled",
             key);
       } else {
-        // update cache and return alert; no database work
+        // update cache and return alert; no database work until the alert is
+        // flushed
         m_currentAlertCache.put(key, alert);
+        m_dirtyAlerts.put(key, new DirtyAlert(alert));
         return alert;
       }
     }
@@ -1138,8 +1147,10 @@ public class AlertsDAO implements Cleanable {
   }
 
   /**
-   * Writes all cached {@link AlertCurrentEntity} instances to the database and
-   * clears the cache.
+   * Writes the cached {@link AlertCurrentEntity} instances which have been
+   * updated since they were last written to the database. Alerts which have
+   * not changed are not merged, and the cache is kept so that alerts are not
+   * reloaded from the database after every flush.
    */
   @Transactional
   public void flushCachedEntitiesToJPA() {
@@ -1148,18 +1159,55 @@ public class AlertsDAO implements Cleanable {
       return;
     }
 
-    // capture for logging purposes
-    long cachedEntityCount = m_currentAlertCache.size();
+    EntityManager entityManager = m_entityManagerProvider.get();
+
+    Map<AlertCacheKey, DirtyAlert> dirtyAlerts = new HashMap<>(m_dirtyAlerts);
+    for (Entry<AlertCacheKey, DirtyAlert> entry : dirtyAlerts.entrySet()) {
+      entityManager.merge(entry.getValue().getAlert());
+
+      // an alert updated again in the meantime has been put again and is
+      // written on the next flush, even though it is the same entity instance
+      m_dirtyAlerts.remove(entry.getKey(), entry.getValue());
+    }
+
+    LOG.info("Flushed {} of {} cached alerts to the database", dirtyAlerts.size(),
+        m_currentAlertCache.size());
+  }
 
-    ConcurrentMap<AlertCacheKey, AlertCurrentEntity> map = m_currentAlertCache.asMap();
-    Set<Entry<AlertCacheKey, AlertCurrentEntity>> entries = map.entrySet();
-    for (Entry<AlertCacheKey, AlertCurrentEntity> entry : entries) {
-      merge(entry.getValue());
+  /**
+   * Discards all cached alerts, including any updates which have not been
+   * written to the database yet. Used after alerts were changed or removed in
+   * the database directly.
+   */
+  private void invalidateCachedAlerts() {
+    if (m_configuration.isAlertCacheEnabled()) {
+      m_currentAlertCache.invalidateAll();
+      m_dirtyAlerts.clear();
     }
+  }
 
-    m_currentAlertCache.invalidateAll();
+  /**
+   * Discards the cached alerts of the specified host, including any updates
+   * which have not been written to the database yet. The alerts of other hosts
+   * stay cached.
+   *
+   * @param hostName
+   *          the host to discard the cached alerts of (not {@code null}).
+   */
+  private void invalidateCachedAlerts(String hostName) {
+    if (m_configuration.isAlertCacheEnabled()) {
+      invalidateHost(m_currentAlertCache.asMap().keySet(), hostName);
+      invalidateHost(m_dirtyAlerts.keySet(), hostName);
+    }
+  }
 
-    LOG.info("Flushed {} cached alerts to the database", cachedEntityCount);
+  private static void invalidateHost(Set<AlertCacheKey> keys, String hostName) {
+    Iterator<AlertCacheKey> iterator = keys.iterator();
+    while (iterator.hasNext()) {
+      if (StringUtils.equals(hostName, iterator.next().getHostName())) {
+        iterator.remove();
+      }
+    }
   }
 
   /**
@@ -1178,6 +1226,13 @@ public class AlertsDAO implements Cleanable {
     for (AlertCurrentEntity alert : alerts) {
       AlertCacheKey key = AlertCacheKey.build(alert);
       AlertCurrentEntity cachedEntity = m_currentAlertCache.getIfPresent(key);
+      if (null == cachedEntity) {
+        DirtyAlert dirtyAlert = m_dirtyAlerts.get(key);
+        if (null != dirtyAlert) {
+          cachedEntity = dirtyAlert.getAlert();
+        }
+      }
+
       if (null != cachedEntity) {
         alert = cachedEntity;
       }
@@ -1433,6 +1488,24 @@ public class AlertsDAO implements Cleanable {
   private static final class AlertNotYetCreatedException extends Exception {
   }
 
+  /**
+   * An update of a cached alert which has not been written to JPA yet. The
+   * cached alert entity is updated in place, so each update is recorded as a
+   * new instance which only equals itself; this lets a flush remove exactly
+   * the updates it has written.
+   */
+  private static final class DirtyAlert {
+    private final AlertCurrentEntity m_alert;
+
+    private DirtyAlert(AlertCurrentEntity alert) {
+      m_alert = alert;
+    }
+
+    private AlertCurrentEntity getAlert() {
+      return m_alert;
+    }
+  }
+
 
   /**
    * Deletes AlertNotice records in relation with AlertHistory entries older than the given date.
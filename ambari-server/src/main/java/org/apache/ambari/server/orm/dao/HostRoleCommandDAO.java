@@ -21,20 +21,26 @@ package org.apache.ambari.server.orm.dao;
 import static org.apache.ambari.server.orm.DBAccessor.DbType.ORACLE;
 import static org.apache.ambari.server.orm.dao.DaoUtils.ORACLE_LIST_LIMIT;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReadWriteLock;
 
 import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Order;
@@ -58,6 +64,9 @@ import org.apache.ambari.server.orm.entities.HostEntity;
 import org.apache.ambari.server.orm.entities.HostRoleCommandEntity;
 import org.apache.ambari.server.orm.entities.HostRoleCommandEntity_;
 import org.apache.ambari.server.orm.entities.StageEntity;
+import org.apache.ambari.server.orm.entities.StageEntityPK;
+import org.eclipse.persistence.config.HintValues;
+import org.eclipse.persistence.config.QueryHints;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -137,6 +146,31 @@ public class HostRoleCommandDAO {
    */
   private final boolean hostRoleCommandStatusSummaryCacheEnabled;
 
+  /**
+   * The stages which have had a {@link HostRoleCommandEntity} created, merged
+   * or removed since the last call to {@link #drainChangedStages()}. Tracking
+   * only begins once there is a consumer draining these changes so that the
+   * set doesn't grow unbounded.
+   * <p/>
+   * Changes are recorded while holding the {@link LockArea#HRC_STATUS_CACHE}
+   * write lock, so consumers should drain while holding the read lock in order
+   * to see only changes that have been committed. This only holds while that
+   * lock area is enabled; when it is disabled the locks do nothing and a
+   * change can be drained before it is committed, so consumers must not rely
+   * on the tracked changes alone.
+   * <p/>
+   * Every method which changes commands must therefore hold the write lock
+   * and record the stages of the changed commands, including methods which
+   * merge through {@code this} and so bypass the lock of {@link #merge}.
+   */
+  private final Set<StageEntityPK> changedStages = Collections.newSetFromMap(
+      new ConcurrentHashMap<StageEntityPK, Boolean>());
+
+  /**
+   * {@code true} once {@link #drainChangedStages()} has been invoked.
+   */
+  private volatile boolean trackChangedStages = false;
+
 
   @Inject
   Provider<EntityManager> entityManagerProvider;
@@ -153,6 +187,12 @@ public class HostRoleCommandDAO {
   @Inject
   private final TransactionalLocks transactionLocks = null;
 
+  /**
+   * Updates the status, output and exit code of a command unless it has
+   * reached a completed state.
+   */
+  private static final String UPDATE_IN_PROGRESS_STATUS_SQL = createUpdateInProgressStatusSql();
+
   public final static String HRC_STATUS_SUMMARY_CACHE_SIZE =  "hostRoleCommandStatusSummaryCacheSize";
   public final static String HRC_STATUS_SUMMARY_CACHE_EXPIRY_DURATION_MINUTES = "hostRoleCommandStatusCacheExpiryDurationMins";
   public final static String HRC_STATUS_SUMMARY_CACHE_ENABLED =  "hostRoleCommandStatusSummaryCacheEnabled";
@@ -213,6 +253,58 @@ public class HostRoleCommandDAO {
     }
   }
 
+  /**
+   * Gets the stages which have had commands created, updated or removed since
+   * the last invocation of this method and clears them. The first invocation
+   * starts the tracking of changes and always returns an empty set.
+   *
+   * @return the stages whose commands have changed (never {@code null}).
+   */
+  public Set<StageEntityPK> drainChangedStages() {
+    trackChangedStages = true;
+
+    Set<StageEntityPK> drained = new LinkedHashSet<>();
+    for (Iterator<StageEntityPK> iterator = changedStages.iterator(); iterator.hasNext();) {
+      drained.add(iterator.next());
+      iterator.remove();
+    }
+
+    return drained;
+  }
+
+  /**
+   * Records the stage of the specified command as changed if there is a
+   * consumer of these changes.
+   *
+   * @param hostRoleCommandEntity
+   *          the command which was created, updated or removed.
+   */
+  private void trackChangedStage(HostRoleCommandEntity hostRoleCommandEntity) {
+    if (!trackChangedStages || null == hostRoleCommandEntity) {
+      return;
+    }
+
+    Long requestId = hostRoleCommandEntity.getRequestId();
+    Long stageId = hostRoleCommandEntity.getStageId();
+    StageEntity stageEntity = hostRoleCommandEntity.getStage();
+    if (null != stageEntity) {
+      if (null == requestId) {
+        requestId = stageEntity.getRequestId();
+      }
+
+      if (null == stageId) {
+        stageId = stageEntity.getStageId();
+      }
+    }
+
+    if (null != requestId && null != stageId) {
+      StageEntityPK stageEntityPK = new StageEntityPK();
+      stageEntityPK.setRequestId(requestId);
+      stageEntityPK.setStageId(stageId);
+      changedStages.add(stageEntityPK);
+    }
+  }
+
   /**
    * Loads the counts of tasks for a request and groups them by stage id.
    * This allows for very efficient loading when there are a huge number of stages
@@ -270,6 +362,20 @@ public class HostRoleCommandDAO {
 
   @RequiresSession
   public List<HostRoleCommandEntity> findByPKs(Collection<Long> taskIds) {
+    return findByPKs(taskIds, false);
+  }
+
+  /**
+   * Finds the commands with the given IDs.
+   *
+   * @param taskIds
+   *          the IDs of the commands
+   * @param refresh
+   *          {@code true} to refresh the commands from the database, replacing
+   *          any cached state
+   * @return the commands, ordered by ID
+   */
+  private List<HostRoleCommandEntity> findByPKs(Collection<Long> taskIds, boolean refresh) {
     if (taskIds == null || taskIds.isEmpty()) {
       return Collections.emptyList();
     }
@@ -279,6 +385,10 @@ public class HostRoleCommandDAO {
         "ORDER BY task.taskId",
       HostRoleCommandEntity.class);
 
+    if (refresh) {
+      query.setHint(QueryHints.REFRESH, HintValues.TRUE);
+    }
+
     if (daoUtils.getDbType().equals(ORACLE) && taskIds.size() > ORACLE_LIST_LIMIT) {
       List<HostRoleCommandEntity> result = new ArrayList<HostRoleCommandEntity>();
 
@@ -604,6 +714,7 @@ public class HostRoleCommandDAO {
     entityManager.persist(entity);
 
     invalidateHostRoleCommandStatusSummaryCache(entity);
+    trackChangedStage(entity);
   }
 
   @Transactional
@@ -613,6 +724,7 @@ public class HostRoleCommandDAO {
     entity = entityManager.merge(entity);
 
     invalidateHostRoleCommandStatusSummaryCache(entity);
+    trackChangedStage(entity);
 
     return entity;
   }
@@ -634,6 +746,7 @@ public class HostRoleCommandDAO {
       EntityManager entityManager = entityManagerProvider.get();
       entity = entityManager.merge(entity);
       managedList.add(entity);
+      trackChangedStage(entity);
 
       Long requestId = entity.getRequestId();
       if (requestId == null) {
@@ -651,12 +764,86 @@ public class HostRoleCommandDAO {
     return managedList;
   }
 
+  /**
+   * Writes the status, output and exit code of commands which are still in
+   * progress using a single JDBC batch, instead of merging each command
+   * separately. Commands which have reached a completed state in the meantime
+   * are left untouched. The given entities only carry the values to write and
+   * are not merged; the written commands are evicted from the shared cache and
+   * refreshed in the current entity manager so that no cached copy keeps the
+   * old values.
+   *
+   * @param entities
+   *          the task ID, status, output and exit code of each command to
+   *          write (not {@code null}).
+   */
+  @Transactional
+  @TransactionalLock(lockArea = LockArea.HRC_STATUS_CACHE, lockType = LockType.WRITE)
+  public void updateInProgressStatuses(Collection<HostRoleCommandEntity> entities) {
+    if (entities.isEmpty()) {
+      return;
+    }
+
+    EntityManager entityManager = entityManagerProvider.get();
+    Connection connection = entityManager.unwrap(Connection.class);
+    List<Long> taskIds = new ArrayList<>(entities.size());
+    try (PreparedStatement statement = connection.prepareStatement(UPDATE_IN_PROGRESS_STATUS_SQL)) {
+      for (HostRoleCommandEntity entity : entities) {
+        statement.setString(1, entity.getStatus().name());
+        statement.setBytes(2, entity.getStdOut());
+        statement.setBytes(3, entity.getStdError());
+        statement.setBytes(4, entity.getStructuredOut());
+        statement.setInt(5, entity.getExitcode());
+        statement.setLong(6, entity.getTaskId());
+        statement.addBatch();
+        taskIds.add(entity.getTaskId());
+      }
+
+      statement.executeBatch();
+    } catch (SQLException e) {
+      throw new PersistenceException("Unable to update the status of in progress commands", e);
+    }
+
+    // the shared cache is not aware of the update; refreshing only replaces
+    // the copies held by this entity manager
+    javax.persistence.Cache sharedCache = entityManager.getEntityManagerFactory().getCache();
+    for (Long taskId : taskIds) {
+      sharedCache.evict(HostRoleCommandEntity.class, taskId);
+    }
+
+    Set<Long> requestsToInvalidate = new LinkedHashSet<>();
+    for (HostRoleCommandEntity entity : findByPKs(taskIds, true)) {
+      trackChangedStage(entity);
+      requestsToInvalidate.add(entity.getRequestId());
+    }
+
+    invalidateHostRoleCommandStatusSummaryCache(requestsToInvalidate);
+  }
+
+  /**
+   * @return the statement used by {@link #updateInProgressStatuses(Collection)}
+   */
+  private static String createUpdateInProgressStatusSql() {
+    StringBuilder completedStatuses = new StringBuilder();
+    for (HostRoleStatus status : HostRoleStatus.getCompletedStates()) {
+      if (completedStatuses.length() > 0) {
+        completedStatuses.append(", ");
+      }
+      completedStatuses.append('\'').append(status.name()).append('\'');
+    }
+
+    return "UPDATE host_role_command "
+        + "SET status = ?, std_out = ?, std_error = ?, structured_out = ?, exitcode = ? "
+        + "WHERE task_id = ? AND status NOT IN (" + completedStatuses + ")";
+  }
+
   @Transactional
   @TransactionalLock(lockArea = LockArea.HRC_STATUS_CACHE, lockType = LockType.WRITE)
   public void remove(HostRoleCommandEntity entity) {
     EntityManager entityManager = entityManagerProvider.get();
     entityManager.remove(merge(entity));
     invalidateHostRoleCommandStatusSummaryCache(entity);
+    trackChangedStage(entity);
   }
 
   @Transactional
@@ -747,6 +934,9 @@ public class HostRoleCommandDAO {
    * <p/>
    * Stages which do not support automatically skipped commands will be updated
    * with a value of {@code false}.
+   * <p/>
+   * The stages of the updated commands are recorded as changed so that
+   * incremental stage scheduling picks up the new flags.
    *
    * @param requestId
    *          the request ID of the commands to update
@@ -759,6 +949,7 @@ public class HostRoleCommandDAO {
    * @see StageEntity#isAutoSkipOnFailureSupported()
    */
   @Transactional
+  @TransactionalLock(lockArea = LockArea.HRC_STATUS_CACHE, lockType = LockType.WRITE)
   public void updateAutomaticSkipOnFailure(long requestId,
       boolean skipOnFailure, boolean skipOnServiceCheckFailure) {
 
@@ -782,7 +973,7 @@ public class HostRoleCommandDAO {
         }
       }
 
-      // save changes
+      // save changes; this also records the stage as changed
       merge(task);
     }
   }
@@ -92,6 +92,15 @@ public class StageEntity {
   @Basic
   private byte[] hostParamsStage;
 
+  /**
+   * The blocks shared by the execution commands of this stage, see
+   * {@link org.apache.ambari.server.actionmanager.ExecutionCommandPayloads}.
+   * Lazy loaded since it is only read once per stage.
+   */
+  @Column(name = "command_payloads")
+  @Basic(fetch = FetchType.LAZY)
+  private byte[] commandPayloads;
+
   @ManyToOne
   @JoinColumn(name = "request_id", referencedColumnName = "request_id", nullable = false)
   private RequestEntity request;
@@ -163,6 +172,14 @@ public class StageEntity {
     this.hostParamsStage = hostParamsStage.getBytes();
   }
 
+  public String getCommandPayloads() {
+    return commandPayloads == null ? new String() : new String(commandPayloads);
+  }
+
+  public void setCommandPayloads(String commandPayloads) {
+    this.commandPayloads = commandPayloads.getBytes();
+  }
+
   public void setRequestContext(String requestContext) {
     if (requestContext != null) {
       this.requestContext = requestContext;
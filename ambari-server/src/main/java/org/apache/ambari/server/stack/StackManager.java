@@ -19,10 +19,16 @@
 package org.apache.ambari.server.stack;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import javax.annotation.Nullable;
 
@@ -78,6 +84,11 @@ public class StackManager {
    */
   private Map<String, StackInfo> stackMap = new HashMap<String, StackInfo>();
 
+  /**
+   * Number of threads used to parse the stack and common service definitions
+   */
+  private static final int PARSE_PARALLELISM = Runtime.getRuntime().availableProcessors();
+
   /**
    * Constructor. Initialize stack manager.
    *
@@ -112,8 +123,18 @@ public class StackManager {
     stackMap = new HashMap<String, StackInfo>();
     stackContext = new StackContext(metaInfoDAO, actionMetadata, osFamily);
 
-    Map<String, ServiceModule> commonServiceModules = parseCommonServicesDirectory(commonServicesRoot);
-    Map<String, StackModule> stackModules = parseStackDirectory(stackRoot);
+    // parsing only reads the definition files of each directory, so the stack
+    // versions and common services are parsed in parallel; inheritance is
+    // resolved afterwards on this thread since it spans modules
+    Map<String, ServiceModule> commonServiceModules;
+    Map<String, StackModule> stackModules;
+    ForkJoinPool parsePool = new ForkJoinPool(PARSE_PARALLELISM);
+    try {
+      commonServiceModules = parseCommonServicesDirectory(commonServicesRoot, parsePool);
+      stackModules = parseStackDirectory(stackRoot, parsePool);
+    } finally {
+      parsePool.shutdown();
+    }
 
     fullyResolveCommonServices(stackModules, commonServiceModules);
     fullyResolveStacks(stackModules, commonServiceModules);
@@ -283,40 +304,63 @@ public class StackManager {
    * Parse the specified common services root directory
    *
    * @param commonServicesRoot  the common services root directory to parse
+   * @param parsePool           pool the common service directories are parsed on
    * @return map of common service id which contains name and version to common service module.
    * @throws AmbariException if unable to parse all common services
    */
-  private Map<String, ServiceModule> parseCommonServicesDirectory(File commonServicesRoot) throws AmbariException {
+  private Map<String, ServiceModule> parseCommonServicesDirectory(File commonServicesRoot,
+      ForkJoinPool parsePool) throws AmbariException {
     Map<String, ServiceModule> commonServiceModules = new HashMap<String, ServiceModule>();
 
     if(commonServicesRoot != null) {
+      List<Callable<Map<String, ServiceModule>>> tasks = new ArrayList<Callable<Map<String, ServiceModule>>>();
       File[] commonServiceFiles = commonServicesRoot.listFiles(AmbariMetaInfo.FILENAME_FILTER);
       for (File commonService : commonServiceFiles) {
         if (commonService.isFile()) {
           continue;
         }
-        for (File serviceFolder : commonService.listFiles(AmbariMetaInfo.FILENAME_FILTER)) {
-          String serviceName = serviceFolder.getParentFile().getName();
-          String serviceVersion = serviceFolder.getName();
-          ServiceDirectory serviceDirectory = new CommonServiceDirectory(serviceFolder.getPath());
-          ServiceMetainfoXml metaInfoXml = serviceDirectory.getMetaInfoFile();
-          if (metaInfoXml != null) {
-            if (metaInfoXml.isValid()) {
-              for (ServiceInfo serviceInfo : metaInfoXml.getServices()) {
-                ServiceModule serviceModule = new ServiceModule(stackContext, serviceInfo, serviceDirectory, true);
-
-                String commonServiceKey = serviceInfo.getName() + StackManager.PATH_DELIMITER + serviceInfo.getVersion();
-                commonServiceModules.put(commonServiceKey, serviceModule);
-              }
-            } else {
-              ServiceModule serviceModule = new ServiceModule(stackContext, new ServiceInfo(), serviceDirectory, true);
-              serviceModule.setValid(false);
-              serviceModule.setErrors(metaInfoXml.getErrors());
-              commonServiceModules.put(metaInfoXml.getSchemaVersion(), serviceModule);
-              metaInfoXml.setSchemaVersion(null);
+        for (final File serviceFolder : commonService.listFiles(AmbariMetaInfo.FILENAME_FILTER)) {
+          tasks.add(new Callable<Map<String, ServiceModule>>() {
+            @Override
+            public Map<String, ServiceModule> call() throws AmbariException {
+              return parseCommonServiceFolder(serviceFolder);
             }
-          }
+          });
+        }
+      }
+      for (Map<String, ServiceModule> serviceModules : invokeAll(parsePool, tasks)) {
+        commonServiceModules.putAll(serviceModules);
+      }
+    }
+    return commonServiceModules;
+  }
+
+  /**
+   * Parse a single version folder of a common service.
+   *
+   * @param serviceFolder  the common service version folder to parse
+   * @return map of common service id which contains name and version to common service module.
+   * @throws AmbariException if unable to parse the common service
+   */
+  private Map<String, ServiceModule> parseCommonServiceFolder(File serviceFolder) throws AmbariException {
+    Map<String, ServiceModule> commonServiceModules = new HashMap<String, ServiceModule>();
+
+    ServiceDirectory serviceDirectory = new CommonServiceDirectory(serviceFolder.getPath());
+    ServiceMetainfoXml metaInfoXml = serviceDirectory.getMetaInfoFile();
+    if (metaInfoXml != null) {
+      if (metaInfoXml.isValid()) {
+        for (ServiceInfo serviceInfo : metaInfoXml.getServices()) {
+          ServiceModule serviceModule = new ServiceModule(stackContext, serviceInfo, serviceDirectory, true);
+
+          String commonServiceKey = serviceInfo.getName() + StackManager.PATH_DELIMITER + serviceInfo.getVersion();
+          commonServiceModules.put(commonServiceKey, serviceModule);
         }
+      } else {
+        ServiceModule serviceModule = new ServiceModule(stackContext, new ServiceInfo(), serviceDirectory, true);
+        serviceModule.setValid(false);
+        serviceModule.setErrors(metaInfoXml.getErrors());
+        commonServiceModules.put(metaInfoXml.getSchemaVersion(), serviceModule);
+        metaInfoXml.setSchemaVersion(null);
       }
     }
     return commonServiceModules;
@@ -326,35 +370,77 @@ public class StackManager {
    * Parse the specified stack root directory
    *
    * @param stackRoot  the stack root directory to parse
+   * @param parsePool  pool the stack version directories are parsed on
    * @return map of stack id which contains name and version to stack module.
    * @throws AmbariException if unable to parse all stacks
    */
-  private Map<String, StackModule> parseStackDirectory(File stackRoot) throws AmbariException {
+  private Map<String, StackModule> parseStackDirectory(File stackRoot, ForkJoinPool parsePool)
+      throws AmbariException {
     Map<String, StackModule> stackModules = new HashMap<String, StackModule>();
 
+    List<Callable<StackModule>> tasks = new ArrayList<Callable<StackModule>>();
     File[] stackFiles = stackRoot.listFiles(AmbariMetaInfo.FILENAME_FILTER);
     for (File stack : stackFiles) {
       if (stack.isFile()) {
         continue;
       }
-      for (File stackFolder : stack.listFiles(AmbariMetaInfo.FILENAME_FILTER)) {
+      for (final File stackFolder : stack.listFiles(AmbariMetaInfo.FILENAME_FILTER)) {
         if (stackFolder.isFile()) {
           continue;
         }
-        String stackName = stackFolder.getParentFile().getName();
-        String stackVersion = stackFolder.getName();
-
-        StackModule stackModule = new StackModule(new StackDirectory(stackFolder.getPath()), stackContext);
-        String stackKey = stackName + StackManager.PATH_DELIMITER + stackVersion;
-        stackModules.put(stackKey, stackModule);
-        stackMap.put(stackKey, stackModule.getModuleInfo());
+        tasks.add(new Callable<StackModule>() {
+          @Override
+          public StackModule call() throws AmbariException {
+            return new StackModule(new StackDirectory(stackFolder.getPath()), stackContext);
+          }
+        });
       }
     }
 
+    for (StackModule stackModule : invokeAll(parsePool, tasks)) {
+      StackInfo stackInfo = stackModule.getModuleInfo();
+      String stackKey = stackInfo.getName() + StackManager.PATH_DELIMITER + stackInfo.getVersion();
+      stackModules.put(stackKey, stackModule);
+      stackMap.put(stackKey, stackInfo);
+    }
+
     if (stackMap.isEmpty()) {
       throw new AmbariException("Unable to find stack definitions under " +
           "stackRoot = " + stackRoot.getAbsolutePath());
     }
     return stackModules;
   }
+
+  /**
+   * Run the given parse tasks on the pool and wait for all of them.
+   *
+   * @param parsePool  pool to run the tasks on
+   * @param tasks      parse tasks
+   * @return the results of the tasks, in task order
+   * @throws AmbariException if a task failed or the wait was interrupted
+   */
+  private <T> List<T> invokeAll(ForkJoinPool parsePool, List<Callable<T>> tasks) throws AmbariException {
+    List<T> results = new ArrayList<T>(tasks.size());
+    try {
+      for (Future<T> future : parsePool.invokeAll(tasks)) {
+        results.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AmbariException("Interrupted while parsing stack definitions", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof AmbariException) {
+        throw (AmbariException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new AmbariException("Unable to parse stack definitions", cause);
+    }
+    return results;
+  }
 }
@@ -37,6 +37,7 @@ import org.apache.ambari.server.orm.entities.UpgradeEntity;
 import org.apache.ambari.server.security.authorization.AuthorizationException;
 import org.apache.ambari.server.state.configgroup.ConfigGroup;
 import org.apache.ambari.server.state.scheduler.RequestExecution;
+import org.apache.ambari.server.utils.ClusterHostInfoSnapshot;
 
 import com.google.common.collect.ListMultimap;
 
@@ -114,6 +115,25 @@ public interface Cluster {
    */
   Set<String> getHosts(String serviceName, String componentName);
 
+  /**
+   * Gets the hosts and host components of the cluster in the form sent to
+   * the agents as cluster host info. The snapshot is kept up to date as hosts
+   * and host components come and go, so building a stage doesn't have to
+   * walk the whole cluster.
+   *
+   * @return the current snapshot
+   */
+  ClusterHostInfoSnapshot getClusterHostInfoSnapshot();
+
+  /**
+   * Marks a host to be re-read into the next cluster host info snapshot,
+   * after it was added to or removed from the cluster, or after its
+   * components, admin states, rack, IP address or ping port changed.
+   *
+   * @param hostName the host name
+   */
+  void invalidateClusterHostInfo(String hostName);
+
 
   /**
    * Adds schs to cluster AND persists them
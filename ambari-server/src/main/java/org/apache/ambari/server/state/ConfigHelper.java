@@ -29,7 +29,10 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.api.services.AmbariMetaInfo;
@@ -46,6 +49,9 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
 import com.google.common.collect.Maps;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
@@ -64,7 +70,21 @@ public class ConfigHelper {
   public static final String CLUSTER_DEFAULT_TAG = "tag";
   private final boolean STALE_CONFIGS_CACHE_ENABLED;
   private final int STALE_CONFIGS_CACHE_EXPIRATION_TIME = 300;
-  private final Cache<ServiceComponentHost, Boolean> staleConfigsCache;
+  private final Cache<ServiceComponentHost, StaleConfigs> staleConfigsCache;
+
+  /**
+   * [ config type -> host components whose cached staleness was computed from
+   * it ], so that a config change only invalidates the host components that
+   * depend on the changed types.
+   */
+  private final ConcurrentMap<String, Set<ServiceComponentHost>> staleConfigsDependencies =
+      new ConcurrentHashMap<String, Set<ServiceComponentHost>>();
+
+  /**
+   * Counts config type invalidations, to drop isStale values that were being
+   * computed while one happened.
+   */
+  private final AtomicLong staleConfigsInvalidations = new AtomicLong();
 
   private static final Logger LOG =
       LoggerFactory.getLogger(ConfigHelper.class);
@@ -92,7 +112,16 @@ public class ConfigHelper {
     this.clusterDAO = clusterDAO;
     STALE_CONFIGS_CACHE_ENABLED = configuration.isStaleConfigCacheEnabled();
     staleConfigsCache = CacheBuilder.newBuilder().
-        expireAfterWrite(STALE_CONFIGS_CACHE_EXPIRATION_TIME, TimeUnit.SECONDS).build();
+        expireAfterWrite(STALE_CONFIGS_CACHE_EXPIRATION_TIME, TimeUnit.SECONDS).
+        removalListener(new RemovalListener<ServiceComponentHost, StaleConfigs>() {
+          @Override
+          public void onRemoval(RemovalNotification<ServiceComponentHost, StaleConfigs> notification) {
+            // a replacing value indexes the host component itself
+            if (notification.getCause() != RemovalCause.REPLACED && notification.getValue() != null) {
+              removeStaleConfigsDependencies(notification.getKey(), notification.getValue().dependencies);
+            }
+          }
+        }).build();
   }
 
   /**
@@ -371,21 +400,39 @@ public class ConfigHelper {
    * @return <code>true</code> if the actual configs are stale
    */
   public boolean isStaleConfigs(ServiceComponentHost sch) throws AmbariException {
-    Boolean stale = null;
+    StaleConfigs staleConfigs = null;
 
     if (STALE_CONFIGS_CACHE_ENABLED) {
-      stale = staleConfigsCache.getIfPresent(sch);
+      staleConfigs = staleConfigsCache.getIfPresent(sch);
     }
 
-    if (stale == null) {
-      stale = calculateIsStaleConfigs(sch);
-      staleConfigsCache.put(sch, stale);
+    if (staleConfigs == null) {
+      long invalidations = staleConfigsInvalidations.get();
+      Set<String> dependencies = new HashSet<String>();
+      boolean stale = calculateIsStaleConfigs(sch, dependencies);
+      staleConfigs = new StaleConfigs(stale, dependencies);
+
+      for (String type : dependencies) {
+        Set<ServiceComponentHost> dependents = staleConfigsDependencies.get(type);
+        if (dependents == null) {
+          staleConfigsDependencies.putIfAbsent(type,
+              Collections.newSetFromMap(new ConcurrentHashMap<ServiceComponentHost, Boolean>()));
+          dependents = staleConfigsDependencies.get(type);
+        }
+        dependents.add(sch);
+      }
+      staleConfigsCache.put(sch, staleConfigs);
+      if (staleConfigsInvalidations.get() != invalidations) {
+        // the configs may have changed after they were read
+        staleConfigsCache.invalidate(sch);
+      }
+
       if(LOG.isDebugEnabled()) {
         LOG.debug("Config staleness for " +
                   sch.getServiceComponentName() + " on host " + sch.getHostName() + " - " + stale);
       }
     }
-    return stale;
+    return staleConfigs.stale;
   }
 
   /**
@@ -409,7 +456,35 @@ public class ConfigHelper {
    * Invalidates isStale cache
    */
   public void invalidateStaleConfigsCache() {
+    staleConfigsInvalidations.incrementAndGet();
     staleConfigsCache.invalidateAll();
+    staleConfigsDependencies.clear();
+  }
+
+  /**
+   * Invalidates the cached isStale values of the host components of a cluster
+   * that depend on any of the given config types through the stack definition
+   * of their service and component. A change of global invalidates all of
+   * them.
+   *
+   * @param cluster      the cluster whose configs changed
+   * @param configTypes  the changed config types
+   */
+  public void invalidateStaleConfigsCache(Cluster cluster, Collection<String> configTypes) {
+    staleConfigsInvalidations.incrementAndGet();
+    long clusterId = cluster.getClusterId();
+    for (String type : configTypes) {
+      Set<ServiceComponentHost> dependents = staleConfigsDependencies.get(type);
+      if (dependents == null) {
+        continue;
+      }
+      for (ServiceComponentHost sch : dependents) {
+        if (sch.getClusterId() == clusterId) {
+          dependents.remove(sch);
+          staleConfigsCache.invalidate(sch);
+        }
+      }
+    }
   }
 
   /**
@@ -421,6 +496,15 @@ public class ConfigHelper {
     staleConfigsCache.invalidate(sch);
   }
 
+  private void removeStaleConfigsDependencies(ServiceComponentHost sch, Set<String> dependencies) {
+    for (String type : dependencies) {
+      Set<ServiceComponentHost> dependents = staleConfigsDependencies.get(type);
+      if (dependents != null) {
+        dependents.remove(sch);
+      }
+    }
+  }
+
   /**
    * Remove configs by type
    *
@@ -968,7 +1052,31 @@ public class ConfigHelper {
     return defaultPropertiesByType;
   }
 
-  private boolean calculateIsStaleConfigs(ServiceComponentHost sch) throws AmbariException {
+  /**
+   * @param sch           the host component
+   * @param dependencies  filled with the config types that a change of could
+   *                      change the result
+   * @return <code>true</code> if the actual configs are stale
+   */
+  private boolean calculateIsStaleConfigs(ServiceComponentHost sch, Set<String> dependencies)
+      throws AmbariException {
+
+    Cluster cluster = clusters.getClusterById(sch.getClusterId());
+    StackId stackId = cluster.getDesiredStackVersion();
+
+    ServiceInfo serviceInfo = ambariMetaInfo.getService(stackId.getStackName(),
+        stackId.getStackVersion(), sch.getServiceName());
+    ComponentInfo componentInfo = serviceInfo.getComponentByName(sch.getServiceComponentName());
+
+    // A type can only make the configs stale if the service or the component
+    // depends on it, or if it is global
+    dependencies.add(Configuration.GLOBAL_CONFIG_TAG);
+    if (serviceInfo.getConfigDependencies() != null) {
+      dependencies.addAll(serviceInfo.getConfigDependencies());
+    }
+    if (componentInfo != null && componentInfo.getConfigDependencies() != null) {
+      dependencies.addAll(componentInfo.getConfigDependencies());
+    }
 
     if (sch.isRestartRequired()) {
       return true;
@@ -979,15 +1087,9 @@ public class ConfigHelper {
       return false;
     }
 
-    Cluster cluster = clusters.getClusterById(sch.getClusterId());
-    StackId stackId = cluster.getDesiredStackVersion();
-
     Map<String, Map<String, String>> desired = getEffectiveDesiredTags(cluster,
         sch.getHostName());
 
-    ServiceInfo serviceInfo = ambariMetaInfo.getService(stackId.getStackName(),
-        stackId.getStackVersion(), sch.getServiceName());
-    ComponentInfo componentInfo = serviceInfo.getComponentByName(sch.getServiceComponentName());
     // Configs are considered stale when:
     // - desired type DOES NOT exist in actual
     // --- desired type DOES NOT exist in stack: not_stale
@@ -1045,6 +1147,19 @@ public class ConfigHelper {
     return stale;
   }
 
+  /**
+   * A cached isStale value along with the config types it was computed from.
+   */
+  private static final class StaleConfigs {
+    private final boolean stale;
+    private final Set<String> dependencies;
+
+    private StaleConfigs(boolean stale, Set<String> dependencies) {
+      this.stale = stale;
+      this.dependencies = dependencies;
+    }
+  }
+
   /**
    * Determines if the hostname has group specific configs for the type specified
    *
@@ -22,7 +22,6 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.ObjectNotFoundException;
@@ -31,6 +30,7 @@ import org.apache.ambari.server.api.services.AmbariMetaInfo;
 import org.apache.ambari.server.controller.ServiceComponentResponse;
 import org.apache.ambari.server.events.ServiceComponentRecoveryChangedEvent;
 import org.apache.ambari.server.events.publishers.AmbariEventPublisher;
+import org.apache.ambari.server.logging.LockFactory;
 import org.apache.ambari.server.orm.dao.ClusterServiceDAO;
 import org.apache.ambari.server.orm.dao.HostComponentDesiredStateDAO;
 import org.apache.ambari.server.orm.dao.ServiceComponentDesiredStateDAO;
@@ -59,7 +59,7 @@ public class ServiceComponentImpl implements ServiceComponent {
       LoggerFactory.getLogger(ServiceComponentImpl.class);
   private final Service service;
   private final ReadWriteLock clusterGlobalLock;
-  private final ReadWriteLock readWriteLock = new ReentrantReadWriteLock();
+  private final ReadWriteLock readWriteLock;
   private final String componentName;
   private final String displayName;
   private final boolean isClientComponent;
@@ -88,11 +88,18 @@ public class ServiceComponentImpl implements ServiceComponent {
   @Inject
   private StackDAO stackDAO;
 
+  /**
+   * Creates the lock of this component.
+   */
+  @Inject
+  private LockFactory lockFactory;
+
   @AssistedInject
   public ServiceComponentImpl(@Assisted Service service,
                               @Assisted String componentName, Injector injector) throws AmbariException {
     injector.injectMembers(this);
     clusterGlobalLock = service.getClusterGlobalLock();
+    readWriteLock = lockFactory.newReadWriteLock("serviceComponentLock");
     this.service = service;
 
     desiredStateEntity = new ServiceComponentDesiredStateEntity();
@@ -131,6 +138,7 @@ public class ServiceComponentImpl implements ServiceComponent {
                               Injector injector) throws AmbariException {
     injector.injectMembers(this);
     clusterGlobalLock = service.getClusterGlobalLock();
+    readWriteLock = lockFactory.newReadWriteLock("serviceComponentLock");
     this.service = service;
 
     desiredStateEntity = serviceComponentDesiredStateEntity;
@@ -272,7 +280,7 @@ public class ServiceComponentImpl implements ServiceComponent {
   @Override
   public void addServiceComponentHosts(
       Map<String, ServiceComponentHost> hostComponents) throws AmbariException {
-    clusterGlobalLock.writeLock().lock();
+    clusterGlobalLock.readLock().lock();
     try {
       readWriteLock.writeLock().lock();
       try {
@@ -291,14 +299,14 @@ public class ServiceComponentImpl implements ServiceComponent {
         readWriteLock.writeLock().unlock();
       }
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      clusterGlobalLock.readLock().unlock();
     }
   }
 
   @Override
   public void addServiceComponentHost(
       ServiceComponentHost hostComponent) throws AmbariException {
-    clusterGlobalLock.writeLock().lock();
+    clusterGlobalLock.readLock().lock();
     try {
       readWriteLock.writeLock().lock();
       try {
@@ -330,13 +338,13 @@ public class ServiceComponentImpl implements ServiceComponent {
         readWriteLock.writeLock().unlock();
       }
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      clusterGlobalLock.readLock().unlock();
     }
   }
 
   @Override
   public ServiceComponentHost addServiceComponentHost(String hostName) throws AmbariException {
-    clusterGlobalLock.writeLock().lock();
+    clusterGlobalLock.readLock().lock();
     try {
       readWriteLock.writeLock().lock();
       try {
@@ -372,7 +380,7 @@ public class ServiceComponentImpl implements ServiceComponent {
         readWriteLock.writeLock().unlock();
       }
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      clusterGlobalLock.readLock().unlock();
     }
   }
 
@@ -32,6 +32,7 @@ import org.apache.ambari.server.events.MaintenanceModeEvent;
 import org.apache.ambari.server.events.ServiceInstalledEvent;
 import org.apache.ambari.server.events.ServiceRemovedEvent;
 import org.apache.ambari.server.events.publishers.AmbariEventPublisher;
+import org.apache.ambari.server.logging.LockFactory;
 import org.apache.ambari.server.orm.dao.ClusterDAO;
 import org.apache.ambari.server.orm.dao.ClusterServiceDAO;
 import org.apache.ambari.server.orm.dao.ConfigGroupDAO;
@@ -59,12 +60,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 
 public class ServiceImpl implements Service {
   private final ReadWriteLock clusterGlobalLock;
-  private ReadWriteLock readWriteLock = new ReentrantReadWriteLock();
+  private final ReadWriteLock readWriteLock;
   // Cached entity has only 1 getter for name
   private ClusterServiceEntity serviceEntity;
   private ServiceDesiredStateEntity serviceDesiredStateEntity;
@@ -105,6 +105,12 @@ public class ServiceImpl implements Service {
   @Inject
   private AmbariEventPublisher eventPublisher;
 
+  /**
+   * Creates the lock of this service.
+   */
+  @Inject
+  private LockFactory lockFactory;
+
   private void init() {
     // TODO load from DB during restart?
   }
@@ -114,6 +120,7 @@ public class ServiceImpl implements Service {
       Injector injector) throws AmbariException {
     injector.injectMembers(this);
     clusterGlobalLock = cluster.getClusterGlobalLock();
+    readWriteLock = lockFactory.newReadWriteLock("serviceLock");
     serviceEntity = new ClusterServiceEntity();
     serviceEntity.setClusterId(cluster.getClusterId());
     serviceEntity.setServiceName(serviceName);
@@ -146,6 +153,7 @@ public class ServiceImpl implements Service {
       serviceEntity, Injector injector) throws AmbariException {
     injector.injectMembers(this);
     clusterGlobalLock = cluster.getClusterGlobalLock();
+    readWriteLock = lockFactory.newReadWriteLock("serviceLock");
     this.serviceEntity = serviceEntity;
     this.cluster = cluster;
 
@@ -209,7 +217,7 @@ public class ServiceImpl implements Service {
   @Override
   public void addServiceComponents(
       Map<String, ServiceComponent> components) throws AmbariException {
-    clusterGlobalLock.writeLock().lock();
+    clusterGlobalLock.readLock().lock();
     try {
       readWriteLock.writeLock().lock();
       try {
@@ -220,13 +228,13 @@ public class ServiceImpl implements Service {
         readWriteLock.writeLock().unlock();
       }
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      clusterGlobalLock.readLock().unlock();
     }
   }
 
   @Override
   public void addServiceComponent(ServiceComponent component) throws AmbariException {
-    clusterGlobalLock.writeLock().lock();
+    clusterGlobalLock.readLock().lock();
     try {
       readWriteLock.writeLock().lock();
       try {
@@ -250,14 +258,14 @@ public class ServiceImpl implements Service {
         readWriteLock.writeLock().unlock();
       }
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      clusterGlobalLock.readLock().unlock();
     }
   }
 
   @Override
   public ServiceComponent addServiceComponent(String serviceComponentName)
       throws AmbariException {
-    clusterGlobalLock.writeLock().lock();
+    clusterGlobalLock.readLock().lock();
     try {
       readWriteLock.writeLock().lock();
       try {
@@ -282,7 +290,7 @@ public class ServiceImpl implements Service {
         readWriteLock.writeLock().unlock();
       }
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      clusterGlobalLock.readLock().unlock();
     }
   }
 
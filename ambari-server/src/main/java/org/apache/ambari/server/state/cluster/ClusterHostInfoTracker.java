@@ -0,0 +1,157 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state.cluster;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.ambari.server.utils.ClusterHostInfoSnapshot;
+import org.apache.ambari.server.utils.ClusterHostInfoSnapshot.HostEntry;
+
+/**
+ * Keeps the cluster host info of a cluster up to date one host at a time.
+ * <p/>
+ * The hosts are loaded once. Afterwards every change only marks the host it
+ * touched as dirty; the next reader re-reads the dirty hosts, replaces their
+ * entries and renders a new immutable snapshot without walking the rest of
+ * the cluster. A host that is marked again while it is being re-read stays
+ * dirty, so an entry read before the latest change never ends up in a
+ * snapshot.
+ * <p/>
+ * Nothing here takes cluster locks, the caller reads the entries.
+ */
+class ClusterHostInfoTracker {
+
+  /**
+   * [ HostName -> entry ], in host index order, or {@code null} until loaded.
+   */
+  private Map<String, HostEntry> hosts;
+
+  /**
+   * [ HostName -> version it was marked at ]
+   */
+  private final Map<String, Long> dirtyHosts = new HashMap<String, Long>();
+
+  private long version;
+
+  private ClusterHostInfoSnapshot snapshot;
+
+  /**
+   * Marks a host to be re-read.
+   *
+   * @param hostName the host name
+   */
+  synchronized void invalidate(String hostName) {
+    version++;
+    dirtyHosts.put(hostName, version);
+    snapshot = null;
+  }
+
+  synchronized boolean isLoaded() {
+    return hosts != null;
+  }
+
+  /**
+   * @return the hosts to re-read, with the versions to pass back to
+   *         {@link #load(Collection, Map)} or {@link #update(Map, Map)}
+   */
+  synchronized Map<String, Long> getDirtyHosts() {
+    return new HashMap<String, Long>(dirtyHosts);
+  }
+
+  /**
+   * @return the snapshot of the current version, or {@code null} if the
+   *         hosts are not loaded or some of them are dirty
+   */
+  synchronized ClusterHostInfoSnapshot getSnapshot() {
+    if (hosts == null || !dirtyHosts.isEmpty()) {
+      return null;
+    }
+    if (snapshot == null) {
+      snapshot = ClusterHostInfoSnapshot.create(version, hosts.values());
+    }
+    return snapshot;
+  }
+
+  /**
+   * Creates a snapshot of the loaded hosts, dirty or not. Readers that keep
+   * losing the race against changes fall back to it.
+   *
+   * @return the snapshot, which is not kept
+   */
+  synchronized ClusterHostInfoSnapshot createSnapshot() {
+    return ClusterHostInfoSnapshot.create(version, hosts.values());
+  }
+
+  /**
+   * Loads all hosts of the cluster.
+   *
+   * @param entries     the hosts, in host index order
+   * @param dirtyHosts  the dirty hosts taken before reading the entries
+   */
+  synchronized void load(Collection<HostEntry> entries, Map<String, Long> dirtyHosts) {
+    if (hosts != null) {
+      return;
+    }
+    hosts = new LinkedHashMap<String, HostEntry>();
+    for (HostEntry entry : entries) {
+      hosts.put(entry.getHostName(), entry);
+    }
+    clean(dirtyHosts);
+    snapshot = null;
+  }
+
+  /**
+   * Replaces the entries of re-read hosts. A new host is indexed after all
+   * others, a removed host shifts the indexes of the hosts after it.
+   *
+   * @param entries     [ HostName -> entry ], {@code null} for a host that
+   *                    left the cluster
+   * @param dirtyHosts  the dirty hosts taken before reading the entries
+   */
+  synchronized void update(Map<String, HostEntry> entries, Map<String, Long> dirtyHosts) {
+    for (Map.Entry<String, HostEntry> entry : entries.entrySet()) {
+      String hostName = entry.getKey();
+      Long marked = this.dirtyHosts.get(hostName);
+      if (marked == null || !marked.equals(dirtyHosts.get(hostName))) {
+        // changed again while being read
+        continue;
+      }
+      if (entry.getValue() == null) {
+        hosts.remove(hostName);
+      } else {
+        hosts.put(hostName, entry.getValue());
+      }
+    }
+    clean(dirtyHosts);
+    snapshot = null;
+  }
+
+  private void clean(Map<String, Long> readHosts) {
+    Iterator<Map.Entry<String, Long>> iterator = dirtyHosts.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<String, Long> dirtyHost = iterator.next();
+      if (dirtyHost.getValue().equals(readHosts.get(dirtyHost.getKey()))) {
+        iterator.remove();
+      }
+    }
+  }
+}
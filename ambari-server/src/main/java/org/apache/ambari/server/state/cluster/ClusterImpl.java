@@ -32,10 +32,10 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import javax.annotation.Nullable;
 import javax.persistence.EntityManager;
@@ -63,6 +63,7 @@ import org.apache.ambari.server.events.AmbariEvent.AmbariEventType;
 import org.apache.ambari.server.events.ClusterConfigChangedEvent;
 import org.apache.ambari.server.events.ClusterEvent;
 import org.apache.ambari.server.events.publishers.AmbariEventPublisher;
+import org.apache.ambari.server.logging.LockFactory;
 import org.apache.ambari.server.orm.RequiresSession;
 import org.apache.ambari.server.orm.cache.HostConfigMapping;
 import org.apache.ambari.server.orm.dao.AlertDefinitionDAO;
@@ -112,6 +113,7 @@ import org.apache.ambari.server.state.ConfigFactory;
 import org.apache.ambari.server.state.ConfigHelper;
 import org.apache.ambari.server.state.DesiredConfig;
 import org.apache.ambari.server.state.Host;
+import org.apache.ambari.server.state.HostComponentAdminState;
 import org.apache.ambari.server.state.HostHealthStatus;
 import org.apache.ambari.server.state.HostState;
 import org.apache.ambari.server.state.MaintenanceState;
@@ -136,6 +138,9 @@ import org.apache.ambari.server.state.scheduler.RequestExecutionFactory;
 import org.apache.ambari.server.state.stack.upgrade.Direction;
 import org.apache.ambari.server.state.svccomphost.ServiceComponentHostSummary;
 import org.apache.ambari.server.topology.TopologyRequest;
+import org.apache.ambari.server.utils.ClusterHostInfoSnapshot;
+import org.apache.ambari.server.utils.ClusterHostInfoSnapshot.HostEntry;
+import org.apache.ambari.server.utils.StageUtils;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -148,6 +153,7 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 import com.google.common.eventbus.Subscribe;
+import com.google.common.util.concurrent.Striped;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
 import com.google.inject.assistedinject.Assisted;
@@ -165,6 +171,18 @@ public class ClusterImpl implements Cluster {
   private static final Set<RepositoryVersionState> ALLOWED_REPOSITORY_STATES =
       EnumSet.of(RepositoryVersionState.INIT, RepositoryVersionState.INSTALLING);
 
+  /**
+   * How many times a reader re-reads changed hosts before it settles for a
+   * snapshot that may be missing the latest changes.
+   */
+  private static final int CLUSTER_HOST_INFO_ATTEMPTS = 5;
+
+  /**
+   * The number of locks that the hosts of the cluster are spread over when
+   * their host components are added or removed.
+   */
+  private static final int HOST_COMPONENT_LOCK_STRIPES = 64;
+
   @Inject
   private Clusters clusters;
 
@@ -182,12 +200,19 @@ public class ClusterImpl implements Cluster {
   /**
    * [ ServiceName -> [ ServiceComponentName -> [ HostName -> [ ... ] ] ] ]
    */
-  private Map<String, Map<String, Map<String, ServiceComponentHost>>> serviceComponentHosts;
+  private ConcurrentMap<String, ConcurrentMap<String, ConcurrentMap<String, ServiceComponentHost>>> serviceComponentHosts;
 
   /**
    * [ HostName -> [ ... ] ]
    */
-  private Map<String, List<ServiceComponentHost>>  serviceComponentHostsByHost;
+  private ConcurrentMap<String, List<ServiceComponentHost>>  serviceComponentHostsByHost;
+
+  /**
+   * Host components are added and removed under the read lock of
+   * {@link #clusterGlobalLock} and the stripe of their host, so that changes on
+   * different hosts do not wait for each other.
+   */
+  private final Striped<Lock> hostComponentLocks = Striped.lock(HOST_COMPONENT_LOCK_STRIPES);
 
   /**
    * Map of existing config groups
@@ -199,11 +224,11 @@ public class ClusterImpl implements Cluster {
    */
   private volatile Map<Long, RequestExecution> requestExecutions;
 
-  private final ReadWriteLock clusterGlobalLock = new ReentrantReadWriteLock();
+  private final ReadWriteLock clusterGlobalLock;
 
   // This is a lock for operations that do not need to be cluster global
-  private final ReentrantReadWriteLock hostTransitionStateLock = new ReentrantReadWriteLock();
-  private final Lock hostTransitionStateWriteLock = hostTransitionStateLock.writeLock();
+  private final ReadWriteLock hostTransitionStateLock;
+  private final Lock hostTransitionStateWriteLock;
 
   /**
    * The unique ID of the {@link @ClusterEntity}.
@@ -215,6 +240,12 @@ public class ClusterImpl implements Cluster {
   @Inject
   private ClusterDAO clusterDAO;
 
+  /**
+   * Creates the cluster locks, profiled if configured.
+   */
+  @Inject
+  private LockFactory lockFactory;
+
   @Inject
   private ClusterStateDAO clusterStateDAO;
 
@@ -301,17 +332,27 @@ public class ClusterImpl implements Cluster {
    */
   private Map<String, String> m_clusterPropertyCache = new ConcurrentHashMap<>();
 
+  /**
+   * The cluster host info sent with commands, updated host by host as hosts
+   * and host components are added and removed.
+   */
+  private final ClusterHostInfoTracker clusterHostInfoTracker = new ClusterHostInfoTracker();
+
   @Inject
   public ClusterImpl(@Assisted ClusterEntity clusterEntity,
       Injector injector, AmbariEventPublisher eventPublisher) throws AmbariException {
     injector.injectMembers(this);
 
+    clusterGlobalLock = lockFactory.newReadWriteLock("clusterGlobalLock");
+    hostTransitionStateLock = lockFactory.newReadWriteLock("hostTransitionStateLock");
+    hostTransitionStateWriteLock = hostTransitionStateLock.writeLock();
+
     clusterId = clusterEntity.getClusterId();
     clusterName = clusterEntity.getClusterName();
 
-    serviceComponentHosts = new HashMap<>();
+    serviceComponentHosts = new ConcurrentHashMap<>();
 
-    serviceComponentHostsByHost = new HashMap<>();
+    serviceComponentHostsByHost = new ConcurrentHashMap<>();
 
     desiredStackVersion = new StackId(clusterEntity.getDesiredStack());
 
@@ -411,33 +452,19 @@ public class ClusterImpl implements Cluster {
         for (Entry<String, Service> serviceKV : services.entrySet()) {
           /* get all the service component hosts **/
           Service service = serviceKV.getValue();
-          if (!serviceComponentHosts.containsKey(service.getName())) {
-            serviceComponentHosts.put(service.getName(),
-                new HashMap<String, Map<String, ServiceComponentHost>>());
-          }
           for (Entry<String, ServiceComponent> svcComponent : service.getServiceComponents().entrySet()) {
             ServiceComponent comp = svcComponent.getValue();
             String componentName = svcComponent.getKey();
-            if (!serviceComponentHosts.get(service.getName()).containsKey(
-                componentName)) {
-              serviceComponentHosts.get(service.getName()).put(componentName,
-                  new HashMap<String, ServiceComponentHost>());
-            }
+            Map<String, ServiceComponentHost> componentHosts =
+                getServiceComponentHostsIndex(service.getName(), componentName);
             /** Get Service Host Components **/
             for (Entry<String, ServiceComponentHost> svchost : comp.getServiceComponentHosts().entrySet()) {
               String hostname = svchost.getKey();
               ServiceComponentHost svcHostComponent = svchost.getValue();
-              if (!serviceComponentHostsByHost.containsKey(hostname)) {
-                serviceComponentHostsByHost.put(hostname,
-                    new ArrayList<ServiceComponentHost>());
-              }
-              List<ServiceComponentHost> compList = serviceComponentHostsByHost.get(hostname);
-              compList.add(svcHostComponent);
+              getServiceComponentHostsByHostIndex(hostname).add(svcHostComponent);
 
-              if (!serviceComponentHosts.get(service.getName()).get(
-                  componentName).containsKey(hostname)) {
-                serviceComponentHosts.get(service.getName()).get(componentName).put(
-                    hostname, svcHostComponent);
+              if (!componentHosts.containsKey(hostname)) {
+                componentHosts.put(hostname, svcHostComponent);
               }
             }
           }
@@ -555,7 +582,7 @@ public class ClusterImpl implements Cluster {
             + configGroup.getTag());
       } else {
         clusterConfigGroups.put(configGroup.getId(), configGroup);
-        configHelper.invalidateStaleConfigsCache();
+        configHelper.invalidateStaleConfigsCache(this, configGroup.getConfigurations().keySet());
       }
 
     } finally {
@@ -665,9 +692,10 @@ public class ClusterImpl implements Cluster {
           + ", groupName = " + configGroup.getName() + ", groupId = "
           + configGroup.getId() + ", tag = " + configGroup.getTag());
 
+      Set<String> configTypes = new HashSet<String>(configGroup.getConfigurations().keySet());
       configGroup.delete();
       clusterConfigGroups.remove(id);
-      configHelper.invalidateStaleConfigsCache();
+      configHelper.invalidateStaleConfigsCache(this, configTypes);
     } finally {
       clusterGlobalLock.writeLock().unlock();
     }
@@ -762,6 +790,18 @@ public class ClusterImpl implements Cluster {
     }
   }
 
+  /**
+   * Adds a host component to the cluster caches. Only the read lock of the
+   * cluster is taken, along with the lock of the host, so callers may hold
+   * the cluster read lock already. If the host components of the cluster are
+   * not loaded yet they are not loaded here, since that needs the write lock;
+   * the caller adds the host component to its component, which is where the
+   * caches are loaded from.
+   *
+   * @param svcCompHost  the host component
+   * @throws AmbariException if the host is not in the cluster or the host
+   *                         component exists already
+   */
   public void addServiceComponentHost(ServiceComponentHost svcCompHost)
       throws AmbariException {
     if (LOG.isDebugEnabled()) {
@@ -770,16 +810,15 @@ public class ClusterImpl implements Cluster {
           svcCompHost.getHostName());
     }
 
-    loadServiceHostComponents();
-
     final String hostname = svcCompHost.getHostName();
     final String serviceName = svcCompHost.getServiceName();
     final String componentName = svcCompHost.getServiceComponentName();
 
     Set<Cluster> cs = clusters.getClustersForHost(hostname);
 
-    clusterGlobalLock.writeLock().lock();
-
+    clusterGlobalLock.readLock().lock();
+    Lock hostLock = hostComponentLocks.get(hostname);
+    hostLock.lock();
     try {
       boolean clusterFound = false;
       Iterator<Cluster> iter = cs.iterator();
@@ -797,41 +836,32 @@ public class ClusterImpl implements Cluster {
             + ", clusterId=" + getClusterId());
       }
 
-      if (!serviceComponentHosts.containsKey(serviceName)) {
-        serviceComponentHosts.put(serviceName,
-            new HashMap<String, Map<String, ServiceComponentHost>>());
-      }
-
-      if (!serviceComponentHosts.get(serviceName).containsKey(componentName)) {
-        serviceComponentHosts.get(serviceName).put(componentName,
-            new HashMap<String, ServiceComponentHost>());
-      }
+      if (svcHostsLoaded) {
+        Map<String, ServiceComponentHost> componentHosts =
+            getServiceComponentHostsIndex(serviceName, componentName);
 
-      if (serviceComponentHosts.get(serviceName).get(componentName).containsKey(
-          hostname)) {
-        throw new AmbariException("Duplicate entry for ServiceComponentHost"
-            + ", serviceName=" + serviceName + ", serviceComponentName"
-            + componentName + ", hostname= " + hostname);
-      }
+        if (componentHosts.containsKey(hostname)) {
+          throw new AmbariException("Duplicate entry for ServiceComponentHost"
+              + ", serviceName=" + serviceName + ", serviceComponentName"
+              + componentName + ", hostname= " + hostname);
+        }
 
-      if (!serviceComponentHostsByHost.containsKey(hostname)) {
-        serviceComponentHostsByHost.put(hostname,
-          new ArrayList<ServiceComponentHost>());
-      }
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Adding a new ServiceComponentHost" + ", clusterName="
+              + getClusterName() + ", clusterId=" + getClusterId()
+              + ", serviceName=" + serviceName + ", serviceComponentName"
+              + componentName + ", hostname= " + hostname);
+        }
 
-      if (LOG.isDebugEnabled()) {
-        LOG.debug("Adding a new ServiceComponentHost" + ", clusterName="
-            + getClusterName() + ", clusterId=" + getClusterId()
-            + ", serviceName=" + serviceName + ", serviceComponentName"
-            + componentName + ", hostname= " + hostname);
+        componentHosts.put(hostname, svcCompHost);
+        getServiceComponentHostsByHostIndex(hostname).add(svcCompHost);
       }
-
-      serviceComponentHosts.get(serviceName).get(componentName).put(hostname,
-        svcCompHost);
-      serviceComponentHostsByHost.get(hostname).add(svcCompHost);
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      hostLock.unlock();
+      clusterGlobalLock.readLock().unlock();
     }
+
+    invalidateClusterHostInfo(hostname);
   }
 
   @Override
@@ -851,7 +881,9 @@ public class ClusterImpl implements Cluster {
     final String componentName = svcCompHost.getServiceComponentName();
     Set<Cluster> cs = clusters.getClustersForHost(hostname);
 
-    clusterGlobalLock.writeLock().lock();
+    clusterGlobalLock.readLock().lock();
+    Lock hostLock = hostComponentLocks.get(hostname);
+    hostLock.lock();
     try {
       boolean clusterFound = false;
       Iterator<Cluster> iter = cs.iterator();
@@ -913,8 +945,45 @@ public class ClusterImpl implements Cluster {
         serviceComponentHostsByHost.get(hostname).remove(schToRemove);
       }
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      hostLock.unlock();
+      clusterGlobalLock.readLock().unlock();
+    }
+
+    invalidateClusterHostInfo(hostname);
+  }
+
+  /**
+   * @return the host components of a component by host name, created if
+   *         missing
+   */
+  private Map<String, ServiceComponentHost> getServiceComponentHostsIndex(
+      String serviceName, String componentName) {
+    ConcurrentMap<String, ConcurrentMap<String, ServiceComponentHost>> serviceHosts =
+        serviceComponentHosts.get(serviceName);
+    if (serviceHosts == null) {
+      serviceComponentHosts.putIfAbsent(serviceName,
+          new ConcurrentHashMap<String, ConcurrentMap<String, ServiceComponentHost>>());
+      serviceHosts = serviceComponentHosts.get(serviceName);
+    }
+
+    ConcurrentMap<String, ServiceComponentHost> componentHosts = serviceHosts.get(componentName);
+    if (componentHosts == null) {
+      serviceHosts.putIfAbsent(componentName, new ConcurrentHashMap<String, ServiceComponentHost>());
+      componentHosts = serviceHosts.get(componentName);
+    }
+    return componentHosts;
+  }
+
+  /**
+   * @return the host components of a host, created if missing
+   */
+  private List<ServiceComponentHost> getServiceComponentHostsByHostIndex(String hostname) {
+    List<ServiceComponentHost> hostComponents = serviceComponentHostsByHost.get(hostname);
+    if (hostComponents == null) {
+      serviceComponentHostsByHost.putIfAbsent(hostname, new CopyOnWriteArrayList<ServiceComponentHost>());
+      hostComponents = serviceComponentHostsByHost.get(hostname);
     }
+    return hostComponents;
   }
 
   @Override
@@ -947,7 +1016,7 @@ public class ClusterImpl implements Cluster {
     loadServiceHostComponents();
     clusterGlobalLock.readLock().lock();
     try {
-      Map<String, Map<String, ServiceComponentHost>> foundByService = serviceComponentHosts.get(serviceName);
+      Map<String, ConcurrentMap<String, ServiceComponentHost>> foundByService = serviceComponentHosts.get(serviceName);
       if (foundByService != null) {
         if (componentName == null) {
           for(Map<String, ServiceComponentHost> foundByComponent :foundByService.values()) {
@@ -2321,7 +2390,11 @@ public class ClusterImpl implements Cluster {
       ServiceConfigVersionResponse serviceConfigVersionResponse = applyConfigs(
           configs, user, serviceConfigVersionNote);
 
-      configHelper.invalidateStaleConfigsCache();
+      Set<String> configTypes = new HashSet<String>();
+      for (Config config : configs) {
+        configTypes.add(config.getType());
+      }
+      configHelper.invalidateStaleConfigsCache(this, configTypes);
       return serviceConfigVersionResponse;
     } finally {
       clusterGlobalLock.writeLock().unlock();
@@ -2550,7 +2623,7 @@ public class ClusterImpl implements Cluster {
     try {
       ServiceConfigVersionResponse serviceConfigVersionResponse = applyServiceConfigVersion(
           serviceName, version, user, note);
-      configHelper.invalidateStaleConfigsCache();
+      configHelper.invalidateStaleConfigsCache(this, serviceConfigTypes.get(serviceName));
       return serviceConfigVersionResponse;
     } finally {
       clusterGlobalLock.writeLock().unlock();
@@ -3117,6 +3190,96 @@ public class ClusterImpl implements Cluster {
     return hosts == null ? Collections.<Host>emptyList() : hosts.values();
   }
 
+  @Override
+  public ClusterHostInfoSnapshot getClusterHostInfoSnapshot() {
+    for (int attempt = 0; attempt < CLUSTER_HOST_INFO_ATTEMPTS; attempt++) {
+      ClusterHostInfoSnapshot snapshot = clusterHostInfoTracker.getSnapshot();
+      if (snapshot != null) {
+        return snapshot;
+      }
+
+      Map<String, Long> dirtyHosts = clusterHostInfoTracker.getDirtyHosts();
+      if (!clusterHostInfoTracker.isLoaded()) {
+        List<HostEntry> entries = new ArrayList<>();
+        for (Host host : getHosts()) {
+          HostEntry entry = createClusterHostInfoEntry(host.getHostName());
+          if (entry != null) {
+            entries.add(entry);
+          }
+        }
+        clusterHostInfoTracker.load(entries, dirtyHosts);
+      } else {
+        Map<String, HostEntry> entries = new HashMap<>();
+        for (String hostName : dirtyHosts.keySet()) {
+          entries.put(hostName, createClusterHostInfoEntry(hostName));
+        }
+        clusterHostInfoTracker.update(entries, dirtyHosts);
+      }
+    }
+
+    LOG.debug("Cluster host info of cluster {} keeps changing, using the last loaded one",
+        clusterName);
+    return clusterHostInfoTracker.createSnapshot();
+  }
+
+  @Override
+  public void invalidateClusterHostInfo(String hostName) {
+    clusterHostInfoTracker.invalidate(hostName);
+  }
+
+  /**
+   * Reads the cluster host info entry of a single host.
+   *
+   * @param hostName the host name
+   * @return the entry, or {@code null} if the host is not part of the cluster
+   */
+  private HostEntry createClusterHostInfoEntry(String hostName) {
+    Host host = null;
+    try {
+      for (Cluster cluster : clusters.getClustersForHost(hostName)) {
+        if (cluster.getClusterId() == getClusterId()) {
+          host = clusters.getHost(hostName);
+          break;
+        }
+      }
+    } catch (AmbariException e) {
+      LOG.debug("Host {} is no longer known", hostName);
+    }
+
+    if (host == null) {
+      return null;
+    }
+
+    Set<String> keys = new HashSet<>();
+    for (ServiceComponentHost sch : getServiceComponentHosts(hostName)) {
+      ServiceComponent serviceComponent;
+      try {
+        serviceComponent = getService(sch.getServiceName()).getServiceComponent(
+            sch.getServiceComponentName());
+      } catch (AmbariException e) {
+        // the service or component is being removed
+        continue;
+      }
+      addClusterInfoKeys(keys, serviceComponent, sch);
+    }
+    return new HostEntry(host, keys);
+  }
+
+  private static void addClusterInfoKeys(Set<String> keys, ServiceComponent serviceComponent,
+      ServiceComponentHost sch) {
+    String componentName = serviceComponent.getName();
+    String key = StageUtils.getClusterInfoKey(componentName, serviceComponent.isClientComponent());
+    if (key != null) {
+      keys.add(key);
+    }
+
+    String decommissionedKey = StageUtils.getDecommissionedClusterInfoKey(componentName);
+    if (decommissionedKey != null
+        && sch.getComponentAdminState() == HostComponentAdminState.DECOMMISSIONED) {
+      keys.add(decommissionedKey);
+    }
+  }
+
   private ClusterHealthReport getClusterHealthReport(
       Map<String, Host> clusterHosts) throws AmbariException {
 
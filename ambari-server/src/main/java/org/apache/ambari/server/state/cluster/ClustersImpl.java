@@ -598,6 +598,7 @@ public class ClustersImpl implements Clusters {
     }
 
     cluster.refresh();
+    cluster.invalidateClusterHostInfo(hostname);
     host.refresh();
   }
 
@@ -791,6 +792,7 @@ public class ClustersImpl implements Clusters {
 
         host.refresh();
         cluster.refresh();
+        cluster.invalidateClusterHostInfo(hostname);
       }
 
       deleteConfigGroupHostMapping(hostEntity.getHostId());
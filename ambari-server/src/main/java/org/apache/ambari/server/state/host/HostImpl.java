@@ -22,6 +22,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -646,6 +647,7 @@ public class HostImpl implements Host {
     finally {
       writeLock.unlock();
     }
+    invalidateClusterHostInfo();
   }
 
   @Override
@@ -690,6 +692,7 @@ public class HostImpl implements Host {
     } finally {
       writeLock.unlock();
     }
+    invalidateClusterHostInfo();
   }
 
   @Override
@@ -1009,6 +1012,24 @@ public class HostImpl implements Host {
     } finally {
       writeLock.unlock();
     }
+    invalidateClusterHostInfo();
+  }
+
+  /**
+   * Marks the host to be re-read into the cluster host info of its clusters
+   * after its rack, IP address or ping port changed.
+   */
+  private void invalidateClusterHostInfo() {
+    try {
+      Set<Cluster> hostClusters = clusters.getClustersForHost(getHostName());
+      if (hostClusters != null) {
+        for (Cluster cluster : hostClusters) {
+          cluster.invalidateClusterHostInfo(getHostName());
+        }
+      }
+    } catch (AmbariException e) {
+      // not registered yet, so not in any cluster either
+    }
   }
 
   @Override
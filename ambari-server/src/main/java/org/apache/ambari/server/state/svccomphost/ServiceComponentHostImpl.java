@@ -28,7 +28,6 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.agent.AlertDefinitionCommand;
@@ -39,6 +38,7 @@ import org.apache.ambari.server.events.MaintenanceModeEvent;
 import org.apache.ambari.server.events.ServiceComponentInstalledEvent;
 import org.apache.ambari.server.events.ServiceComponentUninstalledEvent;
 import org.apache.ambari.server.events.publishers.AmbariEventPublisher;
+import org.apache.ambari.server.logging.LockFactory;
 import org.apache.ambari.server.orm.dao.HostComponentDesiredStateDAO;
 import org.apache.ambari.server.orm.dao.HostComponentStateDAO;
 import org.apache.ambari.server.orm.dao.HostDAO;
@@ -92,9 +92,9 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
       LoggerFactory.getLogger(ServiceComponentHostImpl.class);
 
   private final ReadWriteLock clusterGlobalLock;
-  private final ReadWriteLock readWriteLock = new ReentrantReadWriteLock();
-  private final Lock readLock = readWriteLock.readLock();
-  private final Lock writeLock = readWriteLock.writeLock();
+  private final ReadWriteLock readWriteLock;
+  private final Lock readLock;
+  private final Lock writeLock;
 
   private final ServiceComponent serviceComponent;
   private final Host host;
@@ -138,6 +138,12 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
   @Inject
   private StackDAO stackDAO;
 
+  /**
+   * Creates the lock of this host component.
+   */
+  @Inject
+  private LockFactory lockFactory;
+
   // Only used when object state is not persisted
   private HostComponentStateEntity stateEntity;
   private HostComponentDesiredStateEntity desiredStateEntity;
@@ -722,6 +728,9 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
   public ServiceComponentHostImpl(@Assisted ServiceComponent serviceComponent,
                                   @Assisted String hostName, Injector injector) {
     injector.injectMembers(this);
+    readWriteLock = lockFactory.newReadWriteLock("serviceComponentHostLock");
+    readLock = readWriteLock.readLock();
+    writeLock = readWriteLock.writeLock();
 
     if (serviceComponent.isClientComponent()) {
       stateMachine = clientStateMachineFactory.make(this);
@@ -783,6 +792,9 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
                                   @Assisted HostComponentDesiredStateEntity desiredStateEntity,
                                   Injector injector) {
     injector.injectMembers(this);
+    readWriteLock = lockFactory.newReadWriteLock("serviceComponentHostLock");
+    readLock = readWriteLock.readLock();
+    writeLock = readWriteLock.writeLock();
     this.serviceComponent = serviceComponent;
     clusterGlobalLock = serviceComponent.getClusterGlobalLock();
 
@@ -1311,6 +1323,13 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
       if (desiredStateEntity != null) {
         desiredStateEntity.setAdminState(attribute);
         saveComponentDesiredStateEntityIfPersisted();
+
+        // decommissioned hosts are listed in the cluster host info
+        try {
+          clusters.getCluster(getClusterName()).invalidateClusterHostInfo(getHostName());
+        } catch (AmbariException ex) {
+          LOG.warn("Unable to update the cluster host info of cluster " + getClusterName(), ex);
+        }
       } else {
         LOG.warn("Setting a member on an entity object that may have been " +
           "previously deleted, serviceName = " + getServiceName() + ", " +
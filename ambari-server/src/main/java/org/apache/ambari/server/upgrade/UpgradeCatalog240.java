@@ -88,6 +88,8 @@ public class UpgradeCatalog240 extends AbstractUpgradeCatalog {
   protected static final String UPGRADE_TABLE = "upgrade";
   protected static final String STACK_TABLE = "stack";
   protected static final String CLUSTER_TABLE = "clusters";
+  protected static final String STAGE_TABLE = "stage";
+  protected static final String COMMAND_PAYLOADS_COLUMN = "command_payloads";
   protected static final String CLUSTER_UPGRADE_ID_COLUMN = "upgrade_id";
   public static final String DESIRED_VERSION_COLUMN_NAME = "desired_version";
   public static final String BLUEPRINT_SETTING_TABLE = "blueprint_setting";
@@ -156,6 +158,7 @@ public class UpgradeCatalog240 extends AbstractUpgradeCatalog {
     updateServiceComponentDesiredStateTableDDL();
     createServiceComponentHistoryTable();
     updateClusterTableDDL();
+    updateStageTableDDL();
     updateAlertDefinitionTable();
     updateAlertCurrentTable();
     createBlueprintSettingTable();
@@ -999,6 +1002,16 @@ public class UpgradeCatalog240 extends AbstractUpgradeCatalog {
             new DBColumnInfo(DESIRED_VERSION_COLUMN_NAME, String.class, 255, State.UNKNOWN.toString(), false));
   }
 
+  /**
+   * Adds the command_payloads column to the stage table, which holds the
+   * blocks shared by the execution commands of a stage.
+   *
+   * @throws SQLException
+   */
+  private void updateStageTableDDL() throws SQLException {
+    dbAccessor.addColumn(STAGE_TABLE, new DBColumnInfo(COMMAND_PAYLOADS_COLUMN, byte[].class, null, null, true));
+  }
+
   /**
    * Alter host_role_command table to add original_start_time, which is needed because the start_time column now
    * allows overriding the value in ActionScheduler.java
@@ -0,0 +1,170 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.apache.ambari.server.state.Host;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * An immutable, versioned view of the cluster topology in the
+ * {@code clusterHostInfo} form that is sent to the agents with every command.
+ * <p/>
+ * The host indexes are range-compressed and the JSON is rendered once when
+ * the snapshot is created, so stages built against the same topology share
+ * them instead of walking the cluster again.
+ */
+public final class ClusterHostInfoSnapshot {
+
+  private final long version;
+
+  private final Map<String, Set<String>> clusterHostInfo;
+
+  private final String clusterHostInfoJson;
+
+  private ClusterHostInfoSnapshot(long version, Map<String, Set<String>> clusterHostInfo) {
+    this.version = version;
+    this.clusterHostInfo = clusterHostInfo;
+    clusterHostInfoJson = StageUtils.getGson().toJson(clusterHostInfo);
+  }
+
+  /**
+   * Creates a snapshot of the given hosts, which are indexed in iteration
+   * order.
+   *
+   * @param version  the topology version the hosts were read at
+   * @param hosts    the cluster hosts
+   * @return the snapshot
+   */
+  public static ClusterHostInfoSnapshot create(long version, Collection<HostEntry> hosts) {
+    Set<String> hostNames = new LinkedHashSet<String>();
+    List<Integer> ports = new ArrayList<Integer>(hosts.size());
+    List<String> racks = new ArrayList<String>(hosts.size());
+    List<String> ipV4s = new ArrayList<String>(hosts.size());
+    Map<String, SortedSet<Integer>> hostRolesInfo = new HashMap<String, SortedSet<Integer>>();
+
+    int hostIndex = 0;
+    for (HostEntry host : hosts) {
+      hostNames.add(host.hostName);
+      ports.add(host.pingPort);
+      racks.add(host.rackInfo);
+      ipV4s.add(host.ipv4);
+
+      for (String clusterInfoKey : host.clusterInfoKeys) {
+        SortedSet<Integer> hostIndexes = hostRolesInfo.get(clusterInfoKey);
+        if (hostIndexes == null) {
+          hostIndexes = new TreeSet<Integer>();
+          hostRolesInfo.put(clusterInfoKey, hostIndexes);
+        }
+        hostIndexes.add(hostIndex);
+      }
+      hostIndex++;
+    }
+
+    Map<String, Set<String>> clusterHostInfo = new HashMap<String, Set<String>>();
+    for (Map.Entry<String, SortedSet<Integer>> entry : hostRolesInfo.entrySet()) {
+      clusterHostInfo.put(entry.getKey(),
+          Collections.unmodifiableSet(StageUtils.replaceRanges(entry.getValue())));
+    }
+
+    clusterHostInfo.put(StageUtils.HOSTS_LIST, Collections.unmodifiableSet(hostNames));
+    clusterHostInfo.put(StageUtils.PORTS, Collections.unmodifiableSet(StageUtils.replaceMappedRanges(ports)));
+    clusterHostInfo.put(StageUtils.IPV4_ADDRESSES, Collections.unmodifiableSet(StageUtils.replaceMappedRanges(ipV4s)));
+    clusterHostInfo.put(StageUtils.RACKS, Collections.unmodifiableSet(StageUtils.replaceMappedRanges(racks)));
+    clusterHostInfo.put(StageUtils.AMBARI_SERVER_HOST,
+        Collections.unmodifiableSet(new TreeSet<String>(Collections.singleton(StageUtils.getHostName()))));
+
+    return new ClusterHostInfoSnapshot(version, Collections.unmodifiableMap(clusterHostInfo));
+  }
+
+  /**
+   * @return the topology version the snapshot was created at
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * Gets a copy of the cluster host info that the caller is free to modify,
+   * for example with {@link StageUtils#substituteHostIndexes(Map)}.
+   *
+   * @return the cluster host info
+   */
+  public Map<String, Set<String>> getClusterHostInfo() {
+    Map<String, Set<String>> copy = new HashMap<String, Set<String>>();
+    for (Map.Entry<String, Set<String>> entry : clusterHostInfo.entrySet()) {
+      copy.put(entry.getKey(), new LinkedHashSet<String>(entry.getValue()));
+    }
+    return copy;
+  }
+
+  /**
+   * @return the cluster host info rendered as JSON
+   */
+  public String getClusterHostInfoJson() {
+    return clusterHostInfoJson;
+  }
+
+  /**
+   * The parts of a host that end up in the cluster host info.
+   */
+  public static final class HostEntry {
+    private final String hostName;
+    private final Integer pingPort;
+    private final String rackInfo;
+    private final String ipv4;
+    private final Set<String> clusterInfoKeys;
+
+    /**
+     * Constructor.
+     *
+     * @param host             the host
+     * @param clusterInfoKeys  the cluster host info keys of the components on
+     *                         the host, see
+     *                         {@link StageUtils#getClusterInfoKey(String, boolean)}
+     */
+    public HostEntry(Host host, Set<String> clusterInfoKeys) {
+      hostName = host.getHostName();
+
+      Integer currentPingPort = host.getCurrentPingPort();
+      pingPort = currentPingPort == null ? StageUtils.DEFAULT_PING_PORT : currentPingPort;
+
+      String rack = host.getRackInfo();
+      rackInfo = StringUtils.isEmpty(rack) ? StageUtils.DEFAULT_RACK : rack;
+
+      String iPv4 = host.getIPv4();
+      ipv4 = StringUtils.isEmpty(iPv4) ? StageUtils.DEFAULT_IPV4_ADDRESS : iPv4;
+
+      this.clusterInfoKeys = Collections.unmodifiableSet(new TreeSet<String>(clusterInfoKeys));
+    }
+
+    public String getHostName() {
+      return hostName;
+    }
+  }
+}
@@ -254,7 +254,77 @@ public class StageUtils {
     return actionExecContext.getParameters() != null ? actionExecContext.getParameters() : new TreeMap<String, String>();
   }
 
+  /**
+   * Gets the cluster host info for the commands of a stage. Unless hosts are
+   * still being provisioned by the {@link TopologyManager}, this is a copy of
+   * the cluster's {@link ClusterHostInfoSnapshot}.
+   *
+   * @param cluster  the cluster
+   * @return the cluster host info, which the caller may modify
+   * @throws AmbariException
+   */
   public static Map<String, Set<String>> getClusterHostInfo(Cluster cluster) throws AmbariException {
+    Map<String, Collection<String>> pendingHostComponents = topologyManager.getPendingHostComponents();
+    if (pendingHostComponents.isEmpty()) {
+      ClusterHostInfoSnapshot snapshot = cluster.getClusterHostInfoSnapshot();
+      if (snapshot != null) {
+        return snapshot.getClusterHostInfo();
+      }
+    }
+    return buildClusterHostInfo(cluster, pendingHostComponents);
+  }
+
+  /**
+   * Gets the cluster host info for the commands of a stage rendered as JSON,
+   * see {@link #getClusterHostInfo(Cluster)}.
+   *
+   * @param cluster  the cluster
+   * @return the cluster host info JSON
+   * @throws AmbariException
+   */
+  public static String getClusterHostInfoJson(Cluster cluster) throws AmbariException {
+    Map<String, Collection<String>> pendingHostComponents = topologyManager.getPendingHostComponents();
+    if (pendingHostComponents.isEmpty()) {
+      ClusterHostInfoSnapshot snapshot = cluster.getClusterHostInfoSnapshot();
+      if (snapshot != null) {
+        return snapshot.getClusterHostInfoJson();
+      }
+    }
+    return getGson().toJson(buildClusterHostInfo(cluster, pendingHostComponents));
+  }
+
+  /**
+   * Gets the cluster host info key of a component.
+   *
+   * @param componentName    the component name
+   * @param clientComponent  whether the component is a client
+   * @return the key, or {@code null} if the component is not listed
+   */
+  public static String getClusterInfoKey(String componentName, boolean clientComponent) {
+    String roleName = componentToClusterInfoKeyMap.get(componentName);
+    if (null == roleName && !clientComponent) {
+      roleName = componentName.toLowerCase() + "_hosts";
+    }
+    return roleName;
+  }
+
+  /**
+   * Gets the cluster host info key listing the decommissioned hosts of a
+   * component.
+   *
+   * @param componentName  the component name
+   * @return the key, or {@code null} if the component can't be decommissioned
+   */
+  public static String getDecommissionedClusterInfoKey(String componentName) {
+    return decommissionedToClusterInfoKeyMap.get(componentName);
+  }
+
+  /**
+   * Builds the cluster host info by walking all hosts and host components of
+   * the cluster and adding the hosts that are still being provisioned.
+   */
+  private static Map<String, Set<String>> buildClusterHostInfo(Cluster cluster,
+      Map<String, Collection<String>> pendingHostComponents) throws AmbariException {
     //Fill hosts and ports lists
     Set<String>   hostsSet  = new LinkedHashSet<String>();
     List<Integer> portsList = new ArrayList<Integer>();
@@ -277,7 +347,6 @@ public class StageUtils {
     }
 
     // add hosts from topology manager
-    Map<String, Collection<String>> pendingHostComponents = topologyManager.getPendingHostComponents();
     for (String hostname : pendingHostComponents.keySet()) {
       if (!hostsSet.contains(hostname)) {
         hostsSet.add(hostname);
@@ -301,16 +370,12 @@ public class StageUtils {
         ServiceComponent serviceComponent = serviceComponentEntry.getValue();
         String componentName = serviceComponent.getName();
 
-        String roleName = componentToClusterInfoKeyMap.get(componentName);
-        if(null == roleName) {
-          roleName = additionalComponentToClusterInfoKeyMap.get(componentName);
-        }
-        if (null == roleName && !serviceComponent.isClientComponent()) {
-          roleName = componentName.toLowerCase() + "_hosts";
+        String roleName = getClusterInfoKey(componentName, serviceComponent.isClientComponent());
+        if (null != roleName && !componentToClusterInfoKeyMap.containsKey(componentName)) {
           additionalComponentToClusterInfoKeyMap.put(componentName, roleName);
         }
 
-        String decomRoleName = decommissionedToClusterInfoKeyMap.get(componentName);
+        String decomRoleName = getDecommissionedClusterInfoKey(componentName);
 
         if (roleName == null && decomRoleName == null) {
           continue;
@@ -20,6 +20,8 @@ package org.apache.ambari.server.view.configuration;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlElement;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * View persistence entity configuration.
@@ -33,6 +35,9 @@ public class EntityConfig {
   @XmlElement(name="id-property")
   private String idProperty;
 
+  @XmlElement(name="index-property")
+  private List<String> indexProperties;
+
   public String getClassName() {
     return className;
   }
@@ -40,4 +45,13 @@ public class EntityConfig {
   public String getIdProperty() {
     return idProperty;
   }
+
+  /**
+   * Get the properties of the entity which should be indexed in the data store.
+   *
+   * @return the indexed properties; empty list if none are declared
+   */
+  public List<String> getIndexProperties() {
+    return indexProperties == null ? Collections.<String>emptyList() : indexProperties;
+  }
 }
@@ -20,6 +20,9 @@ package org.apache.ambari.server.view.persistence;
 
 import org.apache.ambari.server.orm.entities.ViewEntityEntity;
 import org.apache.ambari.server.orm.entities.ViewInstanceEntity;
+import org.apache.ambari.server.view.configuration.EntityConfig;
+import org.apache.ambari.server.view.configuration.PersistenceConfig;
+import org.apache.ambari.server.view.configuration.ViewConfig;
 import org.apache.ambari.view.DataStore;
 import org.apache.ambari.view.PersistenceException;
 import org.eclipse.persistence.dynamic.DynamicClassLoader;
@@ -29,6 +32,8 @@ import org.eclipse.persistence.internal.helper.DatabaseField;
 import org.eclipse.persistence.jpa.dynamic.JPADynamicHelper;
 import org.eclipse.persistence.jpa.dynamic.JPADynamicTypeBuilder;
 import org.eclipse.persistence.mappings.DirectToFieldMapping;
+import org.eclipse.persistence.tools.schemaframework.IndexDefinition;
+import org.eclipse.persistence.tools.schemaframework.SchemaManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,10 +53,15 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.common.collect.Iterables;
 
 
 /**
@@ -105,6 +115,11 @@ public class DataStoreImpl implements DataStore {
    */
   private final Map<String, JPADynamicTypeBuilder> typeBuilderMap = new LinkedHashMap<String, JPADynamicTypeBuilder>();
 
+  /**
+   * Map of bean property descriptors keyed by view entity class.
+   */
+  private final Map<Class, PropertyDescriptor[]> descriptorCache = new ConcurrentHashMap<Class, PropertyDescriptor[]>();
+
   /**
    * Indicates whether or not the data store has been initialized.
    */
@@ -125,11 +140,21 @@ public class DataStoreImpl implements DataStore {
    */
   protected static final int MAX_ENTITY_FIELD_LENGTH_TOTAL = 65000;
 
+  /**
+   * Max number of entities written to the database at once when storing a collection of entities.
+   */
+  protected static final int STORE_BATCH_SIZE = 1000;
+
   /**
    * Table / column name prefix.
    */
   private static final String NAME_PREFIX = "DS_";
 
+  /**
+   * Index name prefix.
+   */
+  private static final String INDEX_NAME_PREFIX = "DS_IDX_";
+
 
   // ----- DataStore ---------------------------------------------------------
 
@@ -152,6 +177,35 @@ public class DataStoreImpl implements DataStore {
     }
   }
 
+  @Override
+  public void store(Collection<?> entities) throws PersistenceException {
+    checkInitialize();
+
+    EntityManager em = getEntityManager();
+    try {
+      em.getTransaction().begin();
+      try {
+        for (List<?> batch : Iterables.partition(entities, STORE_BATCH_SIZE)) {
+          loadEntities(batch, em);
+
+          Set<DynamicEntity> persistSet = new HashSet<DynamicEntity>();
+          for (Object entity : batch) {
+            persistEntity(entity, em, persistSet);
+          }
+          // write the batch and release the entities it holds
+          em.flush();
+          em.clear();
+        }
+        em.getTransaction().commit();
+      } catch (Exception e) {
+        rollbackTransaction(em.getTransaction());
+        throwPersistenceException("Caught exception trying to store " + entities.size() + " view entities", e);
+      }
+    } finally {
+      em.close();
+    }
+  }
+
   @Override
   public void remove(Object entity) throws PersistenceException {
     checkInitialize();
@@ -211,16 +265,40 @@ public class DataStoreImpl implements DataStore {
 
   @Override
   public <T> Collection<T> findAll(Class<T> clazz, String whereClause) throws PersistenceException {
+    return findEntities(clazz, whereClause, null, null);
+  }
+
+  @Override
+  public <T> Collection<T> findAll(Class<T> clazz, String whereClause, int firstResult, int maxResults)
+      throws PersistenceException {
+    return findEntities(clazz, whereClause, firstResult, maxResults);
+  }
+
+
+  // ----- helper methods ----------------------------------------------------
+
+  // find the entities for the given where clause; a page of them ordered by id if
+  // a first result and max results are given
+  private <T> Collection<T> findEntities(Class<T> clazz, String whereClause, Integer firstResult, Integer maxResults)
+      throws PersistenceException {
     checkInitialize();
 
     EntityManager em = getEntityManager();
     try {
-      Collection<T> resources = new HashSet<T>();
+      Collection<T> resources = new LinkedHashSet<T>();
       DynamicType   type      = getDynamicEntityType(clazz);
 
       if (type != null) {
         try {
-          Query query = em.createQuery(getSelectStatement(clazz, whereClause));
+          String statement = getSelectStatement(clazz, whereClause);
+          if (firstResult != null) {
+            statement += " ORDER BY e." + getAttributeName(getIdFieldName(clazz));
+          }
+          Query query = em.createQuery(statement);
+          if (firstResult != null) {
+            query.setFirstResult(firstResult);
+            query.setMaxResults(maxResults);
+          }
 
           List dynamicEntities = query.getResultList();
 
@@ -238,9 +316,6 @@ public class DataStoreImpl implements DataStore {
     }
   }
 
-
-  // ----- helper methods ----------------------------------------------------
-
   // lazy initialize the data store
   private void checkInitialize() throws PersistenceException {
     if (!initialized) {
@@ -381,7 +456,96 @@ public class DataStoreImpl implements DataStore {
     helper.addTypes(true, true, types);
 
     // extend the tables if needed (i.e. attribute added to the view entity)
-    schemaManagerFactory.getSchemaManager(helper.getSession()).extendDefaultTables(true);
+    SchemaManager schemaManager = schemaManagerFactory.getSchemaManager(helper.getSession());
+    schemaManager.extendDefaultTables(true);
+
+    createIndexes(schemaManager);
+  }
+
+  // create the indexes declared for the view entities
+  private void createIndexes(SchemaManager schemaManager) throws IntrospectionException {
+    Map<String, EntityConfig> entityConfigs = getEntityConfigs();
+
+    for (Map.Entry<Class, String> entry: entityClassMap.entrySet()) {
+      Class            clazz            = entry.getKey();
+      ViewEntityEntity viewEntityEntity = entityMap.get(entry.getValue());
+      EntityConfig     entityConfig     = entityConfigs.get(viewEntityEntity.getClassName());
+
+      if (entityConfig == null) {
+        continue;
+      }
+
+      Map<String, PropertyDescriptor> descriptorMap = getDescriptorMap(clazz);
+
+      for (String fieldName : entityConfig.getIndexProperties()) {
+        PropertyDescriptor descriptor = descriptorMap.get(fieldName);
+
+        if (descriptor == null || !isDirectMappingType(descriptor.getPropertyType())) {
+          LOG.warn("Can't index the " + fieldName + " property of the " + clazz.getSimpleName() +
+              " entity, only direct properties can be indexed.");
+          continue;
+        }
+
+        IndexDefinition index = new IndexDefinition();
+        index.setName(getIndexName(viewEntityEntity, fieldName));
+        index.setTargetTable(getTableName(viewEntityEntity));
+        index.addField(getAttributeName(fieldName));
+
+        try {
+          schemaManager.createObject(index);
+        } catch (Exception e) {
+          // the index is created once, when the view instance is first used
+          LOG.debug("Index " + index.getName() + " not created, it may already exist.", e);
+        }
+      }
+    }
+  }
+
+  // get the persistence configurations of the view entities keyed by class name
+  private Map<String, EntityConfig> getEntityConfigs() {
+    Map<String, EntityConfig> entityConfigs = new HashMap<String, EntityConfig>();
+
+    ViewConfig viewConfig = viewInstanceEntity.getViewEntity().getConfiguration();
+    PersistenceConfig persistenceConfig = viewConfig == null ? null : viewConfig.getPersistence();
+
+    if (persistenceConfig != null) {
+      for (EntityConfig entityConfig : persistenceConfig.getEntities()) {
+        entityConfigs.put(entityConfig.getClassName(), entityConfig);
+      }
+    }
+    return entityConfigs;
+  }
+
+  // load the stored dynamic entities for the given view entities into the entity manager with
+  // one query per entity type, so that they are not found one by one when the view entities are persisted
+  private void loadEntities(List<?> entities, EntityManager em)
+      throws PersistenceException, IntrospectionException, InvocationTargetException, IllegalAccessException {
+    Map<Class, List<Object>> idMap = new LinkedHashMap<Class, List<Object>>();
+
+    for (Object entity : entities) {
+      Class  clazz = entity.getClass();
+      Object id    = getPropertyValue(entity, getIdFieldName(clazz));
+
+      if (id != null) {
+        List<Object> ids = idMap.get(clazz);
+        if (ids == null) {
+          ids = new LinkedList<Object>();
+          idMap.put(clazz, ids);
+        }
+        ids.add(id);
+      }
+    }
+
+    for (Map.Entry<Class, List<Object>> entry : idMap.entrySet()) {
+      Class clazz = entry.getKey();
+
+      if (getDynamicEntityType(clazz) != null) {
+        Query query = em.createQuery("SELECT e FROM " + entityClassMap.get(clazz) + " e WHERE e." +
+            getAttributeName(getIdFieldName(clazz)) + " IN :ids");
+        query.setParameter("ids", entry.getValue());
+        query.getResultList();
+      }
+    }
   }
 
   // persist the given view entity to the entity manager and
@@ -512,7 +676,7 @@ public class DataStoreImpl implements DataStore {
       throws IntrospectionException, InvocationTargetException, IllegalAccessException {
     Map<String, Object> properties = new HashMap<String, Object>();
 
-    for (PropertyDescriptor pd : Introspector.getBeanInfo(entity.getClass()).getPropertyDescriptors()) {
+    for (PropertyDescriptor pd : getPropertyDescriptors(entity.getClass())) {
       String name       = pd.getName();
       Method readMethod = pd.getReadMethod();
       if (readMethod != null) {
@@ -527,7 +691,7 @@ public class DataStoreImpl implements DataStore {
   private void setEntityProperties(Object entity, Map<String, Object> properties)
       throws IntrospectionException, InvocationTargetException, IllegalAccessException,
       InstantiationException, NoSuchFieldException {
-    for (PropertyDescriptor pd : Introspector.getBeanInfo(entity.getClass()).getPropertyDescriptors()) {
+    for (PropertyDescriptor pd : getPropertyDescriptors(entity.getClass())) {
       String name = pd.getName();
       if (properties.containsKey(name)) {
 
@@ -593,11 +757,33 @@ public class DataStoreImpl implements DataStore {
     throw new PersistenceException("The class " + clazz.getName() + "is not registered as an entity.");
   }
 
+  // get the value of the given property of the given view entity
+  private Object getPropertyValue(Object entity, String name)
+      throws IntrospectionException, InvocationTargetException, IllegalAccessException {
+    for (PropertyDescriptor pd : getPropertyDescriptors(entity.getClass())) {
+      if (pd.getName().equals(name)) {
+        Method readMethod = pd.getReadMethod();
+        return readMethod == null ? null : readMethod.invoke(entity);
+      }
+    }
+    return null;
+  }
+
+  // get the property descriptors for the given bean class; the class is only introspected once
+  private PropertyDescriptor[] getPropertyDescriptors(Class<?> clazz) throws IntrospectionException {
+    PropertyDescriptor[] descriptors = descriptorCache.get(clazz);
+    if (descriptors == null) {
+      descriptors = Introspector.getBeanInfo(clazz).getPropertyDescriptors();
+      descriptorCache.put(clazz, descriptors);
+    }
+    return descriptors;
+  }
+
   // get a descriptor map for the given bean class
-  private static Map<String, PropertyDescriptor> getDescriptorMap(Class<?> clazz) throws IntrospectionException {
+  private Map<String, PropertyDescriptor> getDescriptorMap(Class<?> clazz) throws IntrospectionException {
     Map<String, PropertyDescriptor> descriptorMap = new HashMap<String, PropertyDescriptor>();
 
-    for (PropertyDescriptor pd : Introspector.getBeanInfo(clazz).getPropertyDescriptors()) {
+    for (PropertyDescriptor pd : getPropertyDescriptors(clazz)) {
       String name = pd.getName();
       if (pd.getReadMethod() != null && !name.equals("class")) {
         descriptorMap.put(name, pd);
@@ -607,9 +793,9 @@ public class DataStoreImpl implements DataStore {
   }
 
   // get the property names for the given view entity class
-  private static Set<String> getPropertyNames(Class clazz) throws IntrospectionException {
+  private Set<String> getPropertyNames(Class clazz) throws IntrospectionException {
     Set<String> propertyNames = new HashSet<String>();
-    for (PropertyDescriptor pd : Introspector.getBeanInfo(clazz).getPropertyDescriptors()) {
+    for (PropertyDescriptor pd : getPropertyDescriptors(clazz)) {
       propertyNames.add(pd.getName());
     }
     return propertyNames;
@@ -653,6 +839,11 @@ public class DataStoreImpl implements DataStore {
     return (getEntityName(entity)).toUpperCase();
   }
 
+  // get an index name for the given field of the given view entity; short enough for any database
+  private String getIndexName(ViewEntityEntity entity, String fieldName) {
+    return INDEX_NAME_PREFIX + entity.getId() + "_" + Integer.toHexString(fieldName.hashCode()).toUpperCase();
+  }
+
   // get the java class field name from the entity attribute name
   private String getFieldName(String attributeName) {
     return alterNames() ? attributeName.substring(NAME_PREFIX.length()) : attributeName;
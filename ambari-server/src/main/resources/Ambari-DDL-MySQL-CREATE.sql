@@ -270,6 +270,7 @@ CREATE TABLE stage (
   cluster_host_info LONGBLOB,
   command_params LONGBLOB,
   host_params LONGBLOB,
+  command_payloads LONGBLOB,
   PRIMARY KEY (stage_id, request_id));
 
 CREATE TABLE request (
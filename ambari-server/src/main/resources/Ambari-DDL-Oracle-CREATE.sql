@@ -260,6 +260,7 @@ CREATE TABLE stage (
   cluster_host_info BLOB NOT NULL,
   command_params BLOB,
   host_params BLOB,
+  command_payloads BLOB,
   PRIMARY KEY (stage_id, request_id));
 
 CREATE TABLE request (
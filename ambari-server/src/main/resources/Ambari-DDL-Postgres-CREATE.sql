@@ -271,6 +271,7 @@ CREATE TABLE stage (
   cluster_host_info BYTEA NOT NULL,
   command_params BYTEA,
   host_params BYTEA,
+  command_payloads BYTEA,
   PRIMARY KEY (stage_id, request_id));
 
 CREATE TABLE request (
@@ -304,6 +304,7 @@ CREATE TABLE ambari.stage (
   cluster_host_info BYTEA NOT NULL,
   command_params BYTEA,
   host_params BYTEA,
+  command_payloads BYTEA,
   PRIMARY KEY (stage_id, request_id));
 GRANT ALL PRIVILEGES ON TABLE ambari.stage TO :username;
 
@@ -259,6 +259,7 @@ CREATE TABLE stage (
   cluster_host_info IMAGE,
   command_params IMAGE,
   host_params IMAGE,
+  command_payloads IMAGE,
   PRIMARY KEY (stage_id, request_id));
 
 CREATE TABLE request (
@@ -288,6 +288,7 @@ CREATE TABLE stage (
   cluster_host_info VARBINARY(MAX) NOT NULL,
   command_params VARBINARY(MAX),
   host_params VARBINARY(MAX),
+  command_payloads VARBINARY(MAX),
   PRIMARY KEY CLUSTERED (
     stage_id,
     request_id
@@ -19,12 +19,21 @@ package org.apache.ambari.server.actionmanager;
 
 import static org.apache.ambari.server.orm.DBAccessor.DbType.ORACLE;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.persistence.EntityManager;
 
@@ -33,9 +42,13 @@ import org.apache.ambari.server.Role;
 import org.apache.ambari.server.RoleCommand;
 import org.apache.ambari.server.agent.ActionQueue;
 import org.apache.ambari.server.agent.CommandReport;
+import org.apache.ambari.server.agent.ExecutionCommand;
 import org.apache.ambari.server.api.services.AmbariMetaInfo;
 import org.apache.ambari.server.api.services.BaseRequest;
 import org.apache.ambari.server.audit.AuditLogger;
+import org.apache.ambari.server.audit.event.AuditEvent;
+import org.apache.ambari.server.audit.event.OperationStatusAuditEvent;
+import org.apache.ambari.server.audit.event.TaskStatusAuditEvent;
 import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.HostsMap;
 import org.apache.ambari.server.controller.internal.RequestResourceFilter;
@@ -52,12 +65,15 @@ import org.apache.ambari.server.state.StackId;
 import org.apache.ambari.server.state.svccomphost.ServiceComponentHostStartEvent;
 import org.apache.ambari.server.utils.StageUtils;
 import org.easymock.EasyMock;
+import org.easymock.IAnswer;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Inject;
@@ -162,6 +178,131 @@ public class TestActionDBAccessorImpl {
     assertEquals(HostRoleStatus.COMPLETED,s.getHostRoleStatus(hostname, "HBASE_MASTER"));
   }
 
+  @Test
+  public void testBatchedTaskReports() throws AmbariException {
+    injector.getInstance(Configuration.class).setProperty(
+        Configuration.TASK_STATUS_UPDATE_INTERVAL_KEY, "3600000");
+
+    String hostname = "host1";
+    populateActionDB(db, hostname, requestId, stageId);
+    Stage stage = db.getAllStages(requestId).get(0);
+    stage.setHostRoleStatus(hostname, "HBASE_MASTER", HostRoleStatus.QUEUED);
+    db.hostRoleScheduled(stage, hostname, "HBASE_MASTER");
+
+    // in progress reports are coalesced and only written on flush
+    db.updateHostRoleStates(Collections.singletonList(createReport("IN_PROGRESS", "a")));
+    db.updateHostRoleStates(Collections.singletonList(createReport("IN_PROGRESS", "ab")));
+    assertEquals(HostRoleStatus.QUEUED, hostRoleCommandDAO.findByPK(1L).getStatus());
+
+    ((ActionDBAccessorImpl) db).flushTaskReports();
+    HostRoleCommandEntity command = hostRoleCommandDAO.findByPK(1L);
+    assertEquals(HostRoleStatus.IN_PROGRESS, command.getStatus());
+    assertEquals("ab", new String(command.getStdOut()));
+
+    // a completed report is written immediately and wins over pending reports
+    db.updateHostRoleStates(Collections.singletonList(createReport("IN_PROGRESS", "abc")));
+    db.updateHostRoleStates(Collections.singletonList(createReport("COMPLETED", "done")));
+    command = hostRoleCommandDAO.findByPK(1L);
+    assertEquals(HostRoleStatus.COMPLETED, command.getStatus());
+    assertEquals("done", new String(command.getStdOut()));
+
+    ((ActionDBAccessorImpl) db).flushTaskReports();
+    command = hostRoleCommandDAO.findByPK(1L);
+    assertEquals(HostRoleStatus.COMPLETED, command.getStatus());
+    assertEquals("done", new String(command.getStdOut()));
+  }
+
+  private CommandReport createReport(String status, String stdOut) {
+    CommandReport cr = new CommandReport();
+    cr.setTaskId(1);
+    cr.setActionId(StageUtils.getActionId(requestId, stageId));
+    cr.setRole("HBASE_MASTER");
+    cr.setStatus(status);
+    cr.setStdErr("");
+    cr.setStdOut(stdOut);
+    cr.setExitCode(0);
+    return cr;
+  }
+
+  @Test
+  public void testConcurrentTaskReportsAreAudited() throws Exception {
+    final int threadCount = 4;
+    final int tasksPerThread = 25;
+
+    Stage s = stageFactory.createNew(requestId, "/a/b", "cluster1", 1L, "action db accessor test",
+      "clusterHostInfo", "commandParamsStage", "hostParamsStage");
+    s.setStageId(stageId);
+    for (int i = 0; i < threadCount * tasksPerThread; i++) {
+      String host = "host" + (1000 + i);
+      clusters.addHost(host);
+      clusters.getHost(host).persist();
+      s.addHostRoleExecutionCommand(host, Role.HBASE_MASTER,
+        RoleCommand.START, null, "cluster1", "HBASE", false, false);
+    }
+    List<Stage> stages = new ArrayList<Stage>();
+    stages.add(s);
+    db.persistActions(new Request(stages, clusters));
+
+    final List<Long> taskIds = new ArrayList<Long>();
+    for (HostRoleCommandEntity entity : hostRoleCommandDAO.findByRequest(requestId)) {
+      taskIds.add(entity.getTaskId());
+    }
+
+    final AtomicInteger taskEvents = new AtomicInteger();
+    final List<String> requestStatuses = Collections.synchronizedList(new ArrayList<String>());
+    AuditLogger auditLogger = injector.getInstance(AuditLogger.class);
+    EasyMock.reset(auditLogger);
+    EasyMock.expect(auditLogger.isEnabled()).andReturn(true).anyTimes();
+    auditLogger.log(EasyMock.anyObject(AuditEvent.class));
+    EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+      @Override
+      public Object answer() throws Throwable {
+        AuditEvent event = (AuditEvent) EasyMock.getCurrentArguments()[0];
+        if (event instanceof TaskStatusAuditEvent) {
+          taskEvents.incrementAndGet();
+        } else if (event instanceof OperationStatusAuditEvent) {
+          requestStatuses.add(event.getAuditMessage());
+        }
+        return null;
+      }
+    }).anyTimes();
+    EasyMock.replay(auditLogger);
+
+    // several heartbeat processor threads report completed tasks at once
+    final CountDownLatch start = new CountDownLatch(1);
+    final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < threadCount; t++) {
+      final List<Long> threadTaskIds = taskIds.subList(t * tasksPerThread, (t + 1) * tasksPerThread);
+      Thread thread = new Thread() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+            for (Long taskId : threadTaskIds) {
+              CommandReport cr = createReport("COMPLETED", "");
+              cr.setTaskId(taskId);
+              db.updateHostRoleStates(Collections.singletonList(cr));
+            }
+          } catch (Throwable e) {
+            errors.add(e);
+          }
+        }
+      };
+      threads.add(thread);
+      thread.start();
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertTrue("Errors while reporting: " + errors, errors.isEmpty());
+    assertEquals(taskIds.size(), taskEvents.get());
+    assertFalse(requestStatuses.isEmpty());
+    assertTrue(requestStatuses.get(requestStatuses.size() - 1).contains("Status(COMPLETED)"));
+  }
+
   @Test
   public void testCancelCommandReport() throws AmbariException {
     String hostname = "host1";
@@ -270,6 +411,100 @@ public class TestActionDBAccessorImpl {
     assertEquals(5, stages.size());
   }
 
+  @Test
+  public void testGetStagesInProgressIncrementally() throws AmbariException {
+    injector.getInstance(Configuration.class).setProperty(
+        Configuration.INCREMENTAL_STAGE_SCHEDULING_KEY, "true");
+
+    // create 2 requests; each request will have 3 stages, each stage 2 commands
+    populateActionDBMultipleStages(3, db, hostName, requestId, stageId);
+    populateActionDBMultipleStages(3, db, hostName, requestId + 1, stageId + 3);
+
+    List<Stage> stages = db.getStagesInProgress();
+    assertEquals(6, stages.size());
+
+    long lastRequestId = Integer.MIN_VALUE;
+    for (Stage stage : stages) {
+      assertTrue(stage.getRequestId() >= lastRequestId);
+      lastRequestId = stage.getRequestId();
+    }
+
+    // nothing changed, so the same stages are returned without reloading
+    List<Stage> unchanged = db.getStagesInProgress();
+    assertEquals(6, unchanged.size());
+    for (int i = 0; i < stages.size(); i++) {
+      assertSame(stages.get(i), unchanged.get(i));
+    }
+
+    // complete both commands of the first stage
+    Stage first = stages.get(0);
+    first.setHostRoleStatus(hostName, Role.HBASE_MASTER.toString(), HostRoleStatus.COMPLETED);
+    db.hostRoleScheduled(first, hostName, Role.HBASE_MASTER.toString());
+
+    stages = db.getStagesInProgress();
+    assertEquals(6, stages.size());
+    assertNotSame(first, stages.get(0));
+    assertSame(unchanged.get(1), stages.get(1));
+    assertEquals(HostRoleStatus.COMPLETED,
+        stages.get(0).getHostRoleStatus(hostName, Role.HBASE_MASTER.toString()));
+
+    first = stages.get(0);
+    first.setHostRoleStatus(hostName, Role.HBASE_REGIONSERVER.toString(), HostRoleStatus.COMPLETED);
+    db.hostRoleScheduled(first, hostName, Role.HBASE_REGIONSERVER.toString());
+
+    stages = db.getStagesInProgress();
+    assertEquals(5, stages.size());
+
+    // cancel the second request, removing its 3 stages
+    db.abortOperation(requestId + 1);
+    stages = db.getStagesInProgress();
+    assertEquals(2, stages.size());
+    assertEquals(requestId, stages.get(0).getRequestId());
+
+    // a new request is picked up without a full reload
+    populateActionDBMultipleStages(1, db, hostName, requestId + 2, stageId + 6);
+    stages = db.getStagesInProgress();
+    assertEquals(3, stages.size());
+    assertEquals(requestId + 2, stages.get(2).getRequestId());
+
+    // invalidating forces a full reload which yields the same result
+    db.invalidateStagesInProgress();
+    List<Stage> reloaded = db.getStagesInProgress();
+    assertEquals(3, reloaded.size());
+    assertNotSame(stages.get(0), reloaded.get(0));
+  }
+
+  @Test
+  public void testUpdateAutomaticSkipOnFailureReloadsStagesIncrementally() throws AmbariException {
+    injector.getInstance(Configuration.class).setProperty(
+        Configuration.INCREMENTAL_STAGE_SCHEDULING_KEY, "true");
+
+    List<Stage> created = new ArrayList<Stage>();
+    for (int i = 0; i < 2; i++) {
+      Stage stage = createStubStage(hostName, requestId, stageId + i);
+      stage.setSkippable(true);
+      stage.setAutoSkipFailureSupported(true);
+      created.add(stage);
+    }
+    db.persistActions(new Request(created, clusters));
+    populateActionDBMultipleStages(1, db, hostName, requestId + 1, stageId + 2);
+
+    List<Stage> stages = db.getStagesInProgress();
+    assertEquals(3, stages.size());
+
+    hostRoleCommandDAO.updateAutomaticSkipOnFailure(requestId, true, false);
+    for (HostRoleCommandEntity entity : hostRoleCommandDAO.findByRequest(requestId)) {
+      assertTrue(entity.isFailureAutoSkipped());
+    }
+
+    // the stages of the updated request are reloaded, the other one is kept
+    List<Stage> reloaded = db.getStagesInProgress();
+    assertEquals(3, reloaded.size());
+    assertNotSame(stages.get(0), reloaded.get(0));
+    assertNotSame(stages.get(1), reloaded.get(1));
+    assertSame(stages.get(2), reloaded.get(2));
+  }
+
   @Test
   public void testGetStagesInProgressWithManyCommands() throws AmbariException {
     // 1000 hosts
@@ -305,6 +540,76 @@ public class TestActionDBAccessorImpl {
     }
   }
 
+  @Test
+  public void testPersistActionsSharesCommandPayloads() throws AmbariException {
+    Stage s = createStubStage(hostName, requestId, stageId);
+    for (ExecutionCommandWrapper wrapper : s.getExecutionCommands(hostName)) {
+      ExecutionCommand command = wrapper.getExecutionCommand();
+      Map<String, String> hostLevelParams = new TreeMap<String, String>();
+      hostLevelParams.put("repo_info", "[{\"baseUrl\":\"http://repo\"}]");
+      command.setHostLevelParams(hostLevelParams);
+      command.setCommandParams(Collections.singletonMap("command", command.getRole()));
+    }
+    db.persistActions(new Request(Collections.singletonList(s), clusters));
+
+    List<HostRoleCommand> commands = s.getOrderedHostRoleCommands();
+    assertEquals(2, commands.size());
+    Set<String> hostLevelParamsRefs = new HashSet<String>();
+    for (HostRoleCommand command : commands) {
+      String json = new String(executionCommandDAO.findByPK(command.getTaskId()).getCommand());
+      JsonObject payloadRefs = new JsonParser().parse(json).getAsJsonObject().getAsJsonObject(
+          ExecutionCommandWrapper.PAYLOAD_REFS);
+      assertNotNull(payloadRefs);
+      assertFalse(json.contains("http://repo"));
+      hostLevelParamsRefs.add(payloadRefs.get("hostLevelParams").getAsString());
+
+      // read the command back the way it is loaded from the DB
+      ExecutionCommand restored = new ExecutionCommandWrapper(json).getExecutionCommand();
+      assertEquals("[{\"baseUrl\":\"http://repo\"}]", restored.getHostLevelParams().get("repo_info"));
+      assertEquals(command.getRole().name(), restored.getCommandParams().get("command"));
+      assertEquals(command.getTaskId(), restored.getTaskId());
+    }
+    // both commands share the same host level parameters
+    assertEquals(1, hostLevelParamsRefs.size());
+  }
+
+  @Test
+  public void testStoredCommandIsRestoredComplete() throws AmbariException {
+    Stage s = createStubStage(hostName, requestId, stageId);
+    for (ExecutionCommandWrapper wrapper : s.getExecutionCommands(hostName)) {
+      ExecutionCommand command = wrapper.getExecutionCommand();
+      Map<String, Map<String, String>> configurationTags = new TreeMap<String, Map<String, String>>();
+      configurationTags.put("core-site", Collections.singletonMap("tag", "version1"));
+      command.setConfigurationTags(configurationTags);
+      Map<String, Map<String, String>> configurations = new TreeMap<String, Map<String, String>>();
+      configurations.put("core-site", new TreeMap<String, String>(Collections.singletonMap("a", "b")));
+      command.setConfigurations(configurations);
+      command.setCommandParams(new TreeMap<String, String>(Collections.singletonMap("command", "start")));
+      command.setHostLevelParams(new TreeMap<String, String>(Collections.singletonMap("jdk_name", "jdk")));
+      Map<String, Set<String>> clusterHostInfo = new TreeMap<String, Set<String>>();
+      clusterHostInfo.put("all_hosts", Collections.singleton(hostName));
+      command.setClusterHostInfo(clusterHostInfo);
+    }
+    db.persistActions(new Request(Collections.singletonList(s), clusters));
+
+    // read the commands back the way the scheduler loads them
+    List<HostRoleCommand> commands = db.getAllStages(requestId).get(0).getOrderedHostRoleCommands();
+    assertEquals(2, commands.size());
+    for (HostRoleCommand command : commands) {
+      ExecutionCommand restored = command.getExecutionCommandWrapper().getExecutionCommand();
+      assertNotNull(restored.getConfigurationTags());
+      assertEquals("version1", restored.getConfigurationTags().get("core-site").get("tag"));
+      assertNotNull(restored.getConfigurations());
+      assertEquals("b", restored.getConfigurations().get("core-site").get("a"));
+      assertNotNull(restored.getCommandParams());
+      assertEquals("start", restored.getCommandParams().get("command"));
+      assertNotNull(restored.getHostLevelParams());
+      assertEquals("jdk", restored.getHostLevelParams().get("jdk_name"));
+      assertNotNull(restored.getClusterHostInfo());
+      assertEquals(Collections.singleton(hostName), restored.getClusterHostInfo().get("all_hosts"));
+    }
+  }
+
   @Test
   public void testHostRoleScheduled() throws InterruptedException, AmbariException {
     populateActionDB(db, hostName, requestId, stageId);
@@ -70,11 +70,20 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
 
 import static org.apache.ambari.server.agent.DummyHeartbeatConstants.DATANODE;
 import static org.apache.ambari.server.agent.DummyHeartbeatConstants.DummyCluster;
@@ -1366,6 +1375,96 @@ public class HeartbeatProcessorTest {
     assertEquals(State.STOPPING, componentState2);
   }
 
+  @Test
+  public void testHeartbeatsAreProcessedInOrderPerHost() throws Exception {
+    final int hostCount = 10;
+    final int heartbeatsPerHost = 20;
+    final CountDownLatch latch = new CountDownLatch(hostCount * heartbeatsPerHost);
+    final Map<String, List<Long>> processedResponseIds = new ConcurrentHashMap<String, List<Long>>();
+    final Map<String, Set<String>> processingThreads = new ConcurrentHashMap<String, Set<String>>();
+
+    HeartbeatProcessor heartbeatProcessor = new HeartbeatProcessor(clusters, null, null, injector) {
+      @Override
+      public void processHeartbeat(HeartBeat heartbeat) throws AmbariException {
+        String hostname = heartbeat.getHostname();
+        processedResponseIds.get(hostname).add(heartbeat.getResponseId());
+        processingThreads.get(hostname).add(Thread.currentThread().getName());
+        latch.countDown();
+      }
+    };
+
+    for (int i = 0; i < hostCount; i++) {
+      String hostname = "host" + i;
+      processedResponseIds.put(hostname, Collections.synchronizedList(new ArrayList<Long>()));
+      processingThreads.put(hostname, Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>()));
+    }
+
+    // queue before starting so that the processing threads have a backlog
+    for (long responseId = 0; responseId < heartbeatsPerHost; responseId++) {
+      for (int i = 0; i < hostCount; i++) {
+        HeartBeat hb = new HeartBeat();
+        hb.setHostname("host" + i);
+        hb.setResponseId(responseId);
+        heartbeatProcessor.addHeartbeat(hb);
+      }
+    }
+
+    heartbeatProcessor.startAsync().awaitRunning();
+    try {
+      assertTrue(latch.await(30, TimeUnit.SECONDS));
+
+      // the statistics are published over JMX while running
+      CompositeData[] published = (CompositeData[]) ManagementFactory.getPlatformMBeanServer().getAttribute(
+          new ObjectName(HeartbeatProcessor.MBEAN_NAME), "ShardStatistics");
+      assertEquals(heartbeatProcessor.getShardStatistics().size(), published.length);
+    } finally {
+      heartbeatProcessor.stopAsync().awaitTerminated();
+    }
+    assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(
+        new ObjectName(HeartbeatProcessor.MBEAN_NAME)));
+
+    for (int i = 0; i < hostCount; i++) {
+      String hostname = "host" + i;
+      List<Long> responseIds = processedResponseIds.get(hostname);
+      assertEquals(heartbeatsPerHost, responseIds.size());
+      for (int responseId = 0; responseId < heartbeatsPerHost; responseId++) {
+        assertEquals(Long.valueOf(responseId), responseIds.get(responseId));
+      }
+
+      assertEquals(1, processingThreads.get(hostname).size());
+    }
+
+    List<HeartbeatProcessor.HeartbeatShardStatistics> statistics = heartbeatProcessor.getShardStatistics();
+    long processedCount = 0;
+    for (int shard = 0; shard < statistics.size(); shard++) {
+      assertEquals(shard, statistics.get(shard).getShard());
+      assertEquals(0, statistics.get(shard).getQueueDepth());
+      processedCount += statistics.get(shard).getProcessedCount();
+    }
+    assertEquals(hostCount * heartbeatsPerHost, processedCount);
+  }
 
+  @Test
+  public void testHostsAreAssignedToStableShards() throws Exception {
+    HeartbeatProcessor heartbeatProcessor = new HeartbeatProcessor(clusters, null, null, injector);
+    HeartbeatProcessor otherHeartbeatProcessor = new HeartbeatProcessor(clusters, null, null, injector);
+    int shardCount = heartbeatProcessor.getShardStatistics().size();
+
+    Set<Integer> usedShards = new HashSet<Integer>();
+    for (int i = 0; i < 1000; i++) {
+      String hostname = "c6401-" + i + ".ambari.apache.org";
+      int shard = heartbeatProcessor.getShard(hostname).getId();
+      assertTrue(shard >= 0 && shard < shardCount);
+      usedShards.add(shard);
+
+      // the same host always maps to the same shard, on any processor of the same size
+      for (int attempt = 0; attempt < 3; attempt++) {
+        assertEquals(shard, heartbeatProcessor.getShard(hostname).getId());
+      }
+      assertEquals(shard, otherHeartbeatProcessor.getShard(hostname).getId());
+    }
+    assertEquals(shardCount, usedShards.size());
+    assertEquals(0, heartbeatProcessor.getShard(null).getId());
+  }
 
-}
\ No newline at end of file
+}
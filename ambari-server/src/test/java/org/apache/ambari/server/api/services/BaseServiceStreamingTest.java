@@ -0,0 +1,156 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.api.services;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Set;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriInfo;
+
+import org.apache.ambari.server.api.resources.ResourceInstance;
+import org.apache.ambari.server.api.services.parsers.RequestBodyParser;
+import org.apache.ambari.server.api.services.serializers.JsonSerializer;
+import org.apache.ambari.server.api.services.serializers.ResultSerializer;
+import org.apache.ambari.server.audit.request.RequestAuditLogger;
+import org.apache.ambari.server.controller.internal.ResourceImpl;
+import org.apache.ambari.server.controller.spi.Resource;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the streaming of read results by BaseService.
+ */
+public class BaseServiceStreamingTest {
+
+  private Result result;
+  private RequestFactory requestFactory;
+
+  @Before
+  public void setUp() throws Exception {
+    BaseService.init(createNiceMock(RequestAuditLogger.class));
+
+    Resource host = new ResourceImpl(Resource.Type.Host);
+    host.setProperty("Hosts/host_name", "host1");
+    result = new ResultImpl(new ResultStatus(ResultStatus.STATUS.OK));
+    result.getResultTree().addChild(host, "Host:1");
+
+    Request request = createNiceMock(Request.class);
+    expect(request.process()).andReturn(result).anyTimes();
+    requestFactory = createNiceMock(RequestFactory.class);
+    expect(requestFactory.createRequest(anyObject(HttpHeaders.class), anyObject(RequestBody.class),
+        anyObject(UriInfo.class), anyObject(Request.Type.class), anyObject(ResourceInstance.class)))
+        .andReturn(request).anyTimes();
+    replay(request, requestFactory);
+  }
+
+  @Test
+  public void testGetIsStreamed() throws Exception {
+    TestService service = new TestService(new JsonSerializer(), true);
+
+    Response response = service.handleRequest(null, null, null, Request.Type.GET, null);
+
+    assertEquals(200, response.getStatus());
+    assertTrue(response.getEntity() instanceof StreamingOutput);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ((StreamingOutput) response.getEntity()).write(out);
+    assertEquals(new JsonSerializer().serialize(result), out.toString("UTF-8"));
+  }
+
+  @Test
+  public void testGetIsNotStreamedWhenDisabled() throws Exception {
+    TestService service = new TestService(new JsonSerializer(), false);
+
+    Response response = service.handleRequest(null, null, null, Request.Type.GET, null);
+
+    assertEquals(new JsonSerializer().serialize(result), response.getEntity());
+  }
+
+  @Test
+  public void testSerializationFailureIsRaisedFromStream() throws Exception {
+    JsonSerializer serializer = new JsonSerializer() {
+      @Override
+      public void serialize(Result result, OutputStream out) throws IOException {
+        out.write('{');
+        throw new IllegalStateException("broken");
+      }
+    };
+    TestService service = new TestService(serializer, true);
+
+    Response response = service.handleRequest(null, null, null, Request.Type.GET, null);
+
+    try {
+      ((StreamingOutput) response.getEntity()).write(new ByteArrayOutputStream());
+      fail("Expected IOException");
+    } catch (IOException e) {
+      assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+    verify(requestFactory);
+  }
+
+  private class TestService extends BaseService {
+    private final ResultSerializer serializer;
+    private final boolean streamingEnabled;
+
+    private TestService(ResultSerializer serializer, boolean streamingEnabled) {
+      this.serializer = serializer;
+      this.streamingEnabled = streamingEnabled;
+    }
+
+    @Override
+    RequestFactory getRequestFactory() {
+      return requestFactory;
+    }
+
+    @Override
+    protected RequestBodyParser getBodyParser() {
+      return new RequestBodyParser() {
+        @Override
+        public Set<RequestBody> parse(String body) {
+          return Collections.singleton(new RequestBody());
+        }
+      };
+    }
+
+    @Override
+    protected ResultSerializer getResultSerializer() {
+      return serializer;
+    }
+
+    @Override
+    protected boolean isStreamingEnabled() {
+      return streamingEnabled;
+    }
+  }
+}
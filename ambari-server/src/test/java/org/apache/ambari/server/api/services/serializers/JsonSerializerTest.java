@@ -27,6 +27,7 @@ import org.junit.Test;
 
 import javax.ws.rs.core.UriInfo;
 
+import java.io.ByteArrayOutputStream;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -207,6 +208,66 @@ public class JsonSerializerTest {
 
     verify(uriInfo, resource/*, resource2*/);
   }
+
+  @Test
+  public void testSerializeToStream() throws Exception {
+    Resource resource = createMock(Resource.class);
+
+    Result result = new ResultImpl(true);
+    result.setResultStatus(new ResultStatus(ResultStatus.STATUS.OK));
+    TreeNode<Resource> tree = result.getResultTree();
+    TreeNode<Resource> child = tree.addChild(resource, "resource1");
+    child.setProperty("href", "this is an href");
+    tree.addChild(resource, "resource2");
+
+    // resource properties
+    Map<String, Object> mapRootProps = new LinkedHashMap<String, Object>();
+    mapRootProps.put("prop1", "value1");
+
+    Map<String, Object> mapCategoryProps = new LinkedHashMap<String, Object>();
+    mapCategoryProps.put("catProp1", "catValue1");
+
+    Map<String, Map<String, Object>> propertyMap = new LinkedHashMap<String, Map<String, Object>>();
+
+    propertyMap.put(null, mapRootProps);
+    propertyMap.put("category/subCategory", mapCategoryProps);
+
+    //expectations
+    expect(resource.getPropertiesMap()).andReturn(propertyMap).anyTimes();
+    expect(resource.getType()).andReturn(Resource.Type.Cluster).anyTimes();
+
+    replay(resource);
+
+    //execute test
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new JsonSerializer().serialize(result, out);
+    String streamed = out.toString("UTF-8").replace("\r", "");
+
+    String expected = "[\n" +
+        "  {\n" +
+        "    \"href\" : \"this is an href\",\n" +
+        "    \"prop1\" : \"value1\",\n" +
+        "    \"category\" : {\n" +
+        "      \"subCategory\" : {\n" +
+        "        \"catProp1\" : \"catValue1\"\n" +
+        "      }\n" +
+        "    }\n" +
+        "  },\n" +
+        "  {\n" +
+        "    \"prop1\" : \"value1\",\n" +
+        "    \"category\" : {\n" +
+        "      \"subCategory\" : {\n" +
+        "        \"catProp1\" : \"catValue1\"\n" +
+        "      }\n" +
+        "    }\n" +
+        "  }\n" +
+        "]";
+
+    assertEquals(expected, streamed);
+    assertEquals(streamed, new JsonSerializer().serialize(result).toString().replace("\r", ""));
+
+    verify(resource);
+  }
     
   
 }
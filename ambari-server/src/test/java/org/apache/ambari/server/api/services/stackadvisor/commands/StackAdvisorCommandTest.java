@@ -19,6 +19,7 @@
 package org.apache.ambari.server.api.services.stackadvisor.commands;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
@@ -186,6 +187,15 @@ public class StackAdvisorCommandTest {
     assertEquals(requestId, result.getId());
   }
 
+  @Test
+  public void testStreamingDisabled() throws Exception {
+    StackAdvisorCommand<TestResource> command = new TestStackAdvisorCommand(temp.newFolder("recommendationDir"),
+        "echo", 0, mock(StackAdvisorRunner.class), mock(AmbariMetaInfo.class));
+
+    // hosts and services information is read back from the response entity as a string
+    assertFalse(command.isStreamingEnabled());
+  }
+
   @Test
   public void testPopulateStackHierarchy() throws Exception {
     File file = mock(File.class);
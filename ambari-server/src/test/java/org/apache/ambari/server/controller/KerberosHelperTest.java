@@ -988,6 +988,8 @@ public class KerberosHelperTest extends EasyMockSupport {
     expect(krb5ConfConfig.getProperties()).andReturn(krb5ConfProperties).anyTimes();
 
     final Cluster cluster = createMock(Cluster.class);
+
+    expect(cluster.getClusterHostInfoSnapshot()).andReturn(null).anyTimes();
     expect(cluster.getHosts()).andReturn(Arrays.asList(host)).anyTimes();
     expect(cluster.getClusterId()).andReturn(1L).anyTimes();
     expect(cluster.getSecurityType()).andReturn(SecurityType.KERBEROS).anyTimes();
@@ -1210,6 +1212,8 @@ public class KerberosHelperTest extends EasyMockSupport {
     expect(krb5ConfConfig.getProperties()).andReturn(krb5ConfProperties).anyTimes();
 
     final Cluster cluster = createMock(Cluster.class);
+
+    expect(cluster.getClusterHostInfoSnapshot()).andReturn(null).anyTimes();
     expect(cluster.getHosts()).andReturn(Arrays.asList(host)).anyTimes();
     expect(cluster.getClusterId()).andReturn(1L).anyTimes();
     expect(cluster.getSecurityType()).andReturn(SecurityType.KERBEROS).anyTimes();
@@ -2323,6 +2327,8 @@ public class KerberosHelperTest extends EasyMockSupport {
         });
 
     final Cluster cluster = createMock(Cluster.class);
+
+    expect(cluster.getClusterHostInfoSnapshot()).andReturn(null).anyTimes();
     expect(cluster.getDesiredConfigByType("krb5-conf")).andReturn(krb5ConfConfig).atLeastOnce();
     expect(cluster.getDesiredConfigByType("kerberos-env")).andReturn(kerberosEnvConfig).atLeastOnce();
     expect(cluster.getSecurityType()).andReturn(SecurityType.KERBEROS).atLeastOnce();
@@ -2523,6 +2529,8 @@ public class KerberosHelperTest extends EasyMockSupport {
     servicesMap.put("SERVICE2", service2);
 
     Cluster cluster = createMock(Cluster.class);
+
+    expect(cluster.getClusterHostInfoSnapshot()).andReturn(null).anyTimes();
     expect(cluster.getDesiredConfigByType("krb5-conf")).andReturn(configKrb5Conf).times(1);
     expect(cluster.getDesiredConfigByType("kerberos-env")).andReturn(configKerberosEnv).times(1);
     expect(cluster.getSecurityType()).andReturn(SecurityType.KERBEROS).times(1);
@@ -2797,6 +2805,8 @@ public class KerberosHelperTest extends EasyMockSupport {
     expect(krb5ConfConfig.getProperties()).andReturn(krb5ConfProperties).anyTimes();
 
     final Cluster cluster = createMock(Cluster.class);
+
+    expect(cluster.getClusterHostInfoSnapshot()).andReturn(null).anyTimes();
     expect(cluster.getHosts()).andReturn(Arrays.asList(hostA, hostB, hostC)).anyTimes();
     expect(cluster.getDesiredConfigByType("krb5-conf")).andReturn(krb5ConfConfig).anyTimes();
     expect(cluster.getDesiredConfigByType("kerberos-env")).andReturn(kerberosEnvConfig).anyTimes();
@@ -3687,6 +3697,8 @@ public class KerberosHelperTest extends EasyMockSupport {
     final Collection<Host> hosts = hostMap.values();
 
     final Cluster cluster = createMock(Cluster.class);
+
+    expect(cluster.getClusterHostInfoSnapshot()).andReturn(null).anyTimes();
     expect(cluster.getSecurityType()).andReturn(clusterSecurityType).anyTimes();
     expect(cluster.getClusterName()).andReturn(clusterName).anyTimes();
     expect(cluster.getServiceComponentHosts("host1"))
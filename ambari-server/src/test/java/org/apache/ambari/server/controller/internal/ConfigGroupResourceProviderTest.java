@@ -416,8 +416,9 @@ public class ConfigGroupResourceProviderTest {
         return configGroupMap;
       }
     });
+    expect(configGroup.getConfigurations()).andReturn(new HashMap<String, Config>()).anyTimes();
     expect(managementController.getConfigHelper()).andReturn(configHelper).once();
-    configHelper.invalidateStaleConfigsCache();
+    configHelper.invalidateStaleConfigsCache(cluster, Collections.singleton("core-site"));
     expectLastCall().once();
 
     replay(managementController, clusters, cluster,
@@ -23,6 +23,7 @@ import org.apache.ambari.server.controller.utilities.PropertyHelper;
 import org.apache.ambari.server.controller.spi.Resource;
 import org.junit.Test;
 
+import java.util.Collections;
 import java.util.Map;
 
 /**
@@ -116,6 +117,29 @@ public class ResourceImplTest {
     Assert.assertEquals(65L, copy.getPropertyValue(p5));
   }
 
+  @Test
+  public void testCopyConstructorWithPropertyIds() {
+    Resource resource = new ResourceImpl(Resource.Type.Cluster);
+
+    String p1 = PropertyHelper.getPropertyId(null, "p1");
+    String p2 = PropertyHelper.getPropertyId("c1", "p2");
+    String p3 = PropertyHelper.getPropertyId("c1/c2", "p3");
+    String p4 = PropertyHelper.getPropertyId("c1/c2", "p4");
+
+    resource.setProperty(p1, "foo");
+    resource.setProperty(p2, 1);
+    resource.setProperty(p3, 1.99);
+    resource.setProperty(p4, null);
+
+    Resource copy = new ResourceImpl(resource, Collections.singleton("c1/c2"));
+
+    Assert.assertNull(copy.getPropertyValue(p1));
+    Assert.assertNull(copy.getPropertyValue(p2));
+    Assert.assertEquals(1.99, copy.getPropertyValue(p3));
+    Assert.assertTrue(copy.getPropertiesMap().get("c1/c2").containsKey("p4"));
+    Assert.assertEquals(Collections.singleton("c1/c2"), copy.getPropertiesMap().keySet());
+  }
+
   @Test
   public void testGetPropertiesMap() {
     Resource resource = new ResourceImpl(Resource.Type.Cluster);
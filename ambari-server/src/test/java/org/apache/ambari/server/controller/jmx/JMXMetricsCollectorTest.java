@@ -0,0 +1,202 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.controller.jmx;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.SocketTimeoutException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.apache.ambari.server.controller.utilities.StreamProvider;
+import org.codehaus.jackson.map.DeserializationConfig;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.ObjectReader;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JMXMetricsCollector tests.
+ */
+public class JMXMetricsCollectorTest {
+
+  private static final String SPEC = "http://h1:50070/jmx";
+
+  private static final String JMX = "{\"beans\" : [ { \"name\" : \"java.lang:type=Memory\", \"HeapMemoryUsed\" : 42 } ]}";
+
+  private final ObjectReader jmxObjectReader;
+
+  public JMXMetricsCollectorTest() {
+    ObjectMapper jmxObjectMapper = new ObjectMapper();
+    jmxObjectMapper.configure(DeserializationConfig.Feature.USE_ANNOTATIONS, false);
+    jmxObjectReader = jmxObjectMapper.reader(JMXMetricHolder.class);
+  }
+
+  @Test
+  public void testGetMetricsReusesRecentMetrics() throws Exception {
+    CountingStreamProvider streamProvider = new CountingStreamProvider(null, null);
+    JMXMetricsCollector collector = new JMXMetricsCollector(jmxObjectReader, 1, TimeUnit.MINUTES, 10);
+
+    JMXMetricHolder metrics = collector.getMetrics(streamProvider, SPEC);
+    Assert.assertEquals(42, metrics.getBeans().get(0).get("HeapMemoryUsed"));
+    Assert.assertSame(metrics, collector.getMetrics(streamProvider, SPEC));
+    Assert.assertEquals(1, streamProvider.reads.get());
+
+    // a different stream provider does not share the metrics
+    CountingStreamProvider otherStreamProvider = new CountingStreamProvider(null, null);
+    Assert.assertNotSame(metrics, collector.getMetrics(otherStreamProvider, SPEC));
+    Assert.assertEquals(1, otherStreamProvider.reads.get());
+
+    collector.invalidateAll();
+    collector.getMetrics(streamProvider, SPEC);
+    Assert.assertEquals(2, streamProvider.reads.get());
+
+    List<JMXMetricsCollector.EndpointStatistics> endpointStatistics = collector.getEndpointStatistics();
+    Assert.assertEquals(1, endpointStatistics.size());
+    JMXMetricsCollector.EndpointStatistics statistics = endpointStatistics.get(0);
+    Assert.assertEquals(SPEC, statistics.getSpec());
+    Assert.assertEquals(3, statistics.getReads());
+    Assert.assertEquals(0, statistics.getFailures());
+  }
+
+  @Test
+  public void testGetMetricsCoalescesConcurrentReads() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    final CountingStreamProvider streamProvider = new CountingStreamProvider(release, null);
+    final JMXMetricsCollector collector = new JMXMetricsCollector(jmxObjectReader, 1, TimeUnit.MINUTES, 10);
+
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            collector.getMetrics(streamProvider, SPEC);
+          } catch (Throwable t) {
+            failure.set(t);
+          }
+        }
+      };
+      threads[i].start();
+    }
+
+    // wait for the first read to block, give the other threads time to queue up behind it
+    while (streamProvider.reads.get() == 0) {
+      Thread.sleep(10);
+    }
+    Thread.sleep(100);
+    release.countDown();
+
+    for (Thread thread : threads) {
+      thread.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    Assert.assertNull(failure.get());
+    Assert.assertEquals(1, streamProvider.reads.get());
+  }
+
+  @Test
+  public void testGetMetricsTimeout() throws Exception {
+    CountingStreamProvider streamProvider = new CountingStreamProvider(null, new SocketTimeoutException("timeout"));
+    JMXMetricsCollector collector = new JMXMetricsCollector(jmxObjectReader, 1, TimeUnit.MINUTES, 10);
+
+    for (int i = 0; i < 2; i++) {
+      try {
+        collector.getMetrics(streamProvider, SPEC);
+        Assert.fail("Expected a timeout");
+      } catch (SocketTimeoutException e) {
+        // expected
+      }
+    }
+
+    // failures are not cached
+    Assert.assertEquals(2, streamProvider.reads.get());
+
+    List<JMXMetricsCollector.EndpointStatistics> endpointStatistics = collector.getEndpointStatistics();
+    Assert.assertEquals(1, endpointStatistics.size());
+    JMXMetricsCollector.EndpointStatistics statistics = endpointStatistics.get(0);
+    Assert.assertEquals(SPEC, statistics.getSpec());
+    Assert.assertEquals(2, statistics.getReads());
+    Assert.assertEquals(2, statistics.getFailures());
+    Assert.assertEquals(2, statistics.getTimeouts());
+  }
+
+  @Test
+  public void testRegisterMBean() throws Exception {
+    JMXMetricsCollector collector = new JMXMetricsCollector(jmxObjectReader, 1, TimeUnit.MINUTES, 10);
+    collector.getMetrics(new CountingStreamProvider(null, null), SPEC);
+    collector.registerMBean();
+
+    MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName(JMXMetricsCollector.MBEAN_NAME);
+    try {
+      CompositeData[] endpointStatistics = (CompositeData[]) mBeanServer.getAttribute(name, "EndpointStatistics");
+      Assert.assertEquals(1, endpointStatistics.length);
+      Assert.assertEquals(SPEC, endpointStatistics[0].get("spec"));
+      Assert.assertEquals(1L, endpointStatistics[0].get("reads"));
+    } finally {
+      mBeanServer.unregisterMBean(name);
+    }
+  }
+
+  /**
+   * Stream provider which counts reads and can block or fail them.
+   */
+  private static class CountingStreamProvider implements StreamProvider {
+    private final AtomicInteger reads = new AtomicInteger();
+    private final CountDownLatch release;
+    private final IOException failure;
+
+    private CountingStreamProvider(CountDownLatch release, IOException failure) {
+      this.release = release;
+      this.failure = failure;
+    }
+
+    @Override
+    public InputStream readFrom(String spec) throws IOException {
+      reads.incrementAndGet();
+      if (release != null) {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+      }
+      if (failure != null) {
+        throw failure;
+      }
+      return new ByteArrayInputStream(JMX.getBytes("UTF-8"));
+    }
+
+    @Override
+    public InputStream readFrom(String spec, String requestMethod, String params) throws IOException {
+      return readFrom(spec);
+    }
+  }
+}
@@ -58,6 +58,20 @@ public class TimelineMetricCacheSizingTest {
 
   @Test
   public void testTimelineMetricCacheSizing() throws Exception {
+    assertCustomSizingMatchesReflection(false);
+  }
+
+  @Test
+  public void testCompactTimelineMetricCacheSizing() throws Exception {
+    long compactBytes = assertCustomSizingMatchesReflection(true);
+    long treeMapBytes = assertCustomSizingMatchesReflection(false);
+
+    Assert.assertTrue("Compact series should use a fraction of the heap, " +
+      "compact = " + compactBytes + ", map = " + treeMapBytes,
+      compactBytes * 3 < treeMapBytes);
+  }
+
+  private long assertCustomSizingMatchesReflection(boolean compact) throws Exception {
     Set<String> metricNames = new HashSet<>();
     String metric1 = "prefix1.suffix1.suffix2.actualNamePrefix.longMetricName1";
     String metric2 = "prefix1.suffix1.suffix2.actualNamePrefix.longMetricName2";
@@ -91,6 +105,12 @@ public class TimelineMetricCacheSizingTest {
     metrics.getMetrics().add(getSampleTimelineMetric(metric5));
     metrics.getMetrics().add(getSampleTimelineMetric(metric6));
 
+    if (compact) {
+      for (TimelineMetric metric : metrics.getMetrics()) {
+        metric.getMetricSeries().trimToSize();
+      }
+    }
+
     TimelineMetricsCacheValue value = new TimelineMetricsCacheValue(now -
       1000, now, metrics, null);
 
@@ -105,11 +125,15 @@ public class TimelineMetricCacheSizingTest {
     long sampleSizeInMB = bytesFromReflectionEngine / (1024 * 1024);
     long discrepancyInKB = Math.abs(bytesFromCustomSizeOfEngine - bytesFromReflectionEngine) / 1024;
 
+    // 6 metrics x 50000 points, 16 bytes per point when compact
+    long minimumSampleSizeInMB = compact ? 3 : 10;
     Assert.assertTrue("Sample size is " + sampleSizeInMB + ", expected to be" +
-        "greater that 10 MB", sampleSizeInMB > 10);
+        "greater that " + minimumSampleSizeInMB + " MB", sampleSizeInMB > minimumSampleSizeInMB);
     Assert.assertTrue("Discrepancy in values is " + discrepancyInKB  + ", " +
         "expected to be less than 10K. " + "Bytes from reflection = " +
         bytesFromReflectionEngine + ", bytes from custom sizing engine = " +
         bytesFromCustomSizeOfEngine, discrepancyInKB  < 10);
+
+    return bytesFromReflectionEngine;
   }
 }
@@ -0,0 +1,88 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.logging;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link ProfiledLock}.
+ */
+public class ProfiledLockTest {
+
+  /**
+   * Tests that profiling a fair lock does not let a reader get ahead of a
+   * writer which is already waiting.
+   */
+  @Test(timeout = 10000)
+  public void testReadLockDoesNotBargeAheadOfQueuedWriter() throws Exception {
+    final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(true);
+    LockStatistics readStatistics = new LockStatistics("test.read");
+    final Lock readLock = new ProfiledLock(lock.readLock(), readStatistics);
+
+    lock.readLock().lock();
+
+    final AtomicBoolean written = new AtomicBoolean();
+    Thread writer = new Thread() {
+      @Override
+      public void run() {
+        lock.writeLock().lock();
+        try {
+          written.set(true);
+        } finally {
+          lock.writeLock().unlock();
+        }
+      }
+    };
+    writer.start();
+    while (!lock.hasQueuedThread(writer)) {
+      Thread.sleep(1);
+    }
+
+    final CountDownLatch read = new CountDownLatch(1);
+    final AtomicBoolean readAfterWrite = new AtomicBoolean();
+    Thread reader = new Thread() {
+      @Override
+      public void run() {
+        readLock.lock();
+        try {
+          readAfterWrite.set(written.get());
+        } finally {
+          readLock.unlock();
+        }
+        read.countDown();
+      }
+    };
+    reader.start();
+
+    Assert.assertFalse(read.await(200, TimeUnit.MILLISECONDS));
+    lock.readLock().unlock();
+    writer.join();
+    reader.join();
+
+    Assert.assertTrue(readAfterWrite.get());
+    Assert.assertEquals(1, readStatistics.getAcquisitions());
+    Assert.assertEquals(1, readStatistics.getContendedAcquisitions());
+  }
+}
@@ -19,9 +19,15 @@
 package org.apache.ambari.server.orm.dao;
 
 
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.createStrictMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
@@ -33,6 +39,8 @@ import java.util.Map;
 import java.util.TimeZone;
 import java.util.UUID;
 
+import javax.persistence.EntityManager;
+
 import org.apache.ambari.server.controller.AlertCurrentRequest;
 import org.apache.ambari.server.controller.AlertHistoryRequest;
 import org.apache.ambari.server.controller.internal.AlertHistoryResourceProvider;
@@ -45,7 +53,9 @@ import org.apache.ambari.server.controller.spi.SortRequest;
 import org.apache.ambari.server.controller.spi.SortRequest.Order;
 import org.apache.ambari.server.controller.spi.SortRequestProperty;
 import org.apache.ambari.server.controller.utilities.PredicateBuilder;
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.orm.AlertDaoHelper;
+import org.apache.ambari.server.orm.DBAccessor;
 import org.apache.ambari.server.orm.GuiceJpaInitializer;
 import org.apache.ambari.server.orm.InMemoryDefaultTestModule;
 import org.apache.ambari.server.orm.OrmTestHelper;
@@ -64,11 +74,14 @@ import org.apache.ambari.server.state.ServiceComponentHostFactory;
 import org.apache.ambari.server.state.ServiceFactory;
 import org.apache.ambari.server.state.alert.Scope;
 import org.apache.ambari.server.state.alert.SourceType;
+import org.apache.ambari.server.state.stack.OsFamily;
 import org.apache.ambari.server.utils.EventBusSynchronizer;
+import org.easymock.IAnswer;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.google.inject.persist.PersistService;
@@ -100,7 +113,11 @@ public class AlertsDAOTest {
    */
   @Before
   public void setup() throws Exception {
-    m_injector = Guice.createInjector(new InMemoryDefaultTestModule());
+    setup(new InMemoryDefaultTestModule());
+  }
+
+  private void setup(InMemoryDefaultTestModule module) throws Exception {
+    m_injector = Guice.createInjector(module);
     m_injector.getInstance(GuiceJpaInitializer.class);
     m_injector.getInstance(UnitOfWork.class).begin();
 
@@ -1015,6 +1032,111 @@ public class AlertsDAOTest {
 
   }
 
+  /**
+   * Tests that only updated cached alerts are flushed, that they survive being
+   * evicted from the cache before they are flushed, and that they are
+   * discarded when the alerts of their host are removed.
+   */
+  @Test
+  public void testCachedAlerts() throws Exception {
+    // restart with alert caching enabled and room for a single alert
+    teardown();
+    InMemoryDefaultTestModule module = new InMemoryDefaultTestModule();
+    module.getProperties().setProperty(Configuration.ALERTS_CACHE_ENABLED, "true");
+    module.getProperties().setProperty(Configuration.ALERTS_CACHE_SIZE, "1");
+    setup(module);
+
+    EntityManager entityManager = m_injector.getProvider(EntityManager.class).get();
+    long clusterId = m_cluster.getClusterId();
+
+    AlertCurrentEntity current = m_dao.findCurrentByHostAndName(clusterId, "h1",
+        "Alert Definition 0");
+    assertNotNull(current);
+
+    current.setLatestText("Cached Text");
+    m_dao.merge(current, true);
+
+    // evict the updated alert and detach it; it must not be reloaded from JPA
+    assertNotNull(m_dao.findCurrentByHostAndName(clusterId, "h1", "Alert Definition 1"));
+    entityManager.clear();
+    assertSame(current, m_dao.findCurrentByHostAndName(clusterId, "h1", "Alert Definition 0"));
+
+    m_dao.flushCachedEntitiesToJPA();
+    entityManager.clear();
+    assertEquals("Cached Text",
+        entityManager.find(AlertCurrentEntity.class, current.getAlertId()).getLatestText());
+
+    // the flush keeps the cached alert
+    assertSame(current, m_dao.findCurrentByHostAndName(clusterId, "h1", "Alert Definition 0"));
+
+    // updates of removed alerts are discarded instead of being flushed
+    current.setLatestText("Removed Text");
+    m_dao.merge(current, true);
+    m_dao.removeCurrentByHost("h1");
+    m_dao.flushCachedEntitiesToJPA();
+    entityManager.clear();
+
+    assertNull(entityManager.find(AlertCurrentEntity.class, current.getAlertId()));
+    assertNull(m_dao.findCurrentByHostAndName(clusterId, "h1", "Alert Definition 0"));
+  }
+
+  /**
+   * Tests that a cached alert which is updated again while it is being
+   * flushed is written again by the next flush.
+   */
+  @Test
+  public void testCachedAlertUpdatedDuringFlush() throws Exception {
+    final Configuration configuration = createNiceMock(Configuration.class);
+    expect(configuration.isAlertCacheEnabled()).andReturn(true).anyTimes();
+    expect(configuration.getAlertCacheSize()).andReturn(10).anyTimes();
+    expect(configuration.getAlertEventPublisherPoolSize()).andReturn(2).anyTimes();
+    replay(configuration);
+    final EntityManager entityManager = createStrictMock(EntityManager.class);
+
+    final AlertsDAO dao = Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(Configuration.class).toInstance(configuration);
+        bind(EntityManager.class).toInstance(entityManager);
+        bind(DaoUtils.class).toInstance(createNiceMock(DaoUtils.class));
+        bind(Clusters.class).toInstance(createNiceMock(Clusters.class));
+        bind(DBAccessor.class).toInstance(createNiceMock(DBAccessor.class));
+        bind(OsFamily.class).toInstance(createNiceMock(OsFamily.class));
+      }
+    }).getInstance(AlertsDAO.class);
+
+    AlertDefinitionEntity definition = new AlertDefinitionEntity();
+    definition.setDefinitionName("Alert Definition 0");
+    AlertHistoryEntity history = new AlertHistoryEntity();
+    history.setClusterId(1L);
+    history.setHostName("h1");
+    history.setAlertDefinition(definition);
+    final AlertCurrentEntity current = new AlertCurrentEntity();
+    current.setAlertHistory(history);
+
+    // the first write races with another update of the same entity
+    expect(entityManager.merge(current)).andAnswer(new IAnswer<AlertCurrentEntity>() {
+      @Override
+      public AlertCurrentEntity answer() throws Throwable {
+        current.setLatestText("Updated During Flush");
+        dao.merge(current, true);
+        return current;
+      }
+    });
+    expect(entityManager.merge(current)).andReturn(current);
+    replay(entityManager);
+
+    current.setLatestText("Cached Text");
+    dao.merge(current, true);
+    dao.flushCachedEntitiesToJPA();
+    dao.flushCachedEntitiesToJPA();
+
+    // nothing is left to write
+    dao.flushCachedEntitiesToJPA();
+
+    verify(entityManager);
+  }
+
   /**
    * Tests that maintenance mode is set correctly on notices.
    *
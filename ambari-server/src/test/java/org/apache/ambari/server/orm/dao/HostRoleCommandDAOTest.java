@@ -164,6 +164,63 @@ public class HostRoleCommandDAOTest {
     }
   }
 
+  /**
+   * Tests that the status and output of in progress commands are written in a
+   * batch, that completed commands are left untouched and that loaded
+   * commands see the new values.
+   */
+  @Test
+  public void testUpdateInProgressStatuses() {
+    OrmTestHelper helper = m_injector.getInstance(OrmTestHelper.class);
+    helper.createDefaultData();
+
+    Long requestId = Long.valueOf(100L);
+    ClusterEntity clusterEntity = m_clusterDAO.findByName("test_cluster1");
+
+    RequestEntity requestEntity = new RequestEntity();
+    requestEntity.setRequestId(requestId);
+    requestEntity.setClusterId(clusterEntity.getClusterId());
+    requestEntity.setStages(new ArrayList<StageEntity>());
+    m_requestDAO.create(requestEntity);
+
+    HostEntity host = m_hostDAO.findByName("test_host1");
+    host.setHostRoleCommandEntities(new ArrayList<HostRoleCommandEntity>());
+
+    createStage(1L, 2, host, requestEntity, HostRoleStatus.QUEUED);
+    createStage(2L, 1, host, requestEntity, HostRoleStatus.COMPLETED);
+
+    List<HostRoleCommandEntity> tasks = m_hostRoleCommandDAO.findByRequest(requestId);
+    Assert.assertEquals(3, tasks.size());
+
+    List<HostRoleCommandEntity> updates = new ArrayList<HostRoleCommandEntity>();
+    for (HostRoleCommandEntity task : tasks) {
+      HostRoleCommandEntity update = new HostRoleCommandEntity();
+      update.setTaskId(task.getTaskId());
+      update.setStatus(HostRoleStatus.IN_PROGRESS);
+      update.setStdOut(("out" + task.getTaskId()).getBytes());
+      update.setStdError("".getBytes());
+      update.setStructuredOut(null);
+      update.setExitcode(0);
+      updates.add(update);
+    }
+
+    m_hostRoleCommandDAO.updateInProgressStatuses(updates);
+
+    for (HostRoleCommandEntity task : m_hostRoleCommandDAO.findByRequest(requestId)) {
+      if (task.getStageId() == 1L) {
+        Assert.assertEquals(HostRoleStatus.IN_PROGRESS, task.getStatus());
+        Assert.assertEquals("out" + task.getTaskId(), new String(task.getStdOut()));
+      } else {
+        Assert.assertEquals(HostRoleStatus.COMPLETED, task.getStatus());
+        Assert.assertEquals(0, task.getStdOut().length);
+      }
+    }
+
+    for (HostRoleCommandEntity task : m_stageDAO.findByActionId(requestId + "-1").getHostRoleCommands()) {
+      Assert.assertEquals(HostRoleStatus.IN_PROGRESS, task.getStatus());
+    }
+  }
+
   /**
    * Creates a single stage with the specified number of commands.
    *
@@ -754,6 +754,99 @@ public class ConfigHelperTest {
 
       verify(sch);
     }
+
+    @Test
+    public void testInvalidateStaleConfigsCacheByConfigType() throws Exception {
+      Map<String, HostConfig> schReturn = new HashMap<String, HostConfig>();
+      HostConfig hc = new HostConfig();
+      hc.setDefaultVersionTag("version2");
+      schReturn.put("flume-conf", hc);
+
+      ServiceComponentHost sch = createNiceMock(ServiceComponentHost.class);
+      expect(sch.getActualConfigs()).andReturn(schReturn).times(2);
+      expect(sch.getHostName()).andReturn("h1").anyTimes();
+      expect(sch.getClusterId()).andReturn(cluster.getClusterId()).anyTimes();
+      expect(sch.getServiceName()).andReturn("FLUME").anyTimes();
+      expect(sch.getServiceComponentName()).andReturn("FLUME_HANDLER").anyTimes();
+      replay(sch);
+
+      Assert.assertTrue(configHelper.isStaleConfigs(sch));
+
+      HostConfig hc2 = new HostConfig();
+      hc2.setDefaultVersionTag("version1");
+      schReturn.put("flume-conf", hc2);
+
+      // a type the host component does not depend on keeps the cached value
+      configHelper.invalidateStaleConfigsCache(cluster, Collections.singleton("zoo.cfg"));
+      Assert.assertTrue(configHelper.isStaleConfigs(sch));
+
+      // a type it depends on is re-evaluated
+      configHelper.invalidateStaleConfigsCache(cluster, Collections.singleton("flume-conf"));
+      Assert.assertFalse(configHelper.isStaleConfigs(sch));
+
+      verify(sch);
+    }
+
+    @Test
+    public void testStaleConfigsCacheKeptForUnrelatedDesiredTypes() throws Exception {
+      Map<String, HostConfig> schReturn = new HashMap<String, HostConfig>();
+      HostConfig hc = new HostConfig();
+      hc.setDefaultVersionTag("version2");
+      schReturn.put("flume-conf", hc);
+      HostConfig coreSite = new HostConfig();
+      coreSite.setDefaultVersionTag("version1");
+      schReturn.put("core-site", coreSite);
+
+      ServiceComponentHost sch = createNiceMock(ServiceComponentHost.class);
+      expect(sch.getActualConfigs()).andReturn(schReturn).times(2);
+      expect(sch.getHostName()).andReturn("h1").anyTimes();
+      expect(sch.getClusterId()).andReturn(cluster.getClusterId()).anyTimes();
+      expect(sch.getServiceName()).andReturn("FLUME").anyTimes();
+      expect(sch.getServiceComponentName()).andReturn("FLUME_HANDLER").anyTimes();
+      replay(sch);
+
+      Assert.assertTrue(configHelper.isStaleConfigs(sch));
+
+      HostConfig hc2 = new HostConfig();
+      hc2.setDefaultVersionTag("version1");
+      schReturn.put("flume-conf", hc2);
+
+      // desired and actual types the service does not depend on keep the cached value
+      configHelper.invalidateStaleConfigsCache(cluster, Arrays.asList("core-site", "oozie-site"));
+      Assert.assertTrue(configHelper.isStaleConfigs(sch));
+
+      // global is re-evaluated for every host component
+      configHelper.invalidateStaleConfigsCache(cluster, Collections.singleton("global"));
+      Assert.assertFalse(configHelper.isStaleConfigs(sch));
+
+      verify(sch);
+    }
+
+    @Test
+    public void testRestartRequiredStaleConfigsKeepDependencies() throws Exception {
+      Map<String, HostConfig> schReturn = new HashMap<String, HostConfig>();
+      HostConfig hc = new HostConfig();
+      hc.setDefaultVersionTag("version1");
+      schReturn.put("flume-conf", hc);
+
+      ServiceComponentHost sch = createNiceMock(ServiceComponentHost.class);
+      expect(sch.isRestartRequired()).andReturn(true).once();
+      expect(sch.isRestartRequired()).andReturn(false).anyTimes();
+      expect(sch.getActualConfigs()).andReturn(schReturn).once();
+      expect(sch.getHostName()).andReturn("h1").anyTimes();
+      expect(sch.getClusterId()).andReturn(cluster.getClusterId()).anyTimes();
+      expect(sch.getServiceName()).andReturn("FLUME").anyTimes();
+      expect(sch.getServiceComponentName()).andReturn("FLUME_HANDLER").anyTimes();
+      replay(sch);
+
+      Assert.assertTrue(configHelper.isStaleConfigs(sch));
+
+      // the value cached without reading the configs still depends on them
+      configHelper.invalidateStaleConfigsCache(cluster, Collections.singleton("flume-conf"));
+      Assert.assertFalse(configHelper.isStaleConfigs(sch));
+
+      verify(sch);
+    }
   }
 
   public static class RunWithCustomModule {
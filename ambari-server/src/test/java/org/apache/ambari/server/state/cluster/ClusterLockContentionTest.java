@@ -0,0 +1,300 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.state.cluster;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.events.listeners.upgrade.HostVersionOutOfSyncListener;
+import org.apache.ambari.server.logging.LockFactory;
+import org.apache.ambari.server.logging.LockStatistics;
+import org.apache.ambari.server.orm.GuiceJpaInitializer;
+import org.apache.ambari.server.orm.InMemoryDefaultTestModule;
+import org.apache.ambari.server.orm.OrmTestHelper;
+import org.apache.ambari.server.state.Cluster;
+import org.apache.ambari.server.state.Clusters;
+import org.apache.ambari.server.state.Host;
+import org.apache.ambari.server.state.RepositoryVersionState;
+import org.apache.ambari.server.state.Service;
+import org.apache.ambari.server.state.ServiceComponent;
+import org.apache.ambari.server.state.ServiceComponentFactory;
+import org.apache.ambari.server.state.ServiceComponentHost;
+import org.apache.ambari.server.state.ServiceFactory;
+import org.apache.ambari.server.state.StackId;
+import org.apache.ambari.server.state.State;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.inject.Binder;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.google.inject.persist.PersistService;
+import com.google.inject.util.Modules;
+
+/**
+ * Runs heartbeat-like readers of the host components of a cluster alongside
+ * API-like writers that add host components, with growing thread counts, and
+ * reports the throughput of each run along with the profiled cluster locks.
+ */
+public class ClusterLockContentionTest {
+  private static final Logger LOG = LoggerFactory.getLogger(ClusterLockContentionTest.class);
+
+  private static final int[] THREAD_COUNTS = { 1, 2, 4 };
+  private static final int HOSTS_PER_WRITER = 8;
+  private static final int HEARTBEAT_ROUNDS = 200;
+  private static final String[] WRITER_COMPONENTS = { "DATANODE", "HDFS_CLIENT" };
+
+  @Inject
+  private Injector injector;
+
+  @Inject
+  private Clusters clusters;
+
+  @Inject
+  private ServiceFactory serviceFactory;
+
+  @Inject
+  private ServiceComponentFactory serviceComponentFactory;
+
+  @Inject
+  private OrmTestHelper helper;
+
+  @Inject
+  private LockFactory lockFactory;
+
+  private StackId stackId = new StackId("HDP-0.1");
+
+  private Cluster cluster;
+
+  private Service service;
+
+  private List<String> hostNames = new ArrayList<String>();
+
+  @Before
+  public void setup() throws Exception {
+    InMemoryDefaultTestModule module = new InMemoryDefaultTestModule();
+    module.getProperties().setProperty(Configuration.SERVER_LOCKS_PROFILING_KEY, "true");
+    injector = Guice.createInjector(Modules.override(module).with(new MockModule()));
+
+    injector.getInstance(GuiceJpaInitializer.class);
+    injector.injectMembers(this);
+    clusters.addCluster("c1", stackId);
+    cluster = clusters.getCluster("c1");
+    helper.getOrCreateRepositoryVersion(stackId, stackId.getStackVersion());
+    cluster.createClusterVersion(stackId,
+        stackId.getStackVersion(), "admin", RepositoryVersionState.INSTALLING);
+
+    int writers = 0;
+    for (int threadCount : THREAD_COUNTS) {
+      writers += threadCount;
+    }
+
+    for (int i = 0; i < writers * HOSTS_PER_WRITER; i++) {
+      String hostName = "c64-" + i;
+      hostNames.add(hostName);
+
+      clusters.addHost(hostName);
+      Map<String, String> hostAttributes = new HashMap<String, String>();
+      hostAttributes.put("os_family", "redhat");
+      hostAttributes.put("os_release_version", "6.4");
+      Host host = clusters.getHost(hostName);
+      host.setHostAttributes(hostAttributes);
+      host.persist();
+      clusters.mapHostToCluster(hostName, "c1");
+    }
+
+    service = serviceFactory.createNew(cluster, "HDFS");
+    cluster.addService(service);
+    service.persist();
+    for (String componentName : WRITER_COMPONENTS) {
+      ServiceComponent component = serviceComponentFactory.createNew(service, componentName);
+      service.addServiceComponent(component);
+      component.setDesiredState(State.INSTALLED);
+      component.persist();
+    }
+
+    ((ClusterImpl) cluster).loadServiceHostComponents();
+  }
+
+  @After
+  public void teardown() {
+    injector.getInstance(PersistService.class).stop();
+  }
+
+  /**
+   * Adds host components on disjoint hosts from every writer while the same
+   * number of readers walk the host components of all hosts. The writers must
+   * not need the cluster write lock, and every host component must end up in
+   * the cluster caches.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testConcurrentHeartbeatsAndHostComponentWrites() throws Exception {
+    int firstHost = 0;
+    for (int threadCount : THREAD_COUNTS) {
+      List<String> writerHosts = hostNames.subList(firstHost,
+          firstHost + threadCount * HOSTS_PER_WRITER);
+      firstHost += writerHosts.size();
+
+      long clusterWrites = getAcquisitions("clusterGlobalLock.write");
+
+      final CountDownLatch start = new CountDownLatch(1);
+      final ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<Throwable>();
+      final AtomicLong operations = new AtomicLong();
+      List<Thread> threads = new ArrayList<Thread>();
+      for (int i = 0; i < threadCount; i++) {
+        threads.add(new HeartbeatThread(start, failures, operations));
+        threads.add(new HostComponentWriterThread(start, failures, operations,
+            writerHosts.subList(i * HOSTS_PER_WRITER, (i + 1) * HOSTS_PER_WRITER)));
+      }
+
+      for (Thread thread : threads) {
+        thread.start();
+      }
+      long startTime = System.nanoTime();
+      start.countDown();
+      for (Thread thread : threads) {
+        thread.join(TimeUnit.MINUTES.toMillis(5));
+        Assert.assertFalse("Thread " + thread.getName() + " did not finish", thread.isAlive());
+      }
+      long elapsed = System.nanoTime() - startTime;
+
+      if (!failures.isEmpty()) {
+        throw new AssertionError(failures.peek());
+      }
+
+      LOG.info("{} heartbeat and {} writer threads: {} operations/s", threadCount, threadCount,
+          operations.get() * TimeUnit.SECONDS.toNanos(1) / Math.max(elapsed, 1));
+
+      Assert.assertEquals(clusterWrites, getAcquisitions("clusterGlobalLock.write"));
+      for (String hostName : writerHosts) {
+        Assert.assertEquals(WRITER_COMPONENTS.length, cluster.getServiceComponentHosts(hostName).size());
+      }
+    }
+
+    lockFactory.logStatistics();
+    Assert.assertTrue(getAcquisitions("clusterGlobalLock.read") > 0);
+  }
+
+  private long getAcquisitions(String site) {
+    for (LockStatistics statistics : lockFactory.getStatistics()) {
+      if (statistics.getSite().equals(site)) {
+        return statistics.getAcquisitions();
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Reads the host components of every host the way heartbeat processing
+   * does.
+   */
+  private final class HeartbeatThread extends Thread {
+    private final CountDownLatch start;
+    private final ConcurrentLinkedQueue<Throwable> failures;
+    private final AtomicLong operations;
+
+    private HeartbeatThread(CountDownLatch start, ConcurrentLinkedQueue<Throwable> failures,
+                            AtomicLong operations) {
+      this.start = start;
+      this.failures = failures;
+      this.operations = operations;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+      try {
+        start.await();
+        for (int i = 0; i < HEARTBEAT_ROUNDS; i++) {
+          for (String hostName : hostNames) {
+            for (ServiceComponentHost sch : cluster.getServiceComponentHosts(hostName)) {
+              sch.getState();
+            }
+            operations.incrementAndGet();
+          }
+        }
+      } catch (Throwable t) {
+        failures.add(t);
+      }
+    }
+  }
+
+  /**
+   * Adds the host components of its hosts the way the API does.
+   */
+  private final class HostComponentWriterThread extends Thread {
+    private final CountDownLatch start;
+    private final ConcurrentLinkedQueue<Throwable> failures;
+    private final AtomicLong operations;
+    private final List<String> hosts;
+
+    private HostComponentWriterThread(CountDownLatch start, ConcurrentLinkedQueue<Throwable> failures,
+                                      AtomicLong operations, List<String> hosts) {
+      this.start = start;
+      this.failures = failures;
+      this.operations = operations;
+      this.hosts = hosts;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+      try {
+        start.await();
+        for (String hostName : hosts) {
+          for (String componentName : WRITER_COMPONENTS) {
+            service.getServiceComponent(componentName).addServiceComponentHost(hostName);
+            operations.incrementAndGet();
+          }
+        }
+      } catch (Throwable t) {
+        failures.add(t);
+      }
+    }
+  }
+
+  private class MockModule implements Module {
+    @Override
+    public void configure(Binder binder) {
+      // keep the listener from slowing the threads down
+      binder.bind(HostVersionOutOfSyncListener.class).toInstance(
+          EasyMock.createNiceMock(HostVersionOutOfSyncListener.class));
+    }
+  }
+}
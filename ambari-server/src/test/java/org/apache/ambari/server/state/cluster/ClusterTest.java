@@ -94,6 +94,7 @@ import org.apache.ambari.server.state.ConfigHelper;
 import org.apache.ambari.server.state.ConfigImpl;
 import org.apache.ambari.server.state.DesiredConfig;
 import org.apache.ambari.server.state.Host;
+import org.apache.ambari.server.state.HostComponentAdminState;
 import org.apache.ambari.server.state.HostHealthStatus;
 import org.apache.ambari.server.state.HostState;
 import org.apache.ambari.server.state.MaintenanceState;
@@ -111,7 +112,9 @@ import org.apache.ambari.server.state.configgroup.ConfigGroupFactory;
 import org.apache.ambari.server.state.fsm.InvalidStateTransitionException;
 import org.apache.ambari.server.state.host.HostHealthyHeartbeatEvent;
 import org.apache.ambari.server.state.host.HostRegistrationRequestEvent;
+import org.apache.ambari.server.utils.ClusterHostInfoSnapshot;
 import org.apache.ambari.server.utils.EventBusSynchronizer;
+import org.apache.ambari.server.utils.StageUtils;
 import org.apache.commons.lang.StringUtils;
 import org.junit.After;
 import org.junit.Before;
@@ -763,6 +766,56 @@ public class ClusterTest {
     Assert.assertEquals(2, scHosts.size());
   }
 
+  @Test
+  public void testClusterHostInfoSnapshot() throws Exception {
+    createDefaultCluster();
+
+    ClusterHostInfoSnapshot snapshot = c1.getClusterHostInfoSnapshot();
+    Assert.assertSame(snapshot, c1.getClusterHostInfoSnapshot());
+    Map<String, Set<String>> info = StageUtils.substituteHostIndexes(snapshot.getClusterHostInfo());
+    Assert.assertEquals(new HashSet<String>(Arrays.asList("h1", "h2")), info.get("all_hosts"));
+    Assert.assertNull(info.get("namenode_host"));
+
+    Service s = serviceFactory.createNew(c1, "HDFS");
+    c1.addService(s);
+    s.persist();
+    ServiceComponent nn = serviceComponentFactory.createNew(s, "NAMENODE");
+    s.addServiceComponent(nn);
+    nn.persist();
+    ServiceComponent dn = serviceComponentFactory.createNew(s, "DATANODE");
+    s.addServiceComponent(dn);
+    dn.persist();
+    nn.addServiceComponentHost("h1").persist();
+    dn.addServiceComponentHost("h1").persist();
+    dn.addServiceComponentHost("h2").persist();
+    dn.getServiceComponentHost("h2").setComponentAdminState(HostComponentAdminState.DECOMMISSIONED);
+
+    ClusterHostInfoSnapshot updated = c1.getClusterHostInfoSnapshot();
+    Assert.assertTrue(updated.getVersion() > snapshot.getVersion());
+    Assert.assertEquals(snapshot.getClusterHostInfo().get("all_hosts"),
+        updated.getClusterHostInfo().get("all_hosts"));
+    info = StageUtils.substituteHostIndexes(updated.getClusterHostInfo());
+    Assert.assertEquals(Collections.singleton("h1"), info.get("namenode_host"));
+    Assert.assertEquals(new HashSet<String>(Arrays.asList("h1", "h2")), info.get("slave_hosts"));
+    Assert.assertEquals(Collections.singleton("h2"), info.get("decom_dn_hosts"));
+    Assert.assertEquals(StageUtils.getGson().toJson(updated.getClusterHostInfo()),
+        updated.getClusterHostInfoJson());
+
+    nn.deleteServiceComponentHosts("h1");
+    addHost("h3", new HashMap<String, String>() {{
+      put("os_family", "redhat");
+      put("os_release_version", "5.9");
+    }});
+    clusters.mapHostToCluster("h3", "c1");
+    clusters.getHost("h3").setRackInfo("/rack3");
+
+    info = StageUtils.substituteHostIndexes(c1.getClusterHostInfoSnapshot().getClusterHostInfo());
+    Assert.assertEquals(new HashSet<String>(Arrays.asList("h1", "h2", "h3")), info.get("all_hosts"));
+    Assert.assertNull(info.get("namenode_host"));
+    Assert.assertEquals(new HashSet<String>(Arrays.asList("h1", "h2")), info.get("slave_hosts"));
+    Assert.assertTrue(info.get("all_racks").contains("/rack3:2"));
+  }
+
   @Test
   public void testGetServiceComponentHosts_ForService() throws Exception {
     createDefaultCluster();
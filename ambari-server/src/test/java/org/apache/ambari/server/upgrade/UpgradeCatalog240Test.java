@@ -167,6 +167,9 @@ public class UpgradeCatalog240Test {
     dbAccessor.addFKConstraint(UpgradeCatalog240.CLUSTER_TABLE, "FK_clusters_upgrade_id",
             UpgradeCatalog240.CLUSTER_UPGRADE_ID_COLUMN, UpgradeCatalog240.UPGRADE_TABLE, "upgrade_id", false);
 
+    Capture<DBAccessor.DBColumnInfo> capturedStageCommandPayloadsColumnInfo = newCapture();
+    dbAccessor.addColumn(eq(UpgradeCatalog240.STAGE_TABLE), capture(capturedStageCommandPayloadsColumnInfo));
+
     Capture<DBAccessor.DBColumnInfo> capturedHelpURLColumnInfo = newCapture();
     Capture<DBAccessor.DBColumnInfo> capturedRepeatToleranceColumnInfo = newCapture();
     Capture<DBAccessor.DBColumnInfo> capturedRepeatToleranceEnabledColumnInfo = newCapture();
@@ -241,6 +244,13 @@ public class UpgradeCatalog240Test {
     Assert.assertEquals(null, clusterUpgradeColumnInfo.getDefaultValue());
     Assert.assertEquals(true, clusterUpgradeColumnInfo.isNullable());
 
+    // Verify if command_payloads column was added to stage table
+    DBAccessor.DBColumnInfo stageCommandPayloadsColumnInfo = capturedStageCommandPayloadsColumnInfo.getValue();
+    Assert.assertNotNull(stageCommandPayloadsColumnInfo);
+    Assert.assertEquals(UpgradeCatalog240.COMMAND_PAYLOADS_COLUMN, stageCommandPayloadsColumnInfo.getName());
+    Assert.assertEquals(byte[].class, stageCommandPayloadsColumnInfo.getType());
+    Assert.assertEquals(true, stageCommandPayloadsColumnInfo.isNullable());
+
     Map<String, Class> expectedCaptures = new HashMap<>();
     expectedCaptures.put("id", Long.class);
     expectedCaptures.put("name", String.class);
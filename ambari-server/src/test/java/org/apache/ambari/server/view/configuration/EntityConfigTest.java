@@ -22,6 +22,7 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import javax.xml.bind.JAXBException;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -40,6 +41,8 @@ public class EntityConfigTest {
       "      <entity>\n" +
       "        <class>org.apache.ambari.server.view.TestEntity1</class>\n" +
       "        <id-property>id</id-property>\n" +
+      "        <index-property>name</index-property>\n" +
+      "        <index-property>owner</index-property>\n" +
       "      </entity>\n" +
       "      <entity>\n" +
       "        <class>org.apache.ambari.server.view.TestEntity2</class>\n" +
@@ -69,6 +72,16 @@ public class EntityConfigTest {
     Assert.assertEquals("name", entities.get(1).getIdProperty());
   }
 
+  @Test
+  public void testGetIndexProperties() throws Exception {
+    List<EntityConfig> entities = getEntityConfigs();
+
+    Assert.assertEquals(2, entities.size());
+
+    Assert.assertEquals(Arrays.asList("name", "owner"), entities.get(0).getIndexProperties());
+    Assert.assertTrue(entities.get(1).getIndexProperties().isEmpty());
+  }
+
   public static List<EntityConfig> getEntityConfigs() throws JAXBException {
     ViewConfig config = ViewConfigTest.getConfig(xml);
 
@@ -38,6 +38,7 @@ import org.eclipse.persistence.dynamic.DynamicEntity;
 import org.eclipse.persistence.dynamic.DynamicType;
 import org.eclipse.persistence.jpa.dynamic.JPADynamicHelper;
 import org.eclipse.persistence.sessions.DatabaseSession;
+import org.eclipse.persistence.tools.schemaframework.IndexDefinition;
 import org.eclipse.persistence.tools.schemaframework.SchemaManager;
 import org.junit.Assert;
 import org.junit.Test;
@@ -47,9 +48,11 @@ import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
 import javax.persistence.Query;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -58,6 +61,7 @@ import static org.easymock.EasyMock.createMock;
 import static org.easymock.EasyMock.createNiceMock;
 import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
 
@@ -76,6 +80,7 @@ public class DataStoreImplTest {
       "      <entity>\n" +
       "        <class>org.apache.ambari.server.view.persistence.DataStoreImplTest$TestEntity</class>\n" +
       "        <id-property>id</id-property>\n" +
+      "        <index-property>name</index-property>\n" +
       "      </entity>\n" +
       "      <entity>\n" +
       "        <class>org.apache.ambari.server.view.persistence.DataStoreImplTest$TestSubEntity</class>\n" +
@@ -528,6 +533,155 @@ public class DataStoreImplTest {
         dynamicEntity1, dynamicEntity2, dynamicEntity3, query, schemaManager);
   }
 
+  @Test
+  public void testStore_collection() throws Exception {
+    DynamicClassLoader classLoader = new DynamicClassLoader(DataStoreImplTest.class.getClassLoader());
+
+    // create mocks
+    EntityManagerFactory entityManagerFactory = createMock(EntityManagerFactory.class);
+    EntityManager entityManager = createMock(EntityManager.class);
+    JPADynamicHelper jpaDynamicHelper = createNiceMock(JPADynamicHelper.class);
+    SchemaManager schemaManager = createNiceMock(SchemaManager.class);
+    EntityTransaction transaction = createMock(EntityTransaction.class);
+    Query query = createMock(Query.class);
+
+    // set expectations
+    Capture<DynamicType> typeCapture = new Capture<DynamicType>();
+    Capture<DynamicType> typeCapture2 = new Capture<DynamicType>();
+    jpaDynamicHelper.addTypes(eq(true), eq(true), capture(typeCapture), capture(typeCapture2));
+
+    expect(entityManagerFactory.createEntityManager()).andReturn(entityManager);
+    expect(entityManager.getTransaction()).andReturn(transaction).anyTimes();
+
+    // the stored entities are loaded with a single query
+    expect(entityManager.createQuery(
+        "SELECT e FROM DS_DataStoreImplTest$TestEntity_1 e WHERE e.DS_id IN :ids")).andReturn(query);
+    expect(query.setParameter("ids", Arrays.asList(99, 100))).andReturn(query);
+    expect(query.getResultList()).andReturn(Collections.emptyList());
+
+    Capture<Class> entityClassCapture = new Capture<Class>();
+    expect(entityManager.find(capture(entityClassCapture), eq("bar"))).andReturn(null);
+    expect(entityManager.find(capture(entityClassCapture), eq(99))).andReturn(null);
+    expect(entityManager.find(capture(entityClassCapture), eq("baz"))).andReturn(null);
+    expect(entityManager.find(capture(entityClassCapture), eq(100))).andReturn(null);
+
+    Capture<DynamicEntity> entityCapture = new Capture<DynamicEntity>();
+    entityManager.persist(capture(entityCapture));
+    expectLastCall().times(4);
+
+    entityManager.flush();
+    entityManager.clear();
+    entityManager.close();
+
+    transaction.begin();
+    transaction.commit();
+
+    // replay mocks
+    replay(entityManagerFactory, entityManager, jpaDynamicHelper, transaction, query, schemaManager);
+
+    DataStoreImpl dataStore = getDataStore(entityManagerFactory, jpaDynamicHelper, classLoader, schemaManager);
+
+    dataStore.store(Arrays.asList(new TestEntity(99, "foo", new TestSubEntity("bar")),
+        new TestEntity(100, "foo", new TestSubEntity("baz"))));
+
+    Assert.assertEquals(100, entityCapture.getValue().get("DS_id"));
+    Assert.assertEquals("foo", entityCapture.getValue().get("DS_name"));
+
+    // verify mocks
+    verify(entityManagerFactory, entityManager, jpaDynamicHelper, transaction, query, schemaManager);
+  }
+
+  @Test
+  public void testFindAll_page() throws Exception {
+    DynamicClassLoader classLoader = new DynamicClassLoader(DataStoreImplTest.class.getClassLoader());
+
+    // create mocks
+    EntityManagerFactory entityManagerFactory = createMock(EntityManagerFactory.class);
+    EntityManager entityManager = createMock(EntityManager.class);
+    JPADynamicHelper jpaDynamicHelper = createNiceMock(JPADynamicHelper.class);
+    SchemaManager schemaManager = createNiceMock(SchemaManager.class);
+    DynamicEntity dynamicEntity1 = createMock(DynamicEntity.class);
+    DynamicEntity dynamicEntity2 = createMock(DynamicEntity.class);
+    Query query = createMock(Query.class);
+
+    // set expectations
+    Capture<DynamicType> typeCapture = new Capture<DynamicType>();
+    Capture<DynamicType> typeCapture2 = new Capture<DynamicType>();
+    jpaDynamicHelper.addTypes(eq(true), eq(true), capture(typeCapture), capture(typeCapture2));
+
+    expect(entityManagerFactory.createEntityManager()).andReturn(entityManager);
+    expect(entityManager.createQuery(
+        "SELECT e FROM DS_DataStoreImplTest$TestEntity_1 e WHERE e.DS_name='foo' ORDER BY e.DS_id")).andReturn(query);
+    entityManager.close();
+
+    expect(query.setFirstResult(10)).andReturn(query);
+    expect(query.setMaxResults(2)).andReturn(query);
+    expect(query.getResultList()).andReturn(Arrays.asList(dynamicEntity1, dynamicEntity2));
+
+    expect(dynamicEntity1.get("DS_id")).andReturn(11);
+    expect(dynamicEntity1.get("DS_name")).andReturn("foo");
+    expect(dynamicEntity1.get("DS_subEntity")).andReturn(null);
+
+    expect(dynamicEntity2.get("DS_id")).andReturn(12);
+    expect(dynamicEntity2.get("DS_name")).andReturn("foo");
+    expect(dynamicEntity2.get("DS_subEntity")).andReturn(null);
+
+    // replay mocks
+    replay(entityManagerFactory, entityManager, jpaDynamicHelper, dynamicEntity1, dynamicEntity2, query, schemaManager);
+
+    DataStoreImpl dataStore = getDataStore(entityManagerFactory, jpaDynamicHelper, classLoader, schemaManager);
+
+    Collection<TestEntity> entities = dataStore.findAll(TestEntity.class, "name='foo'", 10, 2);
+
+    // the page keeps the order of the query
+    Assert.assertEquals(2, entities.size());
+    Iterator<TestEntity> iterator = entities.iterator();
+    Assert.assertEquals(11, iterator.next().getId());
+    Assert.assertEquals(12, iterator.next().getId());
+
+    // verify mocks
+    verify(entityManagerFactory, entityManager, jpaDynamicHelper, dynamicEntity1, dynamicEntity2, query, schemaManager);
+  }
+
+  @Test
+  public void testCreateIndexes() throws Exception {
+    DynamicClassLoader classLoader = new DynamicClassLoader(DataStoreImplTest.class.getClassLoader());
+
+    // create mocks
+    EntityManagerFactory entityManagerFactory = createMock(EntityManagerFactory.class);
+    EntityManager entityManager = createMock(EntityManager.class);
+    JPADynamicHelper jpaDynamicHelper = createNiceMock(JPADynamicHelper.class);
+    SchemaManager schemaManager = createMock(SchemaManager.class);
+
+    // set expectations
+    schemaManager.extendDefaultTables(true);
+
+    Capture<IndexDefinition> indexCapture = new Capture<IndexDefinition>();
+    schemaManager.createObject(capture(indexCapture));
+
+    expect(entityManagerFactory.createEntityManager()).andReturn(entityManager);
+
+    Capture<Class> entityClassCapture = new Capture<Class>();
+    expect(entityManager.find(capture(entityClassCapture), eq(99))).andReturn(null);
+    entityManager.close();
+
+    // replay mocks
+    replay(entityManagerFactory, entityManager, jpaDynamicHelper, schemaManager);
+
+    DataStoreImpl dataStore = getDataStore(entityManagerFactory, jpaDynamicHelper, classLoader, schemaManager);
+
+    Assert.assertNull(dataStore.find(TestEntity.class, 99));
+
+    IndexDefinition index = indexCapture.getValue();
+    Assert.assertEquals("DS_DATASTOREIMPLTEST$TESTENTITY_1", index.getTargetTable());
+    Assert.assertEquals(Collections.singletonList("DS_name"), index.getFields());
+    Assert.assertTrue(index.getName().startsWith("DS_IDX_1_"));
+    Assert.assertTrue(index.getName().length() <= 30);
+
+    // verify mocks
+    verify(entityManagerFactory, entityManager, jpaDynamicHelper, schemaManager);
+  }
+
   private DataStoreImpl getDataStore(EntityManagerFactory entityManagerFactory,
                                      JPADynamicHelper jpaDynamicHelper,
                                      DynamicClassLoader classLoader,
@@ -35,6 +35,18 @@ public interface DataStore {
    */
   public void store(Object entity) throws PersistenceException;
 
+  /**
+   * Save the given entities to persistent storage in a single transaction.  The entities
+   * must be declared as an {@code <entity>} in the {@code <persistence>} element of the
+   * view.xml.
+   *
+   * @param entities  the entities to be persisted.
+   *
+   * @throws PersistenceException thrown if the given entities can not be persisted; none
+   *                              of the entities are persisted in that case
+   */
+  public void store(Collection<?> entities) throws PersistenceException;
+
   /**
    * Remove the given entity from persistent storage.
    *
@@ -72,4 +84,22 @@ public interface DataStore {
    * @throws PersistenceException
    */
   public <T> Collection<T> findAll(Class<T> clazz, String whereClause) throws PersistenceException;
+
+  /**
+   * Find a page of the entities for the given where clause, ordered by the id property
+   * of the entity.  Specifying null for the where clause should page through all entities
+   * of the given class type.
+   *
+   * @param clazz        the entity class
+   * @param whereClause  the where clause; may be null
+   * @param firstResult  the position of the first entity of the page, starting at 0
+   * @param maxResults   the maximum number of entities of the page
+   * @param <T>          the entity type
+   *
+   * @return the entities of the page; empty collection if no entities can be found
+   *
+   * @throws PersistenceException
+   */
+  public <T> Collection<T> findAll(Class<T> clazz, String whereClause, int firstResult, int maxResults)
+      throws PersistenceException;
 }
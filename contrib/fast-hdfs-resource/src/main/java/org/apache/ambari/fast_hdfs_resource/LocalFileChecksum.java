@@ -0,0 +1,158 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.fast_hdfs_resource;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+import org.apache.hadoop.fs.FileChecksum;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+
+/**
+ * Computes the HDFS checksum (MD5 of the block MD5s of the chunk CRCs) of a
+ * local file, so that a local file can be compared to a file in HDFS without
+ * reading the HDFS file.
+ */
+public class LocalFileChecksum {
+  private static final Pattern MD5_MD5_CRC = Pattern.compile("MD5-of-\\d+MD5-of-(\\d+)(CRC32C?)");
+  private static final int MD5_LENGTH = 16;
+
+  /*
+   * Check if a file in HDFS has the same length and checksum as a local file.
+   * False if the checksum of the HDFS file is not available or not supported.
+   */
+  public static boolean isSameFile(FileSystem dfs, FileStatus status, File source) throws IOException {
+    if (status.isDir() || !source.isFile() || status.getLen() != source.length())
+      return false;
+
+    FileChecksum checksum = dfs.getFileChecksum(status.getPath());
+    if (checksum == null)
+      return false;
+    Matcher matcher = MD5_MD5_CRC.matcher(checksum.getAlgorithmName());
+    byte[] bytes = checksum.getBytes();
+    if (!matcher.matches() || bytes.length < MD5_LENGTH)
+      return false;
+
+    int bytesPerCrc = Integer.parseInt(matcher.group(1));
+    if (bytesPerCrc <= 0 || status.getBlockSize() <= 0)
+      return false;
+    byte[] md5 = getMD5MD5CRC(source, status.getBlockSize(), bytesPerCrc, "CRC32C".equals(matcher.group(2)));
+    return Arrays.equals(md5, Arrays.copyOfRange(bytes, bytes.length - MD5_LENGTH, bytes.length));
+  }
+
+  /*
+   * MD5 of the MD5s of each block, the MD5 of a block being computed over the
+   * CRCs of each chunk of bytesPerCrc bytes
+   */
+  static byte[] getMD5MD5CRC(File source, long blockSize, int bytesPerCrc, boolean crc32c) throws IOException {
+    MessageDigest fileMD5 = getMD5();
+    MessageDigest blockMD5 = getMD5();
+    Checksum crc = crc32c ? new CRC32C() : new CRC32();
+    byte[] chunk = new byte[bytesPerCrc];
+    long blockRemaining = blockSize;
+
+    InputStream in = new BufferedInputStream(new FileInputStream(source));
+    try {
+      int read;
+      while ((read = readFully(in, chunk, (int) Math.min(bytesPerCrc, blockRemaining))) > 0) {
+        crc.reset();
+        crc.update(chunk, 0, read);
+        int value = (int) crc.getValue();
+        blockMD5.update(new byte[] {(byte) (value >>> 24), (byte) (value >>> 16),
+            (byte) (value >>> 8), (byte) value});
+
+        blockRemaining -= read;
+        if (blockRemaining == 0) {
+          fileMD5.update(blockMD5.digest());
+          blockRemaining = blockSize;
+        }
+      }
+    } finally {
+      in.close();
+    }
+
+    if (blockRemaining < blockSize)
+      fileMD5.update(blockMD5.digest());
+    return fileMD5.digest();
+  }
+
+  private static int readFully(InputStream in, byte[] buffer, int length) throws IOException {
+    int total = 0;
+    while (total < length) {
+      int read = in.read(buffer, total, length - total);
+      if (read == -1)
+        break;
+      total += read;
+    }
+    return total;
+  }
+
+  private static MessageDigest getMD5() {
+    try {
+      return MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /*
+   * CRC-32C (Castagnoli), the default checksum type of HDFS 2
+   */
+  static class CRC32C implements Checksum {
+    private static final int[] TABLE = new int[256];
+
+    static {
+      for (int i = 0; i < TABLE.length; i++) {
+        int value = i;
+        for (int bit = 0; bit < 8; bit++)
+          value = (value & 1) != 0 ? (value >>> 1) ^ 0x82F63B78 : value >>> 1;
+        TABLE[i] = value;
+      }
+    }
+
+    private int crc = 0xFFFFFFFF;
+
+    public void update(int b) {
+      crc = (crc >>> 8) ^ TABLE[(crc ^ b) & 0xFF];
+    }
+
+    public void update(byte[] b, int off, int len) {
+      for (int i = off; i < off + len; i++)
+        crc = (crc >>> 8) ^ TABLE[(crc ^ b[i]) & 0xFF];
+    }
+
+    public long getValue() {
+      return (~crc) & 0xFFFFFFFFL;
+    }
+
+    public void reset() {
+      crc = 0xFFFFFFFF;
+    }
+  }
+}
@@ -169,14 +169,15 @@ public class Resource {
         || !typesAvailable.contains(resource.getType()))
       throw new IllegalArgumentException("Type is not supported.");
 
+    FileStatus status = getFileStatus(dfs, new Path(resource.getTarget()));
     // Check consistency for ("type":"file" == file in hadoop)
-    if (dfs.isFile(new Path(resource.getTarget()))
+    if (status != null && !status.isDir()
         && !"file".equals(resource.getType()))
       throw new IllegalArgumentException(
           "Cannot create a directory " + resource.getTarget() +
               " because file is present on the given path.");
     // Check consistency for ("type":"directory" == directory in hadoop)
-    else if (dfs.isDirectory(new Path(resource.getTarget()))
+    else if (status != null && status.isDir()
         && !"directory".equals(resource.getType()))
       throw new IllegalArgumentException(
           "Cannot create a file " + resource.getTarget() +
@@ -210,8 +211,11 @@ public class Resource {
     } else if (isCreate && resource.getType().equals("file")) {
       dfs.createNewFile(pathHadoop); // empty file
     } else {
-      if(dfs.exists(pathHadoop) && dfs.getFileStatus(pathHadoop).isDir()) {
+      FileStatus status = getFileStatus(dfs, pathHadoop);
+      if(status != null && status.isDir()) {
         System.out.println("Skipping copy from local, as target " + pathHadoop + " is an existing directory."); // Copy from local to existing directory is not supported by dfs.
+      } else if(status != null && LocalFileChecksum.isSameFile(dfs, status, new File(resource.getSource()))) {
+        System.out.println("Skipping copy from local, as target " + pathHadoop + " has the same length and checksum as source " + resource.getSource() + ".");
       } else {
         dfs.copyFromLocalFile(new Path(resource.getSource()), pathHadoop);
       }
@@ -268,6 +272,17 @@ public class Resource {
     }
   }
   
+  /*
+   * Status of the path, or null if it doesn't exist
+   */
+  private static FileStatus getFileStatus(FileSystem dfs, Path path) throws IOException {
+    try {
+      return dfs.getFileStatus(path);
+    } catch (FileNotFoundException e) {
+      return null;
+    }
+  }
+
   public void fillInParentDirectories(FileSystem dfs, String path, HashSet<String> resultSet) throws IOException {
     Path filePath = new Path(path);
       
@@ -0,0 +1,212 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.fast_hdfs_resource;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * Executes resources concurrently. A resource waits for the resources listed
+ * before it whose target is the same path, a parent or a child of its own
+ * target, so a path and its parents are handled in the order given, while
+ * resources on unrelated paths (e.g. siblings) are handled in parallel.
+ */
+public class ResourceExecutor {
+  public static final int DEFAULT_THREADS = 10;
+
+  private final FileSystem dfs;
+  private final int threads;
+  // operation -> {count, total time in ms}
+  private final Map<String, long[]> timings = new TreeMap<String, long[]>();
+
+  public ResourceExecutor(FileSystem dfs, int threads) {
+    if (threads < 1)
+      throw new IllegalArgumentException("Number of threads must be positive.");
+    this.dfs = dfs;
+    this.threads = threads;
+  }
+
+  /*
+   * Execute the resources. No resource is started after one failed, the
+   * first failure is thrown once the running resources are done.
+   */
+  public void execute(final Resource[] resources) throws Exception {
+    // Resources to start after each resource, and number of resources each one waits for
+    List<List<Integer>> dependents = new ArrayList<List<Integer>>();
+    int[] waiting = new int[resources.length];
+    String[] paths = new String[resources.length];
+
+    for (int i = 0; i < resources.length; i++) {
+      paths[i] = getPath(resources[i]);
+      dependents.add(new ArrayList<Integer>());
+      for (int j = 0; j < i; j++) {
+        if (isRelated(paths[j], paths[i])) {
+          dependents.get(j).add(i);
+          waiting[i]++;
+        }
+      }
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    CompletionService<Integer> completionService = new ExecutorCompletionService<Integer>(pool);
+    Throwable failure = null;
+    int running = 0;
+
+    try {
+      for (int i = 0; i < resources.length; i++) {
+        if (waiting[i] == 0) {
+          submit(completionService, resources, i);
+          running++;
+        }
+      }
+
+      while (running > 0) {
+        Future<Integer> done = completionService.take();
+        running--;
+        try {
+          int i = done.get();
+          if (failure == null) {
+            for (int dependent : dependents.get(i)) {
+              if (--waiting[dependent] == 0) {
+                submit(completionService, resources, dependent);
+                running++;
+              }
+            }
+          }
+        } catch (ExecutionException e) {
+          if (failure == null)
+            failure = e.getCause();
+        }
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+
+    if (failure instanceof Exception)
+      throw (Exception) failure;
+    else if (failure != null)
+      throw (Error) failure;
+  }
+
+  /*
+   * Print the number of times each operation ran and the time it took
+   */
+  public void printTimings() {
+    synchronized (timings) {
+      for (Map.Entry<String, long[]> entry : timings.entrySet()) {
+        long count = entry.getValue()[0];
+        long total = entry.getValue()[1];
+        System.out.println("Operation " + entry.getKey() + ": " + count
+            + " times, " + total + " ms total, " + (total / count) + " ms average");
+      }
+    }
+  }
+
+  private void submit(CompletionService<Integer> completionService,
+      final Resource[] resources, final int index) {
+    completionService.submit(new Callable<Integer>() {
+      public Integer call() throws Exception {
+        executeResource(resources[index]);
+        return index;
+      }
+    });
+  }
+
+  private void executeResource(Resource resource) throws IOException {
+    System.out.println("Creating: " + resource);
+    long start = System.currentTimeMillis();
+
+    long time = start;
+    Resource.checkResourceParameters(resource, dfs);
+    time = record("check", time);
+
+    Path pathHadoop = new Path(resource.getTarget());
+    if (!resource.isManageIfExists() && dfs.exists(pathHadoop)) {
+      record("exists", time);
+      System.out.println("Skipping the operation for not managed DFS directory " + resource.getTarget() +
+                         " since immutable_paths contains it.");
+      return;
+    }
+
+    if (resource.getAction().equals("create")) {
+      // Create
+      Resource.createResource(resource, dfs, pathHadoop);
+      time = record(resource.getSource() == null ? "create" : "copy", time);
+      Resource.setMode(resource, dfs, pathHadoop);
+      time = record("mode", time);
+      Resource.setOwner(resource, dfs, pathHadoop);
+      time = record("owner", time);
+    } else if (resource.getAction().equals("delete")) {
+      // Delete
+      dfs.delete(pathHadoop, true);
+      time = record("delete", time);
+    }
+
+    System.out.println("Done: " + resource.getAction() + " " + resource.getTarget()
+        + " in " + (time - start) + " ms");
+  }
+
+  /*
+   * Record the time of an operation started at the given time
+   */
+  private long record(String operation, long start) {
+    long end = System.currentTimeMillis();
+    synchronized (timings) {
+      long[] timing = timings.get(operation);
+      if (timing == null) {
+        timing = new long[2];
+        timings.put(operation, timing);
+      }
+      timing[0]++;
+      timing[1] += end - start;
+    }
+    return end;
+  }
+
+  /*
+   * Path of the resource target without scheme, authority and trailing slash
+   */
+  private String getPath(Resource resource) {
+    String target = resource.getTarget();
+    if (target == null || target.length() == 0)
+      return "/"; // invalid, fails in order with every other resource
+    String path = new Path(target).makeQualified(dfs).toUri().getPath();
+    return path.length() == 0 ? "/" : path;
+  }
+
+  /*
+   * Whether the paths are the same, or one is a parent of the other
+   */
+  static boolean isRelated(String first, String second) {
+    return first.equals(second) || first.equals("/") || second.equals("/")
+        || first.startsWith(second + "/") || second.startsWith(first + "/");
+  }
+}
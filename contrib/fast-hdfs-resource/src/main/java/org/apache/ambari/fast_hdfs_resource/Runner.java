@@ -24,7 +24,6 @@ import java.net.URI;
 import java.net.URISyntaxException;
 
 import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.FileSystem;
 
 import com.google.gson.Gson;
@@ -33,13 +32,29 @@ public class Runner {
   public static void main(String[] args)
       throws IOException, URISyntaxException {
     // 1 - Check arguments
-    if (args.length != 1) {
+    if (args.length < 1 || args.length > 2) {
       System.err.println("Incorrect number of arguments. Please provide:\n"
           + "1) Path to json file\n"
+          + "2) Number of resources to handle in parallel (optional, default "
+          + ResourceExecutor.DEFAULT_THREADS + ")\n"
           + "Exiting...");
       System.exit(1);
     }
 
+    int threads = ResourceExecutor.DEFAULT_THREADS;
+    if (args.length == 2) {
+      try {
+        threads = Integer.parseInt(args[1]);
+      } catch (NumberFormatException e) {
+        threads = 0;
+      }
+      if (threads < 1) {
+        System.err.println("Number of resources to handle in parallel must be a positive number.\n"
+            + "Exiting...");
+        System.exit(1);
+      }
+    }
+
     // 2 - Check if json-file exists
     final String jsonFilePath = args[0];
     File file = new File(jsonFilePath);
@@ -66,27 +81,12 @@ public class Runner {
       System.out.println("Using filesystem uri: " + FileSystem.getDefaultUri(conf).toString());
       dfs.initialize(FileSystem.getDefaultUri(conf), conf);
       
-      for (Resource resource : resources) {
-        System.out.println("Creating: " + resource);
-
-        Resource.checkResourceParameters(resource, dfs);
-
-        Path pathHadoop = new Path(resource.getTarget());
-        if (!resource.isManageIfExists() && dfs.exists(pathHadoop)) {
-          System.out.println("Skipping the operation for not managed DFS directory " + resource.getTarget() +
-                             " since immutable_paths contains it.");
-          continue;
-        }
-
-        if (resource.getAction().equals("create")) {
-          // 5 - Create
-          Resource.createResource(resource, dfs, pathHadoop);
-          Resource.setMode(resource, dfs, pathHadoop);
-          Resource.setOwner(resource, dfs, pathHadoop);
-        } else if (resource.getAction().equals("delete")) {
-          // 6 - Delete
-          dfs.delete(pathHadoop, true);
-        }
+      // 5 - Create/delete resources, unrelated paths in parallel
+      ResourceExecutor executor = new ResourceExecutor(dfs, threads);
+      try {
+        executor.execute(resources);
+      } finally {
+        executor.printTimings();
       }
     } 
     catch(Exception e) {
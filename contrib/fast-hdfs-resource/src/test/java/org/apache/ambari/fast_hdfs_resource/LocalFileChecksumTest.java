@@ -0,0 +1,172 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.fast_hdfs_resource;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileChecksum;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FilterFileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LocalFileChecksumTest {
+  private static final byte[] CONTENT = "0123456789".getBytes();
+
+  private TemporaryFolder temp = new TemporaryFolder();
+  private File source;
+
+  @Before
+  public void setUp() throws IOException {
+    temp.create();
+    source = temp.newFile("source");
+    OutputStream out = new FileOutputStream(source);
+    try {
+      out.write(CONTENT);
+    } finally {
+      out.close();
+    }
+  }
+
+  @After
+  public void tearDown() {
+    temp.delete();
+  }
+
+  @Test
+  public void testCRC32C() {
+    // check value of CRC-32C
+    Checksum crc = new LocalFileChecksum.CRC32C();
+    byte[] bytes = "123456789".getBytes();
+    crc.update(bytes, 0, bytes.length);
+    Assert.assertEquals(0xE3069283L, crc.getValue());
+
+    crc.reset();
+    for (byte b : bytes)
+      crc.update(b);
+    Assert.assertEquals(0xE3069283L, crc.getValue());
+  }
+
+  @Test
+  public void testMD5MD5CRC() throws Exception {
+    // blocks of 4 bytes with a CRC per 2 bytes, the last block is partial
+    Assert.assertArrayEquals(getExpectedMD5MD5CRC(true),
+        LocalFileChecksum.getMD5MD5CRC(source, 4, 2, true));
+    Assert.assertArrayEquals(getExpectedMD5MD5CRC(false),
+        LocalFileChecksum.getMD5MD5CRC(source, 4, 2, false));
+  }
+
+  @Test
+  public void testIsSameFile() throws Exception {
+    byte[] md5 = getExpectedMD5MD5CRC(true);
+    FileStatus status = new FileStatus(CONTENT.length, false, 1, 4, 0, new Path("/target"));
+
+    Assert.assertTrue(LocalFileChecksum.isSameFile(
+        new ChecksumFileSystem("MD5-of-2MD5-of-2CRC32C", md5), status, source));
+
+    // different content, different length, unsupported algorithm
+    md5[0]++;
+    Assert.assertFalse(LocalFileChecksum.isSameFile(
+        new ChecksumFileSystem("MD5-of-2MD5-of-2CRC32C", md5), status, source));
+    status = new FileStatus(CONTENT.length + 1, false, 1, 4, 0, new Path("/target"));
+    Assert.assertFalse(LocalFileChecksum.isSameFile(
+        new ChecksumFileSystem("MD5-of-2MD5-of-2CRC32C", getExpectedMD5MD5CRC(true)), status, source));
+    status = new FileStatus(CONTENT.length, false, 1, 4, 0, new Path("/target"));
+    Assert.assertFalse(LocalFileChecksum.isSameFile(
+        new ChecksumFileSystem("COMPOSITE-CRC32C", getExpectedMD5MD5CRC(true)), status, source));
+  }
+
+  /*
+   * MD5 of the MD5s of the blocks [0123] [4567] [89] of the CRCs of each
+   * pair of bytes
+   */
+  private byte[] getExpectedMD5MD5CRC(boolean crc32c) throws Exception {
+    MessageDigest fileMD5 = MessageDigest.getInstance("MD5");
+    for (int block = 0; block < CONTENT.length; block += 4) {
+      MessageDigest blockMD5 = MessageDigest.getInstance("MD5");
+      for (int chunk = block; chunk < Math.min(block + 4, CONTENT.length); chunk += 2) {
+        Checksum crc = crc32c ? new LocalFileChecksum.CRC32C() : new CRC32();
+        crc.update(CONTENT, chunk, 2);
+        long value = crc.getValue();
+        blockMD5.update(new byte[] {(byte) (value >>> 24), (byte) (value >>> 16),
+            (byte) (value >>> 8), (byte) value});
+      }
+      fileMD5.update(blockMD5.digest());
+    }
+    return fileMD5.digest();
+  }
+
+  /**
+   * Local file system which reports the given checksum for every file, as
+   * HDFS would after a header with the checksum parameters.
+   */
+  private static class ChecksumFileSystem extends FilterFileSystem {
+    private final String algorithm;
+    private final byte[] md5;
+
+    private ChecksumFileSystem(String algorithm, byte[] md5) throws IOException {
+      super(FileSystem.getLocal(new Configuration()));
+      this.algorithm = algorithm;
+      this.md5 = md5;
+    }
+
+    @Override
+    public FileChecksum getFileChecksum(Path path) {
+      return new FileChecksum() {
+        @Override
+        public String getAlgorithmName() {
+          return algorithm;
+        }
+
+        @Override
+        public int getLength() {
+          return 28;
+        }
+
+        @Override
+        public byte[] getBytes() {
+          byte[] bytes = new byte[getLength()];
+          System.arraycopy(md5, 0, bytes, bytes.length - md5.length, md5.length);
+          return bytes;
+        }
+
+        public void write(DataOutput out) throws IOException {
+          out.write(getBytes());
+        }
+
+        public void readFields(DataInput in) throws IOException {
+          throw new UnsupportedOperationException();
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,167 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.fast_hdfs_resource;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FilterFileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ResourceExecutorTest {
+  private TemporaryFolder temp = new TemporaryFolder();
+  private String base;
+  private RecordingFileSystem fs;
+
+  @Before
+  public void setUp() throws IOException {
+    temp.create();
+    base = temp.getRoot().getAbsolutePath();
+    fs = new RecordingFileSystem(FileSystem.getLocal(new Configuration()));
+  }
+
+  @After
+  public void tearDown() {
+    temp.delete();
+  }
+
+  @Test
+  public void testIsRelated() {
+    Assert.assertTrue(ResourceExecutor.isRelated("/a/b", "/a/b"));
+    Assert.assertTrue(ResourceExecutor.isRelated("/a", "/a/b"));
+    Assert.assertTrue(ResourceExecutor.isRelated("/a/b/c", "/a"));
+    Assert.assertTrue(ResourceExecutor.isRelated("/", "/a/b"));
+    Assert.assertTrue(ResourceExecutor.isRelated("/a/b", "/"));
+
+    // siblings, also when one name is a prefix of the other
+    Assert.assertFalse(ResourceExecutor.isRelated("/a/b", "/a/c"));
+    Assert.assertFalse(ResourceExecutor.isRelated("/a/b", "/a/bc"));
+    Assert.assertFalse(ResourceExecutor.isRelated("/a/bc/d", "/a/b"));
+  }
+
+  @Test
+  public void testExecuteKeepsOrderOfRelatedPaths() throws Exception {
+    // the siblings can only pass the barrier if they run at the same time
+    fs.barrier = new CyclicBarrier(2);
+
+    Resource[] resources = new Resource[] {
+        createResource("directory", "create", base + "/a"),
+        createResource("file", "create", base + "/sibling1"),
+        createResource("directory", "delete", base + "/a"),
+        createResource("file", "create", base + "/sibling2"),
+        createResource("directory", "create", base + "/a/b"),
+    };
+    new ResourceExecutor(fs, 4).execute(resources);
+
+    Assert.assertTrue(new File(base, "a/b").isDirectory());
+    Assert.assertTrue(new File(base, "sibling1").isFile());
+    Assert.assertTrue(new File(base, "sibling2").isFile());
+
+    List<String> operations = fs.getOperations();
+    int created = operations.indexOf("mkdirs " + base + "/a");
+    int deleted = operations.indexOf("delete " + base + "/a");
+    int createdChild = operations.indexOf("mkdirs " + base + "/a/b");
+    Assert.assertTrue(created >= 0);
+    Assert.assertTrue(created < deleted);
+    Assert.assertTrue(deleted < createdChild);
+  }
+
+  @Test
+  public void testExecuteStopsAfterFailure() throws Exception {
+    Resource[] resources = new Resource[] {
+        createResource("directory", "create", base + "/a"),
+        createResource("directory", "move", base + "/a/b"),
+        createResource("directory", "create", base + "/a/b/c"),
+    };
+
+    try {
+      new ResourceExecutor(fs, 4).execute(resources);
+      Assert.fail("Expected the unsupported action to fail");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+
+    Assert.assertTrue(new File(base, "a").isDirectory());
+    Assert.assertFalse(new File(base, "a/b/c").exists());
+  }
+
+  private Resource createResource(String type, String action, String target) {
+    Resource resource = new Resource();
+    resource.setType(type);
+    resource.setAction(action);
+    resource.setTarget(target);
+    resource.setManageIfExists(true);
+    return resource;
+  }
+
+  /**
+   * Local file system which records the changes made through it, and can
+   * make the creation of files wait for each other.
+   */
+  private static class RecordingFileSystem extends FilterFileSystem {
+    private final List<String> operations = Collections.synchronizedList(new ArrayList<String>());
+    private CyclicBarrier barrier;
+
+    private RecordingFileSystem(FileSystem fs) {
+      super(fs);
+    }
+
+    @Override
+    public boolean mkdirs(Path path) throws IOException {
+      operations.add("mkdirs " + path.toUri().getPath());
+      return super.mkdirs(path);
+    }
+
+    @Override
+    public boolean createNewFile(Path path) throws IOException {
+      operations.add("create " + path.toUri().getPath());
+      if (barrier != null) {
+        try {
+          barrier.await(10, TimeUnit.SECONDS);
+        } catch (Exception e) {
+          throw new IOException("Files were not created concurrently: " + e);
+        }
+      }
+      return super.createNewFile(path);
+    }
+
+    @Override
+    public boolean delete(Path path, boolean recursive) throws IOException {
+      operations.add("delete " + path.toUri().getPath());
+      return super.delete(path, recursive);
+    }
+
+    private List<String> getOperations() {
+      synchronized (operations) {
+        return new ArrayList<String>(operations);
+      }
+    }
+  }
+}
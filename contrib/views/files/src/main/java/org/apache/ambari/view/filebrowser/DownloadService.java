@@ -21,12 +21,19 @@ package org.apache.ambari.view.filebrowser;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.FileNameMap;
 import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -50,11 +57,12 @@ import com.google.gson.Gson;
 import org.apache.ambari.view.filebrowser.utils.MisconfigurationFormattedException;
 import org.apache.ambari.view.filebrowser.utils.NotFoundFormattedException;
 import org.apache.ambari.view.filebrowser.utils.ServiceFormattedException;
+import org.apache.ambari.view.filebrowser.TransferMonitor.MonitoredInputStream;
+import org.apache.ambari.view.filebrowser.TransferMonitor.Transfer;
 import org.apache.ambari.view.utils.hdfs.HdfsApi;
 import org.apache.ambari.view.utils.hdfs.HdfsApiException;
 import org.apache.ambari.view.utils.hdfs.HdfsUtil;
 import org.apache.hadoop.fs.FSDataInputStream;
-import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.ambari.view.ViewContext;
 import org.apache.hadoop.security.AccessControlException;
@@ -65,12 +73,15 @@ import org.json.simple.JSONObject;
  */
 public class DownloadService extends HdfsService {
 
+  private static final Pattern RANGE_PATTERN = Pattern.compile("^bytes=(\\d*)-(\\d*)$");
+
   public DownloadService(ViewContext context) {
     super(context);
   }
 
   /**
-   * Download entire file
+   * Download entire file, or the byte range requested by the Range header
+   * so that an interrupted download can be resumed
    * @param path path to file
    * @param download download as octet strem or as file mime type
    * @param checkperm used to check if the file can be downloaded. Takes precedence when both download and checkperm
@@ -90,13 +101,38 @@ public class DownloadService extends HdfsService {
       FileStatus status = api.getFileStatus(path);
       FSDataInputStream fs = api.open(path);
       if(checkperm) {
+        fs.close();
         JSONObject jsonObject = new JSONObject();
         jsonObject.put("allowed", true);
         return Response.ok(jsonObject)
           .header("Content-Type", MediaType.APPLICATION_JSON)
           .build();
       }
-      ResponseBuilder result = Response.ok(fs);
+
+      long length = status.getLen();
+      long[] range = getRange(headers, length);
+      if (range != null && range[0] >= range[1]) {
+        fs.close();
+        return Response.status(416)
+            .header("Content-Range", "bytes */" + length)
+            .build();
+      }
+
+      long start = range == null ? 0 : range[0];
+      long end = range == null ? length : range[1];
+      Transfer transfer = getTransferMonitor().start("download", path, context.getUsername(), end - start);
+      InputStream in = new MonitoredInputStream(TransferEngine.readAhead(fs, start, end), transfer);
+
+      ResponseBuilder result;
+      if (range == null) {
+        result = Response.ok(in);
+      } else {
+        result = Response.status(206).entity(in)
+            .header("Content-Range", "bytes " + start + "-" + (end - 1) + "/" + length)
+            .header("Content-Length", end - start);
+      }
+      result.header("Accept-Ranges", "bytes")
+          .header("X-Transfer-Id", transfer.getId());
       if (download) {
         result.header("Content-Disposition",
           "inline; filename=\"" + status.getPath().getName() + "\"").type(MediaType.APPLICATION_OCTET_STREAM);
@@ -116,24 +152,14 @@ public class DownloadService extends HdfsService {
     }
   }
 
-  private void zipFile(ZipOutputStream zip, String path) {
+  private void zipFile(ZipOutputStream zip, String path, InputStream in, Transfer transfer) {
     try {
-      FSDataInputStream in = getApi(context).open(path);
       zip.putNextEntry(new ZipEntry(path.substring(1)));
-      byte[] chunk = new byte[1024];
-
-      int readLen = 0;
-      while(readLen != -1) {
-        zip.write(chunk, 0, readLen);
-        readLen = in.read(chunk);
-      }
+      TransferEngine.copy(in, zip, transfer);
+      transfer.addFile();
     } catch (IOException ex) {
       logger.error("Error zipping file " + path.substring(1) + " (file ignored): "
           + ex.getMessage());
-    } catch (InterruptedException ex) {
-      String msg = "Error zipping file " + path.substring(1) + " (file ignored): "
-          + ex.getMessage();
-      logger.error(msg);
     } finally {
       try {
         zip.closeEntry();
@@ -161,7 +187,8 @@ public class DownloadService extends HdfsService {
   }
 
   /**
-   * Download ZIP of passed file list
+   * Download ZIP of passed file list. The directories are listed first, then
+   * the files are read ahead concurrently while they are zipped in order.
    * @param request download request
    * @return response with zip
    */
@@ -176,19 +203,28 @@ public class DownloadService extends HdfsService {
         name = new File(request.entries[0]).getName() + ".zip";
       }
 
+      final Transfer transfer = getTransferMonitor().create("zip", name, context.getUsername(), -1);
       StreamingOutput result = new StreamingOutput() {
         public void write(OutputStream output) throws IOException,
             ServiceFormattedException {
-          ZipOutputStream zip = new ZipOutputStream(output);
+          getTransferMonitor().start(transfer);
+          final ZipOutputStream zip = new ZipOutputStream(output);
+          boolean succeeded = false;
           try {
             HdfsApi api = getApi(context);
-            Queue<String> files = new LinkedList<String>();
+            Queue<String> entries = new LinkedList<String>();
             for (String file : request.entries) {
-              files.add(file);
+              entries.add(file);
             }
-            while (!files.isEmpty()) {
-              String path = files.poll();
-              FileStatus status = api.getFileStatus(path);
+            Map<String, FileStatus> listed = new HashMap<String, FileStatus>();
+            List<String> files = new ArrayList<String>();
+            long totalBytes = 0;
+            while (!entries.isEmpty()) {
+              String path = entries.poll();
+              FileStatus status = listed.remove(path);
+              if (status == null) {
+                status = api.getFileStatus(path);
+              }
               if (status.isDirectory()) {
                 FileStatus[] subdir;
                 try {
@@ -199,25 +235,45 @@ public class DownloadService extends HdfsService {
                   continue;
                 }
                 for (FileStatus file : subdir) {
-                  files.add(org.apache.hadoop.fs.Path
+                  String filePath = org.apache.hadoop.fs.Path
                       .getPathWithoutSchemeAndAuthority(file.getPath())
-                      .toString());
+                      .toString();
+                  listed.put(filePath, file);
+                  entries.add(filePath);
                 }
                 zipDirectory(zip, path);
               } else {
-                zipFile(zip, path);
+                files.add(path);
+                totalBytes += status.getLen();
               }
             }
+            transfer.setTotalBytes(totalBytes);
+
+            new TransferEngine(api).read(files, new TransferEngine.FileConsumer() {
+              @Override
+              public void consume(String path, InputStream in) {
+                zipFile(zip, path, in, transfer);
+              }
+
+              @Override
+              public void failed(String path, Exception ex) {
+                logger.error("Error zipping file " + path.substring(1) + " (file ignored): "
+                    + ex.getMessage());
+              }
+            });
+            succeeded = true;
           } catch (Exception ex) {
             logger.error("Error occurred: " + ex.getMessage());
             throw new ServiceFormattedException(ex.getMessage(), ex);
           } finally {
+            transfer.end(succeeded);
             zip.close();
           }
         }
       };
       return Response.ok(result)
-          .header("Content-Disposition", "inline; filename=\"" + name +"\"").build();
+          .header("Content-Disposition", "inline; filename=\"" + name +"\"")
+          .header("X-Transfer-Id", transfer.getId()).build();
     } catch (WebApplicationException ex) {
       throw ex;
     } catch (Exception ex) {
@@ -226,7 +282,7 @@ public class DownloadService extends HdfsService {
   }
 
   /**
-   * Concatenate files
+   * Concatenate files, reading the next files ahead concurrently
    * @param request download request
    * @return response with all files concatenated
    */
@@ -236,32 +292,44 @@ public class DownloadService extends HdfsService {
   @Produces(MediaType.APPLICATION_OCTET_STREAM)
   public Response concat(final DownloadRequest request) {
     try {
+      final Transfer transfer = getTransferMonitor().create("concat", "concatResult.txt", context.getUsername(), -1);
       StreamingOutput result = new StreamingOutput() {
-        public void write(OutputStream output) throws IOException,
+        public void write(final OutputStream output) throws IOException,
             ServiceFormattedException {
-          FSDataInputStream in = null;
-          for (String path : request.entries) {
-            try {
-              try {
-                in = getApi(context).open(path);
-              } catch (AccessControlException ex) {
-                logger.error("Error in opening file {}. Ignoring concat of this files : {}", path.substring(1), ex.getMessage());
-                continue;
+          getTransferMonitor().start(transfer);
+          boolean succeeded = false;
+          try {
+            List<String> files = new ArrayList<String>();
+            for (String path : request.entries) {
+              files.add(path);
+            }
+            new TransferEngine(getApi(context)).read(files, new TransferEngine.FileConsumer() {
+              @Override
+              public void consume(String path, InputStream in) throws IOException {
+                TransferEngine.copy(in, output, transfer);
+                transfer.addFile();
               }
-              byte[] chunk = new byte[1024];
-              while (in.read(chunk) != -1) {
-                output.write(chunk);
+
+              @Override
+              public void failed(String path, Exception ex) {
+                if (ex instanceof AccessControlException) {
+                  logger.error("Error in opening file {}. Ignoring concat of this files : {}", path.substring(1), ex.getMessage());
+                  return;
+                }
+                throw new ServiceFormattedException(ex.getMessage(), ex);
               }
-            } catch (Exception ex) {
-              throw new ServiceFormattedException(ex.getMessage(), ex);
-            } finally {
-              if (in != null)
-                in.close();
-            }
+            });
+            succeeded = true;
+          } catch (WebApplicationException ex) {
+            throw ex;
+          } catch (Exception ex) {
+            throw new ServiceFormattedException(ex.getMessage(), ex);
+          } finally {
+            transfer.end(succeeded);
           }
         }
       };
-      ResponseBuilder response = Response.ok(result);
+      ResponseBuilder response = Response.ok(result).header("X-Transfer-Id", transfer.getId());
       if (request.download) {
         response.header("Content-Disposition", "inline; filename=\"concatResult.txt\"").type(MediaType.APPLICATION_OCTET_STREAM);
       } else {
@@ -359,6 +427,52 @@ public class DownloadService extends HdfsService {
     }
   }
 
+  private TransferMonitor getTransferMonitor() {
+    return TransferMonitor.getInstance(context);
+  }
+
+  /**
+   * Get the byte range requested by the Range header. Only a single range is
+   * supported, other Range headers are ignored and the whole file is sent.
+   * @param headers http headers
+   * @param length file length
+   * @return start and end (exclusive) of the range, an empty range if it can't
+   * be satisfied, or null if no range is requested
+   */
+  static long[] getRange(HttpHeaders headers, long length) {
+    List<String> values = headers == null ? null : headers.getRequestHeader("Range");
+    if (values == null || values.size() != 1) {
+      return null;
+    }
+    Matcher matcher = RANGE_PATTERN.matcher(values.get(0).trim());
+    if (!matcher.matches()) {
+      return null;
+    }
+    String first = matcher.group(1);
+    String last = matcher.group(2);
+    try {
+      if (first.isEmpty()) {
+        if (last.isEmpty()) {
+          return null;
+        }
+        // suffix range, the last bytes of the file
+        long start = Math.max(0, length - Long.parseLong(last));
+        return new long[]{start, length};
+      }
+      long start = Long.parseLong(first);
+      long end = last.isEmpty() ? length : Long.parseLong(last) + 1;
+      if (end <= start) {
+        return null;
+      }
+      if (start >= length) {
+        return new long[]{start, start};
+      }
+      return new long[]{start, Math.min(end, length)};
+    } catch (NumberFormatException ex) {
+      return null;
+    }
+  }
+
   private DownloadRequest getDownloadRequest(String requestId) throws HdfsApiException, IOException, InterruptedException {
     String fileName = getFileNameForRequestData(requestId);
     String json = HdfsUtil.readFile(getApi(context), fileName);
@@ -78,4 +78,13 @@ public class FileBrowserService {
     return new FilePreviewService(context);
   }
 
+  /**
+   * @see org.apache.ambari.view.filebrowser.TransferService
+   * @return service
+   */
+  @Path("/transfers")
+  public TransferService transfers() {
+    return new TransferService(context);
+  }
+
 }
@@ -0,0 +1,488 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.view.filebrowser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ambari.view.utils.hdfs.HdfsApi;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads and writes HDFS files for the downloads and uploads on a pool of
+ * threads shared by the view, so that a transfer is not bound to a single
+ * HDFS read or write pipeline.
+ *
+ * Files read in sequence are opened ahead of the one being consumed, and
+ * small files are read ahead entirely. Larger files and ranges are read ahead
+ * in blocks with positional reads, several blocks at a time. Small files
+ * written in sequence are written concurrently.
+ */
+public class TransferEngine {
+  private final static Logger LOG =
+      LoggerFactory.getLogger(TransferEngine.class);
+
+  public static final int POOL_SIZE = 16;
+  public static final int FILES_AHEAD = 8;
+  public static final int SMALL_FILE_SIZE = 1024 * 1024;
+  public static final int BLOCK_SIZE = 4 * 1024 * 1024;
+  public static final int BLOCKS_AHEAD = 4;
+  public static final int BUFFER_SIZE = 64 * 1024;
+
+  private static final ExecutorService executor = Executors.newFixedThreadPool(POOL_SIZE, new ThreadFactory() {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "files-view-transfer-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
+  private final HdfsApi api;
+
+  public TransferEngine(HdfsApi api) {
+    this.api = api;
+  }
+
+  /**
+   * Consumer of the files read in sequence
+   */
+  public interface FileConsumer {
+    /**
+     * Called in order for each file which could be opened
+     * @param path file path
+     * @param in file content, closed once consumed
+     * @throws IOException to stop reading the remaining files
+     */
+    void consume(String path, InputStream in) throws IOException;
+
+    /**
+     * Called in order for each file which could not be opened
+     * @param path file path
+     * @param e error
+     * @throws IOException to stop reading the remaining files
+     */
+    void failed(String path, Exception e) throws IOException;
+  }
+
+  /**
+   * Read the given files in order, opening the next ones while the
+   * current one is consumed
+   * @param paths file paths
+   * @param consumer consumer of the files
+   * @throws IOException if the consumer failed
+   */
+  public void read(List<String> paths, FileConsumer consumer) throws IOException {
+    LinkedList<PendingFile> pending = new LinkedList<PendingFile>();
+    Iterator<String> iterator = paths.iterator();
+    try {
+      while (pending.size() < FILES_AHEAD && iterator.hasNext()) {
+        pending.add(open(iterator.next()));
+      }
+      while (!pending.isEmpty()) {
+        OpenedFile file = pending.poll().get();
+        if (iterator.hasNext()) {
+          pending.add(open(iterator.next()));
+        }
+
+        if (file.error != null) {
+          consumer.failed(file.path, file.error);
+          continue;
+        }
+        try {
+          consumer.consume(file.path, file.in);
+        } finally {
+          closeQuietly(file.in);
+        }
+      }
+    } finally {
+      for (PendingFile file : pending) {
+        file.abandon();
+      }
+    }
+  }
+
+  /**
+   * Read a range of an open file ahead in blocks
+   * @param in open file
+   * @param start offset of the first byte
+   * @param end offset after the last byte; reading stops at the end of the file
+   * @return stream of the range, closing the file when closed
+   */
+  public static InputStream readAhead(FSDataInputStream in, long start, long end) {
+    return new ReadAheadInputStream(in, start, end);
+  }
+
+  /**
+   * Start writing files concurrently
+   * @return writer of the files
+   */
+  public ParallelWriter startWriting() {
+    return new ParallelWriter();
+  }
+
+  /**
+   * Copy a stream
+   * @param in input
+   * @param out output
+   * @param transfer transfer to count the copied bytes in
+   * @throws IOException if the input can't be read or the output written
+   */
+  public static void copy(InputStream in, OutputStream out, TransferMonitor.Transfer transfer)
+      throws IOException {
+    byte[] chunk = new byte[BUFFER_SIZE];
+    int read;
+    while ((read = in.read(chunk)) != -1) {
+      out.write(chunk, 0, read);
+      transfer.addBytes(read);
+    }
+  }
+
+  private PendingFile open(String path) {
+    PendingFile file = new PendingFile(path);
+    file.future = executor.submit(file);
+    return file;
+  }
+
+  private OpenedFile openNow(String path) {
+    FSDataInputStream in = null;
+    try {
+      in = api.open(path);
+      byte[] head = readUpTo(in, SMALL_FILE_SIZE + 1);
+      if (head.length <= SMALL_FILE_SIZE) {
+        in.close();
+        return new OpenedFile(path, new ByteArrayInputStream(head), null);
+      }
+      return new OpenedFile(path, new SequenceInputStream(new ByteArrayInputStream(head),
+          new ReadAheadInputStream(in, head.length, Long.MAX_VALUE)), null);
+    } catch (Exception e) {
+      if (in != null) {
+        closeQuietly(in);
+      }
+      return new OpenedFile(path, null, e);
+    }
+  }
+
+  /**
+   * Read a stream until its end or until enough bytes are read
+   * @param in input
+   * @param max maximum number of bytes to read
+   * @return bytes read
+   * @throws IOException if the input can't be read
+   */
+  public static byte[] readUpTo(InputStream in, int max) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    byte[] chunk = new byte[BUFFER_SIZE];
+    int read;
+    while (bytes.size() < max && (read = in.read(chunk, 0, Math.min(chunk.length, max - bytes.size()))) != -1) {
+      bytes.write(chunk, 0, read);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static <T> T get(Future<T> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while transferring files");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  private static void closeQuietly(InputStream in) {
+    try {
+      in.close();
+    } catch (IOException e) {
+      LOG.debug("Unable to close transferred file", e);
+    }
+  }
+
+  /**
+   * File being opened ahead. A file which is abandoned before it is consumed
+   * is closed, whether it was opened already or is opened afterwards.
+   */
+  private class PendingFile implements Callable<OpenedFile> {
+    private final String path;
+    private Future<OpenedFile> future;
+    private boolean abandoned = false;
+    private OpenedFile opened;
+
+    private PendingFile(String path) {
+      this.path = path;
+    }
+
+    @Override
+    public OpenedFile call() {
+      OpenedFile file = openNow(path);
+      synchronized (this) {
+        if (!abandoned) {
+          opened = file;
+          return file;
+        }
+      }
+      if (file.in != null) {
+        closeQuietly(file.in);
+      }
+      return file;
+    }
+
+    private OpenedFile get() throws IOException {
+      return TransferEngine.get(future);
+    }
+
+    private void abandon() {
+      OpenedFile file;
+      synchronized (this) {
+        abandoned = true;
+        file = opened;
+      }
+      future.cancel(false);
+      if (file != null && file.in != null) {
+        closeQuietly(file.in);
+      }
+    }
+  }
+
+  private static class OpenedFile {
+    private final String path;
+    private final InputStream in;
+    private final Exception error;
+
+    private OpenedFile(String path, InputStream in, Exception error) {
+      this.path = path;
+      this.in = in;
+      this.error = error;
+    }
+  }
+
+  /**
+   * Stream of a range of a file, read ahead in blocks with positional reads
+   * which run concurrently. Blocks are only requested once the stream is read.
+   */
+  private static class ReadAheadInputStream extends InputStream {
+    private final FSDataInputStream in;
+    private final long end;
+    private final LinkedList<Future<byte[]>> blocks = new LinkedList<Future<byte[]>>();
+    private final LinkedList<Integer> blockSizes = new LinkedList<Integer>();
+    private long nextPosition;
+    private boolean eof = false;
+    private byte[] block;
+    private int blockOffset;
+
+    private ReadAheadInputStream(FSDataInputStream in, long start, long end) {
+      this.in = in;
+      this.nextPosition = start;
+      this.end = end;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] one = new byte[1];
+      int read = read(one, 0, 1);
+      return read == -1 ? -1 : one[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      if (length == 0) {
+        return 0;
+      }
+      if ((block == null || blockOffset == block.length) && !nextBlock()) {
+        return -1;
+      }
+      int count = Math.min(length, block.length - blockOffset);
+      System.arraycopy(block, blockOffset, buffer, offset, count);
+      blockOffset += count;
+      return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+      eof = true;
+      for (Future<byte[]> future : blocks) {
+        future.cancel(false);
+      }
+      blocks.clear();
+      blockSizes.clear();
+      in.close();
+    }
+
+    private boolean nextBlock() throws IOException {
+      requestBlocks();
+      Future<byte[]> future = blocks.poll();
+      if (future == null) {
+        return false;
+      }
+      int size = blockSizes.poll();
+      block = get(future);
+      blockOffset = 0;
+      if (block.length < size) {
+        // end of the file, the blocks after this one are empty
+        eof = true;
+        for (Future<byte[]> next : blocks) {
+          next.cancel(false);
+        }
+        blocks.clear();
+        blockSizes.clear();
+      } else {
+        requestBlocks();
+      }
+      return block.length > 0;
+    }
+
+    private void requestBlocks() {
+      while (!eof && blocks.size() < BLOCKS_AHEAD && nextPosition < end) {
+        final long position = nextPosition;
+        final int size = (int) Math.min(BLOCK_SIZE, end - position);
+        blocks.add(executor.submit(new Callable<byte[]>() {
+          @Override
+          public byte[] call() throws IOException {
+            byte[] buffer = new byte[size];
+            int filled = 0;
+            while (filled < size) {
+              int read = in.read(position + filled, buffer, filled, size - filled);
+              if (read < 0) {
+                break;
+              }
+              filled += read;
+            }
+            return filled == size ? buffer : Arrays.copyOf(buffer, filled);
+          }
+        }));
+        blockSizes.add(size);
+        nextPosition += size;
+      }
+    }
+  }
+
+  /**
+   * Writes small files concurrently, with a bounded number of files being
+   * written at a time. The first failure is reported by await().
+   */
+  public class ParallelWriter {
+    private final Semaphore permits = new Semaphore(FILES_AHEAD);
+    private volatile Exception failure;
+    private volatile boolean aborted = false;
+
+    /**
+     * Write a file, waiting if too many files are being written
+     * @param path file path
+     * @param content file content
+     * @throws IOException if writing a previous file failed
+     */
+    public void write(final String path, final byte[] content) throws IOException {
+      throwIfFailed();
+      try {
+        permits.acquire();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while writing " + path);
+      }
+      try {
+        executor.submit(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              if (aborted) {
+                return;
+              }
+              FSDataOutputStream out = api.create(path, false);
+              try {
+                out.write(content);
+              } finally {
+                out.close();
+              }
+            } catch (Exception e) {
+              LOG.error("Error writing file " + path, e);
+              failure = e;
+            } finally {
+              permits.release();
+            }
+          }
+        });
+      } catch (RuntimeException e) {
+        permits.release();
+        throw e;
+      }
+    }
+
+    /**
+     * Wait until the files are written
+     * @throws IOException if writing a file failed
+     */
+    public void await() throws IOException {
+      try {
+        permits.acquire(FILES_AHEAD);
+        permits.release(FILES_AHEAD);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while writing files");
+      }
+      throwIfFailed();
+    }
+
+    /**
+     * Skip the files which are not being written yet and wait for the
+     * others, once the transfer has failed
+     */
+    public void abort() {
+      aborted = true;
+      permits.acquireUninterruptibly(FILES_AHEAD);
+      permits.release(FILES_AHEAD);
+    }
+
+    private void throwIfFailed() throws IOException {
+      Exception e = failure;
+      if (e instanceof IOException) {
+        throw (IOException) e;
+      }
+      if (e != null) {
+        throw new IOException(e.getMessage(), e);
+      }
+    }
+  }
+}
@@ -0,0 +1,249 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.view.filebrowser;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.ambari.view.ViewContext;
+
+/**
+ * Progress and throughput of the uploads and downloads of a view instance.
+ * Running transfers are kept until they end, and a limited number of ended
+ * transfers is kept afterwards so that their statistics can still be read.
+ */
+public class TransferMonitor {
+  public static final int MAX_ENDED_TRANSFERS = 50;
+
+  private static Map<String, TransferMonitor> viewSingletonObjects = new HashMap<String, TransferMonitor>();
+  public static synchronized TransferMonitor getInstance(ViewContext context) {
+    if (!viewSingletonObjects.containsKey(context.getInstanceName()))
+      viewSingletonObjects.put(context.getInstanceName(), new TransferMonitor());
+    return viewSingletonObjects.get(context.getInstanceName());
+  }
+
+  private final LinkedHashMap<String, Transfer> transfers = new LinkedHashMap<String, Transfer>();
+
+  /**
+   * Start monitoring a transfer
+   * @param type transfer type, e.g. "zip" or "upload"
+   * @param name name of the transferred file
+   * @param username user doing the transfer
+   * @param totalBytes size of the transfer, or -1 if not known
+   * @return transfer to update while it runs
+   */
+  public Transfer start(String type, String name, String username, long totalBytes) {
+    return start(create(type, name, username, totalBytes));
+  }
+
+  /**
+   * Create a transfer which is only monitored once started, for the
+   * responses which are written after they are returned
+   * @param type transfer type, e.g. "zip" or "upload"
+   * @param name name of the transferred file
+   * @param username user doing the transfer
+   * @param totalBytes size of the transfer, or -1 if not known
+   * @return transfer to start
+   */
+  public Transfer create(String type, String name, String username, long totalBytes) {
+    return new Transfer(UUID.randomUUID().toString().replaceAll("-", ""), type, name, username, totalBytes);
+  }
+
+  /**
+   * Start monitoring a created transfer
+   * @param transfer transfer
+   * @return the transfer
+   */
+  public synchronized Transfer start(Transfer transfer) {
+    transfers.put(transfer.getId(), transfer);
+    removeEndedTransfers();
+    return transfer;
+  }
+
+  /**
+   * Statistics of the transfers of a user, oldest first
+   * @param username user name
+   * @return list of transfer statistics
+   */
+  public synchronized List<Map<String, Object>> getTransfers(String username) {
+    List<Map<String, Object>> result = new ArrayList<Map<String, Object>>();
+    for (Transfer transfer : transfers.values()) {
+      if (transfer.getUsername().equals(username)) {
+        result.add(transfer.toJSON());
+      }
+    }
+    return result;
+  }
+
+  private void removeEndedTransfers() {
+    int ended = 0;
+    for (Transfer transfer : transfers.values()) {
+      if (transfer.isEnded()) {
+        ended++;
+      }
+    }
+    Iterator<Transfer> iterator = transfers.values().iterator();
+    while (ended > MAX_ENDED_TRANSFERS && iterator.hasNext()) {
+      if (iterator.next().isEnded()) {
+        iterator.remove();
+        ended--;
+      }
+    }
+  }
+
+  /**
+   * A single upload or download
+   */
+  public static class Transfer {
+    public static final String RUNNING = "RUNNING";
+    public static final String SUCCEEDED = "SUCCEEDED";
+    public static final String FAILED = "FAILED";
+
+    private final String id;
+    private final String type;
+    private final String name;
+    private final String username;
+    private final long startTime = System.currentTimeMillis();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong files = new AtomicLong();
+    private volatile long totalBytes;
+    private volatile long endTime = -1;
+    private volatile String status = RUNNING;
+
+    private Transfer(String id, String type, String name, String username, long totalBytes) {
+      this.id = id;
+      this.type = type;
+      this.name = name;
+      this.username = username;
+      this.totalBytes = totalBytes;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public String getUsername() {
+      return username;
+    }
+
+    public boolean isEnded() {
+      return endTime >= 0;
+    }
+
+    public void setTotalBytes(long totalBytes) {
+      this.totalBytes = totalBytes;
+    }
+
+    public void addBytes(long count) {
+      bytes.addAndGet(count);
+    }
+
+    public void addFile() {
+      files.incrementAndGet();
+    }
+
+    public long getBytes() {
+      return bytes.get();
+    }
+
+    /**
+     * Mark the transfer as ended; only the first call has an effect
+     * @param succeeded whether all of the data was transferred
+     */
+    public synchronized void end(boolean succeeded) {
+      if (!isEnded()) {
+        status = succeeded ? SUCCEEDED : FAILED;
+        endTime = System.currentTimeMillis();
+      }
+    }
+
+    public Map<String, Object> toJSON() {
+      long duration = (isEnded() ? endTime : System.currentTimeMillis()) - startTime;
+      long transferred = bytes.get();
+
+      Map<String, Object> json = new LinkedHashMap<String, Object>();
+      json.put("id", id);
+      json.put("type", type);
+      json.put("name", name);
+      json.put("status", status);
+      json.put("startTime", startTime);
+      json.put("duration", duration);
+      json.put("bytes", transferred);
+      json.put("totalBytes", totalBytes);
+      json.put("files", files.get());
+      json.put("bytesPerSecond", duration > 0 ? transferred * 1000 / duration : 0);
+      json.put("progress", totalBytes > 0 ? Math.min(1.0, (double) transferred / totalBytes) : (SUCCEEDED.equals(status) ? 1.0 : 0.0));
+      return json;
+    }
+  }
+
+  /**
+   * Stream counting the bytes read in a transfer. The transfer ends when the
+   * stream is closed, it succeeded if the stream was read to the end.
+   */
+  public static class MonitoredInputStream extends FilterInputStream {
+    private final Transfer transfer;
+    private boolean eof = false;
+
+    public MonitoredInputStream(InputStream in, Transfer transfer) {
+      super(in);
+      this.transfer = transfer;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int read = super.read();
+      if (read == -1) {
+        eof = true;
+      } else {
+        transfer.addBytes(1);
+      }
+      return read;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      int read = super.read(buffer, offset, length);
+      if (read == -1) {
+        eof = true;
+      } else {
+        transfer.addBytes(read);
+      }
+      return read;
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        super.close();
+      } finally {
+        transfer.end(eof);
+      }
+    }
+  }
+}
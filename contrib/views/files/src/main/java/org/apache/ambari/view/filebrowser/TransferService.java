@@ -0,0 +1,53 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.view.filebrowser;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.apache.ambari.view.ViewContext;
+import org.json.simple.JSONObject;
+
+/**
+ * Transfers service
+ */
+public class TransferService extends HdfsService {
+
+  /**
+   * Constructor
+   * @param context View Context instance
+   */
+  public TransferService(ViewContext context) {
+    super(context);
+  }
+
+  /**
+   * Progress and throughput of the uploads and downloads of the current user
+   * @return transfers statistics
+   */
+  @GET
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response transfers() {
+    JSONObject json = new JSONObject();
+    json.put("transfers", TransferMonitor.getInstance(context).getTransfers(context.getUsername()));
+    return Response.ok(json).build();
+  }
+}
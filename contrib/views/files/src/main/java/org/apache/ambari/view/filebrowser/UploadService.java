@@ -28,6 +28,8 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
 import org.apache.ambari.view.ViewContext;
+import org.apache.ambari.view.filebrowser.TransferMonitor.MonitoredInputStream;
+import org.apache.ambari.view.filebrowser.TransferMonitor.Transfer;
 import org.apache.ambari.view.filebrowser.utils.ServiceFormattedException;
 import org.apache.ambari.view.utils.hdfs.HdfsApi;
 import org.apache.hadoop.fs.FSDataOutputStream;
@@ -50,11 +52,17 @@ public class UploadService extends HdfsService {
 
   private void uploadFile(final String filePath, InputStream uploadedInputStream)
       throws IOException, InterruptedException {
+    uploadFile(filePath, new byte[0], uploadedInputStream);
+  }
+
+  private void uploadFile(final String filePath, byte[] head, InputStream uploadedInputStream)
+      throws IOException, InterruptedException {
     int read;
-    byte[] chunk = new byte[1024];
+    byte[] chunk = new byte[TransferEngine.BUFFER_SIZE];
     FSDataOutputStream out = null;
     try {
       out = getApi(context).create(filePath, false);
+      out.write(head);
       while ((read = uploadedInputStream.read(chunk)) != -1) {
         out.write(chunk, 0, read);
       }
@@ -65,6 +73,10 @@ public class UploadService extends HdfsService {
     }
   }
 
+  private TransferMonitor getTransferMonitor() {
+    return TransferMonitor.getInstance(context);
+  }
+
   /**
    * Upload file
    * @param uploadedInputStream file input stream
@@ -83,7 +95,18 @@ public class UploadService extends HdfsService {
       if (!path.endsWith("/"))
         path = path + "/";
       String filePath = path + contentDisposition.getFileName();
-      uploadFile(filePath, uploadedInputStream);
+      Transfer transfer = getTransferMonitor().start("upload", filePath, context.getUsername(),
+          contentDisposition.getSize());
+      MonitoredInputStream in = new MonitoredInputStream(uploadedInputStream, transfer);
+      boolean succeeded = false;
+      try {
+        uploadFile(filePath, in);
+        transfer.addFile();
+        succeeded = true;
+      } finally {
+        transfer.end(succeeded);
+        in.close();
+      }
       return Response.ok(
           getApi(context).fileStatusToJSON(getApi(context).getFileStatus(filePath)))
           .build();
@@ -95,7 +118,8 @@ public class UploadService extends HdfsService {
   }
 
   /**
-   * Upload zip and unpack
+   * Upload zip and unpack. Small files are written to HDFS concurrently
+   * while the next entries are unpacked.
    * @param uploadedInputStream file input stream
    * @param contentDisposition content disposition
    * @param path path
@@ -114,17 +138,38 @@ public class UploadService extends HdfsService {
     try {
       if (!path.endsWith("/"))
         path = path + "/";
-      ZipInputStream zip = new ZipInputStream(uploadedInputStream);
-      ZipEntry ze = zip.getNextEntry();
+      Transfer transfer = getTransferMonitor().start("upload-zip", path + contentDisposition.getFileName(),
+          context.getUsername(), contentDisposition.getSize());
+      MonitoredInputStream in = new MonitoredInputStream(uploadedInputStream, transfer);
       HdfsApi api = getApi(context);
-      while (ze != null) {
-        String filePath = path + ze.getName();
-        if (ze.isDirectory()) {
-          api.mkdir(filePath);
-        } else {
-          uploadFile(filePath, zip);
+      boolean succeeded = false;
+      TransferEngine.ParallelWriter writer = new TransferEngine(api).startWriting();
+      try {
+        ZipInputStream zip = new ZipInputStream(in);
+        ZipEntry ze = zip.getNextEntry();
+        while (ze != null) {
+          String filePath = path + ze.getName();
+          if (ze.isDirectory()) {
+            api.mkdir(filePath);
+          } else {
+            byte[] head = TransferEngine.readUpTo(zip, TransferEngine.SMALL_FILE_SIZE + 1);
+            if (head.length <= TransferEngine.SMALL_FILE_SIZE) {
+              writer.write(filePath, head);
+            } else {
+              uploadFile(filePath, head, zip);
+            }
+            transfer.addFile();
+          }
+          ze = zip.getNextEntry();
+        }
+        writer.await();
+        succeeded = true;
+      } finally {
+        if (!succeeded) {
+          writer.abort();
         }
-        ze = zip.getNextEntry();
+        transfer.end(succeeded);
+        in.close();
       }
       return Response.ok(getApi(context).fileStatusToJSON(api.listdir(path))).build();
     } catch (WebApplicationException ex) {
@@ -23,21 +23,30 @@ import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
 
 import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.InputStream;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
 import org.apache.ambari.view.ViewContext;
 import org.apache.ambari.view.ViewResourceHandler;
+import org.apache.commons.io.IOUtils;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileUtil;
 import org.apache.hadoop.hdfs.MiniDFSCluster;
@@ -131,7 +140,7 @@ public class FilebrowserTest{
         MediaType.APPLICATION_OCTET_STREAM_TYPE);
 
     Response response = fileBrowserService.upload().uploadFile(content,
-        inputStreamBody.getFormDataContentDisposition(), "/tmp/");
+        inputStreamBody.getFormDataContentDisposition(), path);
     return response;
   }
 
@@ -154,7 +163,7 @@ public class FilebrowserTest{
     String fileName = file.getName();
     fileBrowserService.fileOps().mkdir(request);
     for (int i = 0; i < 10; i++) {
-      uploadFile(dirPath, fileName + i, ".txt", "Hello world" + i);
+      uploadFile(dirPath + "/", fileName + i, ".txt", "Hello world" + i);
     }
   }
 
@@ -166,6 +175,58 @@ public class FilebrowserTest{
     dr.entries = new String[] { gzipDir };
 
     Response result = fileBrowserService.download().downloadGZip(dr);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ((StreamingOutput) result.getEntity()).write(out);
+
+    Set<String> files = new HashSet<String>();
+    ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()));
+    ZipEntry entry;
+    while ((entry = zip.getNextEntry()) != null) {
+      if (!entry.isDirectory()) {
+        files.add(entry.getName() + ":" + IOUtils.toString(zip));
+      }
+    }
+    zip.close();
+    Assert.assertEquals(10, files.size());
+    Assert.assertTrue(files.contains("tmp/testGzip/testGzip3.txt:Hello world3"));
+  }
+
+  @Test
+  public void testRangeDownload() throws Exception {
+    uploadFile("/tmp/", "testRange", ".tmp", "Hello world");
+
+    HttpHeaders rangeHeaders = createNiceMock(HttpHeaders.class);
+    expect(rangeHeaders.getRequestHeader("Range")).andReturn(Collections.singletonList("bytes=6-")).anyTimes();
+    replay(rangeHeaders);
+    Response response = fileBrowserService.download().browse("/tmp/testRange.tmp", true, false, rangeHeaders, uriInfo);
+    Assert.assertEquals(206, response.getStatus());
+    Assert.assertEquals("bytes 6-10/11", response.getMetadata().getFirst("Content-Range"));
+    Assert.assertEquals("world", IOUtils.toString((InputStream) response.getEntity()));
+
+    HttpHeaders unsatisfiableHeaders = createNiceMock(HttpHeaders.class);
+    expect(unsatisfiableHeaders.getRequestHeader("Range")).andReturn(Collections.singletonList("bytes=20-")).anyTimes();
+    replay(unsatisfiableHeaders);
+    response = fileBrowserService.download().browse("/tmp/testRange.tmp", true, false, unsatisfiableHeaders, uriInfo);
+    Assert.assertEquals(416, response.getStatus());
+  }
+
+  @Test
+  public void testGetRange() throws Exception {
+    Assert.assertNull(DownloadService.getRange(httpHeaders, 100));
+    Assert.assertArrayEquals(new long[]{10, 20}, getRange("bytes=10-19", 100));
+    Assert.assertArrayEquals(new long[]{10, 100}, getRange("bytes=10-", 100));
+    Assert.assertArrayEquals(new long[]{90, 100}, getRange("bytes=-10", 100));
+    Assert.assertArrayEquals(new long[]{90, 100}, getRange("bytes=90-200", 100));
+    Assert.assertArrayEquals(new long[]{100, 100}, getRange("bytes=100-", 100));
+    Assert.assertNull(getRange("bytes=0-1,5-6", 100));
+    Assert.assertNull(getRange("bytes=20-10", 100));
+  }
+
+  private long[] getRange(String range, long length) {
+    HttpHeaders headers = createNiceMock(HttpHeaders.class);
+    expect(headers.getRequestHeader("Range")).andReturn(Collections.singletonList(range)).anyTimes();
+    replay(headers);
+    return DownloadService.getRange(headers, length);
   }
 
   @Test
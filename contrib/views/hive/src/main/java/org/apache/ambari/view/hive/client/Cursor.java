@@ -31,7 +31,8 @@ import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 import java.util.*;
 
 public class Cursor implements Iterator<Row>, Iterable<Row> {
-  private final int FETCH_SIZE = 50;
+  private static final int FETCH_SIZE = 50;
+  private int fetchSize = FETCH_SIZE;
 
   private TCLIService.Client client;
   private TOperationHandle opHandle;
@@ -86,7 +87,15 @@ public class Cursor implements Iterator<Row>, Iterable<Row> {
   }
 
   protected TFetchResultsReq getFetchResultsReq(TFetchOrientation orientation) {
-    return new TFetchResultsReq(opHandle, orientation, FETCH_SIZE);
+    return new TFetchResultsReq(opHandle, orientation, fetchSize);
+  }
+
+  /**
+   * Set the number of rows requested from the server in a single fetch
+   * @param fetchSize rows per fetch
+   */
+  public void setFetchSize(int fetchSize) {
+    this.fetchSize = fetchSize;
   }
 
   public ArrayList<ColumnDescription> getSchema() throws HiveClientException {
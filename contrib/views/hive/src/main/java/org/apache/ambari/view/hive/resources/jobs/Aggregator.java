@@ -37,9 +37,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -64,62 +68,161 @@ public class Aggregator {
   protected final static Logger LOG =
       LoggerFactory.getLogger(Aggregator.class);
 
+  /**
+   * Maximum number of view jobs to read the operation handles of in one request
+   */
+  private static final int OPERATION_HANDLES_BATCH_SIZE = 100;
+
   private final IATSParser ats;
   private final IOperationHandleResourceManager operationHandleResourceManager;
   private IResourceManager<Job> viewJobResourceManager;
+  private final JobsIndex jobsIndex;
 
   public Aggregator(IResourceManager<Job> jobResourceManager,
                     IOperationHandleResourceManager operationHandleResourceManager,
                     IATSParser ats) {
+    this(jobResourceManager, operationHandleResourceManager, ats, new JobsIndex());
+  }
+
+  public Aggregator(IResourceManager<Job> jobResourceManager,
+                    IOperationHandleResourceManager operationHandleResourceManager,
+                    IATSParser ats,
+                    JobsIndex jobsIndex) {
     this.viewJobResourceManager = jobResourceManager;
     this.operationHandleResourceManager = operationHandleResourceManager;
     this.ats = ats;
+    this.jobsIndex = jobsIndex;
   }
 
   public List<Job> readAll(String username) {
-      Set<String> addedOperationIds = new HashSet<String>();
+    synchronized (jobsIndex) {
+      List<Job> viewJobs = viewJobResourceManager.readAll(new OnlyOwnersFilteringStrategy(username));
+      Map<String, Job> viewJobsByGuid = getViewJobsByOperationGuid(viewJobs);
 
-    List<Job> allJobs = new LinkedList<Job>();
-    for (HiveQueryId atsHiveQuery : ats.getHiveQueryIdsList(username)) {
+      syncATSQueries(username, viewJobsByGuid);
 
-      TezDagId atsTezDag = getTezDagFromHiveQueryId(atsHiveQuery);
+      Set<String> addedOperationIds = new HashSet<String>();
 
-      JobImpl atsJob;
-      if (hasOperationId(atsHiveQuery)) {
-        try {
-          Job viewJob = getJobByOperationId(urlSafeBase64ToHexString(atsHiveQuery.operationId));
-          saveJobInfoIfNeeded(atsHiveQuery, atsTezDag, viewJob);
+      List<Job> allJobs = new LinkedList<Job>();
+      for (JobsIndex.IndexedQuery query : jobsIndex.getQueries()) {
+        HiveQueryId atsHiveQuery = query.getHiveQueryId();
+        TezDagId atsTezDag = query.getTezDagId();
+
+        Job viewJob = null;
+        if (hasOperationId(atsHiveQuery)) {
+          viewJob = viewJobsByGuid.get(urlSafeBase64ToHexString(atsHiveQuery.operationId));
+        }
 
+        JobImpl atsJob;
+        if (viewJob != null) {
           atsJob = mergeAtsJobWithViewJob(atsHiveQuery, atsTezDag, viewJob);
-        } catch (ItemNotFound itemNotFound) {
-          // Executed from HS2, but outside of Hive View
+        } else {
+          // Executed outside of HS2, or from HS2 but outside of Hive View
           atsJob = atsOnlyJob(atsHiveQuery, atsTezDag);
         }
-      } else {
-        atsJob = atsOnlyJob(atsHiveQuery, atsTezDag);
+        allJobs.add(atsJob);
+
+        addedOperationIds.add(atsHiveQuery.operationId);
+      }
+
+      //cover case when operationId is present, but not exists in ATS
+      //e.g. optimized queries without executing jobs, like "SELECT * FROM TABLE"
+      for (Job job : viewJobs) {
+        String guid = jobsIndex.getOperationGuid(job.getId());
+
+        if (guid != null && !addedOperationIds.contains(hexStringToUrlSafeBase64(guid))) {
+          //e.g. query without hadoop job: select * from table
+          allJobs.add(job);
+        }
       }
-      allJobs.add(atsJob);
 
-      addedOperationIds.add(atsHiveQuery.operationId);
+      return allJobs;
     }
+  }
 
-    //cover case when operationId is present, but not exists in ATS
-    //e.g. optimized queries without executing jobs, like "SELECT * FROM TABLE"
-    for (Job job : viewJobResourceManager.readAll(new OnlyOwnersFilteringStrategy(username))) {
-      List<StoredOperationHandle> operationHandles = operationHandleResourceManager.readJobRelatedHandles(job);
-      assert operationHandles.size() <= 1;
+  /**
+   * Read the queries started since the last synchronization, and the queries
+   * which were still running, from ATS into the jobs index
+   */
+  private void syncATSQueries(String username, Map<String, Job> viewJobsByGuid) {
+    List<HiveQueryId> atsHiveQueries;
+    if (jobsIndex.isSynced()) {
+      long startTime = jobsIndex.getSyncStartTime(System.currentTimeMillis() / 1000);
+      // window start is exclusive and in milliseconds
+      atsHiveQueries = ats.getHiveQueryIdsList(username, startTime * 1000 - 1);
+    } else {
+      atsHiveQueries = ats.getHiveQueryIdsList(username);
+    }
 
-      if (operationHandles.size() > 0) {
-        StoredOperationHandle operationHandle = operationHandles.get(0);
+    for (HiveQueryId atsHiveQuery : atsHiveQueries) {
+      TezDagId atsTezDag = getTezDagFromHiveQueryId(atsHiveQuery);
 
-        if (!addedOperationIds.contains(hexStringToUrlSafeBase64(operationHandle.getGuid()))) {
-          //e.g. query without hadoop job: select * from table
-          allJobs.add(job);
+      if (hasOperationId(atsHiveQuery)) {
+        Job viewJob = viewJobsByGuid.get(urlSafeBase64ToHexString(atsHiveQuery.operationId));
+        if (viewJob != null) {
+          try {
+            saveJobInfoIfNeeded(atsHiveQuery, atsTezDag, viewJob);
+          } catch (ItemNotFound itemNotFound) {
+            LOG.debug("Job " + viewJob.getId() + " was removed while reading its ATS info");
+          }
+        }
+      }
+      jobsIndex.putQuery(atsHiveQuery, atsTezDag);
+    }
+    jobsIndex.setSynced(true);
+  }
+
+  /**
+   * Map the view jobs by the guids of their operation handles. The handles of
+   * jobs not in the jobs index yet are read in batches.
+   */
+  private Map<String, Job> getViewJobsByOperationGuid(List<Job> viewJobs) {
+    List<String> unknownJobIds = new ArrayList<String>();
+    for (Job job : viewJobs) {
+      if (jobsIndex.getOperationGuid(job.getId()) == null) {
+        unknownJobIds.add(job.getId());
+      }
+    }
+
+    for (int i = 0; i < unknownJobIds.size(); i += OPERATION_HANDLES_BATCH_SIZE) {
+      List<String> jobIds = unknownJobIds.subList(i, Math.min(i + OPERATION_HANDLES_BATCH_SIZE, unknownJobIds.size()));
+      for (StoredOperationHandle operationHandle : readJobsRelatedHandles(jobIds)) {
+        if (jobsIndex.getOperationGuid(operationHandle.getJobId()) == null) {
+          jobsIndex.putOperationGuid(operationHandle.getJobId(), operationHandle.getGuid());
         }
       }
     }
 
-    return allJobs;
+    Map<String, Job> viewJobsByGuid = new HashMap<String, Job>();
+    for (Job job : viewJobs) {
+      String guid = jobsIndex.getOperationGuid(job.getId());
+      if (guid != null) {
+        viewJobsByGuid.put(guid, job);
+      }
+    }
+    return viewJobsByGuid;
+  }
+
+  private List<StoredOperationHandle> readJobsRelatedHandles(final Collection<String> jobIds) {
+    return operationHandleResourceManager.readAll(new FilteringStrategy() {
+      @Override
+      public boolean isConform(Indexed item) {
+        StoredOperationHandle opHandle = (StoredOperationHandle) item;
+        return opHandle.getJobId() != null && jobIds.contains(opHandle.getJobId());
+      }
+
+      @Override
+      public String whereStatement() {
+        StringBuilder ids = new StringBuilder();
+        for (String jobId : jobIds) {
+          if (ids.length() > 0) {
+            ids.append(",");
+          }
+          ids.append("'").append(jobId).append("'");
+        }
+        return "jobId IN (" + ids + ")";
+      }
+    });
   }
 
   public Job readATSJob(Job viewJob) throws ItemNotFound {
@@ -211,26 +314,6 @@ public class Aggregator {
     return atsJob;
   }
 
-  protected Job getJobByOperationId(final String opId) throws ItemNotFound {
-    List<StoredOperationHandle> operationHandles = operationHandleResourceManager.readAll(new FilteringStrategy() {
-      @Override
-      public boolean isConform(Indexed item) {
-        StoredOperationHandle opHandle = (StoredOperationHandle) item;
-        return opHandle.getGuid().equals(opId);
-      }
-
-      @Override
-      public String whereStatement() {
-        return "guid='" + opId + "'";
-      }
-    });
-
-    if (operationHandles.size() != 1)
-      throw new ItemNotFound();
-
-    return viewJobResourceManager.read(operationHandles.get(0).getJobId());
-  }
-
   protected static String urlSafeBase64ToHexString(String urlsafeBase64){
     byte[] decoded = Base64.decodeBase64(urlsafeBase64);
 
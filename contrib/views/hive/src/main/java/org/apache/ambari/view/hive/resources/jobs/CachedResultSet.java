@@ -0,0 +1,374 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.view.hive.resources.jobs;
+
+import org.apache.ambari.view.hive.client.ColumnDescription;
+import org.apache.ambari.view.hive.client.Cursor;
+import org.apache.ambari.view.hive.client.HiveClientException;
+import org.apache.ambari.view.hive.utils.ServiceFormattedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Results of a search, fetched from the cursor in chunks of rows which are kept
+ * column by column, so that pages can be read at any offset and read again
+ * without going back to HiveServer2.
+ *
+ * At most a fixed number of chunks is kept in memory; the least recently read
+ * chunks beyond that are spilled to a local file and read back when needed.
+ * The file is deleted by {@link #close()}, which must be called once the
+ * results are no longer needed.
+ * When a page from the last fetched chunk is read, the next chunk is fetched
+ * in the background while the user looks at the current page.
+ */
+public class CachedResultSet {
+  private final static Logger LOG =
+      LoggerFactory.getLogger(CachedResultSet.class);
+
+  public static final int CHUNK_SIZE = 1000;
+  public static final int MAX_CHUNKS_IN_MEMORY = 10;
+
+  private static final ExecutorService fetchAheadExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "hive-results-fetch-ahead-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
+  private final Cursor cursor;
+  private final ArrayList<ColumnDescription> schema;
+  private final int chunkSize;
+  private final int maxChunksInMemory;
+
+  /**
+   * Held while reading from the cursor, which is only read sequentially.
+   */
+  private final Object fetchLock = new Object();
+
+  private final List<Chunk> chunks = new ArrayList<Chunk>();
+  private final LinkedHashMap<Integer, Chunk> chunksInMemory = new LinkedHashMap<Integer, Chunk>(16, 0.75f, true);
+  private long fetchedRows = 0;
+  private boolean exhausted = false;
+  private boolean closed = false;
+  private long position = 0;
+  private Future<?> fetchAhead;
+
+  private File spillFile;
+  private RandomAccessFile spill;
+
+  public CachedResultSet(Cursor cursor) throws HiveClientException {
+    this(cursor, CHUNK_SIZE, MAX_CHUNKS_IN_MEMORY);
+  }
+
+  /**
+   * Cache results which are read in pages: rows are fetched a page at a time,
+   * so the first page does not wait for a whole default chunk, and as many
+   * rows are kept in memory as with the default chunks.
+   * @param cursor results
+   * @param pageSize rows per page
+   * @throws HiveClientException if the schema can't be read
+   */
+  public CachedResultSet(Cursor cursor, int pageSize) throws HiveClientException {
+    this(cursor, Math.max(1, pageSize), CHUNK_SIZE * MAX_CHUNKS_IN_MEMORY / Math.max(1, pageSize));
+  }
+
+  public CachedResultSet(Cursor cursor, int chunkSize, int maxChunksInMemory) throws HiveClientException {
+    this.cursor = cursor;
+    this.schema = cursor.getSchema();
+    this.chunkSize = chunkSize;
+    this.maxChunksInMemory = Math.max(1, maxChunksInMemory);
+    cursor.setFetchSize(chunkSize);
+  }
+
+  public ArrayList<ColumnDescription> getSchema() {
+    return schema;
+  }
+
+  /**
+   * Offset of the row returned by the next read
+   * @return row offset
+   */
+  public synchronized long getOffset() {
+    return position;
+  }
+
+  /**
+   * Move to another row; following reads start from it
+   * @param offset row offset
+   */
+  public synchronized void seek(long offset) {
+    position = Math.max(0, offset);
+  }
+
+  /**
+   * Whether a row exists at the current offset. May fetch from the cursor.
+   * @return true if the next read returns at least one row
+   */
+  public boolean hasNext() {
+    long offset = getOffset();
+    if (!ensureFetched(chunkIndex(offset))) {
+      return false;
+    }
+    synchronized (this) {
+      return offset < fetchedRows;
+    }
+  }
+
+  /**
+   * Read rows starting from the current offset and move past them
+   * @param count maximum number of rows
+   * @return rows read
+   */
+  public ArrayList<Object[]> read(int count) {
+    long offset = getOffset();
+    ArrayList<Object[]> rows = new ArrayList<Object[]>(count);
+
+    while (rows.size() < count) {
+      long rowIndex = offset + rows.size();
+      int chunkIndex = chunkIndex(rowIndex);
+      if (!ensureFetched(chunkIndex)) {
+        break;
+      }
+
+      synchronized (this) {
+        Chunk chunk = chunks.get(chunkIndex);
+        int first = (int) (rowIndex - (long) chunkIndex * chunkSize);
+        if (first >= chunk.rowCount) {
+          break;
+        }
+        Object[][] columns = load(chunkIndex);
+        int last = Math.min(chunk.rowCount, first + count - rows.size());
+        for (int i = first; i < last; i++) {
+          Object[] row = new Object[columns.length];
+          for (int column = 0; column < columns.length; column++) {
+            row[column] = columns[column][i];
+          }
+          rows.add(row);
+        }
+      }
+    }
+
+    synchronized (this) {
+      position = offset + rows.size();
+    }
+    fetchAheadIfNeeded();
+    return rows;
+  }
+
+  /**
+   * Release the cached chunks and delete the spill file; the results can't be
+   * read afterwards
+   */
+  public synchronized void close() {
+    closed = true;
+    if (fetchAhead != null) {
+      fetchAhead.cancel(false);
+    }
+    chunks.clear();
+    chunksInMemory.clear();
+    if (spill != null) {
+      try {
+        spill.close();
+      } catch (IOException e) {
+        LOG.warn("Unable to close results spill file " + spillFile, e);
+      }
+      spill = null;
+    }
+    if (spillFile != null) {
+      if (!spillFile.delete()) {
+        LOG.warn("Unable to delete results spill file " + spillFile);
+      }
+      spillFile = null;
+    }
+  }
+
+  private int chunkIndex(long rowIndex) {
+    return (int) (rowIndex / chunkSize);
+  }
+
+  private boolean ensureFetched(int chunkIndex) {
+    while (true) {
+      synchronized (this) {
+        if (closed) {
+          throw new ServiceFormattedException("Results are no longer available");
+        }
+        if (chunkIndex < chunks.size()) {
+          return true;
+        }
+        if (exhausted) {
+          return false;
+        }
+      }
+      fetchNextChunk();
+    }
+  }
+
+  private void fetchNextChunk() {
+    synchronized (fetchLock) {
+      synchronized (this) {
+        if (exhausted || closed) {
+          return;
+        }
+      }
+
+      ArrayList<Object[]> rows = new ArrayList<Object[]>(chunkSize);
+      int read = cursor.readRaw(rows, chunkSize);
+
+      synchronized (this) {
+        if (closed) {
+          return;
+        }
+        if (read > 0) {
+          Chunk chunk = new Chunk(rows);
+          chunks.add(chunk);
+          chunksInMemory.put(chunks.size() - 1, chunk);
+          fetchedRows += read;
+          spillIfNeeded();
+        }
+        if (read < chunkSize) {
+          exhausted = true;
+        }
+      }
+    }
+  }
+
+  private synchronized void fetchAheadIfNeeded() {
+    if (exhausted || closed || (fetchAhead != null && !fetchAhead.isDone())) {
+      return;
+    }
+    if (chunkIndex(position) + 1 < chunks.size()) {
+      return;
+    }
+    fetchAhead = fetchAheadExecutor.submit(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          fetchNextChunk();
+        } catch (Exception e) {
+          LOG.warn("Unable to fetch results ahead, they will be fetched on the next read", e);
+        }
+      }
+    });
+  }
+
+  private Object[][] load(int chunkIndex) {
+    Chunk chunk = chunks.get(chunkIndex);
+    if (chunk.columns == null) {
+      try {
+        byte[] bytes = new byte[chunk.spillLength];
+        spill.seek(chunk.spillOffset);
+        spill.readFully(bytes);
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        chunk.columns = (Object[][]) in.readObject();
+      } catch (IOException e) {
+        throw new ServiceFormattedException("Unable to read spilled results", e);
+      } catch (ClassNotFoundException e) {
+        throw new ServiceFormattedException("Unable to read spilled results", e);
+      }
+    }
+    Object[][] columns = chunk.columns;
+    chunksInMemory.put(chunkIndex, chunk);
+    spillIfNeeded();
+    return columns;
+  }
+
+  private void spillIfNeeded() {
+    Iterator<Map.Entry<Integer, Chunk>> iterator = chunksInMemory.entrySet().iterator();
+    while (chunksInMemory.size() > maxChunksInMemory && iterator.hasNext()) {
+      Chunk chunk = iterator.next().getValue();
+      if (spill(chunk)) {
+        iterator.remove();
+      }
+    }
+  }
+
+  private boolean spill(Chunk chunk) {
+    if (chunk.spillOffset < 0) {
+      try {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(chunk.columns);
+        out.close();
+
+        if (spill == null) {
+          spillFile = File.createTempFile("hive-results", ".spill");
+          spill = new RandomAccessFile(spillFile, "rw");
+        }
+        chunk.spillOffset = spill.length();
+        chunk.spillLength = bytes.size();
+        spill.seek(chunk.spillOffset);
+        spill.write(bytes.toByteArray());
+      } catch (NotSerializableException e) {
+        LOG.debug("Keeping results chunk in memory, it has values which can't be spilled", e);
+        return false;
+      } catch (IOException e) {
+        LOG.warn("Unable to spill results chunk, keeping it in memory", e);
+        return false;
+      }
+    }
+    chunk.columns = null;
+    return true;
+  }
+
+  /**
+   * Rows of a chunk stored column by column; the columns are released when the
+   * chunk is spilled, it is immutable so it is only written to the file once.
+   */
+  private static class Chunk {
+    private final int rowCount;
+    private Object[][] columns;
+    private long spillOffset = -1;
+    private int spillLength;
+
+    private Chunk(List<Object[]> rows) {
+      rowCount = rows.size();
+      int width = rows.get(0).length;
+      columns = new Object[width][rowCount];
+      for (int i = 0; i < rowCount; i++) {
+        Object[] row = rows.get(i);
+        for (int column = 0; column < width; column++) {
+          columns[column][i] = row[column];
+        }
+      }
+    }
+  }
+}
@@ -84,7 +84,8 @@ public class JobService extends BaseService {
   protected Aggregator getAggregator() {
     if (aggregator == null) {
       IATSParser atsParser = getSharedObjectsFactory().getATSParser();
-      aggregator = new Aggregator(getResourceManager(), getOperationHandleResourceManager(), atsParser);
+      aggregator = new Aggregator(getResourceManager(), getOperationHandleResourceManager(), atsParser,
+          getSharedObjectsFactory().getJobsIndex());
     }
     return aggregator;
   }
@@ -284,6 +285,7 @@ public class JobService extends BaseService {
   @Produces(MediaType.APPLICATION_JSON)
   public Response getResults(@PathParam("jobId") String jobId,
                              @QueryParam("first") String fromBeginning,
+                             @QueryParam("offset") Long offset,
                              @QueryParam("count") Integer count,
                              @QueryParam("searchId") String searchId,
                              @QueryParam("format") String format,
@@ -303,7 +305,7 @@ public class JobService extends BaseService {
       }
 
       return ResultsPaginationController.getInstance(context)
-           .request(jobId, searchId, true, fromBeginning, count, format,
+           .request(resultsKey(jobId, requestedColumns), searchId, true, fromBeginning, offset, count, format,
                new Callable<Cursor>() {
                  @Override
                  public Cursor call() throws Exception {
@@ -328,9 +330,10 @@ public class JobService extends BaseService {
   @Path("{jobId}/results/keepAlive")
   public Response keepAliveResults(@PathParam("jobId") String jobId,
                              @QueryParam("first") String fromBeginning,
-                             @QueryParam("count") Integer count) {
+                             @QueryParam("count") Integer count,
+                             @QueryParam("columns") String requestedColumns) {
     try {
-      if (!ResultsPaginationController.getInstance(context).keepAlive(jobId, ResultsPaginationController.DEFAULT_SEARCH_ID)) {
+      if (!ResultsPaginationController.getInstance(context).keepAlive(resultsKey(jobId, requestedColumns), ResultsPaginationController.DEFAULT_SEARCH_ID)) {
         throw new NotFoundFormattedException("Results already expired", null);
       }
       return Response.ok().build();
@@ -341,6 +344,17 @@ public class JobService extends BaseService {
     }
   }
 
+  /**
+   * Key of the cached results of a job; results read with a column selection
+   * only hold the selected columns, so they are cached apart
+   */
+  private static String resultsKey(String jobId, String requestedColumns) {
+    if (requestedColumns == null || requestedColumns.isEmpty()) {
+      return jobId;
+    }
+    return jobId + "#" + requestedColumns;
+  }
+
   /**
    * Get progress info
    */
@@ -397,16 +411,24 @@ public class JobService extends BaseService {
    */
   @GET
   @Produces(MediaType.APPLICATION_JSON)
-  public Response getList() {
+  public Response getList(@QueryParam("offset") Integer offset,
+                          @QueryParam("count") Integer count) {
     try {
       LOG.debug("Getting all job");
       List<Job> allJobs = getAggregator().readAll(context.getUsername());
+      int total = allJobs.size();
+      if (offset != null || count != null) {
+        int from = Math.min(Math.max(offset != null ? offset : 0, 0), total);
+        int to = count != null ? Math.min(from + Math.max(count, 0), total) : total;
+        allJobs = allJobs.subList(from, to);
+      }
       for(Job job : allJobs) {
         job.setSessionTag(null);
       }
 
       JSONObject object = new JSONObject();
       object.put("jobs", allJobs);
+      object.put("totalCount", total);
       return Response.ok(object).build();
     } catch (WebApplicationException ex) {
       throw ex;
@@ -0,0 +1,133 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.view.hive.resources.jobs;
+
+import org.apache.ambari.view.hive.resources.jobs.atsJobs.HiveQueryId;
+import org.apache.ambari.view.hive.resources.jobs.atsJobs.TezDagId;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ATS queries of a user already synchronized by the Aggregator, and operation
+ * handles of the user's view jobs, so that only the queries started since the
+ * last synchronization and the queries still running are read from ATS again.
+ * Not thread safe, the Aggregator synchronizes on the index.
+ */
+public class JobsIndex {
+  /**
+   * Queries not completed after this time (in seconds) are not read again
+   */
+  public static final long RUNNING_QUERY_MAX_AGE = 24 * 60 * 60;
+
+  private final Map<String, IndexedQuery> queries = new HashMap<String, IndexedQuery>();
+  private final Map<String, String> operationGuids = new HashMap<String, String>();
+  private boolean synced = false;
+  private long latestStartTime = 0;
+
+  /**
+   * Whether the queries were synchronized at least once
+   * @return true if only newer queries need to be read
+   */
+  public boolean isSynced() {
+    return synced;
+  }
+
+  public void setSynced(boolean synced) {
+    this.synced = synced;
+  }
+
+  /**
+   * Start time of the queries to read on the next synchronization: the latest
+   * query seen, or the oldest query still running if it started before that
+   * @param now current time in seconds
+   * @return start time in seconds
+   */
+  public long getSyncStartTime(long now) {
+    long startTime = latestStartTime;
+    for (IndexedQuery query : queries.values()) {
+      HiveQueryId hiveQueryId = query.getHiveQueryId();
+      if (!hiveQueryId.completed && hiveQueryId.starttime < startTime &&
+          hiveQueryId.starttime >= now - RUNNING_QUERY_MAX_AGE) {
+        startTime = hiveQueryId.starttime;
+      }
+    }
+    return startTime;
+  }
+
+  public void putQuery(HiveQueryId hiveQueryId, TezDagId tezDagId) {
+    queries.put(hiveQueryId.entity, new IndexedQuery(hiveQueryId, tezDagId));
+    latestStartTime = Math.max(latestStartTime, hiveQueryId.starttime);
+  }
+
+  /**
+   * Synchronized queries, latest first as returned by ATS
+   * @return queries
+   */
+  public List<IndexedQuery> getQueries() {
+    List<IndexedQuery> sorted = new ArrayList<IndexedQuery>(queries.values());
+    Collections.sort(sorted, new Comparator<IndexedQuery>() {
+      @Override
+      public int compare(IndexedQuery first, IndexedQuery second) {
+        long firstStartTime = first.getHiveQueryId().starttime;
+        long secondStartTime = second.getHiveQueryId().starttime;
+        return firstStartTime < secondStartTime ? 1 : (firstStartTime == secondStartTime ? 0 : -1);
+      }
+    });
+    return sorted;
+  }
+
+  /**
+   * Operation handle guid of the view job
+   * @param jobId view job id
+   * @return hex guid, or null if not known yet
+   */
+  public String getOperationGuid(String jobId) {
+    return operationGuids.get(jobId);
+  }
+
+  public void putOperationGuid(String jobId, String guid) {
+    operationGuids.put(jobId, guid);
+  }
+
+  /**
+   * ATS query with its Tez DAG
+   */
+  public static class IndexedQuery {
+    private final HiveQueryId hiveQueryId;
+    private final TezDagId tezDagId;
+
+    public IndexedQuery(HiveQueryId hiveQueryId, TezDagId tezDagId) {
+      this.hiveQueryId = hiveQueryId;
+      this.tezDagId = tezDagId;
+    }
+
+    public HiveQueryId getHiveQueryId() {
+      return hiveQueryId;
+    }
+
+    public TezDagId getTezDagId() {
+      return tezDagId;
+    }
+  }
+}
@@ -31,15 +31,20 @@ import javax.ws.rs.core.Response;
 import java.lang.Object;
 import java.lang.String;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Callable;
 
 /**
  * Results Pagination Controller
- * Persists cursors for result sets
+ * Persists cached result sets, so pages can be read again or at any offset
+ * without fetching them from HiveServer2 again
  */
 public class ResultsPaginationController {
   public static final String DEFAULT_SEARCH_ID = "default";
@@ -55,15 +60,17 @@ public class ResultsPaginationController {
 
   private static final long EXPIRING_TIME = 10*60*1000;  // 10 minutes
   private static final int DEFAULT_FETCH_COUNT = 50;
-  private Map<String, Cursor> resultsCache;
+  private Map<String, CachedResultSet> resultsCache;
+  private final Set<CachedResultSet> openResults =
+      Collections.newSetFromMap(new IdentityHashMap<CachedResultSet, Boolean>());
 
-  public static class CustomTimeToLiveExpirationPolicy extends PassiveExpiringMap.ConstantTimeToLiveExpirationPolicy<String, Cursor> {
+  public static class CustomTimeToLiveExpirationPolicy extends PassiveExpiringMap.ConstantTimeToLiveExpirationPolicy<String, CachedResultSet> {
     public CustomTimeToLiveExpirationPolicy(long timeToLiveMillis) {
       super(timeToLiveMillis);
     }
 
     @Override
-    public long expirationTime(String key, Cursor value) {
+    public long expirationTime(String key, CachedResultSet value) {
       if (key.startsWith("$")) {
         return -1;  //never expire
       }
@@ -71,10 +78,10 @@ public class ResultsPaginationController {
     }
   }
 
-  private Map<String, Cursor> getResultsCache() {
+  private Map<String, CachedResultSet> getResultsCache() {
     if (resultsCache == null) {
-      PassiveExpiringMap<String, Cursor> resultsCacheExpiringMap =
-          new PassiveExpiringMap<String, Cursor>(new CustomTimeToLiveExpirationPolicy(EXPIRING_TIME));
+      PassiveExpiringMap<String, CachedResultSet> resultsCacheExpiringMap =
+          new PassiveExpiringMap<String, CachedResultSet>(new CustomTimeToLiveExpirationPolicy(EXPIRING_TIME));
       resultsCache = Collections.synchronizedMap(resultsCacheExpiringMap);
     }
     return resultsCache;
@@ -92,43 +99,87 @@ public class ResultsPaginationController {
     if (!getResultsCache().containsKey(effectiveKey)) {
       return false;
     }
-    Cursor cursor = getResultsCache().get(effectiveKey);
-    getResultsCache().put(effectiveKey, cursor);
+    CachedResultSet resultSet = getResultsCache().get(effectiveKey);
+    getResultsCache().put(effectiveKey, resultSet);
     return true;
   }
 
-  private Cursor getResultsSet(String key, Callable<Cursor> makeResultsSet) {
+  private CachedResultSet getResultsSet(String key, int pageSize, Callable<Cursor> makeResultsSet) {
     if (!getResultsCache().containsKey(key)) {
-      Cursor resultSet = null;
+      CachedResultSet resultSet = null;
       try {
-        resultSet = makeResultsSet.call();
+        resultSet = new CachedResultSet(makeResultsSet.call(), pageSize);
       } catch (HiveClientException ex) {
         throw new HiveClientFormattedException(ex);
       } catch (Exception ex) {
         throw new ServiceFormattedException(ex.getMessage(), ex);
       }
       getResultsCache().put(key, resultSet);
+      synchronized (openResults) {
+        openResults.add(resultSet);
+      }
     }
 
     return getResultsCache().get(key);
   }
 
+  /**
+   * Release the result sets which expired or were replaced.
+   */
+  private void closeUnusedResults() {
+    Collection<CachedResultSet> used;
+    synchronized (getResultsCache()) {
+      used = Collections.newSetFromMap(new IdentityHashMap<CachedResultSet, Boolean>());
+      used.addAll(getResultsCache().values());
+    }
+    synchronized (openResults) {
+      Iterator<CachedResultSet> iterator = openResults.iterator();
+      while (iterator.hasNext()) {
+        CachedResultSet resultSet = iterator.next();
+        if (!used.contains(resultSet)) {
+          resultSet.close();
+          iterator.remove();
+        }
+      }
+    }
+  }
+
   public Response.ResponseBuilder request(String key, String searchId, boolean canExpire, String fromBeginning, Integer count, String format, Callable<Cursor> makeResultsSet) throws HiveClientException {
+    return request(key, searchId, canExpire, fromBeginning, null, count, format, makeResultsSet);
+  }
+
+  /**
+   * Read a page of results. Results which can expire are those of jobs, which
+   * never change, so reading them from the beginning or from an offset is
+   * served from the cached result set; other results are fetched again when
+   * read from the beginning.
+   */
+  public Response.ResponseBuilder request(String key, String searchId, boolean canExpire, String fromBeginning, Long offset, Integer count, String format, Callable<Cursor> makeResultsSet) throws HiveClientException {
     if (searchId == null)
       searchId = DEFAULT_SEARCH_ID;
     key = key + "?" + searchId;
     if (!canExpire)
       key = "$" + key;
-    if (fromBeginning != null && fromBeginning.equals("true") && getResultsCache().containsKey(key))
-      getResultsCache().remove(key);
-    Cursor resultSet = getResultsSet(key, makeResultsSet);
-
+    if (fromBeginning != null && fromBeginning.equals("true") && getResultsCache().containsKey(key)) {
+      if (canExpire) {
+        CachedResultSet cached = getResultsCache().get(key);
+        if (cached != null)
+          cached.seek(0);
+      } else {
+        getResultsCache().remove(key);
+      }
+    }
+    closeUnusedResults();
     if (count == null)
       count = DEFAULT_FETCH_COUNT;
 
+    CachedResultSet resultSet = getResultsSet(key, count, makeResultsSet);
+    if (offset != null)
+      resultSet.seek(offset);
+
     ArrayList<ColumnDescription> schema = resultSet.getSchema();
-    ArrayList<Object[]> rows = new ArrayList<Object[]>(count);
-    int read = resultSet.readRaw(rows, count);
+    ArrayList<Object[]> rows = resultSet.read(count);
+    int read = rows.size();
     if(format != null && format.equalsIgnoreCase("d3")) {
       List<Map<String,Object>> results = new ArrayList<Map<String,Object>>();
       for(int i=0; i<rows.size(); i++) {
@@ -37,6 +37,7 @@ public class ATSParser implements IATSParser {
   private ATSRequestsDelegate delegate;
 
   private static final long MillisInSecond = 1000L;
+  private static final String QUERY_COMPLETED_EVENT = "QUERY_COMPLETED";
 
   public ATSParser(ATSRequestsDelegate delegate) {
     this.delegate = delegate;
@@ -44,7 +45,15 @@ public class ATSParser implements IATSParser {
 
   @Override
   public List<HiveQueryId> getHiveQueryIdsList(String username) {
-    JSONObject entities = delegate.hiveQueryIdList(username);
+    return parseHiveQueryIdsList(delegate.hiveQueryIdList(username));
+  }
+
+  @Override
+  public List<HiveQueryId> getHiveQueryIdsList(String username, long windowStart) {
+    return parseHiveQueryIdsList(delegate.hiveQueryIdList(username, windowStart));
+  }
+
+  private List<HiveQueryId> parseHiveQueryIdsList(JSONObject entities) {
     JSONArray jobs = (JSONArray) entities.get("entities");
 
     List<HiveQueryId> parsedJobs = new LinkedList<HiveQueryId>();
@@ -139,6 +148,7 @@ public class ATSParser implements IATSParser {
     long lastEventTimestamp = ((Long) lastEvent.get("timestamp")) / MillisInSecond;
 
     parsedJob.duration = lastEventTimestamp - parsedJob.starttime;
+    parsedJob.completed = QUERY_COMPLETED_EVENT.equals(lastEvent.get("eventtype"));
 
     JSONObject otherinfo = (JSONObject) job.get("otherinfo");
     if (otherinfo.get("QUERY") != null) {  // workaround for HIVE-10829
@@ -33,6 +33,8 @@ public interface ATSRequestsDelegate {
 
   JSONObject hiveQueryIdList(String username);
 
+  JSONObject hiveQueryIdList(String username, long windowStart);
+
   JSONObject hiveQueryIdByOperationId(String operationId);
 
   JSONObject tezDagByName(String name);
@@ -82,6 +82,14 @@ public class ATSRequestsDelegateImpl implements ATSRequestsDelegate {
     return (JSONObject) JSONValue.parse(response);
   }
 
+  @Override
+  public JSONObject hiveQueryIdList(String username, long windowStart) {
+    String hiveQueriesListUrl = atsUrl + "/ws/v1/timeline/HIVE_QUERY_ID?primaryFilter=requestuser:" + username +
+        "&windowStart=" + windowStart;
+    String response = readFromWithDefault(hiveQueriesListUrl, "{ \"entities\" : [  ] }");
+    return (JSONObject) JSONValue.parse(response);
+  }
+
   @Override
   public JSONObject hiveQueryIdByOperationId(String operationId) {
     String hiveQueriesListUrl = hiveQueryIdOperationIdUrl(operationId);
@@ -39,4 +39,5 @@ public class HiveQueryId {
   public String operationId;
   public String user;
   public long version;
+  public boolean completed;
 }
@@ -23,6 +23,14 @@ import java.util.List;
 public interface IATSParser {
   List<HiveQueryId> getHiveQueryIdsList(String username);
 
+  /**
+   * Get the queries of the user started after the given time
+   * @param username user name
+   * @param windowStart start time in milliseconds, exclusive
+   * @return queries
+   */
+  List<HiveQueryId> getHiveQueryIdsList(String username, long windowStart);
+
   List<TezVertexId> getVerticesForDAGId(String dagId);
 
   HiveQueryId getHiveQueryIdByOperationId(String guidString);
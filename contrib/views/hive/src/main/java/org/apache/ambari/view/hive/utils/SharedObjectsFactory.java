@@ -23,6 +23,7 @@ import org.apache.ambari.view.hive.client.Connection;
 import org.apache.ambari.view.hive.persistence.IStorageFactory;
 import org.apache.ambari.view.hive.persistence.Storage;
 import org.apache.ambari.view.hive.persistence.utils.StorageFactory;
+import org.apache.ambari.view.hive.resources.jobs.JobsIndex;
 import org.apache.ambari.view.hive.resources.jobs.OperationHandleControllerFactory;
 import org.apache.ambari.view.hive.resources.jobs.atsJobs.ATSParser;
 import org.apache.ambari.view.hive.resources.jobs.atsJobs.ATSParserFactory;
@@ -72,6 +73,7 @@ public class SharedObjectsFactory implements IStorageFactory {
         localObjects.put(SavedQueryResourceManager.class, new ConcurrentHashMap<String, Object>());
         localObjects.put(HdfsApi.class, new ConcurrentHashMap<String, Object>());
         localObjects.put(RMParser.class, new ConcurrentHashMap<String, Object>());
+        localObjects.put(JobsIndex.class, new ConcurrentHashMap<String, Object>());
       }
     }
   }
@@ -121,6 +123,13 @@ public class SharedObjectsFactory implements IStorageFactory {
     return (RMParser) localObjects.get(RMParser.class).get(getTagName());
   }
 
+  // =============================
+  public JobsIndex getJobsIndex() {
+    if (!localObjects.get(JobsIndex.class).containsKey(getTagName()))
+      localObjects.get(JobsIndex.class).put(getTagName(), new JobsIndex());
+    return (JobsIndex) localObjects.get(JobsIndex.class).get(getTagName());
+  }
+
   // =============================
   public HdfsApi getHdfsApi() {
     if (!localObjects.get(HdfsApi.class).containsKey(getTagName())) {
@@ -49,6 +49,7 @@ public class ATSParserTest {
     Assert.assertEquals("hive", job.user);
     Assert.assertEquals(1423493342L - 1423493324L, job.duration);
     Assert.assertEquals("select count(*) from z", job.query);
+    Assert.assertTrue(job.completed);
 
     Assert.assertEquals(1, job.dagNames.size());
     Assert.assertEquals("hive_20150209144848_c3a5a07b-c3b6-4f57-a6d5-3dadecdd6fd0:4", job.dagNames.get(0));
@@ -172,6 +173,11 @@ public class ATSParserTest {
       );
     }
 
+    @Override
+    public JSONObject hiveQueryIdList(String username, long windowStart) {
+      return hiveQueryIdList(username);
+    }
+
     @Override
     public JSONObject hiveQueryIdByOperationId(String operationId) {
       throw new NotImplementedException();
@@ -201,6 +201,51 @@ public class AggregatorTest {
     Assert.assertEquals(3, aggregated.size());
   }
 
+  @Test
+  public void testReadJobIncrementally() throws Exception {
+    //job both on ATS and View
+    HiveQueryId hiveQueryId1 = getSampleHiveQueryId("ENTITY-NAME");
+    hiveQueryId1.operationId = Aggregator.hexStringToUrlSafeBase64("1a1b");
+    hiveQueryId1.starttime = 100;
+    hiveQueryId1.completed = true;
+    Job job1 = getSampleViewJob("1");
+    StoredOperationHandle operationHandle1 = getSampleOperationHandle("5", "1");
+    operationHandle1.setGuid("1a1b");
+
+    //job only on ATS, still running
+    HiveQueryId hiveQueryId2 = getSampleHiveQueryId("ENTITY-NAME2");
+    hiveQueryId2.operationId = Aggregator.hexStringToUrlSafeBase64("2a2a");
+    hiveQueryId2.starttime = System.currentTimeMillis() / 1000 - 60;
+
+    MockATSParser atsParser = getMockATSWithQueries(hiveQueryId1, hiveQueryId2);
+    MockJobResourceManager jobResourceManager = getJobResourceManagerWithJobs(job1);
+    MockOperationHandleResourceManager operationHandleRM = getOperationHandleRMWithEntities(operationHandle1);
+
+    JobsIndex jobsIndex = new JobsIndex();
+    Assert.assertEquals(2, new Aggregator(jobResourceManager, operationHandleRM, atsParser, jobsIndex).readAll("luke").size());
+    Assert.assertEquals(0, atsParser.getWindowStarts().size());
+    Assert.assertEquals(1, operationHandleRM.getReadAllCount());
+
+    //new job only on ATS
+    HiveQueryId hiveQueryId3 = getSampleHiveQueryId("ENTITY-NAME3");
+    hiveQueryId3.operationId = Aggregator.hexStringToUrlSafeBase64("3a3a");
+    hiveQueryId3.starttime = hiveQueryId2.starttime + 30;
+    hiveQueryId3.completed = true;
+    atsParser.setHiveQueryIds(Arrays.asList(hiveQueryId1, hiveQueryId2, hiveQueryId3));
+
+    List<Job> aggregated = new Aggregator(jobResourceManager, operationHandleRM, atsParser, jobsIndex).readAll("luke");
+
+    // only the running and the new queries are read, the known handle is not read again
+    Assert.assertEquals(1, atsParser.getWindowStarts().size());
+    Assert.assertEquals(hiveQueryId2.starttime * 1000 - 1, (long) atsParser.getWindowStarts().get(0));
+    Assert.assertEquals(1, operationHandleRM.getReadAllCount());
+
+    Assert.assertEquals(3, aggregated.size());
+    Assert.assertEquals("ENTITY-NAME3", aggregated.get(0).getId());
+    Assert.assertEquals("ENTITY-NAME2", aggregated.get(1).getId());
+    Assert.assertEquals("1", aggregated.get(2).getId());
+  }
+
   private MockJobResourceManager getJobResourceManagerWithJobs(Job... jobs) {
     MockJobResourceManager jobResourceManager = getEmptyJobResourceManager();
     jobResourceManager.setJobs(Arrays.asList(jobs));
@@ -327,6 +372,7 @@ public class AggregatorTest {
 
   public static class MockOperationHandleResourceManager implements IOperationHandleResourceManager {
     private HashMap<String, StoredOperationHandle> storage = new HashMap<String, StoredOperationHandle>();
+    private int readAllCount = 0;
 
     public MockOperationHandleResourceManager() {
 
@@ -381,6 +427,7 @@ public class AggregatorTest {
 
     @Override
     public List<StoredOperationHandle> readAll(FilteringStrategy filteringStrategy) {
+      readAllCount++;
       LinkedList<StoredOperationHandle> storedOperationHandles = new LinkedList<StoredOperationHandle>();
       for (StoredOperationHandle handle : storage.values()) {
         if (filteringStrategy.isConform(handle))
@@ -406,11 +453,16 @@ public class AggregatorTest {
     public void setStorage(HashMap<String, StoredOperationHandle> storage) {
       this.storage = storage;
     }
+
+    public int getReadAllCount() {
+      return readAllCount;
+    }
   }
 
   public static class MockATSParser implements IATSParser {
 
     private List<HiveQueryId> hiveQueryIds = new LinkedList<HiveQueryId>();
+    private List<Long> windowStarts = new LinkedList<Long>();
 
     public MockATSParser() {
     }
@@ -420,6 +472,17 @@ public class AggregatorTest {
       return hiveQueryIds;
     }
 
+    @Override
+    public List<HiveQueryId> getHiveQueryIdsList(String username, long windowStart) {
+      windowStarts.add(windowStart);
+      List<HiveQueryId> started = new LinkedList<HiveQueryId>();
+      for (HiveQueryId hiveQueryId : hiveQueryIds) {
+        if (hiveQueryId.starttime * 1000 > windowStart)
+          started.add(hiveQueryId);
+      }
+      return started;
+    }
+
     @Override
     public List<TezVertexId> getVerticesForDAGId(String dagId) {
       List<TezVertexId> vertices = new LinkedList<TezVertexId>();
@@ -461,5 +524,9 @@ public class AggregatorTest {
     public void setHiveQueryIds(List<HiveQueryId> hiveQueryIds) {
       this.hiveQueryIds = hiveQueryIds;
     }
+
+    public List<Long> getWindowStarts() {
+      return windowStarts;
+    }
   }
 }
\ No newline at end of file
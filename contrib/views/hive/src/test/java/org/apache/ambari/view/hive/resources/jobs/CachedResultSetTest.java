@@ -0,0 +1,163 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.view.hive.resources.jobs;
+
+import org.apache.ambari.view.hive.client.ColumnDescription;
+import org.apache.ambari.view.hive.client.Cursor;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CachedResultSetTest {
+  private static final int ROWS = 25;
+
+  @Test
+  public void testReadPagesFromCache() throws Exception {
+    final AtomicInteger fetches = new AtomicInteger();
+    CachedResultSet resultSet = new CachedResultSet(createCursor(fetches), 10, 1);
+
+    // read everything sequentially, spilling all but one chunk
+    ArrayList<Object[]> rows = new ArrayList<Object[]>();
+    while (resultSet.hasNext()) {
+      rows.addAll(resultSet.read(7));
+    }
+    Assert.assertEquals(ROWS, rows.size());
+    Assert.assertEquals(ROWS, resultSet.getOffset());
+    for (int i = 0; i < ROWS; i++) {
+      Assert.assertEquals(i, rows.get(i)[0]);
+      Assert.assertEquals("row" + i, rows.get(i)[1]);
+    }
+    Assert.assertEquals(3, fetches.get());
+
+    // pages are read again from the cache, across spilled chunks
+    resultSet.seek(8);
+    ArrayList<Object[]> page = resultSet.read(5);
+    Assert.assertEquals(5, page.size());
+    for (int i = 0; i < page.size(); i++) {
+      Assert.assertEquals(8 + i, page.get(i)[0]);
+      Assert.assertEquals("row" + (8 + i), page.get(i)[1]);
+    }
+    Assert.assertTrue(resultSet.hasNext());
+
+    resultSet.seek(20);
+    Assert.assertEquals(5, resultSet.read(10).size());
+    Assert.assertFalse(resultSet.hasNext());
+    Assert.assertEquals(3, fetches.get());
+
+    resultSet.close();
+  }
+
+  @Test
+  public void testCloseDeletesSpillFile() throws Exception {
+    Set<File> spillFilesBefore = listSpillFiles();
+    CachedResultSet resultSet = new CachedResultSet(createCursor(new AtomicInteger()), 10, 1);
+    while (resultSet.hasNext()) {
+      resultSet.read(10);
+    }
+
+    Set<File> spillFiles = listSpillFiles();
+    spillFiles.removeAll(spillFilesBefore);
+    Assert.assertEquals(1, spillFiles.size());
+
+    resultSet.close();
+    Assert.assertFalse(spillFiles.iterator().next().exists());
+  }
+
+  @Test
+  public void testFetchInPages() throws Exception {
+    Cursor cursor = EasyMock.createMock(Cursor.class);
+    EasyMock.expect(cursor.getSchema()).andReturn(new ArrayList<ColumnDescription>());
+    cursor.setFetchSize(5);
+    EasyMock.expect(cursor.readRaw(EasyMock.<ArrayList<Object[]>>anyObject(), EasyMock.eq(5))).andAnswer(new IAnswer<Integer>() {
+      @Override
+      public Integer answer() throws Throwable {
+        @SuppressWarnings("unchecked")
+        ArrayList<Object[]> rows = (ArrayList<Object[]>) EasyMock.getCurrentArguments()[0];
+        rows.add(new Object[]{0, "row0"});
+        return 1;
+      }
+    });
+    EasyMock.replay(cursor);
+
+    // the first page only needs a fetch of the page size
+    CachedResultSet resultSet = new CachedResultSet(cursor, 5);
+    Assert.assertEquals(1, resultSet.read(5).size());
+    Assert.assertFalse(resultSet.hasNext());
+    EasyMock.verify(cursor);
+    resultSet.close();
+  }
+
+  @Test
+  public void testReadEmpty() throws Exception {
+    Cursor cursor = EasyMock.createNiceMock(Cursor.class);
+    EasyMock.expect(cursor.getSchema()).andReturn(new ArrayList<ColumnDescription>());
+    EasyMock.expect(cursor.readRaw(EasyMock.<ArrayList<Object[]>>anyObject(), EasyMock.anyInt())).andReturn(0).anyTimes();
+    EasyMock.replay(cursor);
+
+    CachedResultSet resultSet = new CachedResultSet(cursor, 10, 1);
+    Assert.assertFalse(resultSet.hasNext());
+    Assert.assertEquals(0, resultSet.read(10).size());
+    Assert.assertEquals(0, resultSet.getOffset());
+    resultSet.close();
+  }
+
+  private Set<File> listSpillFiles() {
+    File[] files = new File(System.getProperty("java.io.tmpdir")).listFiles(new FilenameFilter() {
+      @Override
+      public boolean accept(File dir, String name) {
+        return name.startsWith("hive-results") && name.endsWith(".spill");
+      }
+    });
+    return new HashSet<File>(Arrays.asList(files));
+  }
+
+  private Cursor createCursor(final AtomicInteger fetches) throws Exception {
+    Cursor cursor = EasyMock.createNiceMock(Cursor.class);
+    EasyMock.expect(cursor.getSchema()).andReturn(new ArrayList<ColumnDescription>());
+    EasyMock.expect(cursor.readRaw(EasyMock.<ArrayList<Object[]>>anyObject(), EasyMock.anyInt())).andAnswer(new IAnswer<Integer>() {
+      private int next = 0;
+
+      @Override
+      public Integer answer() throws Throwable {
+        @SuppressWarnings("unchecked")
+        ArrayList<Object[]> rows = (ArrayList<Object[]>) EasyMock.getCurrentArguments()[0];
+        int count = (Integer) EasyMock.getCurrentArguments()[1];
+        int read = 0;
+        while (read < count && next < ROWS) {
+          rows.add(new Object[]{next, "row" + next});
+          next++;
+          read++;
+        }
+        fetches.incrementAndGet();
+        return read;
+      }
+    }).anyTimes();
+    EasyMock.replay(cursor);
+    return cursor;
+  }
+}